@@ -1,6 +1,7 @@
 package projects;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.Scanner;
@@ -8,6 +9,7 @@ import java.util.Scanner;
 import projects.entity.Project;
 import projects.exception.DbException;
 import projects.service.ProjectService;
+import projects.typeahead.ProjectSuggestion;
 
 /**
  * 
@@ -17,6 +19,8 @@ import projects.service.ProjectService;
  *
  */
 public class ProjectsApp {
+	private static final int SEARCH_LIMIT = 20;
+
 	private Scanner scanner = new Scanner(System.in);
 	private ProjectService projectService = new ProjectService();
 	private Project curProject;
@@ -26,7 +30,8 @@ public class ProjectsApp {
 			"2) List projects.",
 			"3) Select a project.",
 			"4) Update project details.",
-			"5) Delete a project."
+			"5) Delete a project.",
+			"6) Search projects by name."
 	);
 	// @formatter:on
 
@@ -35,8 +40,16 @@ public class ProjectsApp {
 	 * @param args
 	 * 
 	 *             Main class for ProjectsApp. Calls processUserSelection method.
+	 *             If the first argument is --batch, the remaining arguments are
+	 *             passed to ProjectsBatch and commands are read from a script or
+	 *             standard input instead of the menu.
 	 */
 	public static void main(String[] args) {
+		if (args.length > 0 && args[0].equals("--batch")) {
+			ProjectsBatch.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+
 		new ProjectsApp().processUserSelections();
 	}
 
@@ -71,6 +84,9 @@ public class ProjectsApp {
 				case 5:
 					deleteProject();
 					break;
+				case 6:
+					searchProjects();
+					break;
 				default:
 					System.out.println("\n" + selection + " is not a valid selection. Try again.");
 					break;
@@ -133,7 +149,12 @@ public class ProjectsApp {
 
 		projectService.modifyProjectDetails(project);
 
-		curProject = projectService.fetchProjectById(curProject.getProjectId());
+		if (projectService.isJournaled()) {
+			System.out.println("The update was saved and will be applied when the database is reachable.");
+			curProject = project;
+		} else {
+			curProject = projectService.fetchProjectById(curProject.getProjectId());
+		}
 	}
 
 	/**
@@ -150,6 +171,36 @@ public class ProjectsApp {
 		curProject = projectService.fetchProjectById(projectId);
 	}
 
+	/**
+	 * Asks for the start of a project name and prints the projects whose name,
+	 * or a word in it, starts with it. If the user then enters one of their IDs,
+	 * that project becomes the current project.
+	 */
+	private void searchProjects() {
+		String prefix = getStringInput("Enter the start of a project name");
+
+		if (Objects.isNull(prefix)) {
+			return;
+		}
+
+		List<ProjectSuggestion> suggestions = projectService.suggestProjects(prefix, SEARCH_LIMIT);
+
+		if (suggestions.isEmpty()) {
+			System.out.println("\nNo project names start with " + prefix + ".");
+			return;
+		}
+
+		System.out.println("\nProjects:");
+		suggestions.forEach(suggestion -> System.out.println("   " + suggestion));
+
+		Integer projectId = getIntInput("Enter a project ID to select a project");
+
+		if (Objects.nonNull(projectId)) {
+			curProject = null;
+			curProject = projectService.fetchProjectById(projectId);
+		}
+	}
+
 	/**
 	 * Creates a list of all the projects and prints them to the console one at the
 	 * time, starting with the project ID and then the project name.
@@ -185,7 +236,12 @@ public class ProjectsApp {
 		project.setNotes(notes);
 
 		Project dbProject = projectService.addProject(project);
-		System.out.println("You have successfully created project: " + dbProject);
+
+		if (projectService.isJournaled()) {
+			System.out.println("Project " + projectName + " was saved and will be created when the database is reachable.");
+		} else {
+			System.out.println("You have successfully created project: " + dbProject);
+		}
 	}
 
 	/**
@@ -196,6 +252,10 @@ public class ProjectsApp {
 	 *         exit the menu. Returns true when complete.
 	 */
 	private boolean exitMenu() {
+		if (projectService.isJournaled()) {
+			projectService.stopJournal();
+		}
+
 		System.out.println("\nExiting the menu.");
 		return true;
 	}
@@ -0,0 +1,376 @@
+package projects;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import projects.dao.FetchPlan;
+import projects.entity.Project;
+import projects.exception.DbException;
+import projects.exception.ProjectNotFoundException;
+import projects.service.ProjectService;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Non-interactive IO layer. Reads one command per line from a script
+ *         file or standard input and writes one result line per command. No
+ *         menu is printed. Consecutive add, update and delete commands are
+ *         collected and sent to the database as a single batch, which is
+ *         flushed when a different command is read, when the batch is full or
+ *         at the end of the input.
+ *
+ *         Fields are separated by a pipe character and blank fields are
+ *         treated as null. Lines that are blank or start with # are ignored.
+ *
+ *         <pre>
+ *         add|name|estimated hours|actual hours|difficulty|notes
+ *         list
+ *         select|id
+ *         update|id|name|estimated hours|actual hours|difficulty|notes
+ *         delete|id
+ *         </pre>
+ *
+ *         For update, blank fields leave the stored value unchanged.
+ */
+public class ProjectsBatch {
+	private static final int MAX_BATCH_SIZE = 500;
+
+	private ProjectService projectService = new ProjectService();
+	private BufferedReader reader;
+	private BufferedWriter writer;
+
+	private String batchCommand;
+	private List<Integer> batchLines = new ArrayList<>();
+	private List<Project> batchProjects = new ArrayList<>();
+
+	private long commandCount;
+	private long errorCount;
+
+	/**
+	 *
+	 * @param reader The source of the commands.
+	 * @param writer The destination of the results.
+	 */
+	public ProjectsBatch(Reader reader, Writer writer) {
+		this.reader = new BufferedReader(reader);
+		this.writer = new BufferedWriter(writer, 1 << 16);
+	}
+
+	/**
+	 *
+	 * @param args
+	 *
+	 *             Runs a script. If a file name is given it is read, otherwise
+	 *             commands are read from standard input.
+	 */
+	public static void main(String[] args) {
+		try {
+			Reader in = args.length > 0 ? Files.newBufferedReader(Path.of(args[0]), StandardCharsets.UTF_8)
+					: new InputStreamReader(System.in, StandardCharsets.UTF_8);
+
+			new ProjectsBatch(in, new OutputStreamWriter(System.out, StandardCharsets.UTF_8)).run();
+		} catch (IOException e) {
+			System.err.println("Error: " + e.toString());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Reads and executes every command, then writes a throughput summary to
+	 * standard error so that it does not mix with the command results.
+	 *
+	 * @throws IOException Thrown if the input cannot be read or the output cannot
+	 *                     be written.
+	 */
+	public void run() throws IOException {
+		long start = System.nanoTime();
+		int lineNumber = 0;
+		String line;
+
+		while (Objects.nonNull(line = reader.readLine())) {
+			lineNumber++;
+
+			if (line.isBlank() || line.startsWith("#")) {
+				continue;
+			}
+
+			commandCount++;
+
+			try {
+				processCommand(lineNumber, line.split("\\|", -1));
+			} catch (Exception e) {
+				/*
+				 * A command that failed before it was queued is reported after
+				 * the commands queued ahead of it.
+				 */
+				flushBatch();
+				writeError(lineNumber, e);
+			}
+		}
+
+		flushBatch();
+		writer.flush();
+
+		double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+		System.err.printf("%d commands (%d errors) in %.3f s: %.1f commands/s%n", commandCount, errorCount, seconds,
+				seconds > 0 ? commandCount / seconds : 0.0);
+	}
+
+	/**
+	 *
+	 * @param lineNumber
+	 * @param fields
+	 * @throws IOException Runs a single command. Batched commands are queued;
+	 *                     anything else flushes the queue first so that results
+	 *                     are written in input order.
+	 */
+	private void processCommand(int lineNumber, String[] fields) throws IOException {
+		String command = fields[0].trim().toLowerCase();
+
+		switch (command) {
+		case "add":
+			queue(lineNumber, command, toProject(null, fields));
+			break;
+		case "update":
+			queue(lineNumber, command, toProject(getRequiredInt(fields, 1), shift(fields)));
+			break;
+		case "delete":
+			Project project = new Project();
+			project.setProjectId(getRequiredInt(fields, 1));
+			queue(lineNumber, command, project);
+			break;
+		case "list":
+			flushBatch();
+			listProjects();
+			break;
+		case "select":
+			flushBatch();
+			selectProject(getRequiredInt(fields, 1));
+			break;
+		default:
+			throw new DbException(command + " is not a valid command.");
+		}
+	}
+
+	/**
+	 *
+	 * @param lineNumber
+	 * @param command
+	 * @param project
+	 * @throws IOException Adds a command to the current batch. If the batch holds
+	 *                     a different command or is full it is sent first.
+	 */
+	private void queue(int lineNumber, String command, Project project) throws IOException {
+		if (!command.equals(batchCommand) || batchProjects.size() >= MAX_BATCH_SIZE) {
+			flushBatch();
+			batchCommand = command;
+		}
+
+		batchLines.add(lineNumber);
+		batchProjects.add(project);
+	}
+
+	/**
+	 *
+	 * @throws IOException Sends the current batch to the database and writes one
+	 *                     result per queued command. If the batch fails, every
+	 *                     command in it is reported with the error. The batch is
+	 *                     split by shard and each shard commits on its own, so
+	 *                     the commands that went to other shards may still have
+	 *                     been applied.
+	 */
+	private void flushBatch() throws IOException {
+		if (batchProjects.isEmpty()) {
+			return;
+		}
+
+		try {
+			switch (batchCommand) {
+			case "add":
+				List<Project> added = projectService.addProjects(batchProjects);
+
+				for (Project project : added) {
+					writer.write("OK add " + project.getProjectId());
+					writer.newLine();
+				}
+				break;
+			case "update":
+				writeCounts("update", projectService.patchProjects(batchProjects));
+				break;
+			case "delete":
+				List<Integer> projectIds = new ArrayList<>(batchProjects.size());
+
+				batchProjects.forEach(project -> projectIds.add(project.getProjectId()));
+				writeCounts("delete", projectService.deleteProjects(projectIds));
+				break;
+			default:
+				throw new IllegalStateException("Unknown batch command: " + batchCommand);
+			}
+		} catch (DbException e) {
+			for (Integer lineNumber : batchLines) {
+				writeError(lineNumber, e);
+			}
+		} finally {
+			batchCommand = null;
+			batchLines.clear();
+			batchProjects.clear();
+		}
+	}
+
+	/**
+	 *
+	 * @param command
+	 * @param counts
+	 * @throws IOException Writes the result of an update or delete batch. A count
+	 *                     of zero means the project did not exist.
+	 */
+	private void writeCounts(String command, int[] counts) throws IOException {
+		for (int pos = 0; pos < counts.length; pos++) {
+			Integer projectId = batchProjects.get(pos).getProjectId();
+
+			if (counts[pos] == 0) {
+				writeError(batchLines.get(pos), new ProjectNotFoundException(projectId));
+			} else {
+				writer.write("OK " + command + " " + projectId);
+				writer.newLine();
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @throws IOException Writes every project ID and name, one per line.
+	 */
+	private void listProjects() throws IOException {
+		List<Project> projects = projectService.fetchAllProjects();
+
+		writer.write("OK list " + projects.size());
+		writer.newLine();
+
+		for (Project project : projects) {
+			writer.write("   " + project.getProjectId() + ": " + project.getProjectName());
+			writer.newLine();
+		}
+	}
+
+	/**
+	 *
+	 * @param projectId
+	 * @throws IOException Writes the full project with its materials, steps and
+	 *                     categories.
+	 */
+	private void selectProject(Integer projectId) throws IOException {
+		Project project = projectService.fetchProjectById(projectId, FetchPlan.EAGER);
+
+		writer.write("OK select " + projectId + project);
+		writer.newLine();
+	}
+
+	/**
+	 *
+	 * @param lineNumber
+	 * @param e
+	 * @throws IOException Writes an error line for a command.
+	 */
+	private void writeError(int lineNumber, Exception e) throws IOException {
+		errorCount++;
+		writer.write("ERROR line " + lineNumber + ": " + e.getMessage());
+		writer.newLine();
+	}
+
+	/**
+	 *
+	 * @param projectId
+	 * @param fields
+	 * @return Builds a project from the name, hours, difficulty and notes found
+	 *         in fields 1 to 5.
+	 */
+	private Project toProject(Integer projectId, String[] fields) {
+		Project project = new Project();
+
+		project.setProjectId(projectId);
+		project.setProjectName(getString(fields, 1));
+		project.setEstimatedHours(getDecimal(fields, 2));
+		project.setActualHours(getDecimal(fields, 3));
+		project.setDifficulty(getInt(fields, 4));
+		project.setNotes(getString(fields, 5));
+
+		return project;
+	}
+
+	/**
+	 *
+	 * @param fields
+	 * @return Drops the project ID field from an update command so that the
+	 *         remaining fields line up with an add command.
+	 */
+	private String[] shift(String[] fields) {
+		String[] shifted = new String[fields.length - 1];
+
+		shifted[0] = fields[0];
+		System.arraycopy(fields, 2, shifted, 1, fields.length - 2);
+
+		return shifted;
+	}
+
+	private Integer getRequiredInt(String[] fields, int pos) {
+		Integer value = getInt(fields, pos);
+
+		if (Objects.isNull(value)) {
+			throw new DbException("A project ID is required.");
+		}
+
+		return value;
+	}
+
+	private Integer getInt(String[] fields, int pos) {
+		String input = getString(fields, pos);
+
+		if (Objects.isNull(input)) {
+			return null;
+		}
+
+		try {
+			return Integer.valueOf(input);
+		} catch (NumberFormatException e) {
+			throw new DbException(input + " is not a valid number.");
+		}
+	}
+
+	private BigDecimal getDecimal(String[] fields, int pos) {
+		String input = getString(fields, pos);
+
+		if (Objects.isNull(input)) {
+			return null;
+		}
+
+		try {
+			return new BigDecimal(input).setScale(2);
+		} catch (NumberFormatException | ArithmeticException e) {
+			throw new DbException(input + " is not a valid decimal number.");
+		}
+	}
+
+	private String getString(String[] fields, int pos) {
+		if (pos >= fields.length || fields[pos].isBlank()) {
+			return null;
+		}
+
+		return fields[pos].trim();
+	}
+
+}
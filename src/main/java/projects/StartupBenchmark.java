@@ -0,0 +1,178 @@
+package projects;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import projects.json.JsonWriter;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Measures how long the app takes from process start to its first
+ *         result. The command is started the given number of times; for each
+ *         run the benchmark records the time until the first line of standard
+ *         output that matches the result pattern, and the time until the
+ *         process exits. The results are printed and appended as one JSON line
+ *         to a history file, so startup latency can be tracked from build to
+ *         build.
+ *
+ *         <pre>
+ *         StartupBenchmark [--runs 20] [--warmup 2] [--label name] -- command [args]
+ *         </pre>
+ *
+ *         Settings are system properties: projects.startup.history (the
+ *         history file, startup-history.jsonl) and projects.startup.resultPattern
+ *         (a regular expression for a result line, ^(OK|ERROR) ).
+ */
+public class StartupBenchmark {
+	private static final Path HISTORY = Path
+			.of(System.getProperty("projects.startup.history", "startup-history.jsonl"));
+	private static final Pattern RESULT = Pattern
+			.compile(System.getProperty("projects.startup.resultPattern", "^(OK|ERROR) "));
+
+	private int runs = 20;
+	private int warmup = 2;
+	private String label = "default";
+	private List<String> command;
+
+	/**
+	 *
+	 * @param args
+	 * @throws Exception Runs the benchmark and records the results.
+	 */
+	public static void main(String[] args) throws Exception {
+		StartupBenchmark benchmark = new StartupBenchmark();
+
+		if (!benchmark.parse(args)) {
+			System.err.println("Usage: StartupBenchmark [--runs N] [--warmup N] [--label name] -- command [args]");
+			System.exit(1);
+		}
+
+		benchmark.run();
+	}
+
+	private boolean parse(String[] args) {
+		for (int pos = 0; pos < args.length; pos++) {
+			switch (args[pos]) {
+			case "--runs":
+				runs = Integer.parseInt(args[++pos]);
+				break;
+			case "--warmup":
+				warmup = Integer.parseInt(args[++pos]);
+				break;
+			case "--label":
+				label = args[++pos];
+				break;
+			case "--":
+				command = Arrays.asList(Arrays.copyOfRange(args, pos + 1, args.length));
+				return !command.isEmpty() && runs > 0;
+			default:
+				return false;
+			}
+		}
+
+		return false;
+	}
+
+	private void run() throws IOException, InterruptedException {
+		long[] firstResult = new long[runs];
+		long[] total = new long[runs];
+
+		/*
+		 * Warmup runs fill the OS page cache so the first measured run does not
+		 * pay for reading the JDK and jars from disk.
+		 */
+		for (int pos = 0; pos < warmup; pos++) {
+			measure(new long[1], new long[1], 0);
+		}
+
+		for (int pos = 0; pos < runs; pos++) {
+			measure(firstResult, total, pos);
+		}
+
+		Arrays.sort(firstResult);
+		Arrays.sort(total);
+
+		System.err.printf("%s: first result p50 %.1f ms, p90 %.1f ms; exit p50 %.1f ms, p90 %.1f ms (%d runs)%n", label,
+				millis(percentile(firstResult, 50)), millis(percentile(firstResult, 90)),
+				millis(percentile(total, 50)), millis(percentile(total, 90)), runs);
+
+		StringWriter line = new StringWriter();
+
+		writeResult(new JsonWriter(line), firstResult, total);
+		line.write(System.lineSeparator());
+
+		Files.writeString(HISTORY, line.toString(), StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND);
+	}
+
+	/*
+	 * A run with no matching line records its exit time as the first result
+	 * time, so a failing command still shows up in the history.
+	 */
+	private void measure(long[] firstResult, long[] total, int index) throws IOException, InterruptedException {
+		long start = System.nanoTime();
+		Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+		long first = -1;
+
+		try (BufferedReader out = new BufferedReader(
+				new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+
+			while ((line = out.readLine()) != null) {
+				if (first < 0 && RESULT.matcher(line).find()) {
+					first = System.nanoTime() - start;
+				}
+			}
+		}
+
+		if (!process.waitFor(5, TimeUnit.MINUTES)) {
+			process.destroyForcibly();
+		}
+
+		total[index] = System.nanoTime() - start;
+		firstResult[index] = first < 0 ? total[index] : first;
+	}
+
+	private void writeResult(JsonWriter json, long[] firstResult, long[] total) throws IOException {
+		json.beginObject();
+		json.name("timestamp").value(Instant.now().toString());
+		json.name("label").value(label);
+		json.name("command").value(String.join(" ", command));
+		json.name("runs").value(runs);
+		writeStats(json.name("firstResultMillis"), firstResult);
+		writeStats(json.name("exitMillis"), total);
+		json.endObject();
+		json.flush();
+	}
+
+	private void writeStats(JsonWriter json, long[] sorted) throws IOException {
+		json.beginObject();
+		json.name("min").value(millis(sorted[0]));
+		json.name("p50").value(millis(percentile(sorted, 50)));
+		json.name("p90").value(millis(percentile(sorted, 90)));
+		json.name("max").value(millis(sorted[sorted.length - 1]));
+		json.endObject();
+	}
+
+	private static long percentile(long[] sorted, double percentile) {
+		int index = (int) Math.ceil(sorted.length * percentile / 100.0) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1_000_000.0;
+	}
+}
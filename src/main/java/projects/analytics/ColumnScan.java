@@ -0,0 +1,219 @@
+package projects.analytics;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Filter and aggregate operators over {@link ProjectColumns}. Filters
+ *         run a simple compare loop over one primitive column and produce a
+ *         {@link RowMask}; the loops have no method calls or object access in
+ *         the body so the JIT can unroll and vectorize them. Aggregates split
+ *         the rows into ranges and run them in parallel on the common
+ *         fork-join pool.
+ */
+public final class ColumnScan {
+	/*
+	 * Ranges smaller than this are aggregated on the current thread.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+	/*
+	 * Difficulty is a byte, so per-difficulty totals fit in fixed arrays indexed
+	 * by difficulty + 128.
+	 */
+	private static final int BUCKETS = 256;
+
+	private ColumnScan() {
+	}
+
+	/**
+	 *
+	 * @param columns
+	 * @return A mask with every row selected.
+	 */
+	public static RowMask all(ProjectColumns columns) {
+		RowMask mask = new RowMask(columns.size());
+
+		mask.setAll();
+		return mask;
+	}
+
+	/**
+	 *
+	 * @param columns
+	 * @param min
+	 * @param max
+	 * @return The rows whose difficulty is between min and max inclusive. Rows
+	 *         with no difficulty are not selected.
+	 */
+	public static RowMask difficultyBetween(ProjectColumns columns, int min, int max) {
+		byte[] difficulties = columns.difficulties();
+		boolean[] hits = new boolean[difficulties.length];
+
+		for (int row = 0; row < difficulties.length; row++) {
+			int difficulty = difficulties[row];
+			hits[row] = difficulty >= min & difficulty <= max & difficulty != ProjectColumns.NULL_DIFFICULTY;
+		}
+
+		return RowMask.of(hits);
+	}
+
+	/**
+	 *
+	 * @param columns
+	 * @param hundredths
+	 * @return The rows whose actual hours exceed the estimate by at least the
+	 *         given number of hundredths of an hour. Rows missing either value
+	 *         are not selected.
+	 */
+	public static RowMask overrunAtLeast(ProjectColumns columns, long hundredths) {
+		long[] estimated = columns.estimatedHours();
+		long[] actual = columns.actualHours();
+		boolean[] hits = new boolean[estimated.length];
+
+		for (int row = 0; row < estimated.length; row++) {
+			hits[row] = estimated[row] != ProjectColumns.NULL_HOURS & actual[row] != ProjectColumns.NULL_HOURS
+					& actual[row] - estimated[row] >= hundredths;
+		}
+
+		return RowMask.of(hits);
+	}
+
+	/**
+	 *
+	 * @param columns
+	 * @param projectName
+	 * @return The rows with exactly the given name. The name is looked up in the
+	 *         dictionary once and then only integer codes are compared.
+	 */
+	public static RowMask nameEquals(ProjectColumns columns, String projectName) {
+		int code = columns.getNameCode(projectName);
+		int[] codes = columns.nameCodes();
+		boolean[] hits = new boolean[codes.length];
+
+		for (int row = 0; row < codes.length; row++) {
+			hits[row] = codes[row] == code;
+		}
+
+		return RowMask.of(hits);
+	}
+
+	/**
+	 *
+	 * @param columns
+	 * @return Average of (actual hours - estimated hours) for each difficulty,
+	 *         over every row.
+	 */
+	public static Map<Integer, BigDecimal> averageOverrunByDifficulty(ProjectColumns columns) {
+		return averageOverrunByDifficulty(columns, all(columns));
+	}
+
+	/**
+	 *
+	 * @param columns
+	 * @param mask
+	 * @return Average of (actual hours - estimated hours) for each difficulty,
+	 *         over the selected rows. Rows missing the difficulty or either hour
+	 *         value are skipped. The map is sorted by difficulty.
+	 */
+	public static Map<Integer, BigDecimal> averageOverrunByDifficulty(ProjectColumns columns, RowMask mask) {
+		long[] totals = ForkJoinPool.commonPool().invoke(new OverrunTask(columns, mask, 0, columns.size()));
+		Map<Integer, BigDecimal> averages = new TreeMap<>();
+
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			long count = totals[BUCKETS + bucket];
+
+			if (count > 0) {
+				BigDecimal sum = BigDecimal.valueOf(totals[bucket], 2);
+				averages.put(bucket - 128, sum.divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP));
+			}
+		}
+
+		return averages;
+	}
+
+	/**
+	 *
+	 * @param columns
+	 * @param mask
+	 * @return Sum of the actual hours of the selected rows, as a decimal.
+	 */
+	public static BigDecimal sumActualHours(ProjectColumns columns, RowMask mask) {
+		long[] actual = columns.actualHours();
+		long sum = 0;
+
+		for (int row = mask.nextSetRow(0); row >= 0; row = mask.nextSetRow(row + 1)) {
+			if (actual[row] != ProjectColumns.NULL_HOURS) {
+				sum += actual[row];
+			}
+		}
+
+		return BigDecimal.valueOf(sum, 2);
+	}
+
+	/*
+	 * Returns an array of 2 * BUCKETS longs: the overrun sums per difficulty
+	 * followed by the row counts per difficulty.
+	 */
+	@SuppressWarnings("serial")
+	private static class OverrunTask extends RecursiveTask<long[]> {
+		private final ProjectColumns columns;
+		private final RowMask mask;
+		private final int from;
+		private final int to;
+
+		OverrunTask(ProjectColumns columns, RowMask mask, int from, int to) {
+			this.columns = columns;
+			this.mask = mask;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected long[] compute() {
+			if (to - from <= PARALLEL_THRESHOLD) {
+				return aggregate();
+			}
+
+			int mid = (from + to) >>> 1;
+			OverrunTask left = new OverrunTask(columns, mask, from, mid);
+			OverrunTask right = new OverrunTask(columns, mask, mid, to);
+
+			left.fork();
+			long[] totals = right.compute();
+			long[] leftTotals = left.join();
+
+			for (int pos = 0; pos < totals.length; pos++) {
+				totals[pos] += leftTotals[pos];
+			}
+
+			return totals;
+		}
+
+		private long[] aggregate() {
+			byte[] difficulties = columns.difficulties();
+			long[] estimated = columns.estimatedHours();
+			long[] actual = columns.actualHours();
+			long[] totals = new long[BUCKETS * 2];
+
+			for (int row = from; row < to; row++) {
+				if (mask.isSet(row) && difficulties[row] != ProjectColumns.NULL_DIFFICULTY
+						&& estimated[row] != ProjectColumns.NULL_HOURS && actual[row] != ProjectColumns.NULL_HOURS) {
+					int bucket = difficulties[row] + 128;
+
+					totals[bucket] += actual[row] - estimated[row];
+					totals[BUCKETS + bucket]++;
+				}
+			}
+
+			return totals;
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package projects.analytics;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Read-only columnar copy of the project table for analytics. Each
+ *         column is a primitive array indexed by row. Hours are stored as
+ *         fixed-point hundredths of an hour and names are dictionary encoded,
+ *         so a row costs a few bytes instead of a full Project object. Null
+ *         values are stored as {@link #NULL_DIFFICULTY} and
+ *         {@link #NULL_HOURS}. Instances are created with {@link Builder}.
+ */
+public final class ProjectColumns {
+	public static final byte NULL_DIFFICULTY = Byte.MIN_VALUE;
+	public static final long NULL_HOURS = Long.MIN_VALUE;
+
+	private final int size;
+	private final int[] projectIds;
+	private final byte[] difficulties;
+	private final long[] estimatedHours;
+	private final long[] actualHours;
+	private final int[] nameCodes;
+	private final String[] nameDictionary;
+
+	private ProjectColumns(Builder builder) {
+		this.size = builder.size;
+		this.projectIds = Arrays.copyOf(builder.projectIds, size);
+		this.difficulties = Arrays.copyOf(builder.difficulties, size);
+		this.estimatedHours = Arrays.copyOf(builder.estimatedHours, size);
+		this.actualHours = Arrays.copyOf(builder.actualHours, size);
+		this.nameCodes = Arrays.copyOf(builder.nameCodes, size);
+		this.nameDictionary = builder.dictionary.toArray();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getProjectId(int row) {
+		return projectIds[row];
+	}
+
+	public byte getDifficulty(int row) {
+		return difficulties[row];
+	}
+
+	/**
+	 * @return The estimated hours in hundredths of an hour, or
+	 *         {@link #NULL_HOURS}.
+	 */
+	public long getEstimatedHours(int row) {
+		return estimatedHours[row];
+	}
+
+	/**
+	 * @return The actual hours in hundredths of an hour, or {@link #NULL_HOURS}.
+	 */
+	public long getActualHours(int row) {
+		return actualHours[row];
+	}
+
+	public String getProjectName(int row) {
+		return nameDictionary[nameCodes[row]];
+	}
+
+	/**
+	 * @return The number of distinct project names.
+	 */
+	public int getDistinctNameCount() {
+		return nameDictionary.length;
+	}
+
+	/*
+	 * The operators in ColumnScan read the arrays directly.
+	 */
+	int[] projectIds() {
+		return projectIds;
+	}
+
+	byte[] difficulties() {
+		return difficulties;
+	}
+
+	long[] estimatedHours() {
+		return estimatedHours;
+	}
+
+	long[] actualHours() {
+		return actualHours;
+	}
+
+	int[] nameCodes() {
+		return nameCodes;
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return The dictionary code for a project name, or -1 if no project has
+	 *         that name.
+	 */
+	public int getNameCode(String name) {
+		for (int code = 0; code < nameDictionary.length; code++) {
+			if (nameDictionary[code].equals(name)) {
+				return code;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 *
+	 * @param hours
+	 * @return Converts a DECIMAL(7,2) value to hundredths of an hour.
+	 */
+	public static long toFixedPoint(BigDecimal hours) {
+		return hours == null ? NULL_HOURS : hours.movePointRight(2).longValue();
+	}
+
+	/**
+	 *
+	 * @param hundredths
+	 * @return Converts hundredths of an hour back to a decimal value.
+	 */
+	public static BigDecimal fromFixedPoint(long hundredths) {
+		return hundredths == NULL_HOURS ? null : BigDecimal.valueOf(hundredths, 2);
+	}
+
+	/**
+	 *
+	 * @author clayr
+	 *
+	 *         Appends rows one at a time while a result set is being streamed.
+	 *         The arrays grow by doubling and are trimmed when
+	 *         {@link #build()} is called.
+	 */
+	public static class Builder {
+		private int size;
+		private int[] projectIds = new int[1024];
+		private byte[] difficulties = new byte[1024];
+		private long[] estimatedHours = new long[1024];
+		private long[] actualHours = new long[1024];
+		private int[] nameCodes = new int[1024];
+
+		private Map<String, Integer> codes = new HashMap<>();
+		private Dictionary dictionary = new Dictionary();
+
+		/**
+		 *
+		 * @param projectId
+		 * @param projectName
+		 * @param difficulty         The difficulty or {@link #NULL_DIFFICULTY}.
+		 * @param estimatedHours     Hundredths of an hour or {@link #NULL_HOURS}.
+		 * @param actualHours        Hundredths of an hour or {@link #NULL_HOURS}.
+		 * @return This builder.
+		 */
+		public Builder addRow(int projectId, String projectName, byte difficulty, long estimatedHours,
+				long actualHours) {
+			if (size == projectIds.length) {
+				grow();
+			}
+
+			Integer code = codes.get(projectName);
+
+			if (code == null) {
+				code = codes.size();
+				codes.put(projectName, code);
+				dictionary.add(projectName);
+			}
+
+			this.projectIds[size] = projectId;
+			this.difficulties[size] = difficulty;
+			this.estimatedHours[size] = estimatedHours;
+			this.actualHours[size] = actualHours;
+			this.nameCodes[size] = code;
+			size++;
+
+			return this;
+		}
+
+		public ProjectColumns build() {
+			return new ProjectColumns(this);
+		}
+
+		private void grow() {
+			int capacity = size * 2;
+
+			projectIds = Arrays.copyOf(projectIds, capacity);
+			difficulties = Arrays.copyOf(difficulties, capacity);
+			estimatedHours = Arrays.copyOf(estimatedHours, capacity);
+			actualHours = Arrays.copyOf(actualHours, capacity);
+			nameCodes = Arrays.copyOf(nameCodes, capacity);
+		}
+	}
+
+	/*
+	 * Growable array of distinct names in code order.
+	 */
+	private static class Dictionary {
+		private String[] names = new String[256];
+		private int size;
+
+		void add(String name) {
+			if (size == names.length) {
+				names = Arrays.copyOf(names, size * 2);
+			}
+
+			names[size++] = name;
+		}
+
+		String[] toArray() {
+			return Arrays.copyOf(names, size);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package projects.analytics;
+
+/**
+ *
+ * @author clayr
+ *
+ *         A set of selected row numbers stored as a bitmap, one bit per row.
+ *         Masks from different filters on the same {@link ProjectColumns} can
+ *         be combined with {@link #and(RowMask)} and {@link #or(RowMask)}.
+ */
+public final class RowMask {
+	private final int size;
+	private final long[] words;
+
+	RowMask(int size) {
+		this.size = size;
+		this.words = new long[(size + 63) >>> 6];
+	}
+
+	static RowMask of(boolean[] hits) {
+		RowMask mask = new RowMask(hits.length);
+
+		for (int row = 0; row < hits.length; row++) {
+			if (hits[row]) {
+				mask.words[row >>> 6] |= 1L << row;
+			}
+		}
+
+		return mask;
+	}
+
+	void setAll() {
+		for (int word = 0; word < words.length; word++) {
+			words[word] = -1L;
+		}
+
+		int tail = size & 63;
+
+		if (tail != 0) {
+			words[words.length - 1] = (1L << tail) - 1;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isSet(int row) {
+		return (words[row >>> 6] & (1L << row)) != 0;
+	}
+
+	/**
+	 *
+	 * @param from
+	 * @return The first selected row at or after from, or -1 if there are none.
+	 */
+	public int nextSetRow(int from) {
+		if (from >= size) {
+			return -1;
+		}
+
+		int word = from >>> 6;
+		long bits = words[word] & (-1L << from);
+
+		while (true) {
+			if (bits != 0) {
+				return (word << 6) + Long.numberOfTrailingZeros(bits);
+			}
+
+			if (++word == words.length) {
+				return -1;
+			}
+
+			bits = words[word];
+		}
+	}
+
+	/**
+	 * @return The number of selected rows.
+	 */
+	public int count() {
+		int count = 0;
+
+		for (long word : words) {
+			count += Long.bitCount(word);
+		}
+
+		return count;
+	}
+
+	/**
+	 *
+	 * @param other
+	 * @return A new mask with the rows selected in both masks.
+	 */
+	public RowMask and(RowMask other) {
+		checkSize(other);
+		RowMask result = new RowMask(size);
+
+		for (int word = 0; word < words.length; word++) {
+			result.words[word] = words[word] & other.words[word];
+		}
+
+		return result;
+	}
+
+	/**
+	 *
+	 * @param other
+	 * @return A new mask with the rows selected in either mask.
+	 */
+	public RowMask or(RowMask other) {
+		checkSize(other);
+		RowMask result = new RowMask(size);
+
+		for (int word = 0; word < words.length; word++) {
+			result.words[word] = words[word] | other.words[word];
+		}
+
+		return result;
+	}
+
+	private void checkSize(RowMask other) {
+		if (other.size != size) {
+			throw new IllegalArgumentException("Row masks cover " + size + " and " + other.size + " rows.");
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package projects.audit;
+
+import java.io.IOException;
+import java.util.List;
+
+import projects.entity.AuditRecord;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Destination for audit records. The audit writer calls write from a
+ *         single thread. A batch that throws is written again later, so a sink
+ *         may see the same records twice.
+ */
+public interface AuditSink extends AutoCloseable {
+
+	/**
+	 *
+	 * @param records The records, in the order they were made on each thread.
+	 * @throws IOException Thrown if the records could not be stored.
+	 */
+	void write(List<AuditRecord> records) throws IOException;
+
+	@Override
+	default void close() throws IOException {
+	}
+}
@@ -0,0 +1,264 @@
+package projects.audit;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import projects.entity.AuditRecord;
+import projects.exception.DbException;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Records project changes for the audit log without slowing the write
+ *         that made them. ProjectDao hands each committed change to
+ *         {@link #record(AuditRecord)}, which only puts it on a lock-free
+ *         bounded queue; a background writer thread drains the queue and
+ *         stores the records in batches.
+ *
+ *         When the queue is full, the backpressure setting decides what the
+ *         caller does: BLOCK waits for room, for at most
+ *         projects.audit.blockMillis if that is set, and DROP gives up at once.
+ *         Records that are given up are counted in {@link #getDropped()}.
+ *
+ *         The writer is stopped by a shutdown hook, which writes every record
+ *         still queued before the JVM exits. A batch that fails is retried
+ *         until it is written or the shutdown timeout passes.
+ *
+ *         Settings are system properties: projects.audit.sink (db, file or
+ *         none), projects.audit.dir (audit) and projects.audit.fileMaxBytes
+ *         (64 MB) for the file sink, projects.audit.queueSize (65536),
+ *         projects.audit.batchSize (500), projects.audit.idleMillis (20),
+ *         projects.audit.backpressure (BLOCK or DROP), projects.audit.blockMillis
+ *         (0, wait as long as needed) and projects.audit.shutdownMillis
+ *         (10000).
+ */
+public class AuditTrail {
+
+	/**
+	 * What record does when the queue is full.
+	 */
+	public enum Backpressure {
+		BLOCK, DROP
+	}
+
+	private static final String SINK = System.getProperty("projects.audit.sink", "db");
+	private static final int QUEUE_SIZE = Integer.getInteger("projects.audit.queueSize", 65_536);
+	private static final int BATCH_SIZE = Integer.getInteger("projects.audit.batchSize", 500);
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS
+			.toNanos(Long.getLong("projects.audit.idleMillis", 20));
+	private static final Backpressure BACKPRESSURE = Backpressure
+			.valueOf(System.getProperty("projects.audit.backpressure", "BLOCK"));
+	private static final long BLOCK_NANOS = TimeUnit.MILLISECONDS
+			.toNanos(Long.getLong("projects.audit.blockMillis", 0));
+	private static final long SHUTDOWN_MILLIS = Long.getLong("projects.audit.shutdownMillis", 10_000);
+
+	private static final AuditTrail instance = new AuditTrail();
+
+	private final BoundedMpscQueue<AuditRecord> queue = new BoundedMpscQueue<>(QUEUE_SIZE);
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+	private AuditSink sink;
+	private RuntimeException sinkFailure;
+	private volatile Thread writer;
+	private volatile boolean stopping;
+	private volatile long stopDeadline;
+
+	private AuditTrail() {
+	}
+
+	public static AuditTrail getInstance() {
+		return instance;
+	}
+
+	/**
+	 *
+	 * @return True unless projects.audit.sink is none. ProjectDao only reads
+	 *         the before values of a change when the trail is enabled.
+	 */
+	public boolean isEnabled() {
+		return !"none".equals(SINK);
+	}
+
+	/**
+	 *
+	 * @param record Queues the record for the writer, starting the writer on
+	 *               first use. Call this after the change has committed. Never
+	 *               throws: a record that cannot be queued, including every
+	 *               record when the sink cannot be opened, is counted in
+	 *               {@link #getDropped()}.
+	 */
+	public void record(AuditRecord record) {
+		if (!isEnabled()) {
+			return;
+		}
+
+		if (writer == null) {
+			try {
+				start();
+			} catch (RuntimeException e) {
+				dropped.incrementAndGet();
+				return;
+			}
+		}
+
+		if (queue.offer(record)) {
+			return;
+		}
+
+		if (BACKPRESSURE == Backpressure.BLOCK) {
+			long deadline = System.nanoTime() + BLOCK_NANOS;
+
+			LockSupport.unpark(writer);
+
+			while (!stopping && (BLOCK_NANOS == 0 || System.nanoTime() < deadline)) {
+				LockSupport.parkNanos(50_000);
+
+				if (queue.offer(record)) {
+					return;
+				}
+			}
+		}
+
+		dropped.incrementAndGet();
+	}
+
+	/**
+	 *
+	 * @return The number of records given up because the queue was full or the
+	 *         sink could not be opened.
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 *
+	 * @return The number of records stored by the sink.
+	 */
+	public long getWritten() {
+		return written.get();
+	}
+
+	/**
+	 *
+	 * @return The number of records waiting to be written.
+	 */
+	public int getQueued() {
+		return queue.size();
+	}
+
+	private synchronized void start() {
+		if (writer != null) {
+			return;
+		}
+
+		if (sinkFailure != null) {
+			throw sinkFailure;
+		}
+
+		try {
+			sink = createSink();
+		} catch (RuntimeException e) {
+			sinkFailure = e;
+			System.err.println("Audit trail disabled: " + e.getMessage());
+			throw e;
+		}
+
+		writer = new Thread(this::writeLoop, "audit-writer");
+		writer.setDaemon(true);
+		writer.start();
+
+		Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "audit-shutdown"));
+	}
+
+	/**
+	 * Stops the writer after every queued record has been written, waiting at
+	 * most projects.audit.shutdownMillis. Called by the shutdown hook.
+	 */
+	public void stop() {
+		Thread running;
+
+		synchronized (this) {
+			running = writer;
+		}
+
+		if (running == null) {
+			return;
+		}
+
+		stopDeadline = System.currentTimeMillis() + SHUTDOWN_MILLIS;
+		stopping = true;
+		LockSupport.unpark(running);
+
+		try {
+			running.join(SHUTDOWN_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (queue.size() > 0) {
+			System.err.println("Audit trail stopped with " + queue.size() + " records unwritten.");
+		}
+	}
+
+	private void writeLoop() {
+		List<AuditRecord> batch = new ArrayList<>(BATCH_SIZE);
+
+		while (true) {
+			if (batch.isEmpty() && queue.drainTo(batch, BATCH_SIZE) == 0) {
+				/*
+				 * A producer may have claimed a slot and not yet filled it, so the
+				 * queue is only finished when its size is zero too.
+				 */
+				if (stopping && queue.size() == 0) {
+					break;
+				}
+
+				LockSupport.parkNanos(IDLE_NANOS);
+				continue;
+			}
+
+			try {
+				sink.write(batch);
+				written.addAndGet(batch.size());
+				batch.clear();
+			} catch (IOException | RuntimeException e) {
+				System.err.println("Audit write failed: " + e.getMessage());
+
+				if (stopping && System.currentTimeMillis() > stopDeadline) {
+					break;
+				}
+
+				LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+			}
+		}
+
+		try {
+			sink.close();
+		} catch (Exception e) {
+			System.err.println("Unable to close the audit sink: " + e.getMessage());
+		}
+	}
+
+	private AuditSink createSink() {
+		switch (SINK) {
+		case "db":
+			return new DbAuditSink();
+		case "file":
+			try {
+				return new FileAuditSink(Path.of(System.getProperty("projects.audit.dir", "audit")),
+						Long.getLong("projects.audit.fileMaxBytes", 64L << 20));
+			} catch (IOException e) {
+				throw new DbException("Unable to open the audit file.", e);
+			}
+		default:
+			throw new DbException("Unknown audit sink " + SINK);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package projects.audit;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ *
+ * @author clayr
+ *
+ *         A fixed-size queue for many producer threads and one consumer thread
+ *         that never takes a lock. A producer claims a slot by advancing the
+ *         tail with compare-and-set and then publishes its item into the slot;
+ *         the consumer takes items from the head until it finds a slot that is
+ *         still empty, either because the queue is empty or because the
+ *         producer that claimed it has not published yet.
+ *
+ *         Only one thread may call {@link #drainTo(Collection, int)}.
+ *
+ * @param <E> The item type.
+ */
+public class BoundedMpscQueue<E> {
+	private final AtomicReferenceArray<E> slots;
+	private final int mask;
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 *
+	 * @param capacity Rounded up to a power of two.
+	 */
+	public BoundedMpscQueue(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+
+		this.slots = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+	}
+
+	/**
+	 *
+	 * @param item
+	 * @return Adds the item and returns true, or returns false at once if the
+	 *         queue is full.
+	 */
+	public boolean offer(E item) {
+		long claimed;
+
+		do {
+			claimed = tail.get();
+
+			if (claimed - head.get() > mask) {
+				return false;
+			}
+		} while (!tail.compareAndSet(claimed, claimed + 1));
+
+		slots.lazySet((int) claimed & mask, item);
+		return true;
+	}
+
+	/**
+	 *
+	 * @param target
+	 * @param max
+	 * @return Moves up to max items to the target, oldest first, and returns the
+	 *         number moved.
+	 */
+	public int drainTo(Collection<? super E> target, int max) {
+		long next = head.get();
+		int moved = 0;
+
+		while (moved < max) {
+			int index = (int) next & mask;
+			E item = slots.get(index);
+
+			if (item == null) {
+				break;
+			}
+
+			slots.lazySet(index, null);
+			target.add(item);
+			next++;
+			moved++;
+		}
+
+		head.lazySet(next);
+		return moved;
+	}
+
+	/**
+	 *
+	 * @return The number of items claimed and not yet drained. May be slightly
+	 *         out of date while other threads are working on the queue.
+	 */
+	public int size() {
+		return (int) Math.max(0, tail.get() - head.get());
+	}
+
+	/**
+	 *
+	 * @return The number of items the queue holds when full.
+	 */
+	public int capacity() {
+		return mask + 1;
+	}
+}
@@ -0,0 +1,22 @@
+package projects.audit;
+
+import java.util.List;
+
+import projects.dao.AuditDao;
+import projects.entity.AuditRecord;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Stores audit records in the audit_log table next to the projects
+ *         they describe.
+ */
+public class DbAuditSink implements AuditSink {
+	private AuditDao auditDao = new AuditDao();
+
+	@Override
+	public void write(List<AuditRecord> records) {
+		auditDao.appendRecords(records);
+	}
+}
@@ -0,0 +1,97 @@
+package projects.audit;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import projects.dao.AuditDao;
+import projects.entity.AuditRecord;
+import projects.json.JsonWriter;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Appends audit records to audit.log in a directory as JSON lines, one
+ *         record per line. Each batch is forced to disk before write returns.
+ *         When the file reaches the size limit it is renamed to
+ *         audit-&lt;UTC time&gt;.log and a new audit.log is started, so files are
+ *         only ever appended to and closed files never change.
+ */
+public class FileAuditSink implements AuditSink {
+	private static final String CURRENT_FILE = "audit.log";
+	private static final DateTimeFormatter ROLLED_NAME = DateTimeFormatter
+			.ofPattern("'audit-'yyyyMMdd'T'HHmmss.SSS'.log'");
+
+	private final Path directory;
+	private final long maxBytes;
+	private FileChannel channel;
+	private BufferedWriter out;
+
+	/**
+	 *
+	 * @param directory
+	 * @param maxBytes
+	 * @throws IOException Creates the directory if needed and opens audit.log
+	 *                     for appending.
+	 */
+	public FileAuditSink(Path directory, long maxBytes) throws IOException {
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+
+		Files.createDirectories(directory);
+		open();
+	}
+
+	@Override
+	public synchronized void write(List<AuditRecord> records) throws IOException {
+		for (AuditRecord record : records) {
+			JsonWriter json = new JsonWriter(out);
+
+			json.beginObject();
+			json.name("projectId").value(record.getProjectId());
+			json.name("action").value(record.getAction());
+			json.name("occurredAt").value(record.getOccurredAt().toString());
+			json.name("before").jsonValue(AuditDao.toJson(record.getBefore()));
+			json.name("after").jsonValue(AuditDao.toJson(record.getAfter()));
+			json.endObject();
+			out.newLine();
+		}
+
+		out.flush();
+		channel.force(false);
+
+		if (channel.size() >= maxBytes) {
+			roll();
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		out.close();
+	}
+
+	private void open() throws IOException {
+		channel = FileChannel.open(directory.resolve(CURRENT_FILE), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8),
+				1 << 16);
+	}
+
+	private void roll() throws IOException {
+		out.close();
+		Files.move(directory.resolve(CURRENT_FILE),
+				directory.resolve(ROLLED_NAME.format(ZonedDateTime.now(ZoneOffset.UTC))));
+		open();
+	}
+}
@@ -0,0 +1,45 @@
+package projects.binder;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Marks an entity class whose table bindings are generated at compile
+ *         time by {@link BinderProcessor}. For an entity named Project a class
+ *         named ProjectBinder is generated in the same package with the INSERT
+ *         and UPDATE statements and static methods that bind an entity to
+ *         them.
+ *
+ *         Columns are the entity's instance fields of type Integer, String,
+ *         BigDecimal, Double or LocalTime, in declaration order. Column names
+ *         are the field names converted to snake case, the same rule DaoBase
+ *         uses to read rows back. Fields of any other type, such as child
+ *         lists, are not columns, and neither are transient fields, which hold
+ *         values read from other tables. String columns that hold long text can
+ *         be marked {@link Compressed}.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface BoundTable {
+
+	/**
+	 * @return The table name.
+	 */
+	String value();
+
+	/**
+	 * @return The name of the primary key field.
+	 */
+	String key();
+
+	/**
+	 * @return True if the database assigns the key, in which case it is left out
+	 *         of the INSERT statement.
+	 */
+	boolean generatedKey() default true;
+}
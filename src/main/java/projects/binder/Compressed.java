@@ -0,0 +1,21 @@
+package projects.binder;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Marks a String column of a {@link BoundTable} entity that holds long
+ *         text. The generated binder passes the value through
+ *         projects.compression.TextCompression before binding it, and
+ *         generates a decode method that restores the field after a row has
+ *         been read.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface Compressed {
+}
@@ -0,0 +1,216 @@
+package projects.compression;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import projects.exception.DbException;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Compresses long text values for storage in a TEXT column. A
+ *         compressed value is a NUL character followed by the Base64 form of
+ *         what MySQL's COMPRESS() returns: the UTF-8 length as four bytes, low
+ *         byte first, then a zlib stream. Existing rows can therefore be
+ *         compressed in SQL, and a compressed value can be read in SQL with
+ *         UNCOMPRESS(FROM_BASE64(SUBSTRING(column, 2))).
+ *
+ *         Base64 keeps the columns TEXT, at the cost of a third on top of the
+ *         compressed size: prose that deflates to a quarter is stored in about
+ *         a third of its length. {@link #getRatio()} reports the ratio after
+ *         that overhead.
+ *
+ *         Values shorter than projects.compression.minLength (256) characters,
+ *         and values that would not get shorter, are stored as they are. A
+ *         value that starts with NUL is always compressed, so every stored
+ *         value reads back unchanged. Setting projects.compression.enabled to
+ *         false stores new values uncompressed; values already compressed are
+ *         still read.
+ *
+ *         The generated binders call {@link #compress(String)} for fields
+ *         marked {@link projects.binder.Compressed}, and their decode methods
+ *         call {@link #decompress(String)} after a row is read. Deflaters and
+ *         inflaters are reused per thread.
+ */
+public final class TextCompression {
+	static final char MARKER = '\0';
+
+	private static final boolean ENABLED = Boolean
+			.parseBoolean(System.getProperty("projects.compression.enabled", "true"));
+	private static final int MIN_LENGTH = Integer.getInteger("projects.compression.minLength", 256);
+
+	private static final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(Deflater::new);
+	private static final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+	private static final LongAdder valuesWritten = new LongAdder();
+	private static final LongAdder valuesCompressed = new LongAdder();
+	private static final LongAdder charsIn = new LongAdder();
+	private static final LongAdder charsOut = new LongAdder();
+	private static final LongAdder valuesInflated = new LongAdder();
+
+	private TextCompression() {
+	}
+
+	/**
+	 *
+	 * @param value
+	 * @return The value as it is to be stored: compressed if it is long enough
+	 *         and gets shorter, otherwise unchanged. Null stays null.
+	 */
+	public static String compress(String value) {
+		if (Objects.isNull(value)) {
+			return null;
+		}
+
+		boolean marked = !value.isEmpty() && value.charAt(0) == MARKER;
+		String stored = value;
+
+		if (marked || (ENABLED && value.length() >= MIN_LENGTH)) {
+			String compressed = deflate(value);
+
+			if (marked || compressed.length() < value.length()) {
+				stored = compressed;
+				valuesCompressed.increment();
+			}
+		}
+
+		valuesWritten.increment();
+		charsIn.add(value.length());
+		charsOut.add(stored.length());
+		return stored;
+	}
+
+	/**
+	 *
+	 * @param stored
+	 * @return The original value of a stored value. Values that are not
+	 *         compressed are returned as they are.
+	 */
+	public static String decompress(String stored) {
+		if (Objects.isNull(stored) || stored.isEmpty() || stored.charAt(0) != MARKER) {
+			return stored;
+		}
+
+		byte[] packed = Base64.getMimeDecoder().decode(stored.substring(1));
+
+		if (packed.length < 4) {
+			throw new DbException("A compressed text value is truncated.");
+		}
+
+		int length = (packed[0] & 0xff) | (packed[1] & 0xff) << 8 | (packed[2] & 0xff) << 16
+				| (packed[3] & 0x3f) << 24;
+		byte[] bytes = new byte[length];
+		Inflater inflater = inflaters.get();
+
+		inflater.reset();
+		inflater.setInput(packed, 4, packed.length - 4);
+
+		try {
+			int read = 0;
+
+			while (read < length && !inflater.finished()) {
+				int count = inflater.inflate(bytes, read, length - read);
+
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+
+				read += count;
+			}
+
+			if (read != length) {
+				throw new DbException("A compressed text value is truncated.");
+			}
+		} catch (DataFormatException e) {
+			throw new DbException(e);
+		}
+
+		valuesInflated.increment();
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static String deflate(String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		byte[] packed = new byte[4 + bytes.length + bytes.length / 1000 + 64];
+		Deflater deflater = deflaters.get();
+
+		packed[0] = (byte) bytes.length;
+		packed[1] = (byte) (bytes.length >>> 8);
+		packed[2] = (byte) (bytes.length >>> 16);
+		packed[3] = (byte) (bytes.length >>> 24);
+
+		deflater.reset();
+		deflater.setInput(bytes);
+		deflater.finish();
+
+		int size = 4;
+
+		while (!deflater.finished()) {
+			if (size == packed.length) {
+				packed = Arrays.copyOf(packed, packed.length * 2);
+			}
+
+			size += deflater.deflate(packed, size, packed.length - size);
+		}
+
+		return MARKER + Base64.getEncoder().encodeToString(Arrays.copyOf(packed, size));
+	}
+
+	/**
+	 *
+	 * @return The number of values passed to {@link #compress(String)}.
+	 */
+	public static long getValuesWritten() {
+		return valuesWritten.sum();
+	}
+
+	/**
+	 *
+	 * @return The number of values stored compressed.
+	 */
+	public static long getValuesCompressed() {
+		return valuesCompressed.sum();
+	}
+
+	/**
+	 *
+	 * @return The characters passed to {@link #compress(String)}.
+	 */
+	public static long getCharsIn() {
+		return charsIn.sum();
+	}
+
+	/**
+	 *
+	 * @return The characters stored for them.
+	 */
+	public static long getCharsOut() {
+		return charsOut.sum();
+	}
+
+	/**
+	 *
+	 * @return The number of compressed values read back.
+	 */
+	public static long getValuesInflated() {
+		return valuesInflated.sum();
+	}
+
+	/**
+	 *
+	 * @return Characters in over characters stored, for every value written so
+	 *         far; 1.0 before anything is written.
+	 */
+	public static double getRatio() {
+		long out = charsOut.sum();
+
+		return out == 0 ? 1.0 : (double) charsIn.sum() / out;
+	}
+}
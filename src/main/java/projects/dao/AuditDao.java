@@ -0,0 +1,114 @@
+package projects.dao;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import projects.entity.AuditRecord;
+import projects.entity.Project;
+import projects.exception.DbException;
+import projects.json.JsonWriter;
+import projects.json.ProjectJson;
+import provided.util.DaoBase;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Writes audit records to the audit_log table of the shard that owns
+ *         each project. Records are converted to JSON here, on the thread that
+ *         writes them, so making a record on the write path stays cheap.
+ */
+public class AuditDao extends DaoBase {
+	private static final String AUDIT_TABLE = "audit_log";
+
+	// @formatter:off
+	static final String INSERT_SQL = ""
+			+ "INSERT INTO " + AUDIT_TABLE + " "
+			+ "(project_id, action, before_value, after_value, occurred_at) "
+			+ "VALUES (?, ?, ?, ?, ?)";
+	// @formatter:on
+
+	/**
+	 *
+	 * @param records
+	 * @throws DbException Writes the records with one multi-row insert and one
+	 *                     transaction per shard, shards in parallel. If one shard
+	 *                     fails, the records for the other shards may still
+	 *                     have been written.
+	 */
+	public void appendRecords(List<AuditRecord> records) {
+		List<Integer> projectIds = new ArrayList<>(records.size());
+
+		if (records.isEmpty()) {
+			return;
+		}
+
+		records.forEach(record -> projectIds.add(record.getProjectId()));
+
+		Map<Integer, List<Integer>> positions = ShardRouter.positionsByShard(projectIds);
+
+		ShardRouter.scatter(shard -> appendRecords(shard, records, positions.get(shard)));
+	}
+
+	private Void appendRecords(int shard, List<AuditRecord> records, List<Integer> positions) {
+		if (Objects.isNull(positions)) {
+			return null;
+		}
+
+		try (Connection conn = DbConnection.getConnection(shard)) {
+			startTransaction(conn);
+
+			try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+				for (Integer pos : positions) {
+					AuditRecord record = records.get(pos);
+
+					setParameter(stmt, 1, record.getProjectId(), Integer.class);
+					setParameter(stmt, 2, record.getAction(), String.class);
+					setParameter(stmt, 3, toJson(record.getBefore()), String.class);
+					setParameter(stmt, 4, toJson(record.getAfter()), String.class);
+					stmt.setTimestamp(5, Timestamp.from(record.getOccurredAt()));
+					stmt.addBatch();
+				}
+
+				stmt.executeBatch();
+				commitTransaction(conn);
+				return null;
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 *
+	 * @param project
+	 * @return The project columns as a JSON object, or null for no project.
+	 */
+	public static String toJson(Project project) {
+		if (Objects.isNull(project)) {
+			return null;
+		}
+
+		StringWriter out = new StringWriter(256);
+
+		try {
+			ProjectJson.writeSummary(new JsonWriter(out), project);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return out.toString();
+	}
+}
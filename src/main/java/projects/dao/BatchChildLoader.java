@@ -0,0 +1,153 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import projects.entity.Category;
+import projects.entity.ChildLoader;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+import projects.entity.StepBinder;
+import projects.exception.DbException;
+import provided.util.DaoBase;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Loads child collections for a group of projects that were fetched
+ *         together. When one project's collection is accessed, the same
+ *         collection is loaded for every project in the group that does not
+ *         have it yet, with one IN query per chunk of project IDs instead of
+ *         one query per project. Material names are filled in from the
+ *         material catalog once the materials are read.
+ */
+class BatchChildLoader extends DaoBase implements ChildLoader {
+	private static final int CHUNK_SIZE = 500;
+
+	private final int shard;
+	private final List<Project> projects;
+	private final MaterialCatalogDao materialCatalogDao = new MaterialCatalogDao();
+
+	BatchChildLoader(int shard, List<Project> projects) {
+		this.shard = shard;
+		this.projects = projects;
+	}
+
+	/**
+	 * Called by a project on first access to a lazy collection. Opens its own
+	 * read connection to the projects' shard, since the one the projects were
+	 * fetched on is closed.
+	 */
+	@Override
+	public synchronized void load(Child child, Project project) {
+		try (Connection conn = DbConnection.getReadConnection(shard)) {
+			loadNow(conn, child);
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 *
+	 * @param conn
+	 * @param child
+	 * @throws SQLException Loads the collection for every project in the group
+	 *                      that has not loaded it yet, on the given connection.
+	 *                      A project is only left marked as loaded once its
+	 *                      chunk has been read, so after a failure the next
+	 *                      access tries again.
+	 */
+	synchronized void loadNow(Connection conn, Child child) throws SQLException {
+		Map<Integer, Project> pending = new HashMap<>();
+
+		for (Project project : projects) {
+			if (!project.isLoaded(child)) {
+				pending.put(project.getProjectId(), project);
+			}
+		}
+
+		List<Integer> projectIds = new ArrayList<>(pending.keySet());
+
+		for (int from = 0; from < projectIds.size(); from += CHUNK_SIZE) {
+			List<Integer> chunk = projectIds.subList(from, Math.min(from + CHUNK_SIZE, projectIds.size()));
+
+			chunk.forEach(projectId -> pending.get(projectId).childrenLoaded(child));
+
+			try {
+				loadChunk(conn, child, chunk, pending);
+			} catch (SQLException | RuntimeException e) {
+				chunk.forEach(projectId -> pending.get(projectId).childrenLoadFailed(child));
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param child
+	 * @param count
+	 * @return The SELECT for one child collection of count projects.
+	 */
+	static String childSql(Child child, int count) {
+		String placeholders = String.join(", ", Collections.nCopies(count, "?"));
+
+		switch (child) {
+		case MATERIALS:
+			return "SELECT m.* FROM material m WHERE m.project_id IN (" + placeholders + ")";
+		case STEPS:
+			return "SELECT s.* FROM step s WHERE s.project_id IN (" + placeholders + ") "
+					+ "ORDER BY s.project_id, s.step_order";
+		case CATEGORIES:
+			return "SELECT pc.project_id, c.* FROM category c JOIN project_category pc USING (category_id) "
+					+ "WHERE pc.project_id IN (" + placeholders + ")";
+		default:
+			throw new DbException("Unknown child collection: " + child);
+		}
+	}
+
+	private void loadChunk(Connection conn, Child child, List<Integer> projectIds, Map<Integer, Project> pending)
+			throws SQLException {
+		String sql = childSql(child, projectIds.size());
+		List<Material> materials = new ArrayList<>();
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			for (int pos = 0; pos < projectIds.size(); pos++) {
+				setParameter(stmt, pos + 1, projectIds.get(pos), Integer.class);
+			}
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					Project project = pending.get(rs.getInt("project_id"));
+
+					switch (child) {
+					case MATERIALS:
+						Material material = extract(rs, Material.class);
+
+						project.getMaterials().add(material);
+						materials.add(material);
+						break;
+					case STEPS:
+						project.getSteps().add(StepBinder.decode(extract(rs, Step.class)));
+						break;
+					case CATEGORIES:
+						project.getCategories().add(extract(rs, Category.class));
+						break;
+					}
+				}
+			}
+		}
+
+		if (!materials.isEmpty()) {
+			materialCatalogDao.nameMaterials(conn, shard, materials);
+		}
+	}
+}
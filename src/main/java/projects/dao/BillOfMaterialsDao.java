@@ -0,0 +1,144 @@
+package projects.dao;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.CollationKey;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import projects.exception.DbException;
+import projects.procurement.BillOfMaterials;
+import projects.procurement.BillOfMaterialsLine;
+import provided.util.DaoBase;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Totals the materials of a group of projects in the database. Each
+ *         shard sums its own projects with one grouped query per chunk of
+ *         project IDs, so only one row per material and chunk crosses the
+ *         network. The shards are queried in parallel, and their partial sums
+ *         are merged in a hash table keyed by material name. Catalog IDs differ
+ *         between shards, so names are compared the way MySQL compares them.
+ */
+public class BillOfMaterialsDao extends DaoBase {
+	private static final int CHUNK_SIZE = 500;
+
+	/**
+	 *
+	 * @param projectIds
+	 * @return The bill of materials for the given projects. Null and repeated
+	 *         IDs are ignored.
+	 */
+	public BillOfMaterials fetchBillOfMaterials(Collection<Integer> projectIds) {
+		List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(projectIds));
+
+		ids.removeIf(Objects::isNull);
+
+		if (ids.isEmpty()) {
+			return new BillOfMaterials(List.of(), 0);
+		}
+
+		Map<Integer, List<Integer>> positions = ShardRouter.positionsByShard(ids);
+		List<List<BillOfMaterialsLine>> partials = ShardRouter
+				.scatter(shard -> fetchTotals(shard, ShardRouter.select(ids, positions.get(shard))));
+
+		return new BillOfMaterials(merge(partials), ids.size());
+	}
+
+	private List<BillOfMaterialsLine> fetchTotals(int shard, List<Integer> projectIds) {
+		List<BillOfMaterialsLine> totals = new ArrayList<>();
+
+		if (projectIds.isEmpty()) {
+			return totals;
+		}
+
+		try (Connection conn = DbConnection.getReadConnection(shard)) {
+			startTransaction(conn);
+
+			try {
+				for (int from = 0; from < projectIds.size(); from += CHUNK_SIZE) {
+					List<Integer> chunk = projectIds.subList(from, Math.min(from + CHUNK_SIZE, projectIds.size()));
+
+					fetchTotals(conn, chunk, totals);
+				}
+
+				commitTransaction(conn);
+				return totals;
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw e instanceof DbException ? (DbException) e : new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	private void fetchTotals(Connection conn, List<Integer> projectIds, List<BillOfMaterialsLine> totals)
+			throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(totalsSql(projectIds.size()))) {
+			for (int pos = 0; pos < projectIds.size(); pos++) {
+				setParameter(stmt, pos + 1, projectIds.get(pos), Integer.class);
+			}
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					BigDecimal cost = rs.getBigDecimal("cost");
+
+					totals.add(new BillOfMaterialsLine(rs.getString("material_name"), rs.getLong("num_required"),
+							Objects.isNull(cost) ? BigDecimal.ZERO : cost, rs.getInt("project_count")));
+				}
+			}
+		}
+	}
+
+	/*
+	 * Adds up the partial sums of every chunk on every shard. A project is in
+	 * exactly one chunk, so project counts add up as well.
+	 */
+	private List<BillOfMaterialsLine> merge(List<List<BillOfMaterialsLine>> partials) {
+		Map<CollationKey, BillOfMaterialsLine> merged = new HashMap<>();
+
+		for (List<BillOfMaterialsLine> partial : partials) {
+			for (BillOfMaterialsLine line : partial) {
+				merged.merge(NameCollation.key(line.getMaterialName()), line,
+						(left, right) -> new BillOfMaterialsLine(left.getMaterialName(),
+								left.getNumRequired() + right.getNumRequired(), left.getCost().add(right.getCost()),
+								left.getProjectCount() + right.getProjectCount()));
+			}
+		}
+
+		List<BillOfMaterialsLine> lines = new ArrayList<>(merged.values());
+
+		lines.sort((left, right) -> NameCollation.ORDER.compare(left.getMaterialName(), right.getMaterialName()));
+		return lines;
+	}
+
+	/**
+	 *
+	 * @param count
+	 * @return The SELECT for the material totals of count live projects.
+	 */
+	static String totalsSql(int count) {
+		// @formatter:off
+		return ""
+				+ "SELECT mc.material_name, SUM(m.num_required) AS num_required, SUM(m.cost) AS cost, "
+				+ "COUNT(DISTINCT m.project_id) AS project_count "
+				+ "FROM material m "
+				+ "JOIN project p ON p.project_id = m.project_id "
+				+ "JOIN material_catalog mc ON mc.catalog_id = m.catalog_id "
+				+ "WHERE p.deleted_at IS NULL AND m.project_id IN (" + String.join(", ", Collections.nCopies(count, "?")) + ") "
+				+ "GROUP BY mc.catalog_id, mc.material_name";
+		// @formatter:on
+	}
+}
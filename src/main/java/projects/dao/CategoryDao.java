@@ -0,0 +1,148 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import projects.exception.DbException;
+import provided.util.DaoBase;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Looks up and creates categories by name. Category names are unique
+ *         per shard, compared without regard to case or accents as MySQL does,
+ *         so "Woodworking" and "woodworking" are one category.
+ */
+public class CategoryDao extends DaoBase {
+	private static final String CATEGORY_TABLE = "category";
+	private static final int CHUNK_SIZE = 500;
+
+	// @formatter:off
+	static final String CREATE_SQL = ""
+			+ "INSERT IGNORE INTO " + CATEGORY_TABLE + " (category_name) VALUES (?)";
+	// @formatter:on
+
+	/**
+	 *
+	 * @param shard
+	 * @param names
+	 * @return The ID of every named category on the shard, creating the ones
+	 *         that do not exist yet in one transaction.
+	 */
+	public Map<String, Integer> resolveCategoryIds(int shard, Collection<String> names) {
+		try (Connection conn = DbConnection.getConnection(shard)) {
+			startTransaction(conn);
+
+			try {
+				Map<String, Integer> categoryIds = resolveCategoryIds(conn, names);
+
+				commitTransaction(conn);
+				return categoryIds;
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw e instanceof DbException ? (DbException) e : new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 *
+	 * @param conn
+	 * @param names
+	 * @return The ID of every named category on the connection's shard, keyed
+	 *         by name in collation order. Categories that do not exist yet are
+	 *         created with one batched INSERT IGNORE, which also covers another
+	 *         transaction creating the same name at the same time.
+	 * @throws SQLException Thrown if a statement fails.
+	 */
+	Map<String, Integer> resolveCategoryIds(Connection conn, Collection<String> names) throws SQLException {
+		Map<String, Integer> categoryIds = new TreeMap<>(NameCollation.ORDER);
+		TreeSet<String> wanted = new TreeSet<>(NameCollation.ORDER);
+
+		for (String name : names) {
+			if (name == null || name.isBlank()) {
+				throw new DbException("A category name cannot be blank.");
+			}
+
+			wanted.add(name.trim());
+		}
+
+		fetchCategoryIds(conn, wanted, categoryIds);
+
+		/*
+		 * Names are inserted in sorted order so that concurrent callers take the
+		 * unique index locks in the same order and cannot deadlock.
+		 */
+		List<String> missing = new ArrayList<>();
+
+		for (String name : wanted) {
+			if (!categoryIds.containsKey(name)) {
+				missing.add(name);
+			}
+		}
+
+		if (!missing.isEmpty()) {
+			try (PreparedStatement stmt = conn.prepareStatement(CREATE_SQL)) {
+				for (String name : missing) {
+					setParameter(stmt, 1, name, String.class);
+					stmt.addBatch();
+				}
+
+				stmt.executeBatch();
+			}
+
+			fetchCategoryIds(conn, missing, categoryIds);
+		}
+
+		for (String name : wanted) {
+			if (!categoryIds.containsKey(name)) {
+				throw new DbException("Category " + name + " could not be created.");
+			}
+		}
+
+		return categoryIds;
+	}
+
+	private void fetchCategoryIds(Connection conn, Collection<String> names, Map<String, Integer> categoryIds)
+			throws SQLException {
+		List<String> list = new ArrayList<>(names);
+
+		for (int from = 0; from < list.size(); from += CHUNK_SIZE) {
+			List<String> chunk = list.subList(from, Math.min(from + CHUNK_SIZE, list.size()));
+
+			try (PreparedStatement stmt = conn.prepareStatement(fetchSql(chunk.size()))) {
+				for (int pos = 0; pos < chunk.size(); pos++) {
+					setParameter(stmt, pos + 1, chunk.get(pos), String.class);
+				}
+
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						categoryIds.put(rs.getString("category_name"), rs.getInt("category_id"));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param count
+	 * @return The SELECT for the IDs of count category names.
+	 */
+	static String fetchSql(int count) {
+		return "SELECT category_id, category_name FROM " + CATEGORY_TABLE + " WHERE category_name IN ("
+				+ String.join(", ", Collections.nCopies(count, "?")) + ")";
+	}
+}
@@ -0,0 +1,182 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+
+import projects.entity.ChildLoader.Child;
+import projects.entity.Project;
+import projects.entity.ProjectBinder;
+import projects.exception.DbException;
+import projects.sync.ChangeSet;
+import projects.sync.ProjectChange;
+import projects.sync.SyncCursor;
+import provided.util.DaoBase;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Reads the projects changed after a {@link SyncCursor}, for clients
+ *         that keep a copy of the data and only want what changed. Every write
+ *         to a project sets its last_modified, and ProjectDao sets it when the
+ *         project's category links change, so a range of the (last_modified,
+ *         project_id) index finds every changed project graph. The work done is
+ *         proportional to the number of changes, not to the size of the
+ *         tables.
+ *
+ *         A soft-deleted project is returned as a delete. Once the purger has
+ *         removed it, a tombstone with the same position stands in for it, so
+ *         a client that was offline still sees the delete. Tombstones are kept
+ *         for projects.sync.tombstoneDays (30); a cursor older than that gets a
+ *         resync flag instead.
+ *
+ *         A row is stamped when its statement runs but becomes visible when
+ *         its transaction commits, so a change could commit behind a cursor
+ *         that has already passed it. Changes newer than
+ *         projects.sync.settleMillis (2000) are therefore held back until every
+ *         transaction that could stamp an earlier time has committed. The feed
+ *         is read from the primary, not a replica: a replica shows rows late by
+ *         its lag but with the primary's timestamps, so the settle window
+ *         would not cover them.
+ */
+public class ChangeFeedDao extends DaoBase {
+	private static final String PROJECT_TABLE = "project";
+	private static final String TOMBSTONE_TABLE = "project_tombstone";
+
+	static final int TOMBSTONE_DAYS = Integer.getInteger("projects.sync.tombstoneDays", 30);
+	private static final long SETTLE_MILLIS = Long.getLong("projects.sync.settleMillis", 2000);
+
+	private static final Comparator<ProjectChange> FEED_ORDER = Comparator.comparing(ProjectChange::getPosition);
+
+	// @formatter:off
+	static final String CHANGED_PROJECTS_SQL = ""
+			+ "SELECT * FROM " + PROJECT_TABLE + " "
+			+ "WHERE (last_modified > ? OR (last_modified = ? AND project_id > ?)) "
+			+ "AND last_modified < NOW(6) - INTERVAL ? MICROSECOND "
+			+ "ORDER BY last_modified, project_id LIMIT ?";
+
+	static final String TOMBSTONES_SQL = ""
+			+ "SELECT project_id, last_modified FROM " + TOMBSTONE_TABLE + " "
+			+ "WHERE (last_modified > ? OR (last_modified = ? AND project_id > ?)) "
+			+ "AND last_modified < NOW(6) - INTERVAL ? MICROSECOND "
+			+ "ORDER BY last_modified, project_id LIMIT ?";
+	// @formatter:on
+
+	/**
+	 *
+	 * @param cursor
+	 * @param limit
+	 * @return Up to limit changes after the cursor, in feed order, with the
+	 *         materials, steps and categories of each changed project loaded.
+	 *         Each shard reads at most limit + 1 changes of each kind in one
+	 *         snapshot; the shard results are merged and the limit applied
+	 *         again.
+	 */
+	public ChangeSet fetchChangesSince(SyncCursor cursor, int limit) {
+		List<List<ProjectChange>> results = ShardRouter.scatter(shard -> fetchChangesSince(shard, cursor, limit + 1));
+		List<ProjectChange> changes = ShardRouter.merge(results, FEED_ORDER);
+		boolean more = changes.size() > limit;
+
+		if (more) {
+			changes = changes.subList(0, limit);
+		}
+
+		SyncCursor next = changes.isEmpty() ? cursor : changes.get(changes.size() - 1).getPosition();
+		boolean resync = !cursor.equals(SyncCursor.START)
+				&& cursor.getLastModified().isBefore(LocalDateTime.now().minusDays(TOMBSTONE_DAYS));
+
+		return new ChangeSet(changes, next, more, resync);
+	}
+
+	private List<ProjectChange> fetchChangesSince(int shard, SyncCursor cursor, int limit) {
+		try (Connection conn = DbConnection.getConnection(shard)) {
+			startTransaction(conn);
+
+			try {
+				List<ProjectChange> changes = new ArrayList<>();
+				List<Project> live = new ArrayList<>();
+
+				try (PreparedStatement stmt = conn.prepareStatement(CHANGED_PROJECTS_SQL)) {
+					bindRange(stmt, cursor, limit);
+
+					try (ResultSet rs = stmt.executeQuery()) {
+						while (rs.next()) {
+							Project project = ProjectBinder.decode(extract(rs, Project.class));
+							boolean deleted = Objects.nonNull(rs.getTimestamp("deleted_at"));
+
+							changes.add(new ProjectChange(positionOf(rs), deleted ? null : project));
+
+							if (!deleted) {
+								live.add(project);
+							}
+						}
+					}
+				}
+
+				loadChildren(conn, shard, live);
+
+				try (PreparedStatement stmt = conn.prepareStatement(TOMBSTONES_SQL)) {
+					bindRange(stmt, cursor, limit);
+
+					try (ResultSet rs = stmt.executeQuery()) {
+						while (rs.next()) {
+							changes.add(new ProjectChange(positionOf(rs), null));
+						}
+					}
+				}
+
+				commitTransaction(conn);
+				changes.sort(FEED_ORDER);
+				return changes;
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw e instanceof DbException ? (DbException) e : new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	private void bindRange(PreparedStatement stmt, SyncCursor cursor, int limit) throws SQLException {
+		Timestamp after = Timestamp.valueOf(cursor.getLastModified());
+
+		stmt.setTimestamp(1, after);
+		stmt.setTimestamp(2, after);
+		setParameter(stmt, 3, cursor.getProjectId(), Integer.class);
+		stmt.setLong(4, SETTLE_MILLIS * 1000);
+		setParameter(stmt, 5, limit, Integer.class);
+	}
+
+	private SyncCursor positionOf(ResultSet rs) throws SQLException {
+		return new SyncCursor(rs.getTimestamp("last_modified").toLocalDateTime(), rs.getInt("project_id"));
+	}
+
+	/*
+	 * Loads every child collection of the changed projects on this
+	 * connection, so they are read in the same snapshot as the projects.
+	 */
+	private void loadChildren(Connection conn, int shard, List<Project> projects) throws SQLException {
+		if (projects.isEmpty()) {
+			return;
+		}
+
+		BatchChildLoader loader = new BatchChildLoader(shard, projects);
+
+		for (Project project : projects) {
+			project.setChildLoader(loader, EnumSet.allOf(Child.class));
+		}
+
+		for (Child child : Child.values()) {
+			loader.loadNow(conn, child);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package projects.dao;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ *
+ * @author clayr
+ *
+ *         One filter condition of a {@link ProjectQuery}. A criterion is a SQL
+ *         fragment over the project table (aliased p) with ? placeholders,
+ *         plus the values and Java types to bind to them. Every factory method
+ *         here uses a column that has a secondary index in
+ *         projects-schema.sql.
+ */
+public class Criterion {
+	private final String sql;
+	private final List<Object> values;
+	private final List<Class<?>> types;
+
+	private Criterion(String sql, List<Object> values, List<Class<?>> types) {
+		this.sql = sql;
+		this.values = values;
+		this.types = types;
+	}
+
+	/**
+	 *
+	 * @param min
+	 * @param max
+	 * @return Projects with a difficulty between min and max inclusive.
+	 */
+	public static Criterion difficultyBetween(int min, int max) {
+		return new Criterion("p.difficulty BETWEEN ? AND ?", List.of(min, max), List.of(Integer.class, Integer.class));
+	}
+
+	/**
+	 *
+	 * @param min
+	 * @param max
+	 * @return Projects with estimated hours between min and max inclusive.
+	 */
+	public static Criterion estimatedHoursBetween(BigDecimal min, BigDecimal max) {
+		return new Criterion("p.estimated_hours BETWEEN ? AND ?", List.of(min, max),
+				List.of(BigDecimal.class, BigDecimal.class));
+	}
+
+	/**
+	 *
+	 * @param min
+	 * @param max
+	 * @return Projects with actual hours between min and max inclusive.
+	 */
+	public static Criterion actualHoursBetween(BigDecimal min, BigDecimal max) {
+		return new Criterion("p.actual_hours BETWEEN ? AND ?", List.of(min, max),
+				List.of(BigDecimal.class, BigDecimal.class));
+	}
+
+	/**
+	 *
+	 * @param hours
+	 * @return Projects whose actual hours exceed the estimate by at least the
+	 *         given number of hours. Uses the generated overrun_hours column.
+	 */
+	public static Criterion overrunAtLeast(BigDecimal hours) {
+		return new Criterion("p.overrun_hours >= ?", List.of(hours), List.of(BigDecimal.class));
+	}
+
+	/**
+	 *
+	 * @param categoryName
+	 * @return Projects linked to the named category.
+	 */
+	public static Criterion inCategory(String categoryName) {
+		// @formatter:off
+		String sql = ""
+				+ "p.project_id IN ("
+				+ "SELECT pc.project_id FROM project_category pc "
+				+ "JOIN category c USING (category_id) "
+				+ "WHERE c.category_name = ?)";
+		// @formatter:on
+
+		return new Criterion(sql, List.of(categoryName), List.of(String.class));
+	}
+
+	/**
+	 *
+	 * @param materialName
+	 * @return Projects that use the named material. The name is found through
+	 *         the catalog's unique key, and the projects through the material
+	 *         table's (catalog_id, project_id) index.
+	 */
+	public static Criterion usesMaterial(String materialName) {
+		// @formatter:off
+		String sql = ""
+				+ "p.project_id IN ("
+				+ "SELECT m.project_id FROM material m "
+				+ "JOIN material_catalog mc ON mc.catalog_id = m.catalog_id "
+				+ "WHERE mc.material_name = ?)";
+		// @formatter:on
+
+		return new Criterion(sql, List.of(materialName), List.of(String.class));
+	}
+
+	/**
+	 *
+	 * @param prefix
+	 * @return Projects whose name starts with the prefix. LIKE wildcards in the
+	 *         prefix are matched literally.
+	 */
+	public static Criterion nameStartsWith(String prefix) {
+		String escaped = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+
+		return new Criterion("p.project_name LIKE ?", List.of(escaped + "%"), List.of(String.class));
+	}
+
+	String getSql() {
+		return sql;
+	}
+
+	List<Object> getValues() {
+		return values;
+	}
+
+	List<Class<?>> getTypes() {
+		return types;
+	}
+}
@@ -1,29 +1,309 @@
 package projects.dao;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.Driver;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.mysql.cj.jdbc.NonRegisteringDriver;
 
 import projects.exception.DbException;
 
+/**
+ * Opens connections to the projects database. Projects are spread over one or
+ * more shards, each a separate schema; {@link ShardRouter} decides which shard
+ * owns a project. Shard 0 also holds the global project ID sequence. The
+ * methods without a shard number use shard 0.
+ *
+ * Writes always go to the primary.
+ * Reads go to a read replica when any are configured, chosen round-robin or by
+ * the fewest open connections. A replica that cannot be reached is skipped for
+ * a while and the next one is tried, falling back to the primary when none are
+ * available. After a thread opens a write connection, its reads are pinned to
+ * the primary for a short time so that it sees its own writes.
+ *
+ * Endpoints are configured with system properties:
+ *
+ * <pre>
+ * projects.db.primary              host:port of the primary (localhost:3306)
+ * projects.db.replicas             comma separated host:port list (none)
+ * projects.db.replicaSelection     round-robin or least-loaded (round-robin)
+ * projects.db.readYourWritesMillis how long reads stay on the primary (5000)
+ * projects.db.replicaRetryMillis   how long a failed replica is skipped (30000)
+ * projects.db.shards               comma separated shard list (projects)
+ * </pre>
+ *
+ * A shard is a schema name, which lives on the primary and its replicas, or
+ * host:port/schema for a schema on a server of its own. A shard on its own
+ * server has no replicas. Shards are numbered in list order, and the order must
+ * never change; new shards are added to the end.
+ */
 public class DbConnection {
 	private static final String HOST = "localhost";
 	private static final String PASSWORD = "projects";
 	private static final int PORT = 3306;
 	private static final String SCHEMA = "projects";
 	private static final String USER = "projects";
-	
+
+	private static final Endpoint PRIMARY = Endpoint.parse(System.getProperty("projects.db.primary", HOST + ":" + PORT));
+	private static final List<Endpoint> REPLICAS = Endpoint.parseList(System.getProperty("projects.db.replicas", ""));
+	private static final boolean LEAST_LOADED = "least-loaded"
+			.equals(System.getProperty("projects.db.replicaSelection", "round-robin"));
+	private static final long READ_YOUR_WRITES_MILLIS = Long.getLong("projects.db.readYourWritesMillis", 5000);
+	private static final long REPLICA_RETRY_MILLIS = Long.getLong("projects.db.replicaRetryMillis", 30000);
+	private static final List<Shard> SHARDS = Shard.parseList(System.getProperty("projects.db.shards", SCHEMA));
+
+	private static final AtomicInteger nextReplica = new AtomicInteger();
+	private static final ThreadLocal<Long> primaryPinnedUntil = ThreadLocal.withInitial(() -> 0L);
+
+	/**
+	 *
+	 * @return The number of shards.
+	 */
+	public static int getShardCount() {
+		return SHARDS.size();
+	}
+
+	/**
+	 *
+	 * @return A connection to the primary for shard 0. Reads on this thread are
+	 *         pinned to the primary for the read-your-writes window.
+	 */
 	public static Connection getConnection() {
-		String uri = String.format("jdbc:mysql://%s:%d/%s?user=%s&password=%s&useSSL=false", HOST, PORT, SCHEMA, USER, PASSWORD);
-		
+		return getConnection(0);
+	}
+
+	/**
+	 *
+	 * @param shard
+	 * @return A connection to the primary for the given shard. Reads on this
+	 *         thread are pinned to the primary for the read-your-writes window.
+	 */
+	public static Connection getConnection(int shard) {
+		Shard target = SHARDS.get(shard);
+
+		pinToPrimary();
+		return connect(target.endpointOr(PRIMARY), target.schema);
+	}
+
+	/**
+	 *
+	 * @return A read connection for shard 0.
+	 */
+	public static Connection getReadConnection() {
+		return getReadConnection(0);
+	}
+
+	/**
+	 *
+	 * @param shard
+	 * @return A connection for read-only work on the given shard. This is a
+	 *         replica connection unless no replica is configured or reachable,
+	 *         the shard is on a server of its own, or the thread has written
+	 *         recently.
+	 */
+	public static Connection getReadConnection(int shard) {
+		Shard target = SHARDS.get(shard);
+
+		if (target.endpoint != null) {
+			return connect(target.endpoint, target.schema);
+		}
+
+		if (REPLICAS.isEmpty() || System.currentTimeMillis() < primaryPinnedUntil.get()) {
+			return connect(PRIMARY, target.schema);
+		}
+
+		int start = LEAST_LOADED ? leastLoadedReplica() : Math.floorMod(nextReplica.getAndIncrement(), REPLICAS.size());
+		long now = System.currentTimeMillis();
+
+		for (int attempt = 0; attempt < REPLICAS.size(); attempt++) {
+			Endpoint replica = REPLICAS.get((start + attempt) % REPLICAS.size());
+
+			if (now < replica.downUntil) {
+				continue;
+			}
+
+			try {
+				return track(replica, open(replica, target.schema));
+			} catch (SQLException e) {
+				System.err.println("Replica " + replica + " is unavailable: " + e.getMessage());
+				replica.downUntil = now + REPLICA_RETRY_MILLIS;
+			}
+		}
+
+		return connect(PRIMARY, target.schema);
+	}
+
+	/**
+	 * Sends this thread's reads to the primary for the read-your-writes window.
+	 * Call this before a read that must see a write made through another
+	 * connection.
+	 */
+	public static void pinToPrimary() {
+		if (!REPLICAS.isEmpty()) {
+			primaryPinnedUntil.set(System.currentTimeMillis() + READ_YOUR_WRITES_MILLIS);
+		}
+	}
+
+	private static Connection connect(Endpoint endpoint, String schema) {
 		try {
-			Connection c = DriverManager.getConnection(uri);
-			System.out.println("Connection was successful!");
-			return c;
+			return open(endpoint, schema);
 		} catch (SQLException e) {
-			System.out.println("There was an error getting the connection...");
+			System.err.println("There was an error getting the connection...");
 			throw new DbException(e);
 		}
 	}
 
+	private static Connection open(Endpoint endpoint, String schema) throws SQLException {
+		String uri = String.format(
+				"jdbc:mysql://%s:%d/%s?user=%s&password=%s&useSSL=false&rewriteBatchedStatements=true",
+				endpoint.host, endpoint.port, schema, USER, PASSWORD);
+
+		Connection conn = DriverHolder.DRIVER.connect(uri, null);
+
+		if (conn == null) {
+			throw new SQLException("The MySQL driver does not accept " + uri);
+		}
+
+		return conn;
+	}
+
+	private static int leastLoadedReplica() {
+		int best = 0;
+
+		for (int pos = 1; pos < REPLICAS.size(); pos++) {
+			if (REPLICAS.get(pos).active.get() < REPLICAS.get(best).active.get()) {
+				best = pos;
+			}
+		}
+
+		return best;
+	}
+
+	/*
+	 * Counts the connection against the replica until it is closed. The proxy
+	 * only intercepts close(); every other call goes straight to the driver.
+	 */
+	private static Connection track(Endpoint replica, Connection conn) {
+		replica.active.incrementAndGet();
+
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+					if (method.getName().equals("close") && !conn.isClosed()) {
+						replica.active.decrementAndGet();
+					}
+
+					try {
+						return method.invoke(conn, args);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+				});
+	}
+
+	/*
+	 * The driver is created directly on first use instead of being looked up
+	 * through DriverManager, which scans the class path for every JDBC driver
+	 * the first time it is asked for a connection.
+	 */
+	private static class DriverHolder {
+		private static final Driver DRIVER = createDriver();
+
+		private static Driver createDriver() {
+			try {
+				return new NonRegisteringDriver();
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}
+	}
+
+	/*
+	 * A database server address with its load and health state.
+	 */
+	private static class Endpoint {
+		private final String host;
+		private final int port;
+		private final AtomicInteger active = new AtomicInteger();
+		private volatile long downUntil;
+
+		private Endpoint(String host, int port) {
+			this.host = host;
+			this.port = port;
+		}
+
+		static Endpoint parse(String address) {
+			String[] parts = address.trim().split(":");
+
+			try {
+				return new Endpoint(parts[0], parts.length > 1 ? Integer.parseInt(parts[1]) : PORT);
+			} catch (NumberFormatException e) {
+				throw new DbException("Invalid database address: " + address);
+			}
+		}
+
+		static List<Endpoint> parseList(String addresses) {
+			List<Endpoint> endpoints = new ArrayList<>();
+
+			for (String address : addresses.split(",")) {
+				if (!address.isBlank()) {
+					endpoints.add(parse(address));
+				}
+			}
+
+			return List.copyOf(endpoints);
+		}
+
+		@Override
+		public String toString() {
+			return host + ":" + port;
+		}
+	}
+
+	/*
+	 * A schema that holds one shard, and the server it is on if that is not the
+	 * primary.
+	 */
+	private static class Shard {
+		private final Endpoint endpoint;
+		private final String schema;
+
+		private Shard(Endpoint endpoint, String schema) {
+			this.endpoint = endpoint;
+			this.schema = schema;
+		}
+
+		Endpoint endpointOr(Endpoint primary) {
+			return endpoint == null ? primary : endpoint;
+		}
+
+		static List<Shard> parseList(String shards) {
+			List<Shard> parsed = new ArrayList<>();
+
+			for (String shard : shards.split(",")) {
+				if (shard.isBlank()) {
+					continue;
+				}
+
+				int slash = shard.indexOf('/');
+
+				if (slash < 0) {
+					parsed.add(new Shard(null, shard.trim()));
+				} else {
+					parsed.add(new Shard(Endpoint.parse(shard.substring(0, slash)), shard.substring(slash + 1).trim()));
+				}
+			}
+
+			if (parsed.isEmpty()) {
+				throw new DbException("At least one shard must be configured.");
+			}
+
+			return List.copyOf(parsed);
+		}
+	}
+
 }
@@ -0,0 +1,55 @@
+package projects.dao;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import projects.entity.ChildLoader.Child;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Says which child collections of a project are loaded with it. The
+ *         rest are loaded lazily the first time they are accessed.
+ */
+public class FetchPlan {
+	/**
+	 * Loads no child collections up front.
+	 */
+	public static final FetchPlan LAZY = new FetchPlan(EnumSet.noneOf(Child.class));
+
+	/**
+	 * Loads materials, steps and categories with the project.
+	 */
+	public static final FetchPlan EAGER = new FetchPlan(EnumSet.allOf(Child.class));
+
+	private final EnumSet<Child> eagerChildren;
+
+	private FetchPlan(EnumSet<Child> eagerChildren) {
+		this.eagerChildren = eagerChildren;
+	}
+
+	/**
+	 *
+	 * @param children
+	 * @return A plan that loads the given collections up front and the others
+	 *         lazily.
+	 */
+	public static FetchPlan eager(Child... children) {
+		EnumSet<Child> eagerChildren = EnumSet.noneOf(Child.class);
+
+		for (Child child : children) {
+			eagerChildren.add(child);
+		}
+
+		return new FetchPlan(eagerChildren);
+	}
+
+	Set<Child> getEagerChildren() {
+		return EnumSet.copyOf(eagerChildren);
+	}
+
+	Set<Child> getLazyChildren() {
+		return EnumSet.complementOf(eagerChildren);
+	}
+}
@@ -0,0 +1,255 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import projects.audit.AuditTrail;
+import projects.entity.AuditRecord;
+import projects.entity.JournalEntry;
+import projects.entity.Project;
+import projects.entity.ProjectBinder;
+import projects.exception.DbException;
+import provided.util.DaoBase;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Applies project writes from the local journal. Each entry's key is
+ *         stored in applied_journal in the same transaction as its change, on
+ *         the shard the change is written to, so an entry that was applied
+ *         before a crash is found and skipped when it is replayed again.
+ *
+ *         Entries are applied with the same statements, outbox records and
+ *         audit records as the writes in ProjectDao. An update or delete of a
+ *         project that does not exist is recorded with the outcome NOT_FOUND
+ *         and not retried. An entry the database refuses for its data, such as
+ *         a value too large for its column, is rolled back to a savepoint and
+ *         recorded with the outcome REJECTED, so the entries after it still
+ *         apply.
+ */
+public class JournalDao extends DaoBase {
+	private static final String APPLIED_TABLE = "applied_journal";
+	private static final String APPLIED = "APPLIED";
+	private static final String NOT_FOUND = "NOT_FOUND";
+	private static final String REJECTED = "REJECTED";
+	private static final int KEY_CHUNK_SIZE = 500;
+
+	// @formatter:off
+	static final String RECORD_APPLIED_SQL = ""
+			+ "INSERT INTO " + APPLIED_TABLE + " (journal_key, project_id, outcome) VALUES (?, ?, ?)";
+	// @formatter:on
+
+	private ProjectDao projectDao = new ProjectDao();
+	private OutboxDao outboxDao = new OutboxDao();
+	private AuditTrail auditTrail = AuditTrail.getInstance();
+
+	/**
+	 *
+	 * @param entries
+	 * @return Applies the entries that have not been applied yet and returns the
+	 *         number applied now. Entries for the same shard are applied in
+	 *         journal order in one transaction; shards are applied in parallel.
+	 *         New projects get their IDs here. If any shard fails, the exception
+	 *         is thrown after the others finish, and the entries that were
+	 *         committed are skipped the next time the batch is applied.
+	 */
+	public int apply(List<JournalEntry> entries) {
+		Set<String> applied = fetchAppliedKeys(entries);
+		List<JournalEntry> pending = new ArrayList<>();
+		int inserts = 0;
+
+		for (JournalEntry entry : entries) {
+			if (!applied.contains(entry.getKey().toString())) {
+				pending.add(entry);
+				inserts += JournalEntry.INSERT.equals(entry.getOperation()) ? 1 : 0;
+			}
+		}
+
+		if (pending.isEmpty()) {
+			return 0;
+		}
+
+		/*
+		 * The journal keeps the entry with no ID, so the ID is set on the entry's
+		 * own project object only; a replay after a failure draws a new one.
+		 */
+		Iterator<Integer> newIds = ProjectIdAllocator.getInstance().nextIds(inserts).iterator();
+		List<Integer> projectIds = new ArrayList<>(pending.size());
+
+		for (JournalEntry entry : pending) {
+			if (JournalEntry.INSERT.equals(entry.getOperation())) {
+				entry.getProject().setProjectId(newIds.next());
+			}
+
+			projectIds.add(entry.getProject().getProjectId());
+		}
+
+		Map<Integer, List<Integer>> positions = ShardRouter.positionsByShard(projectIds);
+
+		return ShardRouter.scatter(shard -> apply(shard, pending, positions.get(shard))).stream()
+				.mapToInt(Integer::intValue).sum();
+	}
+
+	private Integer apply(int shard, List<JournalEntry> entries, List<Integer> positions) {
+		if (Objects.isNull(positions)) {
+			return 0;
+		}
+
+		List<AuditRecord> audits = new ArrayList<>();
+
+		try (Connection conn = DbConnection.getConnection(shard)) {
+			startTransaction(conn);
+
+			try {
+
+				try (PreparedStatement insert = conn.prepareStatement(ProjectBinder.INSERT_SQL);
+						PreparedStatement modify = conn.prepareStatement(ProjectDao.MODIFY_SQL);
+						PreparedStatement delete = conn.prepareStatement(ProjectDao.SOFT_DELETE_SQL);
+						PreparedStatement record = conn.prepareStatement(RECORD_APPLIED_SQL)) {
+					for (Integer pos : positions) {
+						JournalEntry entry = entries.get(pos);
+						String outcome;
+						Savepoint savepoint = conn.setSavepoint();
+
+						try {
+							outcome = applyEntry(conn, entry, insert, modify, delete, audits) ? APPLIED : NOT_FOUND;
+						} catch (SQLException e) {
+							if (!DbException.isDataError(e)) {
+								throw e;
+							}
+
+							conn.rollback(savepoint);
+							outcome = REJECTED;
+							System.err.println("Journal entry " + entry.getKey() + " rejected: " + e.getMessage());
+						}
+
+						setParameter(record, 1, entry.getKey().toString(), String.class);
+						setParameter(record, 2, entry.getProject().getProjectId(), Integer.class);
+						setParameter(record, 3, outcome, String.class);
+						record.addBatch();
+					}
+
+					record.executeBatch();
+				}
+
+				commitTransaction(conn);
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+
+		audits.forEach(auditTrail::record);
+		return positions.size();
+	}
+
+	private boolean applyEntry(Connection conn, JournalEntry entry, PreparedStatement insert,
+			PreparedStatement modify, PreparedStatement delete, List<AuditRecord> audits) throws SQLException {
+		Project project = entry.getProject();
+		Integer projectId = project.getProjectId();
+
+		switch (entry.getOperation()) {
+		case JournalEntry.INSERT:
+			ProjectBinder.bindInsert(insert, project);
+			insert.executeUpdate();
+
+			outboxDao.appendProjectEvents(conn, OutboxDao.PROJECT_CREATED, List.of(project));
+			audits.add(AuditRecord.inserted(project));
+			return true;
+
+		case JournalEntry.UPDATE: {
+			Map<Integer, Project> before = projectDao.lockRowsForAudit(conn, List.of(projectId));
+
+			ProjectBinder.bindUpdate(modify, project);
+
+			if (modify.executeUpdate() == 0) {
+				return false;
+			}
+
+			outboxDao.appendProjectEvents(conn, OutboxDao.PROJECT_UPDATED, List.of(project));
+			audits.add(AuditRecord.updated(before.get(projectId), project));
+			return true;
+		}
+
+		case JournalEntry.DELETE: {
+			Map<Integer, Project> before = projectDao.lockRowsForAudit(conn, List.of(projectId));
+
+			setParameter(delete, 1, projectId, Integer.class);
+
+			if (delete.executeUpdate() == 0) {
+				return false;
+			}
+
+			outboxDao.appendProjectIdEvents(conn, OutboxDao.PROJECT_DELETED, List.of(projectId));
+			audits.add(AuditRecord.deleted(before.getOrDefault(projectId, project)));
+			return true;
+		}
+
+		default:
+			throw new DbException("Unknown journal operation " + entry.getOperation());
+		}
+	}
+
+	/*
+	 * An insert may have landed on any shard, so every shard is asked.
+	 */
+	private Set<String> fetchAppliedKeys(List<JournalEntry> entries) {
+		List<String> keys = new ArrayList<>(entries.size());
+		Set<String> applied = new HashSet<>();
+
+		entries.forEach(entry -> keys.add(entry.getKey().toString()));
+		ShardRouter.scatter(shard -> fetchAppliedKeys(shard, keys)).forEach(applied::addAll);
+
+		return applied;
+	}
+
+	private Set<String> fetchAppliedKeys(int shard, List<String> keys) {
+		Set<String> applied = new HashSet<>();
+
+		try (Connection conn = DbConnection.getConnection(shard)) {
+			for (int from = 0; from < keys.size(); from += KEY_CHUNK_SIZE) {
+				List<String> chunk = keys.subList(from, Math.min(from + KEY_CHUNK_SIZE, keys.size()));
+
+				try (PreparedStatement stmt = conn.prepareStatement(appliedKeysSql(chunk.size()))) {
+					for (int pos = 0; pos < chunk.size(); pos++) {
+						setParameter(stmt, pos + 1, chunk.get(pos), String.class);
+					}
+
+					try (ResultSet rs = stmt.executeQuery()) {
+						while (rs.next()) {
+							applied.add(rs.getString(1));
+						}
+					}
+				}
+			}
+
+			return applied;
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 *
+	 * @param count
+	 * @return The SELECT for which of count journal keys have been applied.
+	 */
+	static String appliedKeysSql(int count) {
+		return "SELECT journal_key FROM " + APPLIED_TABLE + " WHERE journal_key IN ("
+				+ String.join(", ", Collections.nCopies(count, "?")) + ")";
+	}
+}
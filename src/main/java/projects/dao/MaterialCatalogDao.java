@@ -0,0 +1,261 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import projects.entity.Material;
+import projects.exception.DbException;
+import provided.util.DaoBase;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Looks up and creates material catalog items. Each shard has its own
+ *         catalog, and names are unique per shard without regard to case or
+ *         accents, as category names are.
+ *
+ *         The catalog is cached per shard for the life of the process and
+ *         shared by every instance. A shard's catalog is read whole on first
+ *         use; after that names and IDs are resolved from memory, and only an
+ *         item created by another process since costs a query. Catalog items
+ *         are never changed or deleted, so a cached item cannot go stale.
+ */
+public class MaterialCatalogDao extends DaoBase {
+	private static final String CATALOG_TABLE = "material_catalog";
+	private static final int CHUNK_SIZE = 500;
+
+	private static final Map<Integer, ShardCatalog> catalogs = new ConcurrentHashMap<>();
+
+	// @formatter:off
+	static final String CREATE_SQL = ""
+			+ "INSERT IGNORE INTO " + CATALOG_TABLE + " (material_name) VALUES (?)";
+
+	static final String FETCH_ALL_SQL = ""
+			+ "SELECT catalog_id, material_name FROM " + CATALOG_TABLE;
+	// @formatter:on
+
+	/**
+	 *
+	 * @param shard
+	 * @param names
+	 * @return The catalog ID of every named material on the shard, creating the
+	 *         items that do not exist yet in one transaction. Items created here
+	 *         are only cached once the transaction has committed, so a rollback
+	 *         leaves nothing in the cache that the database does not have.
+	 */
+	public Map<String, Integer> resolveCatalogIds(int shard, Collection<String> names) {
+		try (Connection conn = DbConnection.getConnection(shard)) {
+			startTransaction(conn);
+
+			try {
+				Map<String, Integer> created = new TreeMap<>(NameCollation.ORDER);
+				Map<String, Integer> catalogIds = resolveCatalogIds(conn, shard, names, created);
+
+				commitTransaction(conn);
+				created.forEach(catalogFor(conn, shard)::put);
+				return catalogIds;
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw e instanceof DbException ? (DbException) e : new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/*
+	 * Resolves the names on the caller's transaction. Items read from the
+	 * database rather than the cache are added to created, for the caller to
+	 * cache after its commit.
+	 */
+	private Map<String, Integer> resolveCatalogIds(Connection conn, int shard, Collection<String> names,
+			Map<String, Integer> created) throws SQLException {
+		ShardCatalog catalog = catalogFor(conn, shard);
+		Map<String, Integer> catalogIds = new TreeMap<>(NameCollation.ORDER);
+		TreeSet<String> missing = new TreeSet<>(NameCollation.ORDER);
+
+		for (String name : names) {
+			if (name == null || name.isBlank()) {
+				throw new DbException("A material name cannot be blank.");
+			}
+
+			Integer catalogId = catalog.idsByName.get(name.trim());
+
+			if (catalogId == null) {
+				missing.add(name.trim());
+			} else {
+				catalogIds.put(name.trim(), catalogId);
+			}
+		}
+
+		if (missing.isEmpty()) {
+			return catalogIds;
+		}
+
+		try (PreparedStatement stmt = conn.prepareStatement(CREATE_SQL)) {
+			for (String name : missing) {
+				setParameter(stmt, 1, name, String.class);
+				stmt.addBatch();
+			}
+
+			stmt.executeBatch();
+		}
+
+		created.putAll(fetchByName(conn, missing));
+
+		for (String name : missing) {
+			Integer catalogId = created.get(name);
+
+			if (catalogId == null) {
+				throw new DbException("Material " + name + " could not be added to the catalog.");
+			}
+
+			catalogIds.put(name, catalogId);
+		}
+
+		return catalogIds;
+	}
+
+	/**
+	 *
+	 * @param conn
+	 * @param shard
+	 * @param materials Sets the name of each material from its catalog ID,
+	 *                  reading only the items that are not cached.
+	 * @throws SQLException Thrown if the read fails.
+	 */
+	void nameMaterials(Connection conn, int shard, Collection<Material> materials) throws SQLException {
+		ShardCatalog catalog = catalogFor(conn, shard);
+		List<Integer> missing = new ArrayList<>();
+
+		for (Material material : materials) {
+			if (!catalog.namesById.containsKey(material.getCatalogId())) {
+				missing.add(material.getCatalogId());
+			}
+		}
+
+		if (!missing.isEmpty()) {
+			fetchById(conn, missing).forEach(catalog::put);
+		}
+
+		for (Material material : materials) {
+			material.setMaterialName(catalog.namesById.get(material.getCatalogId()));
+		}
+	}
+
+	/*
+	 * Two threads can both read a shard's catalog on first use; the second
+	 * result simply replaces the first, which holds the same items.
+	 */
+	private ShardCatalog catalogFor(Connection conn, int shard) throws SQLException {
+		ShardCatalog catalog = catalogs.get(shard);
+
+		if (catalog != null) {
+			return catalog;
+		}
+
+		catalog = new ShardCatalog();
+
+		try (PreparedStatement stmt = conn.prepareStatement(FETCH_ALL_SQL); ResultSet rs = stmt.executeQuery()) {
+			while (rs.next()) {
+				catalog.put(rs.getString("material_name"), rs.getInt("catalog_id"));
+			}
+		}
+
+		ShardCatalog existing = catalogs.putIfAbsent(shard, catalog);
+
+		return existing != null ? existing : catalog;
+	}
+
+	private Map<String, Integer> fetchByName(Connection conn, Collection<String> names) throws SQLException {
+		Map<String, Integer> catalogIds = new TreeMap<>(NameCollation.ORDER);
+		List<String> list = new ArrayList<>(names);
+
+		for (int from = 0; from < list.size(); from += CHUNK_SIZE) {
+			List<String> chunk = list.subList(from, Math.min(from + CHUNK_SIZE, list.size()));
+
+			try (PreparedStatement stmt = conn.prepareStatement(fetchByNameSql(chunk.size()))) {
+				for (int pos = 0; pos < chunk.size(); pos++) {
+					setParameter(stmt, pos + 1, chunk.get(pos), String.class);
+				}
+
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						catalogIds.put(rs.getString("material_name"), rs.getInt("catalog_id"));
+					}
+				}
+			}
+		}
+
+		return catalogIds;
+	}
+
+	private Map<String, Integer> fetchById(Connection conn, List<Integer> catalogIds) throws SQLException {
+		Map<String, Integer> items = new TreeMap<>(NameCollation.ORDER);
+
+		for (int from = 0; from < catalogIds.size(); from += CHUNK_SIZE) {
+			List<Integer> chunk = catalogIds.subList(from, Math.min(from + CHUNK_SIZE, catalogIds.size()));
+
+			try (PreparedStatement stmt = conn.prepareStatement(fetchByIdSql(chunk.size()))) {
+				for (int pos = 0; pos < chunk.size(); pos++) {
+					setParameter(stmt, pos + 1, chunk.get(pos), Integer.class);
+				}
+
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						items.put(rs.getString("material_name"), rs.getInt("catalog_id"));
+					}
+				}
+			}
+		}
+
+		return items;
+	}
+
+	/**
+	 *
+	 * @param count
+	 * @return The SELECT for count catalog items by name.
+	 */
+	static String fetchByNameSql(int count) {
+		return FETCH_ALL_SQL + " WHERE material_name IN (" + placeholders(count) + ")";
+	}
+
+	/**
+	 *
+	 * @param count
+	 * @return The SELECT for count catalog items by ID.
+	 */
+	static String fetchByIdSql(int count) {
+		return FETCH_ALL_SQL + " WHERE catalog_id IN (" + placeholders(count) + ")";
+	}
+
+	private static String placeholders(int count) {
+		return String.join(", ", Collections.nCopies(count, "?"));
+	}
+
+	/**
+	 * One shard's catalog, by name in collation order and by ID.
+	 */
+	private static class ShardCatalog {
+		private final Map<String, Integer> idsByName = new ConcurrentSkipListMap<>(NameCollation.ORDER);
+		private final Map<Integer, String> namesById = new ConcurrentHashMap<>();
+
+		void put(String name, Integer catalogId) {
+			idsByName.putIfAbsent(name, catalogId);
+			namesById.putIfAbsent(catalogId, name);
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package projects.dao;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Compares names the way MySQL's default collation does: without regard
+ *         to case or accents. Used wherever Java has to agree with the database
+ *         on name order or equality, such as when merging sorted shard results
+ *         or matching category names. Loading a collator reads locale data, so
+ *         it is only created on the first comparison.
+ */
+final class NameCollation {
+
+	/**
+	 * The collation order. Names that are equal under it are the same name to
+	 * MySQL.
+	 */
+	static final Comparator<String> ORDER = (left, right) -> Holder.COLLATOR.compare(left, right);
+
+	private NameCollation() {
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return A key that is equal, with an equal hash code, for names that are
+	 *         equal under {@link #ORDER}, for hashing names the way MySQL groups
+	 *         them.
+	 */
+	static CollationKey key(String name) {
+		return Holder.COLLATOR.getCollationKey(name);
+	}
+
+	private static class Holder {
+		private static final Collator COLLATOR = Collator.getInstance(Locale.ROOT);
+
+		static {
+			COLLATOR.setStrength(Collator.PRIMARY);
+		}
+	}
+}
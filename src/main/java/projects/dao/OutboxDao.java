@@ -0,0 +1,188 @@
+package projects.dao;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import projects.entity.OutboxEvent;
+import projects.entity.Project;
+import projects.exception.DbException;
+import projects.json.JsonWriter;
+import projects.json.ProjectJson;
+import provided.util.DaoBase;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Data access for the outbox table. ProjectDao calls the append
+ *         methods on the connection of its own transaction, so a change record
+ *         is committed if and only if the change is. OutboxRelay reads and
+ *         prunes the records.
+ */
+public class OutboxDao extends DaoBase {
+	public static final String PROJECT_AGGREGATE = "project";
+
+	public static final String PROJECT_CREATED = "PROJECT_CREATED";
+	public static final String PROJECT_UPDATED = "PROJECT_UPDATED";
+	public static final String PROJECT_DELETED = "PROJECT_DELETED";
+	public static final String PROJECT_CATEGORIES_CHANGED = "PROJECT_CATEGORIES_CHANGED";
+
+	private static final String OUTBOX_TABLE = "outbox";
+	private static final int CHUNK_SIZE = 500;
+
+	// @formatter:off
+	private static final String INSERT_SQL = ""
+			+ "INSERT INTO " + OUTBOX_TABLE + " "
+			+ "(aggregate_type, aggregate_id, event_type, payload) "
+			+ "VALUES "
+			+ "(?, ?, ?, ?)";
+
+	static final String FETCH_OLDEST_SQL = "SELECT * FROM " + OUTBOX_TABLE + " ORDER BY outbox_id LIMIT ?";
+	// @formatter:on
+
+	/**
+	 *
+	 * @param conn
+	 * @param eventType
+	 * @param projects
+	 * @throws SQLException Appends one project change record per project, with
+	 *                      the project columns as the payload. Null columns are
+	 *                      written as null, so for a partial update the payload
+	 *                      holds only the fields that changed.
+	 */
+	void appendProjectEvents(Connection conn, String eventType, List<Project> projects) throws SQLException {
+		if (projects.isEmpty()) {
+			return;
+		}
+
+		try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+			for (Project project : projects) {
+				setParameter(stmt, 1, PROJECT_AGGREGATE, String.class);
+				setParameter(stmt, 2, project.getProjectId(), Integer.class);
+				setParameter(stmt, 3, eventType, String.class);
+				setParameter(stmt, 4, toJson(project), String.class);
+				stmt.addBatch();
+			}
+
+			stmt.executeBatch();
+		}
+	}
+
+	/**
+	 *
+	 * @param conn
+	 * @param eventType
+	 * @param projectIds
+	 * @throws SQLException Appends one project change record per project ID with
+	 *                      no payload. Used for deletes and category
+	 *                      changes.
+	 */
+	void appendProjectIdEvents(Connection conn, String eventType, List<Integer> projectIds) throws SQLException {
+		if (projectIds.isEmpty()) {
+			return;
+		}
+
+		try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+			for (Integer projectId : projectIds) {
+				setParameter(stmt, 1, PROJECT_AGGREGATE, String.class);
+				setParameter(stmt, 2, projectId, Integer.class);
+				setParameter(stmt, 3, eventType, String.class);
+				setParameter(stmt, 4, null, String.class);
+				stmt.addBatch();
+			}
+
+			stmt.executeBatch();
+		}
+	}
+
+	/**
+	 *
+	 * @param shard
+	 * @param limit
+	 * @return The oldest change records on the shard, up to limit, in the order
+	 *         they were written.
+	 */
+	public List<OutboxEvent> fetchOldestEvents(int shard, int limit) {
+		String sql = FETCH_OLDEST_SQL;
+
+		try (Connection conn = DbConnection.getConnection(shard)) {
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				setParameter(stmt, 1, limit, Integer.class);
+
+				try (ResultSet rs = stmt.executeQuery()) {
+					List<OutboxEvent> events = new LinkedList<>();
+
+					while (rs.next()) {
+						events.add(extract(rs, OutboxEvent.class));
+					}
+
+					return events;
+				}
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 *
+	 * @param shard
+	 * @param events
+	 * @return Deletes the given change records from the shard and returns the
+	 *         number deleted. Only the records that were published are deleted,
+	 *         by ID. An outbox_id is assigned when the row is inserted, not when
+	 *         it commits, so a record with a lower ID than one already published
+	 *         may still be on its way; deleting by range would lose it.
+	 */
+	public int prune(int shard, List<OutboxEvent> events) {
+		int deleted = 0;
+
+		try (Connection conn = DbConnection.getConnection(shard)) {
+			for (int from = 0; from < events.size(); from += CHUNK_SIZE) {
+				List<OutboxEvent> chunk = events.subList(from, Math.min(from + CHUNK_SIZE, events.size()));
+
+				try (PreparedStatement stmt = conn.prepareStatement(pruneSql(chunk.size()))) {
+					for (int index = 0; index < chunk.size(); index++) {
+						stmt.setLong(index + 1, chunk.get(index).getOutboxId());
+					}
+
+					deleted += stmt.executeUpdate();
+				}
+			}
+
+			return deleted;
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 *
+	 * @param count
+	 * @return A DELETE of count change records by ID.
+	 */
+	static String pruneSql(int count) {
+		return "DELETE FROM " + OUTBOX_TABLE + " WHERE outbox_id IN ("
+				+ String.join(", ", Collections.nCopies(count, "?")) + ")";
+	}
+
+	private String toJson(Project project) {
+		StringWriter out = new StringWriter(256);
+
+		try {
+			ProjectJson.writeSummary(new JsonWriter(out), project);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return out.toString();
+	}
+}
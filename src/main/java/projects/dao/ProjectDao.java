@@ -1,19 +1,31 @@
 package projects.dao;
 
-import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.IntFunction;
 
-import projects.entity.Category;
-import projects.entity.Material;
+import projects.analytics.ProjectColumns;
+import projects.audit.AuditTrail;
+import projects.entity.AuditRecord;
+import projects.entity.ChildLoader.Child;
 import projects.entity.Project;
-import projects.entity.Step;
+import projects.entity.ProjectBinder;
 import projects.exception.DbException;
 import provided.util.DaoBase;
 
@@ -33,58 +45,211 @@ public class ProjectDao extends DaoBase {
 	private static final String PROJECT_CATEGORY_TABLE = "project_category";
 	private static final String STEP_TABLE = "step";
 
+	/*
+	 * Fixed statements are constants so that QueryPlanChecker can EXPLAIN them.
+	 */
+	// @formatter:off
+	static final String FETCH_ALL_SQL = ""
+			+ "SELECT project_id, project_name, estimated_hours, actual_hours, difficulty, last_modified "
+			+ "FROM " + PROJECT_TABLE + " "
+			+ "WHERE deleted_at IS NULL ORDER BY project_name, project_id";
+
+	static final String FETCH_BY_ID_SQL = ""
+			+ "SELECT * FROM " + PROJECT_TABLE + " "
+			+ "WHERE project_id = ? AND deleted_at IS NULL";
+
+	static final String FETCH_COLUMNS_SQL = ""
+			+ "SELECT project_id, project_name, difficulty, "
+			+ "CAST(estimated_hours * 100 AS SIGNED) AS estimated_hundredths, "
+			+ "CAST(actual_hours * 100 AS SIGNED) AS actual_hundredths "
+			+ "FROM " + PROJECT_TABLE + " "
+			+ "WHERE deleted_at IS NULL";
+
+	static final String MODIFY_SQL = ProjectBinder.UPDATE_SQL + " AND deleted_at IS NULL";
+
+	static final String PATCH_SQL = "UPDATE " + PROJECT_TABLE + " SET "
+			+ "project_name = COALESCE(?, project_name), "
+			+ "estimated_hours = COALESCE(?, estimated_hours), "
+			+ "actual_hours = COALESCE(?, actual_hours), "
+			+ "difficulty = COALESCE(?, difficulty), "
+			+ "notes = COALESCE(?, notes) "
+			+ "WHERE project_id = ? AND deleted_at IS NULL";
+
+	static final String SOFT_DELETE_SQL = ""
+			+ "UPDATE " + PROJECT_TABLE + " SET deleted_at = CURRENT_TIMESTAMP "
+			+ "WHERE project_id = ? AND deleted_at IS NULL";
+
+	static final String CLONE_PROJECT_SQL = ""
+			+ "INSERT INTO " + PROJECT_TABLE + " "
+			+ "(project_id, project_name, estimated_hours, actual_hours, difficulty, notes) "
+			+ "SELECT ?, COALESCE(?, project_name), estimated_hours, actual_hours, difficulty, notes "
+			+ "FROM " + PROJECT_TABLE + " WHERE project_id = ? AND deleted_at IS NULL";
+
+	static final String CLONE_STEPS_SQL = ""
+			+ "INSERT INTO " + STEP_TABLE + " (project_id, step_text, step_order) "
+			+ "SELECT ?, step_text, step_order FROM " + STEP_TABLE + " "
+			+ "WHERE project_id = ? ORDER BY step_order";
+
+	static final String CLONE_MATERIALS_SQL = ""
+			+ "INSERT INTO " + MATERIAL_TABLE + " (project_id, catalog_id, num_required, cost) "
+			+ "SELECT ?, catalog_id, num_required, cost FROM " + MATERIAL_TABLE + " "
+			+ "WHERE project_id = ? ORDER BY material_id";
+
+	static final String CLONE_CATEGORIES_SQL = ""
+			+ "INSERT INTO " + PROJECT_CATEGORY_TABLE + " (project_id, category_id) "
+			+ "SELECT ?, category_id FROM " + PROJECT_CATEGORY_TABLE + " "
+			+ "WHERE project_id = ?";
+
+	static final String LINK_CATEGORY_SQL = ""
+			+ "INSERT IGNORE INTO " + PROJECT_CATEGORY_TABLE + " (project_id, category_id) VALUES (?, ?)";
+
+	static final String UNLINK_CATEGORY_SQL = ""
+			+ "DELETE FROM " + PROJECT_CATEGORY_TABLE + " WHERE project_id = ? AND category_id = ?";
+	// @formatter:on
+
+	private static final int ID_CHUNK_SIZE = 500;
+
+	/*
+	 * The order of FETCH_ALL_SQL: MySQL's default collation compares names
+	 * without regard to case or accents, and so does a primary strength
+	 * collator. Ties are broken by project ID, as in the SQL.
+	 */
+	private static final Comparator<Project> BY_NAME = ProjectQuery.Order.asc(ProjectQuery.Field.NAME).comparator()
+			.thenComparing(Project::getProjectId);
+
+	private OutboxDao outboxDao = new OutboxDao();
+	private CategoryDao categoryDao = new CategoryDao();
+	private AuditTrail auditTrail = AuditTrail.getInstance();
+
 	/**
 	 * 
 	 * @param project
-	 * @return SQL to insert project into the Project table
+	 * @return SQL to insert project into the Project table. The project ID is
+	 *         taken from the global sequence and decides the shard the project
+	 *         is written to.
 	 */
 	public Project insertProject(Project project) {
-		// @formatter:off
-		String sql = ""
-				+ "INSERT INTO " + PROJECT_TABLE + " "
-				+ "(project_name, estimated_hours, actual_hours, difficulty, notes) "
-				+ "VALUES "
-				+ "(?, ?, ?, ?, ?)";
-		// @formatter:on
+		String sql = ProjectBinder.INSERT_SQL;
+		Integer projectId = ProjectIdAllocator.getInstance().nextId();
+
 		// If connection, then start transaction
-		try (Connection conn = DbConnection.getConnection()) {
+		try (Connection conn = DbConnection.getConnection(ShardRouter.shardFor(projectId))) {
 			startTransaction(conn);
-			// Sets values for the 5 values in SQL statement.
+			// Binds the values in the SQL statement.
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				setParameter(stmt, 1, project.getProjectName(), String.class);
-				setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
-				setParameter(stmt, 3, project.getActualHours(), BigDecimal.class);
-				setParameter(stmt, 4, project.getDifficulty(), Integer.class);
-				setParameter(stmt, 5, project.getNotes(), String.class);
+				project.setProjectId(projectId);
+				ProjectBinder.bindInsert(stmt, project);
 				// Update values in SQL statement
 				stmt.executeUpdate();
-				Integer projectId = getLastInsertId(conn, PROJECT_TABLE);
 
+				outboxDao.appendProjectEvents(conn, OutboxDao.PROJECT_CREATED, List.of(project));
 				commitTransaction(conn);
-
-				project.setProjectId(projectId);
-				return project;
 				// If exception, rollback transaction completely.
 			} catch (Exception e) {
 				rollbackTransaction(conn);
+				project.setProjectId(null);
 				throw new DbException(e);
 			}
 		} catch (SQLException e) {
 			throw new DbException(e);
 		}
+
+		auditTrail.record(AuditRecord.inserted(project));
+		return project;
 	}
 
 	/**
 	 * 
-	 * @return Write SQL statement that reads all columns from Project table and
-	 *         order by the project name. Obtains connection to database, creates a
-	 *         list of Project and adds project from database to the LinkedList.
-	 *         Returns list of projects.
+	 * @param projects
+	 * @return Inserts all the given projects with one JDBC batch per shard. IDs
+	 *         are reserved from the global sequence in one step and set on the
+	 *         projects, which are returned in the same order they were passed
+	 *         in. Each shard's projects are inserted in their own transaction, in
+	 *         parallel; if one shard fails, the projects on the other shards may
+	 *         still have been inserted.
+	 */
+	public List<Project> insertProjects(List<Project> projects) {
+		if (projects.isEmpty()) {
+			return projects;
+		}
+
+		List<Integer> projectIds = ProjectIdAllocator.getInstance().nextIds(projects.size());
+
+		for (int pos = 0; pos < projects.size(); pos++) {
+			projects.get(pos).setProjectId(projectIds.get(pos));
+		}
+
+		Map<Integer, List<Integer>> positions = ShardRouter.positionsByShard(projectIds);
+
+		ShardRouter.scatter(shard -> insertProjects(shard, ShardRouter.select(projects, positions.get(shard))));
+		return projects;
+	}
+
+	private Void insertProjects(int shard, List<Project> projects) {
+		String sql = ProjectBinder.INSERT_SQL;
+
+		if (projects.isEmpty()) {
+			return null;
+		}
+
+		try (Connection conn = DbConnection.getConnection(shard)) {
+			startTransaction(conn);
+
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				for (Project project : projects) {
+					ProjectBinder.bindInsert(stmt, project);
+					stmt.addBatch();
+				}
+
+				stmt.executeBatch();
+
+				outboxDao.appendProjectEvents(conn, OutboxDao.PROJECT_CREATED, projects);
+				commitTransaction(conn);
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+
+		projects.forEach(project -> auditTrail.record(AuditRecord.inserted(project)));
+		return null;
+	}
+
+	/**
+	 * 
+	 * @return Fetches all projects with their child collections loaded lazily.
 	 */
 	public List<Project> fetchAllProjects() {
-		String sql = "SELECT * FROM " + PROJECT_TABLE + " ORDER BY project_name";
+		return fetchAllProjects(FetchPlan.LAZY);
+	}
+
+	/**
+	 * 
+	 * @param plan
+	 * @return Reads all projects from every shard in parallel. Each shard returns
+	 *         its projects already sorted by name, and the sorted lists are
+	 *         merged, so no shard's result is sorted again. Child collections are
+	 *         loaded as the fetch plan says. Returns list of projects.
+	 */
+	public List<Project> fetchAllProjects(FetchPlan plan) {
+		return ShardRouter.merge(ShardRouter.scatter(shard -> fetchAllProjects(shard, plan)), BY_NAME);
+	}
 
-		try (Connection conn = DbConnection.getConnection()) {
+	/**
+	 * 
+	 * @param shard
+	 * @param plan
+	 * @return Write SQL statement that reads the list columns from Project table
+	 *         and order by the project name. Notes are not read, since they can
+	 *         be long and are stored compressed; they are null in the list.
+	 *         Returns list of projects on the shard.
+	 */
+	private List<Project> fetchAllProjects(int shard, FetchPlan plan) {
+		String sql = FETCH_ALL_SQL;
+
+		try (Connection conn = DbConnection.getReadConnection(shard)) {
 			startTransaction(conn);
 
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -92,9 +257,10 @@ public class ProjectDao extends DaoBase {
 					List<Project> projects = new LinkedList<>();
 
 					while (rs.next()) {
-						projects.add(extract(rs, Project.class));
+						projects.add(ProjectBinder.decode(extract(rs, Project.class)));
 					}
 
+					applyFetchPlan(conn, shard, projects, plan);
 					return projects;
 				}
 
@@ -107,18 +273,142 @@ public class ProjectDao extends DaoBase {
 		}
 	}
 
+	/**
+	 * 
+	 * @param query
+	 * @param plan
+	 * @return Runs a criteria query on every shard in parallel. The query is
+	 *         compiled to a single parameterized SELECT and every value is bound
+	 *         with setParameter, so filtering, sorting and limiting all happen in
+	 *         the database. Each shard applies the limit on its own, which is
+	 *         enough to find the overall first rows; the sorted shard results are
+	 *         merged and the limit applied again. Child collections are loaded as
+	 *         the fetch plan says.
+	 */
+	public List<Project> fetchProjects(ProjectQuery query, FetchPlan plan) {
+		List<List<Project>> results = ShardRouter.scatter(shard -> fetchProjects(shard, query, plan));
+		List<Project> projects;
+
+		if (query.isOrdered()) {
+			projects = ShardRouter.merge(results, query.comparator());
+		} else {
+			projects = new ArrayList<>();
+			results.forEach(projects::addAll);
+		}
+
+		Integer limit = query.getLimit();
+
+		return Objects.nonNull(limit) && projects.size() > limit ? projects.subList(0, limit) : projects;
+	}
+
+	private List<Project> fetchProjects(int shard, ProjectQuery query, FetchPlan plan) {
+		String sql = query.toSql(PROJECT_TABLE);
+		List<Object> values = query.getValues();
+		List<Class<?>> types = query.getTypes();
+
+		try (Connection conn = DbConnection.getReadConnection(shard)) {
+			startTransaction(conn);
+
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				for (int pos = 0; pos < values.size(); pos++) {
+					setParameter(stmt, pos + 1, values.get(pos), types.get(pos));
+				}
+
+				try (ResultSet rs = stmt.executeQuery()) {
+					List<Project> projects = new LinkedList<>();
+
+					while (rs.next()) {
+						projects.add(ProjectBinder.decode(extract(rs, Project.class)));
+					}
+
+					applyFetchPlan(conn, shard, projects, plan);
+					commitTransaction(conn);
+					return projects;
+				}
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 * 
+	 * @return Streams the project table into a columnar projection for
+	 *         analytics. The driver is asked to stream rows one at a time instead
+	 *         of buffering the whole result, and hours are converted to
+	 *         hundredths in SQL so that no BigDecimal is created per row. Shards
+	 *         are read one after another into the same builder, since the
+	 *         builder is not thread safe.
+	 */
+	public ProjectColumns fetchProjectColumns() {
+		ProjectColumns.Builder builder = new ProjectColumns.Builder();
+
+		for (int shard = 0; shard < DbConnection.getShardCount(); shard++) {
+			fetchProjectColumns(shard, builder);
+		}
+
+		return builder.build();
+	}
+
+	private void fetchProjectColumns(int shard, ProjectColumns.Builder builder) {
+		String sql = FETCH_COLUMNS_SQL;
+
+		try (Connection conn = DbConnection.getReadConnection(shard)) {
+			startTransaction(conn);
+
+			try (PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY)) {
+				stmt.setFetchSize(Integer.MIN_VALUE);
+
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						int projectId = rs.getInt(1);
+						String projectName = rs.getString(2);
+						int difficulty = rs.getInt(3);
+						byte difficultyValue = rs.wasNull() ? ProjectColumns.NULL_DIFFICULTY : (byte) difficulty;
+						long estimated = rs.getLong(4);
+						long estimatedValue = rs.wasNull() ? ProjectColumns.NULL_HOURS : estimated;
+						long actual = rs.getLong(5);
+						long actualValue = rs.wasNull() ? ProjectColumns.NULL_HOURS : actual;
+
+						builder.addRow(projectId, projectName, difficultyValue, estimatedValue, actualValue);
+					}
+
+					commitTransaction(conn);
+				}
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
 	/**
 	 * 
 	 * @param projectId
+	 * @param plan
 	 * @return Write SQL statement that reads all columns from Project table and
 	 *         returns all rows that contain the given project ID. Obtains
-	 *         connection to database and runs query on database. Rolls back the
+	 *         connection to the shard that owns the project and runs query on
+	 *         it. Child collections in the fetch plan are loaded in the same
+	 *         transaction; the others are loaded on first access. Rolls back the
 	 *         transaction if there are any exceptions thrown.
 	 */
-	public Optional<Project> fetchProjectById(Integer projectId) {
-		String sql = "SELECT * FROM " + PROJECT_TABLE + " WHERE project_id = ?";
+	public Optional<Project> fetchProjectById(Integer projectId, FetchPlan plan) {
+		String sql = FETCH_BY_ID_SQL;
+
+		if (Objects.isNull(projectId)) {
+			return Optional.empty();
+		}
 
-		try (Connection conn = DbConnection.getConnection()) {
+		int shard = ShardRouter.shardFor(projectId);
+
+		try (Connection conn = DbConnection.getReadConnection(shard)) {
 			startTransaction(conn);
 
 			try {
@@ -129,17 +419,13 @@ public class ProjectDao extends DaoBase {
 
 					try (ResultSet rs = stmt.executeQuery()) {
 						if (rs.next()) {
-							project = extract(rs, Project.class);
+							project = ProjectBinder.decode(extract(rs, Project.class));
 						}
 					}
 				}
 
 				if (Objects.nonNull(project)) {
-					project.getMaterials().addAll(fetchProjectMaterials(conn, projectId));
-
-					project.getSteps().addAll(fetchProjectSteps(conn, projectId));
-
-					project.getCategories().addAll(fetchProjectCategories(conn, projectId));
+					applyFetchPlan(conn, shard, List.of(project), plan);
 				}
 				commitTransaction(conn);
 
@@ -156,126 +442,258 @@ public class ProjectDao extends DaoBase {
 	/**
 	 * 
 	 * @param conn
-	 * @param projectId
-	 * @return
-	 * @throws SQLException Fetch all columns from category table and adds them to
-	 *                      the category list. Returns the category list.
+	 * @param shard
+	 * @param projects
+	 * @param plan
+	 * @throws SQLException Attaches a shared batch loader to projects that were
+	 *                      fetched together from one shard. Collections in the
+	 *                      fetch plan are loaded now, on the same connection, with
+	 *                      one query per collection for the whole group. The
+	 *                      others are loaded for the whole group the first time
+	 *                      any project in it accesses them.
 	 */
-	private List<Category> fetchProjectCategories(Connection conn, Integer projectId) throws SQLException {
-		// @formatter:off
-		String sql = ""
-				+ "SELECT c.* FROM " + CATEGORY_TABLE + " c "
-				+ "JOIN " + PROJECT_CATEGORY_TABLE + " pc USING (category_id) "
-				+ "WHERE project_id = ?";
-		// @formatter:on
+	private void applyFetchPlan(Connection conn, int shard, List<Project> projects, FetchPlan plan)
+			throws SQLException {
+		if (projects.isEmpty()) {
+			return;
+		}
 
-		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-			setParameter(stmt, 1, projectId, Integer.class);
+		BatchChildLoader loader = new BatchChildLoader(shard, projects);
 
-			try (ResultSet rs = stmt.executeQuery()) {
-				List<Category> categories = new LinkedList<>();
+		for (Project project : projects) {
+			project.setChildLoader(loader, EnumSet.allOf(Child.class));
+		}
+
+		for (Child child : plan.getEagerChildren()) {
+			loader.loadNow(conn, child);
+		}
+	}
+
+	/**
+	 * 
+	 * @param project
+	 * @return Runs SQL query using UPDATE on the shard that owns the project.
+	 *         Passes in each parameter input by the user into the SQL script. If
+	 *         everything works correctly, returns TRUE to the ProjectService
+	 *         layer.
+	 */
+	public boolean modifyProjectDetails(Project project) {
+		String sql = MODIFY_SQL;
+
+		if (Objects.isNull(project.getProjectId())) {
+			return false;
+		}
+
+		Map<Integer, Project> before;
+		boolean modified;
+
+		try (Connection conn = DbConnection.getConnection(ShardRouter.shardFor(project.getProjectId()))) {
+			startTransaction(conn);
+
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				before = lockRowsForAudit(conn, List.of(project.getProjectId()));
+
+				ProjectBinder.bindUpdate(stmt, project);
 
-				while (rs.next()) {
-					categories.add(extract(rs, Category.class));
+				modified = stmt.executeUpdate() == 1;
+
+				if (modified) {
+					outboxDao.appendProjectEvents(conn, OutboxDao.PROJECT_UPDATED, List.of(project));
 				}
 
-				return categories;
+				commitTransaction(conn);
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
 			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+
+		if (modified) {
+			auditTrail.record(AuditRecord.updated(before.get(project.getProjectId()), project));
 		}
+
+		return modified;
 	}
 
 	/**
 	 * 
-	 * @param conn
-	 * @param projectId
-	 * @return
-	 * @throws SQLException Fetch all columns from step table and adds them to the
-	 *                      step list. Returns the step list.
+	 * @param projects
+	 * @return Applies partial updates to the given projects using one JDBC batch
+	 *         and one transaction per shard. Unlike modifyProjectDetails, a null
+	 *         field leaves the stored column unchanged, so callers do not have to
+	 *         read a project before updating it. Returns the number of rows
+	 *         updated for each project, in the order passed in. The parameters
+	 *         are in the same order as ProjectBinder.UPDATE_SQL, so the generated
+	 *         binder is used.
 	 */
-	private List<Step> fetchProjectSteps(Connection conn, Integer projectId) throws SQLException {
-		// @formatter:off
-		String sql = ""
-				+ "SELECT s.* FROM " + STEP_TABLE + " s "
-				+ "WHERE project_id = ?";
-		// @formatter:on
+	public int[] patchProjects(List<Project> projects) {
+		int[] counts = new int[projects.size()];
+		List<Integer> projectIds = new ArrayList<>(projects.size());
 
-		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-			setParameter(stmt, 1, projectId, Integer.class);
+		if (projects.isEmpty()) {
+			return counts;
+		}
 
-			try (ResultSet rs = stmt.executeQuery()) {
-				List<Step> steps = new LinkedList<>();
+		projects.forEach(project -> projectIds.add(project.getProjectId()));
+
+		Map<Integer, List<Integer>> positions = ShardRouter.positionsByShard(projectIds);
+		List<int[]> shardCounts = ShardRouter
+				.scatter(shard -> patchProjects(shard, ShardRouter.select(projects, positions.get(shard))));
+
+		scatterCounts(positions, shardCounts, counts);
+		return counts;
+	}
 
-				while (rs.next()) {
-					steps.add(extract(rs, Step.class));
+	private int[] patchProjects(int shard, List<Project> projects) {
+		String sql = PATCH_SQL;
+
+		if (projects.isEmpty()) {
+			return new int[0];
+		}
+
+		Map<Integer, Project> before;
+		int[] counts;
+		List<Project> changed;
+
+		try (Connection conn = DbConnection.getConnection(shard)) {
+			startTransaction(conn);
+
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				List<Integer> projectIds = new ArrayList<>(projects.size());
+
+				projects.forEach(project -> projectIds.add(project.getProjectId()));
+
+				before = lockRowsForAudit(conn, projectIds);
+
+				for (Project project : projects) {
+					ProjectBinder.bindUpdate(stmt, project);
+					stmt.addBatch();
 				}
 
-				return steps;
+				counts = stmt.executeBatch();
+				changed = changed(projects, counts);
+
+				outboxDao.appendProjectEvents(conn, OutboxDao.PROJECT_UPDATED, changed);
+				commitTransaction(conn);
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
 			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+
+		for (Project patch : changed) {
+			Project old = before.get(patch.getProjectId());
+
+			auditTrail.record(AuditRecord.updated(old, patched(old, patch)));
 		}
+
+		return counts;
 	}
 
 	/**
 	 * 
-	 * @param conn
 	 * @param projectId
-	 * @return
-	 * @throws SQLException Fetch all columns from materials table and adds them to
-	 *                      the materials list. Returns the material list.
+	 * @return Soft-deletes the project by setting its deleted_at marker. The
+	 *         project disappears from every read at once, and the row and its
+	 *         steps, materials and category links are removed later in small
+	 *         batches by ProjectPurger. If deleted, returns TRUE to the
+	 *         ProjectService layer.
 	 */
-	private List<Material> fetchProjectMaterials(Connection conn, Integer projectId) throws SQLException {
-		// @formatter:off
-		String sql = ""
-				+ "SELECT m.* FROM " + MATERIAL_TABLE + " m "
-				+ "WHERE project_id = ?";
-		// @formatter:on
+	public boolean deleteProject(Integer projectId) {
+		String sql = SOFT_DELETE_SQL;
 
-		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-			setParameter(stmt, 1, projectId, Integer.class);
+		if (Objects.isNull(projectId)) {
+			return false;
+		}
 
-			try (ResultSet rs = stmt.executeQuery()) {
-				List<Material> materials = new LinkedList<>();
+		Map<Integer, Project> before;
+		boolean deleted;
+
+		try (Connection conn = DbConnection.getConnection(ShardRouter.shardFor(projectId))) {
+			startTransaction(conn);
 
-				while (rs.next()) {
-					materials.add(extract(rs, Material.class));
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				before = lockRowsForAudit(conn, List.of(projectId));
+
+				setParameter(stmt, 1, projectId, Integer.class);
+
+				deleted = stmt.executeUpdate() == 1;
+
+				if (deleted) {
+					outboxDao.appendProjectIdEvents(conn, OutboxDao.PROJECT_DELETED, List.of(projectId));
 				}
 
-				return materials;
+				commitTransaction(conn);
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
 			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+
+		if (deleted) {
+			auditTrail.record(AuditRecord.deleted(deletedRow(before, projectId)));
 		}
+
+		return deleted;
 	}
 
 	/**
 	 * 
-	 * @param project
-	 * @return Runs SQL query using UPDATE. Passes in each parameter input by the
-	 *         user into the SQL script. If everything works correctly, returns TRUE
-	 *         to the ProjectService layer.
+	 * @param projectIds
+	 * @return Soft-deletes the given projects using one JDBC batch and one
+	 *         transaction per shard. Returns the number of projects deleted for
+	 *         each project ID, in iteration order. A count of zero means the
+	 *         project did not exist or was already deleted.
 	 */
-	public boolean modifyProjectDetails(Project project) {
-		// @formatter:off
-		String sql = "UPDATE " + PROJECT_TABLE + " SET "
-				+ "project_name = ?, "
-				+ "estimated_hours = ?, "
-				+ "actual_hours = ?, "
-				+ "difficulty = ?, "
-				+ "notes = ? "
-				+ "WHERE project_id = ?";
-		// @formatter:on
-		try (Connection conn = DbConnection.getConnection()) {
+	public int[] deleteProjects(Collection<Integer> projectIds) {
+		List<Integer> ids = new ArrayList<>(projectIds);
+		int[] counts = new int[ids.size()];
+
+		if (ids.isEmpty()) {
+			return counts;
+		}
+
+		Map<Integer, List<Integer>> positions = ShardRouter.positionsByShard(ids);
+		List<int[]> shardCounts = ShardRouter
+				.scatter(shard -> deleteProjects(shard, ShardRouter.select(ids, positions.get(shard))));
+
+		scatterCounts(positions, shardCounts, counts);
+		return counts;
+	}
+
+	private int[] deleteProjects(int shard, List<Integer> projectIds) {
+		String sql = SOFT_DELETE_SQL;
+
+		if (projectIds.isEmpty()) {
+			return new int[0];
+		}
+
+		Map<Integer, Project> before;
+		int[] counts;
+		List<Integer> deleted;
+
+		try (Connection conn = DbConnection.getConnection(shard)) {
 			startTransaction(conn);
 
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				setParameter(stmt, 1, project.getProjectName(), String.class);
-				setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
-				setParameter(stmt, 3, project.getActualHours(), BigDecimal.class);
-				setParameter(stmt, 4, project.getDifficulty(), Integer.class);
-				setParameter(stmt, 5, project.getNotes(), String.class);
-				setParameter(stmt, 6, project.getProjectId(), Integer.class);
-
-				boolean modified = stmt.executeUpdate() == 1;
-				commitTransaction(conn);
+				before = lockRowsForAudit(conn, projectIds);
+
+				for (Integer projectId : projectIds) {
+					setParameter(stmt, 1, projectId, Integer.class);
+					stmt.addBatch();
+				}
 
-				return modified;
+				counts = stmt.executeBatch();
+				deleted = changed(projectIds, counts);
+
+				outboxDao.appendProjectIdEvents(conn, OutboxDao.PROJECT_DELETED, deleted);
+				commitTransaction(conn);
 			} catch (Exception e) {
 				rollbackTransaction(conn);
 				throw new DbException(e);
@@ -283,28 +701,56 @@ public class ProjectDao extends DaoBase {
 		} catch (SQLException e) {
 			throw new DbException(e);
 		}
+
+		deleted.forEach(projectId -> auditTrail.record(AuditRecord.deleted(deletedRow(before, projectId))));
+		return counts;
 	}
 
 	/**
 	 * 
 	 * @param projectId
-	 * @return Runs the SQL query using DELETE. Passes the project ID into the SQL
-	 *         script that was input by the user. If deleted, returns TRUE to the
-	 *         ProjectService layer.
+	 * @param newName
+	 * @return Copies a project with its steps, materials and category links
+	 *         using INSERT ... SELECT statements in one transaction, so none of
+	 *         the copied rows leave the database. The copy gets an ID on the
+	 *         source project's shard, which keeps every statement on one schema.
+	 *         A null name keeps the source project's name. Only the new project
+	 *         row is read back, for its outbox record. Returns the new project ID,
+	 *         or empty if the source project does not exist.
 	 */
-	public boolean deleteProject(Integer projectId) {
-		String sql = "DELETE FROM " + PROJECT_TABLE + " WHERE project_id = ?";
+	public Optional<Integer> cloneProject(Integer projectId, String newName) {
+		if (Objects.isNull(projectId)) {
+			return Optional.empty();
+		}
 
-		try (Connection conn = DbConnection.getConnection()) {
+		int shard = ShardRouter.shardFor(projectId);
+		Integer cloneId = ProjectIdAllocator.getInstance().nextIdOnShard(shard);
+
+		Project clone;
+
+		try (Connection conn = DbConnection.getConnection(shard)) {
 			startTransaction(conn);
 
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				setParameter(stmt, 1, projectId, Integer.class);
+			try {
+				try (PreparedStatement stmt = conn.prepareStatement(CLONE_PROJECT_SQL)) {
+					setParameter(stmt, 1, cloneId, Integer.class);
+					setParameter(stmt, 2, newName, String.class);
+					setParameter(stmt, 3, projectId, Integer.class);
 
-				boolean deleted = stmt.executeUpdate() == 1;
+					if (stmt.executeUpdate() == 0) {
+						rollbackTransaction(conn);
+						return Optional.empty();
+					}
+				}
 
+				copyChildren(conn, CLONE_STEPS_SQL, projectId, cloneId);
+				copyChildren(conn, CLONE_MATERIALS_SQL, projectId, cloneId);
+				copyChildren(conn, CLONE_CATEGORIES_SQL, projectId, cloneId);
+
+				clone = fetchRow(conn, cloneId);
+
+				outboxDao.appendProjectEvents(conn, OutboxDao.PROJECT_CREATED, List.of(clone));
 				commitTransaction(conn);
-				return deleted;
 			} catch (Exception e) {
 				rollbackTransaction(conn);
 				throw new DbException(e);
@@ -312,6 +758,373 @@ public class ProjectDao extends DaoBase {
 		} catch (SQLException e) {
 			throw new DbException(e);
 		}
+
+		auditTrail.record(AuditRecord.inserted(clone));
+		return Optional.of(cloneId);
+	}
+
+	/**
+	 * 
+	 * @param categoriesByProject
+	 * @return Sets the categories of each project to exactly the given names.
+	 *         Names are resolved to category IDs, creating missing categories in
+	 *         one batch, and the wanted links are compared with the current ones
+	 *         so that only the links to add and the links to remove are written,
+	 *         each as one JDBC batch. Each shard is updated in one transaction,
+	 *         in parallel. Returns the IDs of projects that do not exist or are
+	 *         deleted; nothing is changed for them.
+	 */
+	public Set<Integer> setCategories(Map<Integer, Set<String>> categoriesByProject) {
+		List<Integer> projectIds = new ArrayList<>(categoriesByProject.keySet());
+		Set<Integer> missing = new TreeSet<>();
+
+		if (projectIds.isEmpty()) {
+			return missing;
+		}
+
+		Map<Integer, List<Integer>> positions = ShardRouter.positionsByShard(projectIds);
+
+		ShardRouter.scatter(shard -> setCategories(shard, ShardRouter.select(projectIds, positions.get(shard)),
+				categoriesByProject)).forEach(missing::addAll);
+
+		return missing;
+	}
+
+	private Set<Integer> setCategories(int shard, List<Integer> projectIds,
+			Map<Integer, Set<String>> categoriesByProject) {
+		Set<Integer> missing = new TreeSet<>(projectIds);
+
+		if (projectIds.isEmpty()) {
+			return missing;
+		}
+
+		try (Connection conn = DbConnection.getConnection(shard)) {
+			startTransaction(conn);
+
+			try {
+				/*
+				 * Locking the project rows first, in ID order, keeps two syncs of the
+				 * same project from interleaving and keeps a purge from removing a
+				 * project while links are added to it.
+				 */
+				List<Integer> liveIds = fetchIdsInChunks(conn, projectIds, ProjectDao::lockLiveSql);
+				Set<String> names = new TreeSet<>(NameCollation.ORDER);
+
+				missing.removeAll(liveIds);
+				liveIds.forEach(projectId -> names.addAll(namesOf(categoriesByProject, projectId)));
+
+				Map<String, Integer> categoryIds = categoryDao.resolveCategoryIds(conn, names);
+				Map<Integer, Set<Integer>> current = fetchCategoryLinks(conn, liveIds);
+				List<int[]> toLink = new ArrayList<>();
+				List<int[]> toUnlink = new ArrayList<>();
+				Set<Integer> changed = new TreeSet<>();
+
+				for (Integer projectId : liveIds) {
+					Set<Integer> have = current.getOrDefault(projectId, Set.of());
+					Set<Integer> want = new HashSet<>();
+
+					for (String name : namesOf(categoriesByProject, projectId)) {
+						want.add(categoryIds.get(name.trim()));
+					}
+
+					for (Integer categoryId : want) {
+						if (!have.contains(categoryId)) {
+							toLink.add(new int[] { projectId, categoryId });
+							changed.add(projectId);
+						}
+					}
+
+					for (Integer categoryId : have) {
+						if (!want.contains(categoryId)) {
+							toUnlink.add(new int[] { projectId, categoryId });
+							changed.add(projectId);
+						}
+					}
+				}
+
+				writeLinks(conn, LINK_CATEGORY_SQL, toLink);
+				writeLinks(conn, UNLINK_CATEGORY_SQL, toUnlink);
+				touchProjects(conn, new ArrayList<>(changed));
+
+				outboxDao.appendProjectIdEvents(conn, OutboxDao.PROJECT_CATEGORIES_CHANGED, new ArrayList<>(changed));
+				commitTransaction(conn);
+
+				return missing;
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw e instanceof DbException ? (DbException) e : new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/*
+	 * A null set of names clears the project's categories, like an empty set.
+	 */
+	private Set<String> namesOf(Map<Integer, Set<String>> categoriesByProject, Integer projectId) {
+		return Objects.requireNonNullElse(categoriesByProject.get(projectId), Set.of());
+	}
+
+	private List<Integer> fetchIdsInChunks(Connection conn, List<Integer> projectIds, IntFunction<String> sqlForCount)
+			throws SQLException {
+		List<Integer> sorted = new ArrayList<>(projectIds);
+		List<Integer> found = new ArrayList<>();
+
+		Collections.sort(sorted);
+
+		for (int from = 0; from < sorted.size(); from += ID_CHUNK_SIZE) {
+			List<Integer> chunk = sorted.subList(from, Math.min(from + ID_CHUNK_SIZE, sorted.size()));
+
+			try (PreparedStatement stmt = conn.prepareStatement(sqlForCount.apply(chunk.size()))) {
+				for (int pos = 0; pos < chunk.size(); pos++) {
+					setParameter(stmt, pos + 1, chunk.get(pos), Integer.class);
+				}
+
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						found.add(rs.getInt("project_id"));
+					}
+				}
+			}
+		}
+
+		return found;
+	}
+
+	private Map<Integer, Set<Integer>> fetchCategoryLinks(Connection conn, List<Integer> projectIds)
+			throws SQLException {
+		Map<Integer, Set<Integer>> links = new HashMap<>();
+
+		for (int from = 0; from < projectIds.size(); from += ID_CHUNK_SIZE) {
+			List<Integer> chunk = projectIds.subList(from, Math.min(from + ID_CHUNK_SIZE, projectIds.size()));
+
+			try (PreparedStatement stmt = conn.prepareStatement(categoryLinksSql(chunk.size()))) {
+				for (int pos = 0; pos < chunk.size(); pos++) {
+					setParameter(stmt, pos + 1, chunk.get(pos), Integer.class);
+				}
+
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						links.computeIfAbsent(rs.getInt("project_id"), projectId -> new HashSet<>())
+								.add(rs.getInt("category_id"));
+					}
+				}
+			}
+		}
+
+		return links;
+	}
+
+	private void writeLinks(Connection conn, String sql, List<int[]> links) throws SQLException {
+		if (links.isEmpty()) {
+			return;
+		}
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			for (int[] link : links) {
+				setParameter(stmt, 1, link[0], Integer.class);
+				setParameter(stmt, 2, link[1], Integer.class);
+				stmt.addBatch();
+			}
+
+			stmt.executeBatch();
+		}
+	}
+
+	/*
+	 * Category links have no timestamp of their own, so a change to them is
+	 * recorded on the project for the change feed.
+	 */
+	private void touchProjects(Connection conn, List<Integer> projectIds) throws SQLException {
+		for (int from = 0; from < projectIds.size(); from += ID_CHUNK_SIZE) {
+			List<Integer> chunk = projectIds.subList(from, Math.min(from + ID_CHUNK_SIZE, projectIds.size()));
+
+			try (PreparedStatement stmt = conn.prepareStatement(touchSql(chunk.size()))) {
+				for (int pos = 0; pos < chunk.size(); pos++) {
+					setParameter(stmt, pos + 1, chunk.get(pos), Integer.class);
+				}
+
+				stmt.executeUpdate();
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param count
+	 * @return The UPDATE that sets last_modified of count projects to now.
+	 */
+	static String touchSql(int count) {
+		return "UPDATE " + PROJECT_TABLE + " SET last_modified = CURRENT_TIMESTAMP(6) WHERE project_id IN ("
+				+ placeholders(count) + ")";
+	}
+
+	/**
+	 * 
+	 * @param count
+	 * @return The SELECT that locks count live projects, in ID order.
+	 */
+	static String lockLiveSql(int count) {
+		return "SELECT project_id FROM " + PROJECT_TABLE + " WHERE project_id IN (" + placeholders(count)
+				+ ") AND deleted_at IS NULL ORDER BY project_id FOR UPDATE";
+	}
+
+	/**
+	 * 
+	 * @param count
+	 * @return The SELECT that locks the rows of count live projects, in ID order.
+	 */
+	static String lockRowsSql(int count) {
+		return "SELECT * FROM " + PROJECT_TABLE + " WHERE project_id IN (" + placeholders(count)
+				+ ") AND deleted_at IS NULL ORDER BY project_id FOR UPDATE";
+	}
+
+	/**
+	 * 
+	 * @param count
+	 * @return The SELECT for the category links of count projects.
+	 */
+	static String categoryLinksSql(int count) {
+		return "SELECT project_id, category_id FROM " + PROJECT_CATEGORY_TABLE + " WHERE project_id IN ("
+				+ placeholders(count) + ")";
+	}
+
+	private static String placeholders(int count) {
+		return String.join(", ", Collections.nCopies(count, "?"));
+	}
+
+	private void copyChildren(Connection conn, String sql, Integer projectId, Integer cloneId) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			setParameter(stmt, 1, cloneId, Integer.class);
+			setParameter(stmt, 2, projectId, Integer.class);
+
+			stmt.executeUpdate();
+		}
+	}
+
+	private Project fetchRow(Connection conn, Integer projectId) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(FETCH_BY_ID_SQL)) {
+			setParameter(stmt, 1, projectId, Integer.class);
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (!rs.next()) {
+					throw new SQLException("Project " + projectId + " was not found.");
+				}
+
+				return ProjectBinder.decode(extract(rs, Project.class));
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param conn
+	 * @param projectIds
+	 * @return The live rows of the given projects, keyed by ID, locked for
+	 *         update so that they are the values the change replaces. Returns an
+	 *         empty map without reading anything when the audit trail is off.
+	 * @throws SQLException Thrown if the read fails.
+	 */
+	Map<Integer, Project> lockRowsForAudit(Connection conn, List<Integer> projectIds) throws SQLException {
+		Map<Integer, Project> rows = new HashMap<>();
+
+		if (!auditTrail.isEnabled()) {
+			return rows;
+		}
+
+		List<Integer> sorted = new ArrayList<>(new TreeSet<>(projectIds));
+
+		for (int from = 0; from < sorted.size(); from += ID_CHUNK_SIZE) {
+			List<Integer> chunk = sorted.subList(from, Math.min(from + ID_CHUNK_SIZE, sorted.size()));
+
+			try (PreparedStatement stmt = conn.prepareStatement(lockRowsSql(chunk.size()))) {
+				for (int pos = 0; pos < chunk.size(); pos++) {
+					setParameter(stmt, pos + 1, chunk.get(pos), Integer.class);
+				}
+
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						Project project = ProjectBinder.decode(extract(rs, Project.class));
+
+						rows.put(project.getProjectId(), project);
+					}
+				}
+			}
+		}
+
+		return rows;
+	}
+
+	/*
+	 * The row as it was before a delete. Without the audit trail's locked read
+	 * only the ID is known.
+	 */
+	private Project deletedRow(Map<Integer, Project> before, Integer projectId) {
+		Project row = before.get(projectId);
+
+		if (Objects.isNull(row)) {
+			row = new Project();
+			row.setProjectId(projectId);
+		}
+
+		return row;
+	}
+
+	/*
+	 * The row after PATCH_SQL: each null field of the patch keeps the old value.
+	 */
+	private Project patched(Project old, Project patch) {
+		if (Objects.isNull(old)) {
+			return patch;
+		}
+
+		Project row = new Project();
+
+		row.setProjectId(patch.getProjectId());
+		row.setProjectName(Objects.nonNull(patch.getProjectName()) ? patch.getProjectName() : old.getProjectName());
+		row.setEstimatedHours(
+				Objects.nonNull(patch.getEstimatedHours()) ? patch.getEstimatedHours() : old.getEstimatedHours());
+		row.setActualHours(Objects.nonNull(patch.getActualHours()) ? patch.getActualHours() : old.getActualHours());
+		row.setDifficulty(Objects.nonNull(patch.getDifficulty()) ? patch.getDifficulty() : old.getDifficulty());
+		row.setNotes(Objects.nonNull(patch.getNotes()) ? patch.getNotes() : old.getNotes());
+
+		return row;
+	}
+
+	/*
+	 * Puts each shard's batch counts back at the positions its items had in the
+	 * caller's list.
+	 */
+	private void scatterCounts(Map<Integer, List<Integer>> positions, List<int[]> shardCounts, int[] counts) {
+		for (Map.Entry<Integer, List<Integer>> entry : positions.entrySet()) {
+			int[] shardCount = shardCounts.get(entry.getKey());
+			List<Integer> shardPositions = entry.getValue();
+
+			for (int pos = 0; pos < shardPositions.size(); pos++) {
+				counts[shardPositions.get(pos)] = shardCount[pos];
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param <T>
+	 * @param items
+	 * @param counts
+	 * @return The items whose batch update count is not zero. A driver may report
+	 *         SUCCESS_NO_INFO instead of a count, which is treated as changed.
+	 */
+	private <T> List<T> changed(List<T> items, int[] counts) {
+		List<T> changed = new ArrayList<>(items.size());
+
+		for (int pos = 0; pos < counts.length; pos++) {
+			if (counts[pos] != 0) {
+				changed.add(items.get(pos));
+			}
+		}
+
+		return changed;
 	}
 
 }
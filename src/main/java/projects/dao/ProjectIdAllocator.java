@@ -0,0 +1,171 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+import projects.exception.DbException;
+import provided.util.DaoBase;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Hands out project IDs that are unique across every shard. IDs come
+ *         from the id_sequence table on shard 0, reserved a block at a time so
+ *         that most inserts do not touch the sequence at all. IDs in a block
+ *         that is not used up before the process exits are skipped, so IDs
+ *         are unique but may have gaps.
+ *
+ *         An ID can also be requested for a given shard, for a copy that has to
+ *         stay on the same shard as its source. IDs drawn while looking for one
+ *         that hashes to that shard are kept and handed out first afterwards,
+ *         so they are not wasted.
+ *
+ *         The block size is the system property projects.db.idBlockSize (100).
+ */
+public class ProjectIdAllocator extends DaoBase {
+	private static final String SEQUENCE_NAME = "project";
+	private static final int BLOCK_SIZE = Integer.getInteger("projects.db.idBlockSize", 100);
+
+	/*
+	 * LAST_INSERT_ID(expr) makes the new value readable on this connection
+	 * without a second locking read of the row.
+	 */
+	// @formatter:off
+	private static final String RESERVE_SQL = ""
+			+ "UPDATE id_sequence SET next_value = LAST_INSERT_ID(next_value + ?) "
+			+ "WHERE sequence_name = ?";
+	// @formatter:on
+
+	private static final ProjectIdAllocator instance = new ProjectIdAllocator();
+
+	private final Deque<Integer> spare = new ArrayDeque<>();
+	private int next;
+	private int limit;
+
+	private ProjectIdAllocator() {
+	}
+
+	public static ProjectIdAllocator getInstance() {
+		return instance;
+	}
+
+	/**
+	 *
+	 * @return A new project ID.
+	 */
+	public synchronized int nextId() {
+		if (!spare.isEmpty()) {
+			return spare.poll();
+		}
+
+		return nextFromBlock();
+	}
+
+	/**
+	 *
+	 * @param shard
+	 * @return A new project ID that {@link ShardRouter} places on the given
+	 *         shard.
+	 */
+	public synchronized int nextIdOnShard(int shard) {
+		for (Iterator<Integer> ids = spare.iterator(); ids.hasNext();) {
+			int projectId = ids.next();
+
+			if (ShardRouter.shardFor(projectId) == shard) {
+				ids.remove();
+				return projectId;
+			}
+		}
+
+		while (true) {
+			int projectId = nextFromBlock();
+
+			if (ShardRouter.shardFor(projectId) == shard) {
+				return projectId;
+			}
+
+			spare.add(projectId);
+		}
+	}
+
+	/**
+	 *
+	 * @param count
+	 * @return The given number of new project IDs. A large request is reserved
+	 *         in one round trip.
+	 */
+	public synchronized List<Integer> nextIds(int count) {
+		List<Integer> ids = new ArrayList<>(count);
+
+		while (!spare.isEmpty() && ids.size() < count) {
+			ids.add(spare.poll());
+		}
+
+		int fromBlock = Math.min(limit - next, count - ids.size());
+
+		for (int pos = 0; pos < fromBlock; pos++) {
+			ids.add(next++);
+		}
+
+		if (ids.size() < count) {
+			reserve(Math.max(BLOCK_SIZE, count - ids.size()));
+		}
+
+		while (ids.size() < count) {
+			ids.add(next++);
+		}
+
+		return ids;
+	}
+
+	private int nextFromBlock() {
+		if (next == limit) {
+			reserve(BLOCK_SIZE);
+		}
+
+		return next++;
+	}
+
+	private void reserve(int size) {
+		try (Connection conn = DbConnection.getConnection()) {
+			startTransaction(conn);
+
+			try {
+				try (PreparedStatement stmt = conn.prepareStatement(RESERVE_SQL)) {
+					setParameter(stmt, 1, size, Integer.class);
+					setParameter(stmt, 2, SEQUENCE_NAME, String.class);
+
+					if (stmt.executeUpdate() != 1) {
+						throw new DbException("The " + SEQUENCE_NAME + " ID sequence is missing. Run SchemaMigrator.");
+					}
+				}
+
+				int end;
+
+				try (PreparedStatement stmt = conn.prepareStatement("SELECT LAST_INSERT_ID()")) {
+					try (ResultSet rs = stmt.executeQuery()) {
+						rs.next();
+						end = rs.getInt(1);
+					}
+				}
+
+				commitTransaction(conn);
+				next = end - size;
+				limit = end;
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw e instanceof DbException ? (DbException) e : new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+}
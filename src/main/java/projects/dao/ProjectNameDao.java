@@ -0,0 +1,130 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import projects.exception.DbException;
+import provided.util.DaoBase;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Reads the IDs and names of live projects for the name typeahead
+ *         index. Names are read from each shard's primary, since the index is
+ *         refreshed right after a write and a lagging replica would hand back
+ *         the name from before it.
+ */
+public class ProjectNameDao extends DaoBase {
+	private static final String PROJECT_TABLE = "project";
+	private static final int CHUNK_SIZE = 500;
+
+	/**
+	 * Receives the ID and name of one live project.
+	 */
+	@FunctionalInterface
+	public interface NameConsumer {
+		void accept(int projectId, String projectName);
+	}
+
+	// @formatter:off
+	static final String FETCH_NAMES_SQL = ""
+			+ "SELECT project_id, project_name FROM " + PROJECT_TABLE + " "
+			+ "WHERE deleted_at IS NULL";
+	// @formatter:on
+
+	/**
+	 *
+	 * @param consumer Streams the ID and name of every live project on every
+	 *                 shard to the consumer, one shard at a time, without
+	 *                 holding them in memory.
+	 */
+	public void streamProjectNames(NameConsumer consumer) {
+		for (int shard = 0; shard < DbConnection.getShardCount(); shard++) {
+			try (Connection conn = DbConnection.getConnection(shard)) {
+				startTransaction(conn);
+
+				try (PreparedStatement stmt = conn.prepareStatement(FETCH_NAMES_SQL, ResultSet.TYPE_FORWARD_ONLY,
+						ResultSet.CONCUR_READ_ONLY)) {
+					stmt.setFetchSize(Integer.MIN_VALUE);
+
+					try (ResultSet rs = stmt.executeQuery()) {
+						while (rs.next()) {
+							consumer.accept(rs.getInt(1), rs.getString(2));
+						}
+					}
+
+					commitTransaction(conn);
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw e instanceof DbException ? (DbException) e : new DbException(e);
+				}
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param projectIds
+	 * @param consumer   Passes the ID and name of each of the given projects
+	 *                   that is live to the consumer. Deleted and missing
+	 *                   projects pass nothing.
+	 */
+	public void fetchProjectNames(Collection<Integer> projectIds, NameConsumer consumer) {
+		List<Integer> ids = new ArrayList<>(projectIds);
+		Map<Integer, List<Integer>> positions = ShardRouter.positionsByShard(ids);
+
+		for (Map.Entry<Integer, List<Integer>> entry : positions.entrySet()) {
+			List<Integer> shardIds = new ArrayList<>(entry.getValue().size());
+
+			entry.getValue().forEach(pos -> shardIds.add(ids.get(pos)));
+
+			try (Connection conn = DbConnection.getConnection(entry.getKey())) {
+				startTransaction(conn);
+
+				try {
+					for (int from = 0; from < shardIds.size(); from += CHUNK_SIZE) {
+						List<Integer> chunk = shardIds.subList(from, Math.min(from + CHUNK_SIZE, shardIds.size()));
+
+						try (PreparedStatement stmt = conn.prepareStatement(fetchNamesSql(chunk.size()))) {
+							for (int pos = 0; pos < chunk.size(); pos++) {
+								setParameter(stmt, pos + 1, chunk.get(pos), Integer.class);
+							}
+
+							try (ResultSet rs = stmt.executeQuery()) {
+								while (rs.next()) {
+									consumer.accept(rs.getInt(1), rs.getString(2));
+								}
+							}
+						}
+					}
+
+					commitTransaction(conn);
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw e instanceof DbException ? (DbException) e : new DbException(e);
+				}
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param count
+	 * @return FETCH_NAMES_SQL limited to count project IDs.
+	 */
+	static String fetchNamesSql(int count) {
+		return FETCH_NAMES_SQL + " AND project_id IN (" + String.join(", ", Collections.nCopies(count, "?")) + ")";
+	}
+}
@@ -0,0 +1,231 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import projects.exception.DbException;
+import provided.util.DaoBase;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Background purger for soft-deleted projects. ProjectDao only marks a
+ *         project as deleted; this class later removes its steps, materials,
+ *         category links and work log a few rows at a time, each batch in its
+ *         own short transaction with a pause in between, and finally replaces
+ *         the project row with a tombstone for the change feed. Locks are held
+ *         for one small batch at a time, so concurrent writers are never
+ *         stalled behind a large cascade. Tombstones older than
+ *         projects.sync.tombstoneDays are pruned after each purge.
+ *
+ *         A purge runs when the purger is started, to pick up anything left from
+ *         a previous run, and again each time {@link #requestPurge()} is called
+ *         after a delete. Requests made while a purge is waiting to run are
+ *         merged into it.
+ *
+ *         Settings are system properties: projects.purge.batchSize (500 rows)
+ *         and projects.purge.pauseMillis (50 between batches).
+ */
+public class ProjectPurger extends DaoBase {
+	private static final String PROJECT_TABLE = "project";
+	private static final String TOMBSTONE_TABLE = "project_tombstone";
+	private static final List<String> CHILD_TABLES = List.of("step", "material", "project_category", "work_log",
+			"work_log_rollup");
+
+	// @formatter:off
+	static final String FETCH_DELETED_SQL = ""
+			+ "SELECT project_id FROM " + PROJECT_TABLE + " "
+			+ "WHERE deleted_at IS NOT NULL "
+			+ "ORDER BY deleted_at LIMIT 100";
+
+	static final String TOMBSTONE_SQL = ""
+			+ "INSERT IGNORE INTO " + TOMBSTONE_TABLE + " (project_id, last_modified) "
+			+ "SELECT project_id, last_modified FROM " + PROJECT_TABLE + " "
+			+ "WHERE project_id = ? AND deleted_at IS NOT NULL";
+
+	static final String PRUNE_TOMBSTONES_SQL = ""
+			+ "DELETE FROM " + TOMBSTONE_TABLE + " "
+			+ "WHERE last_modified < NOW(6) - INTERVAL ? DAY LIMIT ?";
+	// @formatter:on
+
+	private static final int BATCH_SIZE = Integer.getInteger("projects.purge.batchSize", 500);
+	private static final long PAUSE_MILLIS = Long.getLong("projects.purge.pauseMillis", 50);
+
+	private static final ProjectPurger instance = new ProjectPurger();
+
+	private ExecutorService executor;
+	private AtomicBoolean queued = new AtomicBoolean();
+
+	private ProjectPurger() {
+	}
+
+	public static ProjectPurger getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Starts the daemon purge thread and queues an initial purge. Calling this
+	 * more than once has no effect.
+	 */
+	public synchronized void start() {
+		if (executor != null) {
+			return;
+		}
+
+		executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "project-purger");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		requestPurge();
+	}
+
+	/**
+	 * Stops the purge thread. A batch that is running is allowed to finish.
+	 */
+	public synchronized void stop() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	/**
+	 * Queues a purge on the purge thread unless one is already waiting. Does
+	 * nothing if the purger has not been started.
+	 */
+	public synchronized void requestPurge() {
+		if (executor != null && queued.compareAndSet(false, true)) {
+			executor.execute(() -> {
+				queued.set(false);
+				purgeSafely();
+			});
+		}
+	}
+
+	/**
+	 *
+	 * @return Purges every project that is currently soft-deleted, on every
+	 *         shard, and returns the number of projects removed.
+	 */
+	public int purge() {
+		int purged = 0;
+
+		for (int shard = 0; shard < DbConnection.getShardCount() && !Thread.currentThread().isInterrupted(); shard++) {
+			purged += purge(shard);
+		}
+
+		return purged;
+	}
+
+	private int purge(int shard) {
+		int purged = 0;
+
+		try (Connection conn = DbConnection.getConnection(shard)) {
+			List<Integer> projectIds;
+
+			while (!(projectIds = fetchDeletedProjectIds(conn)).isEmpty()) {
+				for (Integer projectId : projectIds) {
+					purgeProject(conn, projectId);
+					purged++;
+				}
+			}
+
+			pruneTombstones(conn);
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		return purged;
+	}
+
+	private void purgeSafely() {
+		try {
+			purge();
+		} catch (DbException e) {
+			System.err.println("Project purge failed: " + e.getMessage());
+		}
+	}
+
+	private List<Integer> fetchDeletedProjectIds(Connection conn) throws SQLException {
+		String sql = FETCH_DELETED_SQL;
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			try (ResultSet rs = stmt.executeQuery()) {
+				List<Integer> projectIds = new LinkedList<>();
+
+				while (rs.next()) {
+					projectIds.add(rs.getInt(1));
+				}
+
+				return projectIds;
+			}
+		}
+	}
+
+	/*
+	 * Deletes the children of one project in batches, then the project itself.
+	 * The connection is in auto-commit mode, so each batch is its own
+	 * transaction.
+	 */
+	private void purgeProject(Connection conn, Integer projectId) throws SQLException, InterruptedException {
+		for (String table : CHILD_TABLES) {
+			String sql = "DELETE FROM " + table + " WHERE project_id = ? LIMIT " + BATCH_SIZE;
+
+			while (executeForProject(conn, sql, projectId) == BATCH_SIZE) {
+				Thread.sleep(PAUSE_MILLIS);
+			}
+		}
+
+		String sql = "DELETE FROM " + PROJECT_TABLE + " WHERE project_id = ? AND deleted_at IS NOT NULL";
+
+		/*
+		 * The tombstone takes the project's place in the change feed, so both
+		 * are written in one transaction.
+		 */
+		startTransaction(conn);
+
+		try {
+			executeForProject(conn, TOMBSTONE_SQL, projectId);
+			executeForProject(conn, sql, projectId);
+			commitTransaction(conn);
+		} catch (SQLException e) {
+			rollbackTransaction(conn);
+			throw e;
+		} finally {
+			conn.setAutoCommit(true);
+		}
+
+		Thread.sleep(PAUSE_MILLIS);
+	}
+
+	private void pruneTombstones(Connection conn) throws SQLException, InterruptedException {
+		try (PreparedStatement stmt = conn.prepareStatement(PRUNE_TOMBSTONES_SQL)) {
+			setParameter(stmt, 1, ChangeFeedDao.TOMBSTONE_DAYS, Integer.class);
+			setParameter(stmt, 2, BATCH_SIZE, Integer.class);
+
+			while (stmt.executeUpdate() == BATCH_SIZE) {
+				Thread.sleep(PAUSE_MILLIS);
+			}
+		}
+	}
+
+	private int executeForProject(Connection conn, String sql, Integer projectId) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			setParameter(stmt, 1, projectId, Integer.class);
+
+			return stmt.executeUpdate();
+		}
+	}
+}
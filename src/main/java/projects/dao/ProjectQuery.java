@@ -0,0 +1,239 @@
+package projects.dao;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import projects.entity.Project;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Builds a project search that runs entirely in the database. Criteria
+ *         are joined with AND and compiled to a parameterized SELECT, so only
+ *         the matching rows are sent back.
+ *
+ *         <pre>
+ *         ProjectQuery.where(difficultyBetween(2, 4))
+ *             .and(inCategory("Woodworking"))
+ *             .orderBy(Order.desc(Field.OVERRUN))
+ *             .limit(20);
+ *         </pre>
+ *
+ *         Soft-deleted projects are always excluded.
+ */
+public class ProjectQuery {
+
+	private final List<Criterion> criteria = new ArrayList<>();
+	private final List<Order> orders = new ArrayList<>();
+	private Integer limit;
+
+	private ProjectQuery() {
+	}
+
+	/**
+	 *
+	 * @return A query that matches every project.
+	 */
+	public static ProjectQuery all() {
+		return new ProjectQuery();
+	}
+
+	/**
+	 *
+	 * @param criterion
+	 * @return A query with a single criterion.
+	 */
+	public static ProjectQuery where(Criterion criterion) {
+		return new ProjectQuery().and(criterion);
+	}
+
+	public ProjectQuery and(Criterion criterion) {
+		criteria.add(Objects.requireNonNull(criterion));
+		return this;
+	}
+
+	/**
+	 *
+	 * @param orders
+	 * @return Sorts by the given orders, in sequence. Ties are broken by
+	 *         project ID so that paging is stable.
+	 */
+	public ProjectQuery orderBy(Order... orders) {
+		Collections.addAll(this.orders, orders);
+		return this;
+	}
+
+	public ProjectQuery limit(int limit) {
+		if (limit < 0) {
+			throw new IllegalArgumentException("The limit cannot be negative.");
+		}
+
+		this.limit = limit;
+		return this;
+	}
+
+	/**
+	 *
+	 * @param table
+	 * @return The compiled SELECT statement.
+	 */
+	String toSql(String table) {
+		StringBuilder sql = new StringBuilder("SELECT p.* FROM ").append(table).append(" p WHERE p.deleted_at IS NULL");
+
+		for (Criterion criterion : criteria) {
+			sql.append(" AND ").append(criterion.getSql());
+		}
+
+		if (!orders.isEmpty()) {
+			sql.append(" ORDER BY ");
+
+			for (Order order : orders) {
+				sql.append(order.field.column).append(order.ascending ? " ASC, " : " DESC, ");
+			}
+
+			sql.append("p.project_id");
+		}
+
+		if (Objects.nonNull(limit)) {
+			sql.append(" LIMIT ?");
+		}
+
+		return sql.toString();
+	}
+
+	boolean isOrdered() {
+		return !orders.isEmpty();
+	}
+
+	Integer getLimit() {
+		return limit;
+	}
+
+	/**
+	 *
+	 * @return The ORDER BY of the compiled statement as a comparator, for merging
+	 *         results sorted by the database.
+	 */
+	Comparator<Project> comparator() {
+		Comparator<Project> comparator = (left, right) -> 0;
+
+		for (Order order : orders) {
+			comparator = comparator.thenComparing(order.comparator());
+		}
+
+		return comparator.thenComparing(Project::getProjectId);
+	}
+
+	/**
+	 *
+	 * @return The values to bind, in placeholder order.
+	 */
+	List<Object> getValues() {
+		List<Object> values = new ArrayList<>();
+
+		criteria.forEach(criterion -> values.addAll(criterion.getValues()));
+
+		if (Objects.nonNull(limit)) {
+			values.add(limit);
+		}
+
+		return values;
+	}
+
+	/**
+	 *
+	 * @return The Java types of the values to bind, in placeholder order.
+	 */
+	List<Class<?>> getTypes() {
+		List<Class<?>> types = new ArrayList<>();
+
+		criteria.forEach(criterion -> types.addAll(criterion.getTypes()));
+
+		if (Objects.nonNull(limit)) {
+			types.add(Integer.class);
+		}
+
+		return types;
+	}
+
+	/**
+	 * Sortable project columns.
+	 */
+	public enum Field {
+		NAME("p.project_name"),
+		DIFFICULTY("p.difficulty"),
+		ESTIMATED_HOURS("p.estimated_hours"),
+		ACTUAL_HOURS("p.actual_hours"),
+		OVERRUN("p.overrun_hours");
+
+		private final String column;
+
+		Field(String column) {
+			this.column = column;
+		}
+
+		/*
+		 * Nulls sort first, as MySQL sorts them in ascending order.
+		 */
+		private Comparator<Project> comparator() {
+			switch (this) {
+			case NAME:
+				return Comparator.comparing(Project::getProjectName,
+						Comparator.nullsFirst(NameCollation.ORDER));
+			case DIFFICULTY:
+				return Comparator.comparing(Project::getDifficulty, Comparator.nullsFirst(Comparator.naturalOrder()));
+			case ESTIMATED_HOURS:
+				return Comparator.comparing(Project::getEstimatedHours, Comparator.nullsFirst(Comparator.naturalOrder()));
+			case ACTUAL_HOURS:
+				return Comparator.comparing(Project::getActualHours, Comparator.nullsFirst(Comparator.naturalOrder()));
+			case OVERRUN:
+				return Comparator.comparing(Field::overrun, Comparator.nullsFirst(Comparator.naturalOrder()));
+			default:
+				throw new IllegalStateException("Unknown field: " + this);
+			}
+		}
+
+		private static BigDecimal overrun(Project project) {
+			if (Objects.isNull(project.getActualHours()) || Objects.isNull(project.getEstimatedHours())) {
+				return null;
+			}
+
+			return project.getActualHours().subtract(project.getEstimatedHours());
+		}
+	}
+
+	/**
+	 * A sort direction on one field.
+	 */
+	public static class Order {
+		private final Field field;
+		private final boolean ascending;
+
+		private Order(Field field, boolean ascending) {
+			this.field = field;
+			this.ascending = ascending;
+		}
+
+		public static Order asc(Field field) {
+			return new Order(field, true);
+		}
+
+		public static Order desc(Field field) {
+			return new Order(field, false);
+		}
+
+		/*
+		 * Descending order reverses the nulls too, matching MySQL, which sorts
+		 * nulls last in descending order.
+		 */
+		Comparator<Project> comparator() {
+			Comparator<Project> comparator = field.comparator();
+			return ascending ? comparator : comparator.reversed();
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package projects.dao;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import projects.entity.ChildLoader.Child;
+import projects.exception.DbException;
+import provided.util.DaoBase;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Runs EXPLAIN on the statements the DAOs issue and reports any that
+ *         read a whole table or sort rows outside an index. The statements are
+ *         the fixed SQL of every DAO, with a small sample of each statement
+ *         that is built for a list of IDs or names, plus one sample query per
+ *         {@link Criterion}.
+ *
+ *         On a small table the optimizer may prefer a full scan even when an
+ *         index exists, so a plan row is only reported when its estimated row
+ *         count is at least projects.plancheck.minRows (1000). Statements that
+ *         are meant to read every live project are allowed to scan.
+ *
+ *         Plans are checked on shard 0. Every shard has the same schema, so a
+ *         plan that is bad there is bad everywhere.
+ */
+public class QueryPlanChecker extends DaoBase {
+	private static final long MIN_ROWS = Long.getLong("projects.plancheck.minRows", 1000);
+
+	/**
+	 *
+	 * @return One message per bad plan row; empty if every plan is acceptable.
+	 */
+	public List<String> check() {
+		List<String> violations = new ArrayList<>();
+
+		try (Connection conn = DbConnection.getConnection()) {
+			for (Sample sample : samples()) {
+				explain(conn, sample, violations);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+
+		return violations;
+	}
+
+	// @formatter:off
+	private List<Sample> samples() {
+		List<Sample> samples = new ArrayList<>();
+
+		samples.add(new Sample("ProjectDao.FETCH_ALL_SQL", ProjectDao.FETCH_ALL_SQL));
+		samples.add(new Sample("ProjectDao.FETCH_BY_ID_SQL", ProjectDao.FETCH_BY_ID_SQL));
+		samples.add(new Sample("ProjectDao.FETCH_COLUMNS_SQL", ProjectDao.FETCH_COLUMNS_SQL).allowScan());
+		samples.add(new Sample("ProjectDao.MODIFY_SQL", ProjectDao.MODIFY_SQL));
+		samples.add(new Sample("ProjectDao.PATCH_SQL", ProjectDao.PATCH_SQL));
+		samples.add(new Sample("ProjectDao.SOFT_DELETE_SQL", ProjectDao.SOFT_DELETE_SQL));
+		samples.add(new Sample("ProjectDao.CLONE_PROJECT_SQL", ProjectDao.CLONE_PROJECT_SQL));
+		samples.add(new Sample("ProjectDao.CLONE_STEPS_SQL", ProjectDao.CLONE_STEPS_SQL));
+		samples.add(new Sample("ProjectDao.CLONE_MATERIALS_SQL", ProjectDao.CLONE_MATERIALS_SQL));
+		samples.add(new Sample("ProjectDao.CLONE_CATEGORIES_SQL", ProjectDao.CLONE_CATEGORIES_SQL));
+		samples.add(new Sample("ProjectDao.LINK_CATEGORY_SQL", ProjectDao.LINK_CATEGORY_SQL));
+		samples.add(new Sample("ProjectDao.UNLINK_CATEGORY_SQL", ProjectDao.UNLINK_CATEGORY_SQL));
+		samples.add(new Sample("ProjectDao.lockLiveSql", ProjectDao.lockLiveSql(3)));
+		samples.add(new Sample("ProjectDao.lockRowsSql", ProjectDao.lockRowsSql(3)));
+		samples.add(new Sample("ProjectDao.categoryLinksSql", ProjectDao.categoryLinksSql(3)));
+		samples.add(new Sample("ProjectDao.touchSql", ProjectDao.touchSql(3)));
+		samples.add(new Sample("WorkLogDao.INSERT_SQL", WorkLogDao.INSERT_SQL));
+		samples.add(new Sample("WorkLogDao.ADD_TO_ROLLUP_SQL", WorkLogDao.ADD_TO_ROLLUP_SQL));
+		samples.add(new Sample("WorkLogDao.FETCH_ROLLUP_SQL", WorkLogDao.FETCH_ROLLUP_SQL));
+		samples.add(new Sample("WorkLogDao.SET_ACTUAL_HOURS_SQL", WorkLogDao.SET_ACTUAL_HOURS_SQL));
+		samples.add(new Sample("WorkLogDao.dailyTotalsSql", WorkLogDao.dailyTotalsSql(3)));
+		samples.add(new Sample("AuditDao.INSERT_SQL", AuditDao.INSERT_SQL));
+		samples.add(new Sample("JournalDao.RECORD_APPLIED_SQL", JournalDao.RECORD_APPLIED_SQL));
+		samples.add(new Sample("SimilarityDao.MATERIAL_FEATURES_SQL", SimilarityDao.MATERIAL_FEATURES_SQL).allowScan());
+		samples.add(new Sample("SimilarityDao.CATEGORY_FEATURES_SQL", SimilarityDao.CATEGORY_FEATURES_SQL).allowScan());
+		samples.add(new Sample("SimilarityDao.materialFeaturesSql", SimilarityDao.materialFeaturesSql(3)));
+		samples.add(new Sample("SimilarityDao.categoryFeaturesSql", SimilarityDao.categoryFeaturesSql(3)));
+		samples.add(new Sample("ProjectNameDao.FETCH_NAMES_SQL", ProjectNameDao.FETCH_NAMES_SQL).allowScan());
+		samples.add(new Sample("ProjectNameDao.fetchNamesSql", ProjectNameDao.fetchNamesSql(3)));
+		samples.add(new Sample("MaterialCatalogDao.FETCH_ALL_SQL", MaterialCatalogDao.FETCH_ALL_SQL).allowScan());
+		samples.add(new Sample("MaterialCatalogDao.fetchByNameSql", MaterialCatalogDao.fetchByNameSql(3)));
+		samples.add(new Sample("MaterialCatalogDao.fetchByIdSql", MaterialCatalogDao.fetchByIdSql(3)));
+		samples.add(new Sample("BillOfMaterialsDao.totalsSql", BillOfMaterialsDao.totalsSql(3)));
+		samples.add(new Sample("ChangeFeedDao.CHANGED_PROJECTS_SQL", ChangeFeedDao.CHANGED_PROJECTS_SQL));
+		samples.add(new Sample("ChangeFeedDao.TOMBSTONES_SQL", ChangeFeedDao.TOMBSTONES_SQL));
+		samples.add(new Sample("OutboxDao.FETCH_OLDEST_SQL", OutboxDao.FETCH_OLDEST_SQL));
+		samples.add(new Sample("OutboxDao.pruneSql", OutboxDao.pruneSql(3)));
+		samples.add(new Sample("ProjectPurger.FETCH_DELETED_SQL", ProjectPurger.FETCH_DELETED_SQL));
+		samples.add(new Sample("ProjectPurger.TOMBSTONE_SQL", ProjectPurger.TOMBSTONE_SQL));
+		samples.add(new Sample("ProjectPurger.PRUNE_TOMBSTONES_SQL", ProjectPurger.PRUNE_TOMBSTONES_SQL));
+
+		for (Child child : Child.values()) {
+			samples.add(new Sample("BatchChildLoader " + child, BatchChildLoader.childSql(child, 3)));
+		}
+
+		BigDecimal ten = BigDecimal.TEN;
+
+		samples.add(new Sample("difficultyBetween", ProjectQuery.where(Criterion.difficultyBetween(2, 4))));
+		samples.add(new Sample("estimatedHoursBetween", ProjectQuery.where(Criterion.estimatedHoursBetween(ten, ten))));
+		samples.add(new Sample("actualHoursBetween", ProjectQuery.where(Criterion.actualHoursBetween(ten, ten))));
+		samples.add(new Sample("overrunAtLeast", ProjectQuery.where(Criterion.overrunAtLeast(ten))));
+		samples.add(new Sample("inCategory", ProjectQuery.where(Criterion.inCategory("Woodworking"))));
+		samples.add(new Sample("usesMaterial", ProjectQuery.where(Criterion.usesMaterial("Wood screws"))));
+		samples.add(new Sample("nameStartsWith", ProjectQuery.where(Criterion.nameStartsWith("Hang"))
+				.orderBy(ProjectQuery.Order.asc(ProjectQuery.Field.NAME))));
+
+		return samples;
+	}
+	// @formatter:on
+
+	private void explain(Connection conn, Sample sample, List<String> violations) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + sample.sql)) {
+			sample.bind(this, stmt);
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					String table = rs.getString("table");
+					String type = rs.getString("type");
+					String extra = Objects.toString(rs.getString("Extra"), "");
+					long rows = rs.getLong("rows");
+
+					if (rows < MIN_ROWS) {
+						continue;
+					}
+
+					if ("ALL".equals(type) && !sample.scanAllowed) {
+						violations.add(sample.name + ": full scan of " + table + " (" + rows + " rows)");
+					}
+
+					if (extra.contains("Using filesort")) {
+						violations.add(sample.name + ": filesort on " + table + " (" + rows + " rows)");
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * setParameter is protected in DaoBase; samples bind through the checker.
+	 */
+	private void bind(PreparedStatement stmt, int index, Object value, Class<?> type) throws SQLException {
+		setParameter(stmt, index, value, type);
+	}
+
+	/**
+	 * A statement to explain and the sample values to bind to it. Fixed
+	 * statements only filter on IDs and limits, so each placeholder is bound
+	 * to 1; the plan does not depend on the values being set.
+	 */
+	private static class Sample {
+		private final String name;
+		private final String sql;
+		private final List<Object> values;
+		private final List<Class<?>> types;
+		private boolean scanAllowed;
+
+		Sample(String name, String sql) {
+			this.name = name;
+			this.sql = sql;
+
+			int count = (int) sql.chars().filter(ch -> ch == '?').count();
+
+			this.values = Collections.<Object>nCopies(count, 1);
+			this.types = Collections.<Class<?>>nCopies(count, Integer.class);
+		}
+
+		Sample(String name, ProjectQuery query) {
+			this.name = "ProjectQuery " + name;
+			this.sql = query.toSql("project");
+			this.values = query.getValues();
+			this.types = query.getTypes();
+		}
+
+		Sample allowScan() {
+			scanAllowed = true;
+			return this;
+		}
+
+		void bind(QueryPlanChecker checker, PreparedStatement stmt) throws SQLException {
+			for (int pos = 0; pos < values.size(); pos++) {
+				checker.bind(stmt, pos + 1, values.get(pos), types.get(pos));
+			}
+		}
+	}
+}
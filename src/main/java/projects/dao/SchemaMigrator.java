@@ -0,0 +1,258 @@
+package projects.dao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import projects.exception.DbException;
+import provided.util.DaoBase;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Brings a database up to the current schema by applying the versioned
+ *         scripts in db/migration on the classpath. Each applied version is
+ *         recorded in the schema_version table with a checksum of its script,
+ *         so a script runs once per database and a script that was edited
+ *         after it was applied is reported instead of silently ignored.
+ *
+ *         Scripts are written to be safe on a database that already has some
+ *         of their changes, such as one created from projects-schema.sql:
+ *         tables are created with IF NOT EXISTS, and errors that only say a
+ *         column or index is already there are skipped.
+ *
+ *         Every shard is migrated, one after another. The ID sequence created
+ *         by V6 is only used on shard 0.
+ *
+ *         Run as a program on every deploy. After migrating it runs
+ *         {@link QueryPlanChecker} and exits with status 1 if any statement
+ *         has a bad plan.
+ */
+public class SchemaMigrator extends DaoBase {
+	private static final String VERSION_TABLE = "schema_version";
+	private static final String MIGRATION_PATH = "db/migration/";
+
+	/*
+	 * Scripts in version order. A new script is added to the end of this list;
+	 * an applied script is never changed.
+	 */
+	// @formatter:off
+	private static final List<String> MIGRATIONS = List.of(
+			"V1__baseline.sql",
+			"V2__soft_delete.sql",
+			"V3__search_indexes.sql",
+			"V4__outbox.sql",
+			"V5__query_plan_indexes.sql",
+			"V6__id_sequence.sql",
+			"V7__unique_category_name.sql",
+			"V8__work_log.sql",
+			"V9__audit_log.sql",
+			"V10__applied_journal.sql",
+			"V11__material_catalog.sql",
+			"V12__delta_sync.sql",
+			"V13__compress_text.sql"
+	);
+
+	private static final String CREATE_VERSION_TABLE_SQL = ""
+			+ "CREATE TABLE IF NOT EXISTS " + VERSION_TABLE + "("
+			+ "version INT NOT NULL, "
+			+ "description VARCHAR(128) NOT NULL, "
+			+ "checksum BIGINT NOT NULL, "
+			+ "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+			+ "PRIMARY KEY (version))";
+
+	private static final String FETCH_APPLIED_SQL = "SELECT version, checksum FROM " + VERSION_TABLE;
+
+	private static final String RECORD_SQL = ""
+			+ "INSERT INTO " + VERSION_TABLE + " (version, description, checksum) "
+			+ "VALUES (?, ?, ?)";
+	// @formatter:on
+
+	/*
+	 * MySQL errors that mean the change is already in place: table exists (1050),
+	 * duplicate column (1060), duplicate key name (1061), and can't drop a
+	 * missing column or key (1091).
+	 */
+	private static final Set<Integer> ALREADY_APPLIED_ERRORS = Set.of(1050, 1060, 1061, 1091);
+
+	/**
+	 *
+	 * @param args Migrates the database, then checks the query plans.
+	 */
+	public static void main(String[] args) {
+		SchemaMigrator migrator = new SchemaMigrator();
+
+		for (int shard = 0; shard < DbConnection.getShardCount(); shard++) {
+			List<Integer> applied = migrator.migrate(shard);
+
+			System.out.println("Shard " + shard + ": "
+					+ (applied.isEmpty() ? "schema is up to date." : "applied versions " + applied));
+		}
+
+		List<String> violations = new QueryPlanChecker().check();
+
+		if (!violations.isEmpty()) {
+			violations.forEach(System.err::println);
+			System.exit(1);
+		}
+
+		System.out.println("Query plans OK.");
+	}
+
+	/**
+	 *
+	 * @param shard
+	 * @return Applies every migration not yet recorded in the shard's
+	 *         schema_version, in order, and returns the versions that were
+	 *         applied.
+	 */
+	public List<Integer> migrate(int shard) {
+		try (Connection conn = DbConnection.getConnection(shard)) {
+			try (Statement stmt = conn.createStatement()) {
+				stmt.execute(CREATE_VERSION_TABLE_SQL);
+			}
+
+			Map<Integer, Long> appliedChecksums = fetchApplied(conn);
+			List<Integer> applied = new ArrayList<>();
+
+			for (String script : MIGRATIONS) {
+				int version = versionOf(script);
+				String text = readScript(script);
+				long checksum = checksum(text);
+				Long appliedChecksum = appliedChecksums.get(version);
+
+				if (Objects.nonNull(appliedChecksum)) {
+					if (appliedChecksum != checksum) {
+						throw new DbException("Migration " + script + " was changed after it was applied.");
+					}
+
+					continue;
+				}
+
+				apply(conn, version, descriptionOf(script), text, checksum);
+				applied.add(version);
+			}
+
+			return applied;
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	private Map<Integer, Long> fetchApplied(Connection conn) throws SQLException {
+		Map<Integer, Long> applied = new HashMap<>();
+
+		try (PreparedStatement stmt = conn.prepareStatement(FETCH_APPLIED_SQL)) {
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					applied.put(rs.getInt("version"), rs.getLong("checksum"));
+				}
+			}
+		}
+
+		return applied;
+	}
+
+	/*
+	 * MySQL commits DDL implicitly, so the transaction only covers the version
+	 * row. A script that fails part way is safe to rerun because every
+	 * statement in it is idempotent.
+	 */
+	private void apply(Connection conn, int version, String description, String text, long checksum)
+			throws SQLException {
+		startTransaction(conn);
+
+		try {
+			try (Statement stmt = conn.createStatement()) {
+				for (String statement : splitStatements(text)) {
+					try {
+						stmt.execute(statement);
+					} catch (SQLException e) {
+						if (!ALREADY_APPLIED_ERRORS.contains(e.getErrorCode())) {
+							throw e;
+						}
+					}
+				}
+			}
+
+			try (PreparedStatement stmt = conn.prepareStatement(RECORD_SQL)) {
+				setParameter(stmt, 1, version, Integer.class);
+				setParameter(stmt, 2, description, String.class);
+				stmt.setLong(3, checksum);
+
+				stmt.executeUpdate();
+			}
+
+			commitTransaction(conn);
+		} catch (Exception e) {
+			rollbackTransaction(conn);
+			throw new DbException("Migration V" + version + " failed.", e);
+		}
+	}
+
+	/**
+	 *
+	 * @param text
+	 * @return The statements in a script. Lines starting with -- are comments;
+	 *         statements end with a semicolon.
+	 */
+	static List<String> splitStatements(String text) {
+		StringBuilder body = new StringBuilder();
+
+		for (String line : text.split("\\R")) {
+			if (!line.trim().startsWith("--")) {
+				body.append(line).append('\n');
+			}
+		}
+
+		List<String> statements = new ArrayList<>();
+
+		for (String statement : body.toString().split(";")) {
+			if (!statement.isBlank()) {
+				statements.add(statement.trim());
+			}
+		}
+
+		return statements;
+	}
+
+	private String readScript(String script) {
+		try (InputStream in = getClass().getClassLoader().getResourceAsStream(MIGRATION_PATH + script)) {
+			if (Objects.isNull(in)) {
+				throw new DbException("Migration " + script + " is not on the classpath.");
+			}
+
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new DbException("Unable to read migration " + script, e);
+		}
+	}
+
+	private long checksum(String text) {
+		CRC32 crc = new CRC32();
+
+		crc.update(text.getBytes(StandardCharsets.UTF_8));
+		return crc.getValue();
+	}
+
+	private int versionOf(String script) {
+		return Integer.parseInt(script.substring(1, script.indexOf("__")));
+	}
+
+	private String descriptionOf(String script) {
+		return script.substring(script.indexOf("__") + 2, script.lastIndexOf('.')).replace('_', ' ');
+	}
+}
@@ -0,0 +1,220 @@
+package projects.dao;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+import projects.exception.DbException;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Maps projects to shards and runs work on every shard at once.
+ *
+ *         A project's shard is a jump consistent hash of its ID over the number
+ *         of shards in {@link DbConnection}. The hash depends only on the ID
+ *         and the shard count, and when a shard is added only about 1/N of the
+ *         projects move to it; every other project keeps its shard. Projects
+ *         that move have to be copied to their new shard before the new shard
+ *         list is deployed.
+ */
+public final class ShardRouter {
+	private static final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "shard-scatter");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private ShardRouter() {
+	}
+
+	/**
+	 *
+	 * @param projectId
+	 * @return The shard that owns the project.
+	 */
+	public static int shardFor(int projectId) {
+		return jumpHash(projectId, DbConnection.getShardCount());
+	}
+
+	/**
+	 *
+	 * @param projectIds
+	 * @return The positions in the list of the projects on each shard, keyed by
+	 *         shard. Shards with no projects in the list are left out, and so are
+	 *         null IDs, which no shard can hold.
+	 */
+	static Map<Integer, List<Integer>> positionsByShard(List<Integer> projectIds) {
+		Map<Integer, List<Integer>> positions = new LinkedHashMap<>();
+
+		for (int pos = 0; pos < projectIds.size(); pos++) {
+			if (Objects.isNull(projectIds.get(pos))) {
+				continue;
+			}
+
+			positions.computeIfAbsent(shardFor(projectIds.get(pos)), shard -> new ArrayList<>()).add(pos);
+		}
+
+		return positions;
+	}
+
+	/**
+	 *
+	 * @param <T>
+	 * @param items
+	 * @param positions One shard's entry from {@link #positionsByShard(List)}.
+	 * @return The items at the given positions, or an empty list if positions is
+	 *         null because a shard has none of the items.
+	 */
+	static <T> List<T> select(List<T> items, List<Integer> positions) {
+		List<T> selected = new ArrayList<>();
+
+		if (Objects.nonNull(positions)) {
+			positions.forEach(pos -> selected.add(items.get(pos)));
+		}
+
+		return selected;
+	}
+
+	/**
+	 *
+	 * @param <T>
+	 * @param task
+	 * @return Runs the task for every shard in parallel and returns the results
+	 *         in shard order. With a single shard the task runs on the calling
+	 *         thread. If any shard fails, the first failure is thrown after every
+	 *         task has finished.
+	 */
+	static <T> List<T> scatter(IntFunction<T> task) {
+		int shardCount = DbConnection.getShardCount();
+
+		if (shardCount == 1) {
+			return List.of(task.apply(0));
+		}
+
+		List<Future<T>> futures = new ArrayList<>(shardCount);
+
+		for (int shard = 0; shard < shardCount; shard++) {
+			int target = shard;
+			futures.add(executor.submit(() -> task.apply(target)));
+		}
+
+		List<T> results = new ArrayList<>(shardCount);
+		RuntimeException failure = null;
+
+		for (Future<T> future : futures) {
+			try {
+				results.add(future.get());
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+							: new DbException(e.getCause());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new DbException(e);
+			}
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+
+		return results;
+	}
+
+	/**
+	 *
+	 * @param <T>
+	 * @param sortedLists
+	 * @param order
+	 * @return Merges lists that are each sorted by the given order into one
+	 *         sorted list, with a heap holding the head of each list. Takes
+	 *         O(n log k) comparisons for n items in k lists.
+	 */
+	static <T> List<T> merge(List<List<T>> sortedLists, Comparator<? super T> order) {
+		if (sortedLists.size() == 1) {
+			return sortedLists.get(0);
+		}
+
+		PriorityQueue<Cursor<T>> heads = new PriorityQueue<>(Math.max(1, sortedLists.size()),
+				(left, right) -> order.compare(left.head(), right.head()));
+		int total = 0;
+
+		for (List<T> list : sortedLists) {
+			total += list.size();
+
+			if (!list.isEmpty()) {
+				heads.add(new Cursor<>(list));
+			}
+		}
+
+		List<T> merged = new ArrayList<>(total);
+
+		while (!heads.isEmpty()) {
+			Cursor<T> cursor = heads.poll();
+
+			merged.add(cursor.head());
+
+			if (cursor.advance()) {
+				heads.add(cursor);
+			}
+		}
+
+		return merged;
+	}
+
+	/*
+	 * Lamping and Veach, "A Fast, Minimal Memory, Consistent Hash Algorithm".
+	 */
+	private static int jumpHash(long key, int buckets) {
+		long bucket = -1;
+		long next = 0;
+
+		while (next < buckets) {
+			bucket = next;
+			key = key * 2862933555777941757L + 1;
+			next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+		}
+
+		return (int) bucket;
+	}
+
+	/*
+	 * The next unmerged item of one of the lists being merged. Walks the list
+	 * with an iterator so that linked lists are not indexed.
+	 */
+	private static class Cursor<T> {
+		private final Iterator<T> items;
+		private T head;
+
+		Cursor(List<T> list) {
+			this.items = list.iterator();
+			this.head = items.next();
+		}
+
+		T head() {
+			return head;
+		}
+
+		boolean advance() {
+			if (!items.hasNext()) {
+				return false;
+			}
+
+			head = items.next();
+			return true;
+		}
+	}
+}
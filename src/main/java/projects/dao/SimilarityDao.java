@@ -0,0 +1,172 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import projects.exception.DbException;
+import provided.util.DaoBase;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Reads the features the similarity index compares projects on: the
+ *         names of a live project's materials and of its categories. Material
+ *         names are passed on prefixed with "m:" and category names with "c:",
+ *         so a material and a category with the same name are different
+ *         features.
+ *
+ *         Features are read from each shard's primary. The index is refreshed
+ *         right after a write, and a replica that has not caught up yet would
+ *         leave it with the old features until the next rebuild.
+ */
+public class SimilarityDao extends DaoBase {
+	public static final String MATERIAL_PREFIX = "m:";
+	public static final String CATEGORY_PREFIX = "c:";
+
+	private static final int CHUNK_SIZE = 500;
+
+	/**
+	 * Receives one feature of one project. A project's features arrive in no
+	 * particular order and may be mixed with other projects' features.
+	 */
+	@FunctionalInterface
+	public interface FeatureConsumer {
+		void accept(int projectId, String feature);
+	}
+
+	// @formatter:off
+	static final String MATERIAL_FEATURES_SQL = ""
+			+ "SELECT m.project_id, mc.material_name FROM material m "
+			+ "JOIN material_catalog mc ON mc.catalog_id = m.catalog_id "
+			+ "JOIN project p ON p.project_id = m.project_id "
+			+ "WHERE p.deleted_at IS NULL";
+
+	static final String CATEGORY_FEATURES_SQL = ""
+			+ "SELECT pc.project_id, c.category_name FROM project_category pc "
+			+ "JOIN category c ON c.category_id = pc.category_id "
+			+ "JOIN project p ON p.project_id = pc.project_id "
+			+ "WHERE p.deleted_at IS NULL";
+	// @formatter:on
+
+	/**
+	 *
+	 * @param consumer Streams the features of every live project on every
+	 *                 shard to the consumer, one shard at a time, without
+	 *                 holding them in memory.
+	 */
+	public void streamFeatures(FeatureConsumer consumer) {
+		for (int shard = 0; shard < DbConnection.getShardCount(); shard++) {
+			try (Connection conn = DbConnection.getConnection(shard)) {
+				startTransaction(conn);
+
+				try {
+					streamFeatures(conn, MATERIAL_FEATURES_SQL, MATERIAL_PREFIX, consumer);
+					streamFeatures(conn, CATEGORY_FEATURES_SQL, CATEGORY_PREFIX, consumer);
+					commitTransaction(conn);
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw e instanceof DbException ? (DbException) e : new DbException(e);
+				}
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}
+	}
+
+	private void streamFeatures(Connection conn, String sql, String prefix, FeatureConsumer consumer)
+			throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+				ResultSet.CONCUR_READ_ONLY)) {
+			stmt.setFetchSize(Integer.MIN_VALUE);
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					consumer.accept(rs.getInt(1), prefix + rs.getString(2));
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param projectIds
+	 * @param consumer   Passes the features of the given projects to the
+	 *                   consumer. Projects that are deleted, or have no
+	 *                   materials or categories, pass nothing.
+	 */
+	public void fetchFeatures(Collection<Integer> projectIds, FeatureConsumer consumer) {
+		List<Integer> ids = new ArrayList<>(projectIds);
+		Map<Integer, List<Integer>> positions = ShardRouter.positionsByShard(ids);
+
+		for (Map.Entry<Integer, List<Integer>> entry : positions.entrySet()) {
+			List<Integer> shardIds = new ArrayList<>(entry.getValue().size());
+
+			entry.getValue().forEach(pos -> shardIds.add(ids.get(pos)));
+
+			try (Connection conn = DbConnection.getConnection(entry.getKey())) {
+				startTransaction(conn);
+
+				try {
+					for (int from = 0; from < shardIds.size(); from += CHUNK_SIZE) {
+						List<Integer> chunk = shardIds.subList(from, Math.min(from + CHUNK_SIZE, shardIds.size()));
+
+						fetchFeatures(conn, materialFeaturesSql(chunk.size()), chunk, MATERIAL_PREFIX, consumer);
+						fetchFeatures(conn, categoryFeaturesSql(chunk.size()), chunk, CATEGORY_PREFIX, consumer);
+					}
+
+					commitTransaction(conn);
+				} catch (Exception e) {
+					rollbackTransaction(conn);
+					throw e instanceof DbException ? (DbException) e : new DbException(e);
+				}
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}
+	}
+
+	private void fetchFeatures(Connection conn, String sql, List<Integer> projectIds, String prefix,
+			FeatureConsumer consumer) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			for (int pos = 0; pos < projectIds.size(); pos++) {
+				setParameter(stmt, pos + 1, projectIds.get(pos), Integer.class);
+			}
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					consumer.accept(rs.getInt(1), prefix + rs.getString(2));
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param count
+	 * @return MATERIAL_FEATURES_SQL limited to count project IDs.
+	 */
+	static String materialFeaturesSql(int count) {
+		return MATERIAL_FEATURES_SQL + " AND m.project_id IN (" + placeholders(count) + ")";
+	}
+
+	/**
+	 *
+	 * @param count
+	 * @return CATEGORY_FEATURES_SQL limited to count project IDs.
+	 */
+	static String categoryFeaturesSql(int count) {
+		return CATEGORY_FEATURES_SQL + " AND pc.project_id IN (" + placeholders(count) + ")";
+	}
+
+	private static String placeholders(int count) {
+		return String.join(", ", Collections.nCopies(count, "?"));
+	}
+}
@@ -0,0 +1,470 @@
+package projects.dao;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import projects.entity.ColumnLimits;
+import projects.entity.Project;
+import projects.entity.WorkLogEntry;
+import projects.exception.DbException;
+import provided.util.DaoBase;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Data access for the work log. Time entries are only ever appended,
+ *         as multi-row inserts, and never update the project row. In the same
+ *         transaction the entries are added to per-project rollups by day and
+ *         by week, so totals never have to be computed from the raw entries.
+ *         A project's actual_hours is derived from its daily rollups by
+ *         {@link #refreshActualHours(Collection)}, which callers run every so
+ *         often for the projects that have new entries instead of once per
+ *         entry.
+ *
+ *         work_log is partitioned by month. {@link #maintainPartitions(int, int)}
+ *         adds the partitions for the coming months and drops the ones older
+ *         than the retention period; the rollups are kept.
+ */
+public class WorkLogDao extends DaoBase {
+	private static final String PROJECT_TABLE = "project";
+	private static final String ROLLUP_TABLE = "work_log_rollup";
+	private static final String WORK_LOG_TABLE = "work_log";
+	private static final String FUTURE_PARTITION = "p_future";
+	private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+	private static final int ID_CHUNK_SIZE = 500;
+
+	/**
+	 * The length of time a rollup row covers. Weeks start on Monday.
+	 */
+	public enum Period {
+		DAY, WEEK;
+
+		/**
+		 *
+		 * @param date
+		 * @return The first day of the period that contains the date.
+		 */
+		public LocalDate startOf(LocalDate date) {
+			return this == DAY ? date : date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+		}
+	}
+
+	// @formatter:off
+	static final String INSERT_SQL = ""
+			+ "INSERT INTO " + WORK_LOG_TABLE + " (project_id, logged_at, hours, note) "
+			+ "VALUES (?, ?, ?, ?)";
+
+	static final String ADD_TO_ROLLUP_SQL = ""
+			+ "INSERT INTO " + ROLLUP_TABLE + " (project_id, period, period_start, hours, entries) "
+			+ "VALUES (?, ?, ?, ?, ?) "
+			+ "ON DUPLICATE KEY UPDATE hours = hours + VALUES(hours), entries = entries + VALUES(entries)";
+
+	static final String FETCH_ROLLUP_SQL = ""
+			+ "SELECT period_start, hours FROM " + ROLLUP_TABLE + " "
+			+ "WHERE project_id = ? AND period = ? AND period_start BETWEEN ? AND ? "
+			+ "ORDER BY period_start";
+
+	static final String SET_ACTUAL_HOURS_SQL = ""
+			+ "UPDATE " + PROJECT_TABLE + " SET actual_hours = ? "
+			+ "WHERE project_id = ? AND deleted_at IS NULL AND NOT (actual_hours <=> ?)";
+
+	private static final String FETCH_PARTITIONS_SQL = ""
+			+ "SELECT partition_name FROM information_schema.partitions "
+			+ "WHERE table_schema = DATABASE() AND table_name = '" + WORK_LOG_TABLE + "' "
+			+ "AND partition_name IS NOT NULL";
+	// @formatter:on
+
+	private OutboxDao outboxDao = new OutboxDao();
+
+	/**
+	 *
+	 * @param entries
+	 * @throws DbException Appends the entries to the work log. Each shard's
+	 *                     entries are written with one multi-row insert, and the
+	 *                     day and week rollups they fall in are updated with one
+	 *                     upsert per rollup row, in the same transaction. Shards
+	 *                     are written in parallel. A correction is logged as an
+	 *                     entry with negative hours.
+	 */
+	public void appendEntries(List<WorkLogEntry> entries) {
+		List<Integer> projectIds = new ArrayList<>(entries.size());
+
+		for (WorkLogEntry entry : entries) {
+			if (Objects.isNull(entry.getProjectId()) || Objects.isNull(entry.getLoggedAt())
+					|| Objects.isNull(entry.getHours())) {
+				throw new DbException("A work log entry needs a project ID, a time and hours: " + entry);
+			}
+
+			ColumnLimits.checkWorkLogEntry(entry);
+			projectIds.add(entry.getProjectId());
+		}
+
+		if (entries.isEmpty()) {
+			return;
+		}
+
+		Map<Integer, List<Integer>> positions = ShardRouter.positionsByShard(projectIds);
+
+		ShardRouter.scatter(shard -> appendEntries(shard, ShardRouter.select(entries, positions.get(shard))));
+	}
+
+	private Void appendEntries(int shard, List<WorkLogEntry> entries) {
+		if (entries.isEmpty()) {
+			return null;
+		}
+
+		try (Connection conn = DbConnection.getConnection(shard)) {
+			startTransaction(conn);
+
+			try {
+				try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+					for (WorkLogEntry entry : entries) {
+						setParameter(stmt, 1, entry.getProjectId(), Integer.class);
+						stmt.setObject(2, entry.getLoggedAt());
+						setParameter(stmt, 3, entry.getHours(), BigDecimal.class);
+						setParameter(stmt, 4, entry.getNote(), String.class);
+						stmt.addBatch();
+					}
+
+					stmt.executeBatch();
+				}
+
+				addToRollups(conn, entries);
+				commitTransaction(conn);
+				return null;
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/*
+	 * Entries for the same rollup row are summed first, so a busy project costs
+	 * one upsert per day and week in the batch. Rows are written in key order
+	 * so that concurrent writers lock them in the same order and cannot
+	 * deadlock.
+	 */
+	private void addToRollups(Connection conn, List<WorkLogEntry> entries) throws SQLException {
+		Map<RollupKey, RollupTotal> totals = new TreeMap<>();
+
+		for (WorkLogEntry entry : entries) {
+			LocalDate date = entry.getLoggedAt().toLocalDate();
+
+			for (Period period : Period.values()) {
+				totals.computeIfAbsent(new RollupKey(entry.getProjectId(), period, period.startOf(date)),
+						key -> new RollupTotal()).add(entry.getHours());
+			}
+		}
+
+		try (PreparedStatement stmt = conn.prepareStatement(ADD_TO_ROLLUP_SQL)) {
+			for (Map.Entry<RollupKey, RollupTotal> total : totals.entrySet()) {
+				RollupKey key = total.getKey();
+
+				setParameter(stmt, 1, key.projectId, Integer.class);
+				setParameter(stmt, 2, key.period.name(), String.class);
+				stmt.setObject(3, key.periodStart);
+				setParameter(stmt, 4, total.getValue().hours, BigDecimal.class);
+				setParameter(stmt, 5, total.getValue().entries, Integer.class);
+				stmt.addBatch();
+			}
+
+			stmt.executeBatch();
+		}
+	}
+
+	/**
+	 *
+	 * @param projectId
+	 * @param period
+	 * @param from
+	 * @param to
+	 * @return The hours logged on the project in each period that starts between
+	 *         from and to, inclusive, keyed by the start of the period. Periods
+	 *         with no entries are left out.
+	 */
+	public Map<LocalDate, BigDecimal> fetchRollup(Integer projectId, Period period, LocalDate from, LocalDate to) {
+		Map<LocalDate, BigDecimal> hours = new TreeMap<>();
+
+		if (Objects.isNull(projectId)) {
+			return hours;
+		}
+
+		try (Connection conn = DbConnection.getReadConnection(ShardRouter.shardFor(projectId))) {
+			try (PreparedStatement stmt = conn.prepareStatement(FETCH_ROLLUP_SQL)) {
+				setParameter(stmt, 1, projectId, Integer.class);
+				setParameter(stmt, 2, period.name(), String.class);
+				stmt.setObject(3, from);
+				stmt.setObject(4, to);
+
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						hours.put(rs.getObject("period_start", LocalDate.class), rs.getBigDecimal("hours"));
+					}
+				}
+			}
+
+			return hours;
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 *
+	 * @param projectIds
+	 * @return Sets actual_hours of each given project to the sum of its daily
+	 *         rollups, and returns the number of projects whose hours changed.
+	 *         Projects with no logged time and deleted projects are left alone.
+	 *         A PROJECT_UPDATED record with only the new hours is written for
+	 *         each changed project.
+	 */
+	public int refreshActualHours(Collection<Integer> projectIds) {
+		List<Integer> ids = new ArrayList<>(new TreeSet<>(projectIds));
+
+		if (ids.isEmpty()) {
+			return 0;
+		}
+
+		Map<Integer, List<Integer>> positions = ShardRouter.positionsByShard(ids);
+
+		return ShardRouter.scatter(shard -> refreshActualHours(shard, ShardRouter.select(ids, positions.get(shard))))
+				.stream().mapToInt(Integer::intValue).sum();
+	}
+
+	private Integer refreshActualHours(int shard, List<Integer> projectIds) {
+		if (projectIds.isEmpty()) {
+			return 0;
+		}
+
+		try (Connection conn = DbConnection.getConnection(shard)) {
+			startTransaction(conn);
+
+			try {
+				List<Project> changed = new ArrayList<>();
+
+				for (int from = 0; from < projectIds.size(); from += ID_CHUNK_SIZE) {
+					List<Integer> chunk = projectIds.subList(from, Math.min(from + ID_CHUNK_SIZE, projectIds.size()));
+
+					changed.addAll(setActualHours(conn, fetchDailyTotals(conn, chunk)));
+				}
+
+				outboxDao.appendProjectEvents(conn, OutboxDao.PROJECT_UPDATED, changed);
+				commitTransaction(conn);
+
+				return changed.size();
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	private Map<Integer, BigDecimal> fetchDailyTotals(Connection conn, List<Integer> projectIds)
+			throws SQLException {
+		Map<Integer, BigDecimal> totals = new TreeMap<>();
+
+		try (PreparedStatement stmt = conn.prepareStatement(dailyTotalsSql(projectIds.size()))) {
+			setParameter(stmt, 1, Period.DAY.name(), String.class);
+
+			for (int pos = 0; pos < projectIds.size(); pos++) {
+				setParameter(stmt, pos + 2, projectIds.get(pos), Integer.class);
+			}
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					totals.put(rs.getInt("project_id"), rs.getBigDecimal("total_hours"));
+				}
+			}
+		}
+
+		return totals;
+	}
+
+	/*
+	 * The update skips rows that already hold the total, so the batch counts
+	 * tell which projects changed.
+	 */
+	private List<Project> setActualHours(Connection conn, Map<Integer, BigDecimal> totals) throws SQLException {
+		List<Project> projects = new ArrayList<>(totals.size());
+
+		if (totals.isEmpty()) {
+			return projects;
+		}
+
+		try (PreparedStatement stmt = conn.prepareStatement(SET_ACTUAL_HOURS_SQL)) {
+			for (Map.Entry<Integer, BigDecimal> total : totals.entrySet()) {
+				Project project = new Project();
+
+				project.setProjectId(total.getKey());
+				project.setActualHours(total.getValue());
+				projects.add(project);
+
+				setParameter(stmt, 1, total.getValue(), BigDecimal.class);
+				setParameter(stmt, 2, total.getKey(), Integer.class);
+				setParameter(stmt, 3, total.getValue(), BigDecimal.class);
+				stmt.addBatch();
+			}
+
+			int[] counts = stmt.executeBatch();
+			List<Project> changed = new ArrayList<>();
+
+			for (int pos = 0; pos < counts.length; pos++) {
+				if (counts[pos] != 0) {
+					changed.add(projects.get(pos));
+				}
+			}
+
+			return changed;
+		}
+	}
+
+	/**
+	 *
+	 * @param count
+	 * @return The SELECT for the daily rollup totals of count projects.
+	 */
+	static String dailyTotalsSql(int count) {
+		return "SELECT project_id, SUM(hours) AS total_hours FROM " + ROLLUP_TABLE
+				+ " WHERE period = ? AND project_id IN (" + String.join(", ", Collections.nCopies(count, "?"))
+				+ ") GROUP BY project_id";
+	}
+
+	/**
+	 *
+	 * @param monthsAhead
+	 * @param retentionMonths
+	 * @throws DbException On every shard, makes sure work_log has a partition
+	 *                     for this month and each of the next monthsAhead months,
+	 *                     and drops the monthly partitions that ended more than
+	 *                     retentionMonths months ago. Dropping a partition
+	 *                     removes its entries at once, without deleting rows.
+	 */
+	public void maintainPartitions(int monthsAhead, int retentionMonths) {
+		YearMonth current = YearMonth.now();
+
+		for (int shard = 0; shard < DbConnection.getShardCount(); shard++) {
+			maintainPartitions(shard, current, monthsAhead, retentionMonths);
+		}
+	}
+
+	private void maintainPartitions(int shard, YearMonth current, int monthsAhead, int retentionMonths) {
+		try (Connection conn = DbConnection.getConnection(shard)) {
+			List<YearMonth> months = fetchMonthPartitions(conn);
+			YearMonth oldestKept = current.minusMonths(Math.max(1, retentionMonths));
+
+			/*
+			 * New months can only be split off the top of the range, so they start
+			 * after the newest month that already has a partition.
+			 */
+			YearMonth first = months.isEmpty() ? current : months.get(months.size() - 1).plusMonths(1);
+			List<String> added = new ArrayList<>();
+
+			for (YearMonth month = first; !month.isAfter(current.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+				added.add("PARTITION " + PARTITION_NAME.format(month) + " VALUES LESS THAN ('"
+						+ month.plusMonths(1).atDay(1) + "')");
+			}
+
+			List<String> dropped = new ArrayList<>();
+
+			for (YearMonth month : months) {
+				if (month.isBefore(oldestKept)) {
+					dropped.add(PARTITION_NAME.format(month));
+				}
+			}
+
+			try (Statement stmt = conn.createStatement()) {
+				if (!added.isEmpty()) {
+					added.add("PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN (MAXVALUE)");
+					stmt.execute("ALTER TABLE " + WORK_LOG_TABLE + " REORGANIZE PARTITION " + FUTURE_PARTITION
+							+ " INTO (" + String.join(", ", added) + ")");
+				}
+
+				if (!dropped.isEmpty()) {
+					stmt.execute("ALTER TABLE " + WORK_LOG_TABLE + " DROP PARTITION " + String.join(", ", dropped));
+				}
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/*
+	 * The months of the monthly partitions, oldest first. p_start and p_future
+	 * are not months.
+	 */
+	private List<YearMonth> fetchMonthPartitions(Connection conn) throws SQLException {
+		List<YearMonth> months = new ArrayList<>();
+
+		try (PreparedStatement stmt = conn.prepareStatement(FETCH_PARTITIONS_SQL)) {
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					String name = rs.getString(1);
+
+					if (name.matches("p\\d{6}")) {
+						months.add(YearMonth.parse(name, PARTITION_NAME));
+					}
+				}
+			}
+		}
+
+		months.sort(Comparator.naturalOrder());
+		return months;
+	}
+
+	/*
+	 * A rollup row's primary key, ordered as the index is.
+	 */
+	private static class RollupKey implements Comparable<RollupKey> {
+		private static final Comparator<RollupKey> ORDER = Comparator.<RollupKey>comparingInt(key -> key.projectId)
+				.thenComparing(key -> key.period.name()).thenComparing(key -> key.periodStart);
+
+		private final int projectId;
+		private final Period period;
+		private final LocalDate periodStart;
+
+		RollupKey(int projectId, Period period, LocalDate periodStart) {
+			this.projectId = projectId;
+			this.period = period;
+			this.periodStart = periodStart;
+		}
+
+		@Override
+		public int compareTo(RollupKey other) {
+			return ORDER.compare(this, other);
+		}
+	}
+
+	private static class RollupTotal {
+		private BigDecimal hours = BigDecimal.ZERO;
+		private int entries;
+
+		void add(BigDecimal entryHours) {
+			hours = hours.add(entryHours);
+			entries++;
+		}
+	}
+}
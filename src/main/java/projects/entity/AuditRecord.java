@@ -0,0 +1,92 @@
+/**
+ * 
+ */
+package projects.entity;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * One audited change to a project: what was done, when, and the project columns before and after
+ * the change. Before is null for an insert and after is null for a delete. The columns are copied
+ * when the record is made, so later changes to the caller's project do not show up in the record.
+ * 
+ * @author clayr
+ *
+ */
+public class AuditRecord {
+  public static final String INSERT = "INSERT";
+  public static final String UPDATE = "UPDATE";
+  public static final String DELETE = "DELETE";
+
+  private final String action;
+  private final Integer projectId;
+  private final Project before;
+  private final Project after;
+  private final Instant occurredAt;
+
+  private AuditRecord(String action, Integer projectId, Project before, Project after) {
+    this.action = action;
+    this.projectId = projectId;
+    this.before = snapshot(before);
+    this.after = snapshot(after);
+    this.occurredAt = Instant.now();
+  }
+
+  public static AuditRecord inserted(Project after) {
+    return new AuditRecord(INSERT, after.getProjectId(), null, after);
+  }
+
+  public static AuditRecord updated(Project before, Project after) {
+    return new AuditRecord(UPDATE, after.getProjectId(), before, after);
+  }
+
+  public static AuditRecord deleted(Project before) {
+    return new AuditRecord(DELETE, before.getProjectId(), before, null);
+  }
+
+  public String getAction() {
+    return action;
+  }
+
+  public Integer getProjectId() {
+    return projectId;
+  }
+
+  public Project getBefore() {
+    return before;
+  }
+
+  public Project getAfter() {
+    return after;
+  }
+
+  public Instant getOccurredAt() {
+    return occurredAt;
+  }
+
+  /*
+   * Copies only the columns; child collections are not audited.
+   */
+  private static Project snapshot(Project project) {
+    if (Objects.isNull(project)) {
+      return null;
+    }
+
+    Project copy = new Project();
+
+    copy.setProjectId(project.getProjectId());
+    copy.setProjectName(project.getProjectName());
+    copy.setEstimatedHours(project.getEstimatedHours());
+    copy.setActualHours(project.getActualHours());
+    copy.setDifficulty(project.getDifficulty());
+    copy.setNotes(project.getNotes());
+
+    return copy;
+  }
+
+  @Override
+  public String toString() {
+    return action + " project ID=" + projectId + " at " + occurredAt;
+  }
+}
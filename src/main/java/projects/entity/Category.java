@@ -3,10 +3,13 @@
  */
 package projects.entity;
 
+import projects.binder.BoundTable;
+
 /**
  * @author Promineo
  *
  */
+@BoundTable(value = "category", key = "categoryId")
 public class Category {
   private Integer categoryId;
   private String categoryName;
@@ -0,0 +1,30 @@
+/**
+ * 
+ */
+package projects.entity;
+
+/**
+ * Loads the child collections of a {@link Project} on first access. The DAO
+ * attaches a loader to projects that were fetched without their children;
+ * the loader is expected to fill the collection and call
+ * {@link Project#childrenLoaded(Child)}. A loader may fill the same collection
+ * for other projects at the same time.
+ * 
+ * @author clayr
+ *
+ */
+public interface ChildLoader {
+
+  /**
+   * The child collections of a project.
+   */
+  enum Child {
+    MATERIALS, STEPS, CATEGORIES
+  }
+
+  /**
+   * @param child The collection to load.
+   * @param project The project whose collection was accessed.
+   */
+  void load(Child child, Project project);
+}
@@ -0,0 +1,86 @@
+package projects.entity;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Checks values against the sizes of the columns they are stored in, for writes that are accepted
+ * before the database sees them: journaled writes, buffered work log entries and request bodies. A
+ * value that does not fit would fail every time it is applied, so it is refused up front with an
+ * IllegalArgumentException instead.
+ *
+ * @author clayr
+ *
+ */
+public final class ColumnLimits {
+  /** The length of project.project_name, VARCHAR(128). */
+  public static final int NAME_LENGTH = 128;
+
+  /** The precision of the project hours columns and work_log.hours, DECIMAL(7,2). */
+  public static final int HOURS_PRECISION = 7;
+
+  /** The length of work_log.note, VARCHAR(256). */
+  public static final int NOTE_LENGTH = 256;
+
+  private static final int HOURS_SCALE = 2;
+
+  private ColumnLimits() {
+  }
+
+  /**
+   * @param project The project to check. Null columns are not checked.
+   * @throws IllegalArgumentException If the name or hours do not fit their columns.
+   */
+  public static void checkProject(Project project) {
+    String name = project.getProjectName();
+
+    if (Objects.nonNull(name) && name.codePointCount(0, name.length()) > NAME_LENGTH) {
+      throw new IllegalArgumentException(
+          "The project name must be at most " + NAME_LENGTH + " characters.");
+    }
+
+    checkHours(project.getEstimatedHours(), "estimatedHours");
+    checkHours(project.getActualHours(), "actualHours");
+  }
+
+  /**
+   * @param entry The entry to check.
+   * @throws IllegalArgumentException If the hours or note do not fit their columns.
+   */
+  public static void checkWorkLogEntry(WorkLogEntry entry) {
+    String note = entry.getNote();
+
+    if (Objects.nonNull(note) && note.codePointCount(0, note.length()) > NOTE_LENGTH) {
+      throw new IllegalArgumentException(
+          "A work log note must be at most " + NOTE_LENGTH + " characters.");
+    }
+
+    checkHours(entry.getHours(), "hours");
+  }
+
+  /**
+   * Trailing zeros are ignored, so 1.500 fits. The check only looks at the precision and scale,
+   * so it is cheap for any value, however large its exponent.
+   *
+   * @param hours The value, or null.
+   * @param name The name used in the message.
+   * @return The value with a scale of two, or null.
+   * @throws IllegalArgumentException If the value does not fit DECIMAL(7,2).
+   */
+  public static BigDecimal checkHours(BigDecimal hours, String name) {
+    if (Objects.isNull(hours)) {
+      return null;
+    }
+
+    BigDecimal stripped = hours.stripTrailingZeros();
+
+    if (stripped.scale() > HOURS_SCALE
+        || stripped.precision() - stripped.scale() > HOURS_PRECISION - HOURS_SCALE) {
+      throw new IllegalArgumentException(name + " must have at most "
+          + (HOURS_PRECISION - HOURS_SCALE) + " digits before the decimal point and "
+          + HOURS_SCALE + " after it.");
+    }
+
+    return stripped.setScale(HOURS_SCALE);
+  }
+}
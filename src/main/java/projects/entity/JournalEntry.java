@@ -0,0 +1,48 @@
+/**
+ * 
+ */
+package projects.entity;
+
+import java.util.UUID;
+
+/**
+ * A project write saved in the local journal while it waits to be applied to the database. The key
+ * identifies the write, so it is applied at most once however often it is replayed. For an insert
+ * the project has no ID yet; one is assigned when the entry is applied. For a delete only the
+ * project ID is set.
+ * 
+ * @author clayr
+ *
+ */
+public class JournalEntry {
+  public static final String INSERT = "INSERT";
+  public static final String UPDATE = "UPDATE";
+  public static final String DELETE = "DELETE";
+
+  private final UUID key;
+  private final String operation;
+  private final Project project;
+
+  public JournalEntry(UUID key, String operation, Project project) {
+    this.key = key;
+    this.operation = operation;
+    this.project = project;
+  }
+
+  public UUID getKey() {
+    return key;
+  }
+
+  public String getOperation() {
+    return operation;
+  }
+
+  public Project getProject() {
+    return project;
+  }
+
+  @Override
+  public String toString() {
+    return operation + " " + key + " project ID=" + project.getProjectId();
+  }
+}
@@ -4,18 +4,28 @@
 package projects.entity;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import projects.binder.BoundTable;
 
 /**
  * @author Promineo
  *
  */
+@BoundTable(value = "material", key = "materialId")
 public class Material {
   private Integer materialId;
   private Integer projectId;
-  private String materialName;
+  private Integer catalogId;
+
+  /* Read from material_catalog; not a column of material. */
+  private transient String materialName;
   private Integer numRequired;
   private BigDecimal cost;
 
+  /* Set by the database on every write; never bound by the binder. */
+  private LocalDateTime lastModified;
+
   public Integer getMaterialId() {
     return materialId;
   }
@@ -32,6 +42,14 @@ public class Material {
     this.projectId = projectId;
   }
 
+  public Integer getCatalogId() {
+    return catalogId;
+  }
+
+  public void setCatalogId(Integer catalogId) {
+    this.catalogId = catalogId;
+  }
+
   public String getMaterialName() {
     return materialName;
   }
@@ -56,6 +74,14 @@ public class Material {
     this.cost = cost;
   }
 
+  public LocalDateTime getLastModified() {
+    return lastModified;
+  }
+
+  public void setLastModified(LocalDateTime lastModified) {
+    this.lastModified = lastModified;
+  }
+
   @Override
   public String toString() {
     return "ID=" + materialId + ", materialName=" + materialName + ", numRequired=" + numRequired
@@ -0,0 +1,75 @@
+/**
+ * 
+ */
+package projects.entity;
+
+import java.time.LocalDateTime;
+
+/**
+ * A change record from the outbox table. The payload is a JSON document describing the change.
+ * 
+ * @author clayr
+ *
+ */
+public class OutboxEvent {
+  private Long outboxId;
+  private String aggregateType;
+  private Integer aggregateId;
+  private String eventType;
+  private String payload;
+  private LocalDateTime createdAt;
+
+  public Long getOutboxId() {
+    return outboxId;
+  }
+
+  public void setOutboxId(Long outboxId) {
+    this.outboxId = outboxId;
+  }
+
+  public String getAggregateType() {
+    return aggregateType;
+  }
+
+  public void setAggregateType(String aggregateType) {
+    this.aggregateType = aggregateType;
+  }
+
+  public Integer getAggregateId() {
+    return aggregateId;
+  }
+
+  public void setAggregateId(Integer aggregateId) {
+    this.aggregateId = aggregateId;
+  }
+
+  public String getEventType() {
+    return eventType;
+  }
+
+  public void setEventType(String eventType) {
+    this.eventType = eventType;
+  }
+
+  public String getPayload() {
+    return payload;
+  }
+
+  public void setPayload(String payload) {
+    this.payload = payload;
+  }
+
+  public LocalDateTime getCreatedAt() {
+    return createdAt;
+  }
+
+  public void setCreatedAt(LocalDateTime createdAt) {
+    this.createdAt = createdAt;
+  }
+
+  @Override
+  public String toString() {
+    return "ID=" + outboxId + ", " + eventType + " " + aggregateType + " " + aggregateId + ", payload="
+        + payload;
+  }
+}
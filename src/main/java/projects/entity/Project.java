@@ -4,25 +4,41 @@
 package projects.entity;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import projects.binder.BoundTable;
+import projects.binder.Compressed;
+import projects.entity.ChildLoader.Child;
 
 /**
  * @author Promineo
  *
  */
+@BoundTable(value = "project", key = "projectId", generatedKey = false)
 public class Project {
   private Integer projectId;
   private String projectName;
   private BigDecimal estimatedHours;
   private BigDecimal actualHours;
   private Integer difficulty;
+  @Compressed
   private String notes;
 
+  /* Set by the database on every write; never bound by the binder. */
+  private LocalDateTime lastModified;
+
   private List<Material> materials = new LinkedList<>();
   private List<Step> steps = new LinkedList<>();
   private List<Category> categories = new LinkedList<>();
 
+  private ChildLoader childLoader;
+  private Set<Child> unloadedChildren = EnumSet.noneOf(Child.class);
+
   public Integer getProjectId() {
     return projectId;
   }
@@ -71,18 +87,88 @@ public class Project {
     this.notes = notes;
   }
 
+  public LocalDateTime getLastModified() {
+    return lastModified;
+  }
+
+  public void setLastModified(LocalDateTime lastModified) {
+    this.lastModified = lastModified;
+  }
+
   public List<Material> getMaterials() {
+    load(Child.MATERIALS);
     return materials;
   }
 
   public List<Step> getSteps() {
+    load(Child.STEPS);
     return steps;
   }
 
   public List<Category> getCategories() {
+    load(Child.CATEGORIES);
     return categories;
   }
 
+  /**
+   * Makes the given collections lazy. Each one is loaded by the loader the first time its getter
+   * is called.
+   * 
+   * @param childLoader The loader to call.
+   * @param children The collections that have not been loaded yet.
+   */
+  public void setChildLoader(ChildLoader childLoader, Set<Child> children) {
+    this.childLoader = childLoader;
+    this.unloadedChildren = children.isEmpty() ? EnumSet.noneOf(Child.class) : EnumSet.copyOf(children);
+  }
+
+  /**
+   * Called by a {@link ChildLoader} just before it fills a collection, so that filling it through
+   * the getter does not load it again.
+   * 
+   * @param child The collection being filled.
+   */
+  public void childrenLoaded(Child child) {
+    unloadedChildren.remove(child);
+  }
+
+  /**
+   * Called by a {@link ChildLoader} when filling a collection failed part way. The collection is
+   * emptied and marked as not loaded, so the next access loads it again.
+   * 
+   * @param child The collection that could not be filled.
+   */
+  public void childrenLoadFailed(Child child) {
+    switch (child) {
+      case MATERIALS:
+        materials.clear();
+        break;
+      case STEPS:
+        steps.clear();
+        break;
+      case CATEGORIES:
+        categories.clear();
+        break;
+    }
+
+    unloadedChildren.add(child);
+  }
+
+  /**
+   * @param child A child collection.
+   * @return true if the collection has been loaded or was never lazy.
+   */
+  public boolean isLoaded(Child child) {
+    return !unloadedChildren.contains(child);
+  }
+
+  private void load(Child child) {
+    if (Objects.nonNull(childLoader) && unloadedChildren.contains(child)) {
+      childLoader.load(child, this);
+      unloadedChildren.remove(child);
+    }
+  }
+
   @Override
   public String toString() {
     String result = "";
@@ -96,19 +182,19 @@ public class Project {
     
     result += "\n   Materials:";
     
-    for(Material material : materials) {
+    for(Material material : getMaterials()) {
       result += "\n      " + material;
     }
     
     result += "\n   Steps:";
     
-    for(Step step : steps) {
+    for(Step step : getSteps()) {
       result += "\n      " + step;
     }
     
     result += "\n   Categories:";
     
-    for(Category category : categories) {
+    for(Category category : getCategories()) {
       result += "\n      " + category;
     }
     
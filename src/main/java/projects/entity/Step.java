@@ -3,16 +3,26 @@
  */
 package projects.entity;
 
+import java.time.LocalDateTime;
+
+import projects.binder.BoundTable;
+import projects.binder.Compressed;
+
 /**
  * @author Promineo
  *
  */
+@BoundTable(value = "step", key = "stepId")
 public class Step {
   private Integer stepId;
   private Integer projectId;
+  @Compressed
   private String stepText;
   private Integer stepOrder;
 
+  /* Set by the database on every write; never bound by the binder. */
+  private LocalDateTime lastModified;
+
   public Integer getStepId() {
     return stepId;
   }
@@ -45,6 +55,14 @@ public class Step {
     this.stepOrder = stepOrder;
   }
 
+  public LocalDateTime getLastModified() {
+    return lastModified;
+  }
+
+  public void setLastModified(LocalDateTime lastModified) {
+    this.lastModified = lastModified;
+  }
+
   @Override
   public String toString() {
     return "ID=" + stepId + ", stepText=" + stepText;
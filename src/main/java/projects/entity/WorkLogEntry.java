@@ -0,0 +1,77 @@
+/**
+ * 
+ */
+package projects.entity;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Time spent on a project, as one row of the append-only work_log table.
+ * 
+ * @author clayr
+ *
+ */
+public class WorkLogEntry {
+  private Long workLogId;
+  private Integer projectId;
+  private LocalDateTime loggedAt;
+  private BigDecimal hours;
+  private String note;
+
+  public WorkLogEntry() {
+  }
+
+  public WorkLogEntry(Integer projectId, LocalDateTime loggedAt, BigDecimal hours, String note) {
+    this.projectId = projectId;
+    this.loggedAt = loggedAt;
+    this.hours = hours;
+    this.note = note;
+  }
+
+  public Long getWorkLogId() {
+    return workLogId;
+  }
+
+  public void setWorkLogId(Long workLogId) {
+    this.workLogId = workLogId;
+  }
+
+  public Integer getProjectId() {
+    return projectId;
+  }
+
+  public void setProjectId(Integer projectId) {
+    this.projectId = projectId;
+  }
+
+  public LocalDateTime getLoggedAt() {
+    return loggedAt;
+  }
+
+  public void setLoggedAt(LocalDateTime loggedAt) {
+    this.loggedAt = loggedAt;
+  }
+
+  public BigDecimal getHours() {
+    return hours;
+  }
+
+  public void setHours(BigDecimal hours) {
+    this.hours = hours;
+  }
+
+  public String getNote() {
+    return note;
+  }
+
+  public void setNote(String note) {
+    this.note = note;
+  }
+
+  @Override
+  public String toString() {
+    return "Project ID=" + projectId + ", " + loggedAt + ", " + hours + " hours"
+        + (note == null ? "" : ", " + note);
+  }
+}
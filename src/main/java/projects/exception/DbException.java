@@ -1,5 +1,7 @@
 package projects.exception;
 
+import java.sql.SQLException;
+
 @SuppressWarnings("serial")
 public class DbException extends RuntimeException {
 
@@ -22,4 +24,27 @@ public class DbException extends RuntimeException {
 		
 	}
 
+	/**
+	 *
+	 * @param e
+	 * @return True if e, or an exception that caused it, is a MySQL error the
+	 *         same statement would raise on every retry: a data exception such
+	 *         as a value too long or out of range (SQLSTATE class 22), or a null
+	 *         in a NOT NULL column (1048).
+	 */
+	public static boolean isDataError(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof SQLException) {
+				SQLException sqlException = (SQLException) cause;
+				String state = sqlException.getSQLState();
+
+				if (sqlException.getErrorCode() == 1048 || (state != null && state.startsWith("22"))) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
 }
@@ -0,0 +1,18 @@
+package projects.exception;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Thrown when ProjectService is asked to change a project that does not
+ *         exist or has been deleted.
+ */
+@SuppressWarnings("serial")
+public class ProjectNotFoundException extends DbException {
+
+	public ProjectNotFoundException(Integer projectId) {
+		super("Project with ID=" + projectId + " does not exist.");
+
+	}
+
+}
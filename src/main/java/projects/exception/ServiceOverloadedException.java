@@ -0,0 +1,19 @@
+package projects.exception;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Thrown when ProjectService turns a request away because too many are
+ *         already running or waiting. Nothing was done, so the request can be
+ *         tried again later.
+ */
+@SuppressWarnings("serial")
+public class ServiceOverloadedException extends DbException {
+
+	public ServiceOverloadedException(String message) {
+		super(message);
+
+	}
+
+}
@@ -0,0 +1,579 @@
+package projects.http;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import projects.dao.FetchPlan;
+import projects.entity.Project;
+import projects.exception.ProjectNotFoundException;
+import projects.exception.ServiceOverloadedException;
+import projects.json.JsonReader;
+import projects.json.JsonWriter;
+import projects.json.ProjectJson;
+import projects.procurement.BillOfMaterials;
+import projects.service.ProjectService;
+import projects.sync.ChangeSet;
+import projects.sync.ProjectChange;
+import projects.sync.SyncCursor;
+import projects.typeahead.ProjectSuggestion;
+
+/**
+ *
+ * @author clayr
+ *
+ *         HTTP/JSON front end for ProjectService, built on the JDK HTTP
+ *         server.
+ *
+ *         <pre>
+ *         GET    /projects       list of projects without child rows
+ *         GET    /projects/{id}  one project with materials, steps, categories
+ *         POST   /projects       create a project from a JSON body
+ *         PUT    /projects/{id}  replace the project details
+ *         DELETE /projects/{id}  delete a project
+ *         GET    /projects/suggestions?prefix=ha&limit=10
+ *                                name typeahead, limit defaults to 10
+ *         GET    /projects/changes?since=2026-10-18T09:30:00.123456/42&limit=100
+ *                                projects changed after the cursor, limit
+ *                                defaults to 100; omit since for a first sync
+ *         POST   /projects/bill-of-materials
+ *                                CSV totals of the materials of the projects
+ *                                whose IDs are in the JSON array body
+ *         </pre>
+ *
+ *         The server's own thread only accepts requests. Each request is handed
+ *         to a worker: a virtual thread when the runtime supports them, or a
+ *         fixed pool of platform threads otherwise. A semaphore bounds the
+ *         number of requests that are running or waiting; when it is
+ *         exhausted the request is answered with 503 at once instead of
+ *         queuing without limit. Requests shed by the service's read and write
+ *         bulkheads are answered with 503 as well. Responses are streamed;
+ *         list responses are gzip compressed when the client accepts it.
+ *         Connections are kept alive between requests (HTTP/1.1).
+ *
+ *         Settings are system properties: projects.http.port (8080),
+ *         projects.http.workers (platform pool size, 4 x CPUs),
+ *         projects.http.maxPending (requests running or queued, 1024) and
+ *         projects.http.maxBodyBytes (request body size, 1 MB; larger bodies
+ *         are answered with 413).
+ */
+public class ProjectsHttpServer {
+	private static final String JSON_TYPE = "application/json; charset=utf-8";
+	private static final String CSV_TYPE = "text/csv; charset=utf-8";
+	private static final String SUGGESTIONS_PATH = "/projects/suggestions";
+	private static final String CHANGES_PATH = "/projects/changes";
+	private static final String BILL_OF_MATERIALS_PATH = "/projects/bill-of-materials";
+	private static final int MAX_BODY_BYTES = Integer.getInteger("projects.http.maxBodyBytes", 1 << 20);
+
+	private ProjectService projectService = new ProjectService();
+	private HttpServer server;
+	private ExecutorService workers;
+	private Semaphore pending;
+
+	/**
+	 *
+	 * @param args
+	 * @throws IOException Starts the server and keeps running until the process
+	 *                     is stopped.
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = Integer.getInteger("projects.http.port", 8080);
+		ProjectsHttpServer server = new ProjectsHttpServer();
+
+		server.start(port);
+		Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+		System.out.println("Listening on port " + port);
+	}
+
+	/**
+	 *
+	 * @param port
+	 * @throws IOException Binds the port and starts accepting requests.
+	 */
+	public void start(int port) throws IOException {
+		pending = new Semaphore(Integer.getInteger("projects.http.maxPending", 1024));
+		workers = createWorkers();
+		server = HttpServer.create(new InetSocketAddress(port), 0);
+		server.createContext("/projects", this::dispatch);
+		server.setExecutor(null);
+		server.start();
+		projectService.startPurger();
+	}
+
+	/**
+	 * Stops accepting requests and waits briefly for running ones to finish.
+	 */
+	public void stop() {
+		server.stop(1);
+		workers.shutdown();
+
+		try {
+			workers.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/*
+	 * Executors.newVirtualThreadPerTaskExecutor() exists from Java 21. The build
+	 * targets Java 17, so it is looked up reflectively.
+	 */
+	private ExecutorService createWorkers() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			int size = Integer.getInteger("projects.http.workers", Runtime.getRuntime().availableProcessors() * 4);
+
+			return new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+		}
+	}
+
+	/*
+	 * Runs on the server's dispatcher thread, so it must not block.
+	 */
+	private void dispatch(HttpExchange exchange) throws IOException {
+		if (!pending.tryAcquire()) {
+			exchange.getResponseHeaders().set("Retry-After", "1");
+			sendError(exchange, 503, "The server is busy. Try again later.");
+			return;
+		}
+
+		workers.execute(() -> {
+			try {
+				handle(exchange);
+			} finally {
+				pending.release();
+			}
+		});
+	}
+
+	private void handle(HttpExchange exchange) {
+		try (exchange) {
+			try {
+				route(exchange);
+			} catch (IllegalArgumentException e) {
+				sendError(exchange, 400, e.getMessage());
+			} catch (BodyTooLargeException e) {
+				sendError(exchange, 413, e.getMessage());
+			} catch (ProjectNotFoundException e) {
+				sendError(exchange, 404, e.getMessage());
+			} catch (ServiceOverloadedException e) {
+				exchange.getResponseHeaders().set("Retry-After", "1");
+				sendError(exchange, 503, e.getMessage());
+			} catch (RuntimeException e) {
+				/*
+				 * Anything else is a fault on this side. The details are logged
+				 * here rather than sent to the client.
+				 */
+				System.err.println("Request " + exchange.getRequestMethod() + " " + exchange.getRequestURI()
+						+ " failed: " + e);
+				sendError(exchange, 500, "Internal server error.");
+			}
+		} catch (IOException e) {
+			/* The client went away; nothing more can be sent. */
+		}
+	}
+
+	private void route(HttpExchange exchange) throws IOException {
+		String method = exchange.getRequestMethod();
+
+		if (exchange.getRequestURI().getPath().equals(SUGGESTIONS_PATH)) {
+			drain(exchange);
+
+			if (!method.equals("GET")) {
+				sendError(exchange, 405, method + " is not supported on " + SUGGESTIONS_PATH + ".");
+				return;
+			}
+
+			sendSuggestions(exchange);
+			return;
+		}
+
+		if (exchange.getRequestURI().getPath().equals(CHANGES_PATH)) {
+			drain(exchange);
+
+			if (!method.equals("GET")) {
+				sendError(exchange, 405, method + " is not supported on " + CHANGES_PATH + ".");
+				return;
+			}
+
+			sendChanges(exchange);
+			return;
+		}
+
+		if (exchange.getRequestURI().getPath().equals(BILL_OF_MATERIALS_PATH)) {
+			if (!method.equals("POST")) {
+				drain(exchange);
+				sendError(exchange, 405, method + " is not supported on " + BILL_OF_MATERIALS_PATH + ".");
+				return;
+			}
+
+			sendBillOfMaterials(exchange, parseProjectIds(readBody(exchange)));
+			return;
+		}
+
+		String path = exchange.getRequestURI().getPath();
+		String rest = path.substring("/projects".length());
+
+		if (!rest.isEmpty() && rest.charAt(0) != '/') {
+			drain(exchange);
+			sendError(exchange, 404, "Not found: " + path);
+			return;
+		}
+
+		Integer projectId = parseProjectId(rest);
+
+		if (Objects.isNull(projectId)) {
+			switch (method) {
+			case "GET":
+				drain(exchange);
+				sendProjects(exchange, projectService.fetchAllProjects());
+				return;
+			case "POST":
+				Project project = ProjectJson.readProject(readBody(exchange));
+
+				project.setProjectId(null);
+				sendProject(exchange, 201, projectService.addProject(project));
+				return;
+			default:
+				drain(exchange);
+				sendError(exchange, 405, method + " is not supported on /projects.");
+				return;
+			}
+		}
+
+		switch (method) {
+		case "GET":
+			drain(exchange);
+			sendProject(exchange, 200, projectService.fetchProjectById(projectId, FetchPlan.EAGER));
+			return;
+		case "PUT":
+			Project project = ProjectJson.readProject(readBody(exchange));
+
+			project.setProjectId(projectId);
+			projectService.modifyProjectDetails(project);
+			sendProject(exchange, 200, projectService.fetchProjectById(projectId, FetchPlan.EAGER));
+			return;
+		case "DELETE":
+			drain(exchange);
+			projectService.deleteProject(projectId);
+			exchange.sendResponseHeaders(204, -1);
+			return;
+		default:
+			drain(exchange);
+			sendError(exchange, 405, method + " is not supported on /projects/{id}.");
+			return;
+		}
+	}
+
+	/*
+	 * Takes the path after /projects. Returns null for /projects and the ID for
+	 * /projects/{id}.
+	 */
+	private Integer parseProjectId(String rest) {
+		if (rest.isEmpty() || rest.equals("/")) {
+			return null;
+		}
+
+		try {
+			return Integer.valueOf(rest.substring(1));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(rest.substring(1) + " is not a valid project ID.");
+		}
+	}
+
+	private void sendProjects(HttpExchange exchange, List<Project> projects) throws IOException {
+		boolean gzip = acceptsGzip(exchange);
+
+		exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+
+		if (gzip) {
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+		}
+
+		exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+		exchange.sendResponseHeaders(200, 0);
+
+		OutputStream body = gzip ? new GZIPOutputStream(exchange.getResponseBody(), 8192)
+				: exchange.getResponseBody();
+
+		try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), 8192)) {
+			JsonWriter json = new JsonWriter(out);
+
+			json.beginArray();
+
+			for (Project project : projects) {
+				ProjectJson.writeSummary(json, project);
+			}
+
+			json.endArray();
+		}
+	}
+
+	private void sendSuggestions(HttpExchange exchange) throws IOException {
+		Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+		int limit;
+
+		try {
+			limit = Integer.parseInt(params.getOrDefault("limit", "10"));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(params.get("limit") + " is not a valid limit.");
+		}
+
+		List<ProjectSuggestion> suggestions = projectService.suggestProjects(params.getOrDefault("prefix", ""),
+				limit);
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * suggestions.size() + 2);
+
+		try (OutputStreamWriter out = new OutputStreamWriter(buffer, StandardCharsets.UTF_8)) {
+			JsonWriter json = new JsonWriter(out);
+
+			json.beginArray();
+
+			for (ProjectSuggestion suggestion : suggestions) {
+				json.beginObject();
+				json.name("projectId").value(suggestion.getProjectId());
+				json.name("projectName").value(suggestion.getProjectName());
+				json.endObject();
+			}
+
+			json.endArray();
+		}
+
+		send(exchange, 200, buffer.toByteArray());
+	}
+
+	/*
+	 * The change set is read before the headers are sent, so a failure is
+	 * still answered with an error status.
+	 */
+	private void sendChanges(HttpExchange exchange) throws IOException {
+		Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+		String since = params.get("since");
+		int limit;
+
+		try {
+			limit = Integer.parseInt(params.getOrDefault("limit", "100"));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(params.get("limit") + " is not a valid limit.");
+		}
+
+		ChangeSet changeSet = projectService
+				.fetchChangesSince(Objects.isNull(since) || since.isEmpty() ? null : SyncCursor.parse(since), limit);
+		boolean gzip = acceptsGzip(exchange);
+
+		exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+
+		if (gzip) {
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+		}
+
+		exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+		exchange.sendResponseHeaders(200, 0);
+
+		OutputStream body = gzip ? new GZIPOutputStream(exchange.getResponseBody(), 8192)
+				: exchange.getResponseBody();
+
+		try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), 8192)) {
+			JsonWriter json = new JsonWriter(out);
+
+			json.beginObject();
+			json.name("changes").beginArray();
+
+			for (ProjectChange change : changeSet.getChanges()) {
+				json.beginObject();
+				json.name("cursor").value(change.getPosition().toString());
+				json.name("projectId").value(change.getProjectId());
+				json.name("deleted").value(change.isDeleted());
+
+				if (!change.isDeleted()) {
+					json.name("project");
+					ProjectJson.writeProject(json, change.getProject());
+				}
+
+				json.endObject();
+			}
+
+			json.endArray();
+			json.name("nextCursor").value(changeSet.getNextCursor().toString());
+			json.name("hasMore").value(changeSet.hasMore());
+			json.name("resyncRequired").value(changeSet.isResyncRequired());
+			json.endObject();
+		}
+	}
+
+	/*
+	 * Reads a JSON array of project IDs.
+	 */
+	private List<Integer> parseProjectIds(String body) {
+		Object parsed = JsonReader.parse(body);
+
+		if (!(parsed instanceof List)) {
+			throw new IllegalArgumentException("The body must be a JSON array of project IDs.");
+		}
+
+		List<?> values = (List<?>) parsed;
+		List<Integer> projectIds = new ArrayList<>(values.size());
+
+		for (Object value : values) {
+			if (!(value instanceof BigDecimal)) {
+				throw new IllegalArgumentException(value + " is not a valid project ID.");
+			}
+
+			try {
+				projectIds.add(((BigDecimal) value).intValueExact());
+			} catch (ArithmeticException e) {
+				throw new IllegalArgumentException(value + " is not a valid project ID.");
+			}
+		}
+
+		return projectIds;
+	}
+
+	/*
+	 * The totals are computed before the headers are sent, so a failure is
+	 * still answered with an error status. The CSV is then streamed.
+	 */
+	private void sendBillOfMaterials(HttpExchange exchange, List<Integer> projectIds) throws IOException {
+		BillOfMaterials bill = projectService.billOfMaterials(projectIds);
+		boolean gzip = acceptsGzip(exchange);
+
+		exchange.getResponseHeaders().set("Content-Type", CSV_TYPE);
+
+		if (gzip) {
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+		}
+
+		exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+		exchange.sendResponseHeaders(200, 0);
+
+		OutputStream body = gzip ? new GZIPOutputStream(exchange.getResponseBody(), 8192)
+				: exchange.getResponseBody();
+
+		try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), 8192)) {
+			bill.writeCsv(out);
+		}
+	}
+
+	/*
+	 * Decodes a query string into its parameters; a repeated name keeps its
+	 * last value.
+	 */
+	private Map<String, String> parseQuery(String query) {
+		Map<String, String> params = new HashMap<>();
+
+		if (Objects.isNull(query) || query.isEmpty()) {
+			return params;
+		}
+
+		for (String pair : query.split("&")) {
+			int equals = pair.indexOf('=');
+			String name = equals < 0 ? pair : pair.substring(0, equals);
+			String value = equals < 0 ? "" : pair.substring(equals + 1);
+
+			params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+
+		return params;
+	}
+
+	private void sendProject(HttpExchange exchange, int status, Project project) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+
+		try (OutputStreamWriter out = new OutputStreamWriter(buffer, StandardCharsets.UTF_8)) {
+			ProjectJson.writeProject(new JsonWriter(out), project);
+		}
+
+		send(exchange, status, buffer.toByteArray());
+	}
+
+	private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+
+		try (OutputStreamWriter out = new OutputStreamWriter(buffer, StandardCharsets.UTF_8)) {
+			new JsonWriter(out).beginObject().name("error").value(message).endObject();
+		}
+
+		send(exchange, status, buffer.toByteArray());
+		exchange.close();
+	}
+
+	/*
+	 * Sends a response with a known length so the connection can be reused.
+	 */
+	private void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+		exchange.sendResponseHeaders(status, body.length);
+
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private boolean acceptsGzip(HttpExchange exchange) {
+		for (String value : exchange.getRequestHeaders().getOrDefault("Accept-Encoding", List.of())) {
+			if (value.toLowerCase().contains("gzip")) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/*
+	 * Reads at most one byte more than the limit, so an oversized body is
+	 * refused without being held in memory.
+	 */
+	private String readBody(HttpExchange exchange) throws IOException {
+		try (InputStream in = exchange.getRequestBody()) {
+			byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+
+			if (body.length > MAX_BODY_BYTES) {
+				throw new BodyTooLargeException("The request body is larger than " + MAX_BODY_BYTES + " bytes.");
+			}
+
+			return new String(body, StandardCharsets.UTF_8);
+		}
+	}
+
+	/*
+	 * Reads any request body that was sent, so the connection can be kept
+	 * alive.
+	 */
+	private void drain(HttpExchange exchange) throws IOException {
+		try (InputStream in = exchange.getRequestBody()) {
+			in.transferTo(OutputStream.nullOutputStream());
+		}
+	}
+
+	/**
+	 * Thrown when a request body is over projects.http.maxBodyBytes.
+	 */
+	@SuppressWarnings("serial")
+	private static class BodyTooLargeException extends RuntimeException {
+		BodyTooLargeException(String message) {
+			super(message);
+		}
+	}
+}
@@ -0,0 +1,184 @@
+package projects.journal;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import projects.dao.JournalDao;
+import projects.entity.Project;
+import projects.exception.DbException;
+import projects.similarity.SimilarityIndex;
+import projects.typeahead.ProjectNameIndex;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Owns the local write-ahead journal and applies it to the database.
+ *         ProjectService records writes here when the journal is enabled and
+ *         returns as soon as they are on local disk. A background thread reads
+ *         the journal in batches and applies each batch with
+ *         {@link JournalDao}; while the database cannot be reached the batch
+ *         stays in the journal and is tried again on the next pass.
+ *
+ *         Settings are system properties: projects.journal.enabled (false),
+ *         projects.journal.file (projects.journal), projects.journal.sizeBytes
+ *         (64 MB), projects.journal.batchSize (500) and
+ *         projects.journal.replayMillis (5000).
+ */
+public class JournalReplayer {
+	private static final boolean ENABLED = Boolean.getBoolean("projects.journal.enabled");
+	private static final Path FILE = Path.of(System.getProperty("projects.journal.file", "projects.journal"));
+	private static final int SIZE_BYTES = Integer.getInteger("projects.journal.sizeBytes", 64 << 20);
+	private static final int BATCH_SIZE = Integer.getInteger("projects.journal.batchSize", 500);
+	private static final long REPLAY_MILLIS = Long.getLong("projects.journal.replayMillis", 5000);
+
+	private static final JournalReplayer instance = new JournalReplayer();
+
+	private JournalDao journalDao = new JournalDao();
+	private SimilarityIndex similarity = SimilarityIndex.getInstance();
+	private ProjectNameIndex names = ProjectNameIndex.getInstance();
+	private volatile WriteAheadJournal journal;
+	private ScheduledExecutorService scheduler;
+
+	private JournalReplayer() {
+	}
+
+	public static JournalReplayer getInstance() {
+		return instance;
+	}
+
+	/**
+	 *
+	 * @return True if writes should go to the journal.
+	 */
+	public boolean isEnabled() {
+		return ENABLED;
+	}
+
+	/**
+	 *
+	 * @param operation
+	 * @param project
+	 * @return Appends the write to the journal, starting the replayer if needed,
+	 *         and returns the write's idempotency key.
+	 */
+	public UUID record(String operation, Project project) {
+		WriteAheadJournal open = journal;
+
+		/*
+		 * Appends do not take the replayer's lock, so a replay stuck on an
+		 * unreachable database never holds up a write.
+		 */
+		return (open != null ? open : start()).append(operation, project);
+	}
+
+	/**
+	 *
+	 * @return Opens the journal and starts the replay thread. Calling this more
+	 *         than once has no effect.
+	 */
+	public synchronized WriteAheadJournal start() {
+		if (journal != null) {
+			return journal;
+		}
+
+		try {
+			journal = new WriteAheadJournal(FILE, SIZE_BYTES);
+		} catch (IOException e) {
+			throw new DbException("Unable to open the journal " + FILE, e);
+		}
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "journal-replayer");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		scheduler.scheduleWithFixedDelay(this::replaySafely, 0, REPLAY_MILLIS, TimeUnit.MILLISECONDS);
+		return journal;
+	}
+
+	/**
+	 * Stops the replay thread, makes one last attempt to apply the journal and
+	 * closes it. Writes that could not be applied stay in the file for the next
+	 * run.
+	 */
+	public void stop() {
+		ScheduledExecutorService stopping;
+		WriteAheadJournal closing;
+
+		synchronized (this) {
+			stopping = scheduler;
+			closing = journal;
+			scheduler = null;
+		}
+
+		if (stopping == null) {
+			return;
+		}
+
+		stopping.shutdown();
+
+		try {
+			stopping.awaitTermination(30, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		replaySafely();
+
+		synchronized (this) {
+			journal = null;
+		}
+
+		try {
+			closing.close();
+		} catch (IOException e) {
+			System.err.println("Unable to close the journal: " + e.getMessage());
+		}
+	}
+
+	/**
+	 *
+	 * @return Applies batches until the journal is empty and returns the number
+	 *         of writes applied.
+	 */
+	public int replay() {
+		WriteAheadJournal open = start();
+		int applied = 0;
+		WriteAheadJournal.Batch batch;
+
+		do {
+			batch = open.read(BATCH_SIZE);
+
+			if (batch.getEntries().isEmpty()) {
+				break;
+			}
+
+			applied += journalDao.apply(batch.getEntries());
+			open.markReplayed(batch.getEndOffset());
+
+			List<Integer> projectIds = batch.getEntries().stream().map(entry -> entry.getProject().getProjectId())
+					.collect(Collectors.toList());
+
+			similarity.markChanged(projectIds);
+			names.refresh(projectIds);
+		} while (batch.getEntries().size() == BATCH_SIZE && !Thread.currentThread().isInterrupted());
+
+		return applied;
+	}
+
+	private void replaySafely() {
+		try {
+			replay();
+		} catch (DbException e) {
+			System.err.println("Journal replay will be retried: " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,293 @@
+package projects.journal;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import projects.entity.JournalEntry;
+import projects.entity.Project;
+import projects.exception.DbException;
+import projects.json.JsonWriter;
+import projects.json.ProjectJson;
+
+/**
+ *
+ * @author clayr
+ *
+ *         An append-only log of project writes in a memory-mapped file. An
+ *         append copies the record into the mapping and forces that range to
+ *         disk, so a write is durable when append returns without waiting on
+ *         the network.
+ *
+ *         The file starts with a header holding the replay checkpoint: the
+ *         offset of the first record not yet applied to the database. Each
+ *         record is its length, a CRC32 of its body, and the body: the
+ *         operation, the idempotency key and the project as JSON. A zero length
+ *         ends the log. When the file is opened, records are read from the
+ *         checkpoint until the end or the first record whose checksum does not
+ *         match, which is where a write was cut off by a crash.
+ *
+ *         When the log reaches the end of the file and every record has been
+ *         replayed, writing starts again from the beginning. If records are
+ *         still waiting, append fails until the replayer catches up.
+ */
+public class WriteAheadJournal implements AutoCloseable {
+	private static final int MAGIC = 0x504a4e4c;
+	private static final int VERSION = 1;
+	private static final int CHECKPOINT_OFFSET = 8;
+	private static final int HEADER_SIZE = 64;
+	private static final int RECORD_HEADER_SIZE = 8;
+	private static final int TERMINATOR_SIZE = 4;
+
+	private static final String[] OPERATIONS = { JournalEntry.INSERT, JournalEntry.UPDATE, JournalEntry.DELETE };
+
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final int capacity;
+	private int position;
+
+	/**
+	 *
+	 * @param file
+	 * @param capacity
+	 * @throws IOException Opens the journal, creating a file of the given size
+	 *                     if there is none, and finds the end of the log.
+	 */
+	public WriteAheadJournal(Path file, int capacity) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		this.capacity = (int) Math.max(capacity, channel.size());
+		this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.capacity);
+
+		if (buffer.getInt(0) == 0) {
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, VERSION);
+			reset();
+		} else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new IOException(file + " is not a project journal.");
+		}
+
+		position = checkpoint();
+
+		int length;
+
+		while ((length = recordLength(position)) > 0) {
+			position += RECORD_HEADER_SIZE + length;
+		}
+
+		buffer.putInt(position, 0);
+	}
+
+	/**
+	 *
+	 * @param operation
+	 * @param project
+	 * @return Appends a write to the journal and returns its idempotency key.
+	 *         The record is on disk when this returns.
+	 */
+	public UUID append(String operation, Project project) {
+		UUID key = UUID.randomUUID();
+		byte[] json = toJson(project).getBytes(StandardCharsets.UTF_8);
+		byte[] body = new byte[1 + 16 + json.length];
+		ByteBuffer bodyBuffer = ByteBuffer.wrap(body);
+
+		bodyBuffer.put((byte) operationCode(operation));
+		bodyBuffer.putLong(key.getMostSignificantBits());
+		bodyBuffer.putLong(key.getLeastSignificantBits());
+		bodyBuffer.put(json);
+
+		CRC32 crc = new CRC32();
+
+		crc.update(body);
+		write(body, (int) crc.getValue());
+
+		return key;
+	}
+
+	private synchronized void write(byte[] body, int crc) {
+		int needed = RECORD_HEADER_SIZE + body.length + TERMINATOR_SIZE;
+
+		if (position + needed > capacity) {
+			if (checkpoint() != position) {
+				throw new DbException("The journal is full until the database is reachable again.");
+			}
+
+			reset();
+
+			if (position + needed > capacity) {
+				throw new DbException("The write is too large for the journal.");
+			}
+		}
+
+		int start = position;
+
+		/*
+		 * The length goes in last and the checksum covers the body, so a record
+		 * cut off by a crash is never taken for a whole one.
+		 */
+		buffer.put(start + RECORD_HEADER_SIZE, body);
+		buffer.putInt(start + RECORD_HEADER_SIZE + body.length, 0);
+		buffer.putInt(start + 4, crc);
+		buffer.putInt(start, body.length);
+		buffer.force(start, needed);
+
+		position = start + RECORD_HEADER_SIZE + body.length;
+	}
+
+	/**
+	 *
+	 * @param max
+	 * @return Up to max records from the checkpoint on, with the offset just
+	 *         past the last of them.
+	 */
+	public Batch read(int max) {
+		List<byte[]> bodies = new ArrayList<>();
+		int end;
+
+		synchronized (this) {
+			end = checkpoint();
+
+			while (bodies.size() < max && end < position) {
+				byte[] body = new byte[buffer.getInt(end)];
+
+				buffer.get(end + RECORD_HEADER_SIZE, body);
+				bodies.add(body);
+				end += RECORD_HEADER_SIZE + body.length;
+			}
+		}
+
+		List<JournalEntry> entries = new ArrayList<>(bodies.size());
+
+		for (byte[] body : bodies) {
+			ByteBuffer bodyBuffer = ByteBuffer.wrap(body);
+			String operation = OPERATIONS[bodyBuffer.get()];
+			UUID key = new UUID(bodyBuffer.getLong(), bodyBuffer.getLong());
+			String json = new String(body, bodyBuffer.position(), bodyBuffer.remaining(), StandardCharsets.UTF_8);
+
+			entries.add(new JournalEntry(key, operation, ProjectJson.readProject(json)));
+		}
+
+		return new Batch(entries, end);
+	}
+
+	/**
+	 *
+	 * @param offset Moves the checkpoint to the given offset, which came from a
+	 *               batch that has been applied. Only one thread may replay.
+	 */
+	public synchronized void markReplayed(int offset) {
+		if (offset <= checkpoint() || offset > position) {
+			return;
+		}
+
+		buffer.putLong(CHECKPOINT_OFFSET, offset);
+		buffer.force(CHECKPOINT_OFFSET, 8);
+	}
+
+	/**
+	 *
+	 * @return True if every record has been replayed.
+	 */
+	public synchronized boolean isEmpty() {
+		return checkpoint() == position;
+	}
+
+	@Override
+	public void close() throws IOException {
+		buffer.force();
+		channel.close();
+	}
+
+	/*
+	 * Starts the log again at the beginning of the file. Only called when
+	 * everything has been replayed.
+	 */
+	private void reset() {
+		position = HEADER_SIZE;
+		buffer.putInt(HEADER_SIZE, 0);
+		buffer.putLong(CHECKPOINT_OFFSET, HEADER_SIZE);
+		buffer.force(0, HEADER_SIZE + TERMINATOR_SIZE);
+	}
+
+	private int checkpoint() {
+		return (int) buffer.getLong(CHECKPOINT_OFFSET);
+	}
+
+	/*
+	 * The body length of the record at the offset, or 0 at the end of the log
+	 * or at a record that was not completely written.
+	 */
+	private int recordLength(int offset) {
+		if (offset + RECORD_HEADER_SIZE > capacity) {
+			return 0;
+		}
+
+		int length = buffer.getInt(offset);
+
+		if (length <= 0 || offset + RECORD_HEADER_SIZE + length + TERMINATOR_SIZE > capacity) {
+			return 0;
+		}
+
+		byte[] body = new byte[length];
+		CRC32 crc = new CRC32();
+
+		buffer.get(offset + RECORD_HEADER_SIZE, body);
+		crc.update(body);
+
+		return (int) crc.getValue() == buffer.getInt(offset + 4) ? length : 0;
+	}
+
+	private int operationCode(String operation) {
+		for (int code = 0; code < OPERATIONS.length; code++) {
+			if (OPERATIONS[code].equals(operation)) {
+				return code;
+			}
+		}
+
+		throw new DbException("Unknown journal operation " + operation);
+	}
+
+	private String toJson(Project project) {
+		StringWriter out = new StringWriter(256);
+
+		try {
+			ProjectJson.writeSummary(new JsonWriter(out), project);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return out.toString();
+	}
+
+	/**
+	 * Records read from the journal and the offset to mark as replayed once
+	 * they have been applied.
+	 */
+	public static class Batch {
+		private final List<JournalEntry> entries;
+		private final int endOffset;
+
+		Batch(List<JournalEntry> entries, int endOffset) {
+			this.entries = entries;
+			this.endOffset = endOffset;
+		}
+
+		public List<JournalEntry> getEntries() {
+			return entries;
+		}
+
+		public int getEndOffset() {
+			return endOffset;
+		}
+	}
+}
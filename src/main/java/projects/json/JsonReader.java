@@ -0,0 +1,265 @@
+package projects.json;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Minimal JSON parser for request bodies. Objects become a Map, arrays
+ *         a List, numbers a BigDecimal, and true/false/null their Java
+ *         equivalents. Malformed input throws an IllegalArgumentException, and
+ *         so does nesting deeper than {@value #MAX_DEPTH} levels, which would
+ *         otherwise overflow the stack of this recursive parser.
+ */
+public class JsonReader {
+	static final int MAX_DEPTH = 64;
+
+	private final String text;
+	private int pos;
+	private int depth;
+
+	private JsonReader(String text) {
+		this.text = text;
+	}
+
+	/**
+	 *
+	 * @param text
+	 * @return The parsed value.
+	 */
+	public static Object parse(String text) {
+		JsonReader reader = new JsonReader(text);
+		Object value = reader.readValue();
+
+		reader.skipWhitespace();
+
+		if (reader.pos != text.length()) {
+			throw reader.error("Unexpected trailing content");
+		}
+
+		return value;
+	}
+
+	/**
+	 *
+	 * @param text
+	 * @return The parsed value, which must be an object.
+	 */
+	@SuppressWarnings("unchecked")
+	public static Map<String, Object> parseObject(String text) {
+		Object value = parse(text);
+
+		if (!(value instanceof Map)) {
+			throw new IllegalArgumentException("Expected a JSON object.");
+		}
+
+		return (Map<String, Object>) value;
+	}
+
+	private Object readValue() {
+		skipWhitespace();
+
+		if (pos >= text.length()) {
+			throw error("Unexpected end of input");
+		}
+
+		char ch = text.charAt(pos);
+
+		switch (ch) {
+		case '{':
+			return readNested(true);
+		case '[':
+			return readNested(false);
+		case '"':
+			return readString();
+		case 't':
+			return readLiteral("true", Boolean.TRUE);
+		case 'f':
+			return readLiteral("false", Boolean.FALSE);
+		case 'n':
+			return readLiteral("null", null);
+		default:
+			return readNumber();
+		}
+	}
+
+	private Object readNested(boolean object) {
+		if (++depth > MAX_DEPTH) {
+			throw error("Nesting is deeper than " + MAX_DEPTH + " levels");
+		}
+
+		Object value = object ? readObject() : readArray();
+
+		depth--;
+		return value;
+	}
+
+	private Map<String, Object> readObject() {
+		Map<String, Object> object = new LinkedHashMap<>();
+
+		pos++;
+		skipWhitespace();
+
+		if (peek() == '}') {
+			pos++;
+			return object;
+		}
+
+		while (true) {
+			skipWhitespace();
+
+			if (peek() != '"') {
+				throw error("Expected a member name");
+			}
+
+			String name = readString();
+
+			skipWhitespace();
+			expect(':');
+			object.put(name, readValue());
+			skipWhitespace();
+
+			if (peek() == ',') {
+				pos++;
+			} else {
+				expect('}');
+				return object;
+			}
+		}
+	}
+
+	private List<Object> readArray() {
+		List<Object> array = new ArrayList<>();
+
+		pos++;
+		skipWhitespace();
+
+		if (peek() == ']') {
+			pos++;
+			return array;
+		}
+
+		while (true) {
+			array.add(readValue());
+			skipWhitespace();
+
+			if (peek() == ',') {
+				pos++;
+			} else {
+				expect(']');
+				return array;
+			}
+		}
+	}
+
+	private String readString() {
+		StringBuilder builder = new StringBuilder();
+
+		pos++;
+
+		while (pos < text.length()) {
+			char ch = text.charAt(pos++);
+
+			if (ch == '"') {
+				return builder.toString();
+			}
+
+			if (ch != '\\') {
+				builder.append(ch);
+				continue;
+			}
+
+			if (pos >= text.length()) {
+				break;
+			}
+
+			char escaped = text.charAt(pos++);
+
+			switch (escaped) {
+			case 'b':
+				builder.append('\b');
+				break;
+			case 'f':
+				builder.append('\f');
+				break;
+			case 'n':
+				builder.append('\n');
+				break;
+			case 'r':
+				builder.append('\r');
+				break;
+			case 't':
+				builder.append('\t');
+				break;
+			case 'u':
+				if (pos + 4 > text.length()) {
+					throw error("Invalid unicode escape");
+				}
+
+				try {
+					builder.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+				} catch (NumberFormatException e) {
+					throw error("Invalid unicode escape");
+				}
+
+				pos += 4;
+				break;
+			default:
+				builder.append(escaped);
+				break;
+			}
+		}
+
+		throw error("Unterminated string");
+	}
+
+	private BigDecimal readNumber() {
+		int start = pos;
+
+		while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+			pos++;
+		}
+
+		try {
+			return new BigDecimal(text.substring(start, pos));
+		} catch (NumberFormatException e) {
+			throw error("Invalid value");
+		}
+	}
+
+	private Object readLiteral(String literal, Object value) {
+		if (!text.startsWith(literal, pos)) {
+			throw error("Invalid value");
+		}
+
+		pos += literal.length();
+		return value;
+	}
+
+	private void expect(char ch) {
+		if (peek() != ch) {
+			throw error("Expected '" + ch + "'");
+		}
+
+		pos++;
+	}
+
+	private char peek() {
+		return pos < text.length() ? text.charAt(pos) : '\0';
+	}
+
+	private void skipWhitespace() {
+		while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+			pos++;
+		}
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at position " + pos + ".");
+	}
+}
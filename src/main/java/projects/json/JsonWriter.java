@@ -0,0 +1,174 @@
+package projects.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Minimal streaming JSON encoder. Values are written straight to the
+ *         underlying writer as they are produced, so a large list never has to
+ *         be built in memory first. The writer keeps just enough state to
+ *         place commas; it does not check that objects and arrays are closed.
+ */
+public class JsonWriter {
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final Writer out;
+	private boolean needComma;
+
+	public JsonWriter(Writer out) {
+		this.out = out;
+	}
+
+	public JsonWriter beginObject() throws IOException {
+		separate();
+		out.write('{');
+		needComma = false;
+		return this;
+	}
+
+	public JsonWriter endObject() throws IOException {
+		out.write('}');
+		needComma = true;
+		return this;
+	}
+
+	public JsonWriter beginArray() throws IOException {
+		separate();
+		out.write('[');
+		needComma = false;
+		return this;
+	}
+
+	public JsonWriter endArray() throws IOException {
+		out.write(']');
+		needComma = true;
+		return this;
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return Writes an object member name. The next call must write its value.
+	 */
+	public JsonWriter name(String name) throws IOException {
+		separate();
+		writeString(name);
+		out.write(':');
+		needComma = false;
+		return this;
+	}
+
+	public JsonWriter value(String value) throws IOException {
+		separate();
+
+		if (Objects.isNull(value)) {
+			out.write("null");
+		} else {
+			writeString(value);
+		}
+
+		needComma = true;
+		return this;
+	}
+
+	public JsonWriter value(Integer value) throws IOException {
+		return rawValue(Objects.isNull(value) ? "null" : value.toString());
+	}
+
+	public JsonWriter value(long value) throws IOException {
+		return rawValue(Long.toString(value));
+	}
+
+	public JsonWriter value(double value) throws IOException {
+		return rawValue(Double.isFinite(value) ? Double.toString(value) : "null");
+	}
+
+	public JsonWriter value(BigDecimal value) throws IOException {
+		return rawValue(Objects.isNull(value) ? "null" : value.toPlainString());
+	}
+
+	public JsonWriter value(boolean value) throws IOException {
+		return rawValue(Boolean.toString(value));
+	}
+
+	public JsonWriter nullValue() throws IOException {
+		return rawValue("null");
+	}
+
+	/**
+	 *
+	 * @param json
+	 * @return Writes a value that is already encoded as JSON, such as a stored
+	 *         document. A null is written as the JSON null.
+	 */
+	public JsonWriter jsonValue(String json) throws IOException {
+		return rawValue(Objects.isNull(json) ? "null" : json);
+	}
+
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	private JsonWriter rawValue(String literal) throws IOException {
+		separate();
+		out.write(literal);
+		needComma = true;
+		return this;
+	}
+
+	private void separate() throws IOException {
+		if (needComma) {
+			out.write(',');
+			needComma = false;
+		}
+	}
+
+	private void writeString(String value) throws IOException {
+		out.write('"');
+
+		int start = 0;
+		int length = value.length();
+
+		for (int pos = 0; pos < length; pos++) {
+			char ch = value.charAt(pos);
+
+			if (ch >= 0x20 && ch != '"' && ch != '\\') {
+				continue;
+			}
+
+			out.write(value, start, pos - start);
+			start = pos + 1;
+
+			switch (ch) {
+			case '"':
+				out.write("\\\"");
+				break;
+			case '\\':
+				out.write("\\\\");
+				break;
+			case '\n':
+				out.write("\\n");
+				break;
+			case '\r':
+				out.write("\\r");
+				break;
+			case '\t':
+				out.write("\\t");
+				break;
+			default:
+				out.write("\\u00");
+				out.write(HEX[ch >> 4]);
+				out.write(HEX[ch & 0xf]);
+				break;
+			}
+		}
+
+		out.write(value, start, length - start);
+		out.write('"');
+	}
+}
@@ -0,0 +1,152 @@
+package projects.json;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Objects;
+
+import projects.entity.Category;
+import projects.entity.ColumnLimits;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Converts projects to and from JSON. Member names match the entity
+ *         field names.
+ */
+public class ProjectJson {
+
+	private ProjectJson() {
+	}
+
+	/**
+	 *
+	 * @param json
+	 * @param project
+	 * @throws IOException Writes the project columns without the child
+	 *                     collections. Used for list responses. Notes are left
+	 *                     out when they were not read, as in the list.
+	 */
+	public static void writeSummary(JsonWriter json, Project project) throws IOException {
+		json.beginObject();
+		writeDetails(json, project);
+		json.endObject();
+	}
+
+	/**
+	 *
+	 * @param json
+	 * @param project
+	 * @throws IOException Writes the project with its materials, steps and
+	 *                     categories.
+	 */
+	public static void writeProject(JsonWriter json, Project project) throws IOException {
+		json.beginObject();
+		writeDetails(json, project);
+
+		json.name("materials").beginArray();
+
+		for (Material material : project.getMaterials()) {
+			json.beginObject();
+			json.name("materialId").value(material.getMaterialId());
+			json.name("materialName").value(material.getMaterialName());
+			json.name("numRequired").value(material.getNumRequired());
+			json.name("cost").value(material.getCost());
+			json.endObject();
+		}
+
+		json.endArray();
+		json.name("steps").beginArray();
+
+		for (Step step : project.getSteps()) {
+			json.beginObject();
+			json.name("stepId").value(step.getStepId());
+			json.name("stepText").value(step.getStepText());
+			json.name("stepOrder").value(step.getStepOrder());
+			json.endObject();
+		}
+
+		json.endArray();
+		json.name("categories").beginArray();
+
+		for (Category category : project.getCategories()) {
+			json.beginObject();
+			json.name("categoryId").value(category.getCategoryId());
+			json.name("categoryName").value(category.getCategoryName());
+			json.endObject();
+		}
+
+		json.endArray();
+		json.endObject();
+	}
+
+	private static void writeDetails(JsonWriter json, Project project) throws IOException {
+		json.name("projectId").value(project.getProjectId());
+		json.name("projectName").value(project.getProjectName());
+		json.name("estimatedHours").value(project.getEstimatedHours());
+		json.name("actualHours").value(project.getActualHours());
+		json.name("difficulty").value(project.getDifficulty());
+
+		if (Objects.nonNull(project.getNotes())) {
+			json.name("notes").value(project.getNotes());
+		}
+	}
+
+	/**
+	 *
+	 * @param body
+	 * @return Builds a project from a JSON object with the same member names
+	 *         that writeSummary produces. Missing members are left null. Values
+	 *         that do not fit their columns are refused.
+	 */
+	public static Project readProject(String body) {
+		Map<String, Object> object = JsonReader.parseObject(body);
+		Project project = new Project();
+
+		project.setProjectId(toInteger(object.get("projectId"), "projectId"));
+		project.setProjectName(toText(object.get("projectName"), "projectName"));
+		project.setEstimatedHours(toHours(object.get("estimatedHours"), "estimatedHours"));
+		project.setActualHours(toHours(object.get("actualHours"), "actualHours"));
+		project.setDifficulty(toInteger(object.get("difficulty"), "difficulty"));
+		project.setNotes(toText(object.get("notes"), "notes"));
+
+		ColumnLimits.checkProject(project);
+		return project;
+	}
+
+	private static Integer toInteger(Object value, String name) {
+		if (Objects.isNull(value)) {
+			return null;
+		}
+
+		try {
+			return ((BigDecimal) value).intValueExact();
+		} catch (ClassCastException | ArithmeticException e) {
+			throw new IllegalArgumentException(name + " must be a whole number.");
+		}
+	}
+
+	private static BigDecimal toHours(Object value, String name) {
+		if (Objects.isNull(value)) {
+			return null;
+		}
+
+		if (!(value instanceof BigDecimal)) {
+			throw new IllegalArgumentException(name + " must be a number.");
+		}
+
+		return ColumnLimits.checkHours((BigDecimal) value, name);
+	}
+
+	private static String toText(Object value, String name) {
+		if (Objects.nonNull(value) && !(value instanceof String)) {
+			throw new IllegalArgumentException(name + " must be a string.");
+		}
+
+		return (String) value;
+	}
+}
@@ -0,0 +1,227 @@
+package projects.loadtest;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import projects.dao.CategoryDao;
+import projects.dao.DbConnection;
+import projects.dao.MaterialCatalogDao;
+import projects.dao.ShardRouter;
+import projects.entity.Material;
+import projects.entity.MaterialBinder;
+import projects.entity.Project;
+import projects.entity.Step;
+import projects.entity.StepBinder;
+import projects.exception.DbException;
+import projects.service.ProjectService;
+import provided.util.DaoBase;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Fills the database with generated projects for a load test. Projects
+ *         are added through ProjectService in batches, so they get the same
+ *         outbox records as real ones; their steps, materials and category
+ *         links are then written in one transaction per batch. The service has
+ *         no call for adding children, so those are written here directly with
+ *         the generated entity binders. Each shard gets its own copy of the
+ *         categories, and children are written to their project's shard. The
+ *         projects' last_modified is set again with their children, so the
+ *         change feed sees them whole.
+ */
+class DatasetSeeder extends DaoBase {
+	private static final int BATCH_SIZE = 500;
+
+	// @formatter:off
+	private static final String LINK_SQL = ""
+			+ "INSERT INTO project_category (project_id, category_id) VALUES (?, ?)";
+
+	private static final String TOUCH_SQL = ""
+			+ "UPDATE project SET last_modified = CURRENT_TIMESTAMP(6) WHERE project_id = ?";
+	// @formatter:on
+
+	private final ProjectService projectService;
+	private final Random random;
+	private final CategoryDao categoryDao = new CategoryDao();
+	private final MaterialCatalogDao materialCatalogDao = new MaterialCatalogDao();
+
+	DatasetSeeder(ProjectService projectService, long seed) {
+		this.projectService = projectService;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 *
+	 * @param settings
+	 * @return Creates the categories and projects described by the settings and
+	 *         returns the new project IDs.
+	 */
+	List<Integer> seed(LoadTestSettings settings) {
+		List<List<Integer>> categoryIds = new ArrayList<>();
+		List<List<Integer>> catalogIds = new ArrayList<>();
+		List<Integer> projectIds = new ArrayList<>(settings.projects);
+
+		for (int shard = 0; shard < DbConnection.getShardCount(); shard++) {
+			categoryIds.add(insertCategories(shard, settings.categories));
+			catalogIds.add(insertCatalog(shard, settings.maxMaterials));
+		}
+
+		for (int from = 0; from < settings.projects; from += BATCH_SIZE) {
+			List<Project> batch = new ArrayList<>();
+
+			for (int pos = from; pos < Math.min(from + BATCH_SIZE, settings.projects); pos++) {
+				batch.add(newProject(pos));
+			}
+
+			projectService.addProjects(batch);
+
+			Map<Integer, List<Project>> byShard = batch.stream()
+					.collect(Collectors.groupingBy(project -> ShardRouter.shardFor(project.getProjectId())));
+
+			byShard.forEach((shard, projects) -> insertChildren(shard, projects, categoryIds.get(shard),
+					catalogIds.get(shard), settings));
+			batch.forEach(project -> projectIds.add(project.getProjectId()));
+		}
+
+		return projectIds;
+	}
+
+	/**
+	 *
+	 * @param number
+	 * @return A project with generated values, not yet saved.
+	 */
+	Project newProject(int number) {
+		Project project = new Project();
+		int estimated = 1 + random.nextInt(40);
+
+		project.setProjectName("Load test project " + number);
+		project.setEstimatedHours(BigDecimal.valueOf(estimated));
+		project.setActualHours(BigDecimal.valueOf(estimated + random.nextInt(11) - 5).max(BigDecimal.ZERO));
+		project.setDifficulty(1 + random.nextInt(5));
+		project.setNotes("Generated for a load test.");
+
+		return project;
+	}
+
+	/*
+	 * Category names are unique, so a second seeding run reuses the categories
+	 * of the first.
+	 */
+	private List<Integer> insertCategories(int shard, int count) {
+		List<String> names = new ArrayList<>();
+
+		for (int pos = 0; pos < count; pos++) {
+			names.add("Load test category " + pos);
+		}
+
+		return new ArrayList<>(categoryDao.resolveCategoryIds(shard, names).values());
+	}
+
+	/*
+	 * Returns the catalog IDs of "Material 1" to "Material count" in that order,
+	 * so a project's nth material is always the same catalog item.
+	 */
+	private List<Integer> insertCatalog(int shard, int count) {
+		List<String> names = new ArrayList<>();
+
+		for (int pos = 1; pos <= count; pos++) {
+			names.add("Material " + pos);
+		}
+
+		Map<String, Integer> resolved = materialCatalogDao.resolveCatalogIds(shard, names);
+		List<Integer> ids = new ArrayList<>();
+
+		names.forEach(name -> ids.add(resolved.get(name)));
+		return ids;
+	}
+
+	private void insertChildren(int shard, List<Project> projects, List<Integer> categoryIds,
+			List<Integer> catalogIds, LoadTestSettings settings) {
+		try (Connection conn = DbConnection.getConnection(shard)) {
+			startTransaction(conn);
+
+			try (PreparedStatement stepStmt = conn.prepareStatement(StepBinder.INSERT_SQL);
+					PreparedStatement materialStmt = conn.prepareStatement(MaterialBinder.INSERT_SQL);
+					PreparedStatement linkStmt = conn.prepareStatement(LINK_SQL);
+					PreparedStatement touchStmt = conn.prepareStatement(TOUCH_SQL)) {
+				for (Project project : projects) {
+					addSteps(stepStmt, project, between(settings.minSteps, settings.maxSteps));
+					addMaterials(materialStmt, project, catalogIds, between(settings.minMaterials, settings.maxMaterials));
+					addLinks(linkStmt, project, categoryIds, settings.categoriesPerProject);
+					setParameter(touchStmt, 1, project.getProjectId(), Integer.class);
+					touchStmt.addBatch();
+				}
+
+				stepStmt.executeBatch();
+				materialStmt.executeBatch();
+				linkStmt.executeBatch();
+				touchStmt.executeBatch();
+				commitTransaction(conn);
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	private void addSteps(PreparedStatement stmt, Project project, int count) throws SQLException {
+		for (int order = 1; order <= count; order++) {
+			Step step = new Step();
+
+			step.setProjectId(project.getProjectId());
+			step.setStepText("Step " + order + " of " + project.getProjectName());
+			step.setStepOrder(order);
+			StepBinder.bindInsert(stmt, step);
+			stmt.addBatch();
+		}
+	}
+
+	private void addMaterials(PreparedStatement stmt, Project project, List<Integer> catalogIds, int count)
+			throws SQLException {
+		for (int pos = 1; pos <= count; pos++) {
+			Material material = new Material();
+
+			material.setProjectId(project.getProjectId());
+			material.setCatalogId(catalogIds.get(pos - 1));
+			material.setMaterialName("Material " + pos);
+			material.setNumRequired(1 + random.nextInt(10));
+			material.setCost(BigDecimal.valueOf(100 + random.nextInt(5000), 2));
+			MaterialBinder.bindInsert(stmt, material);
+			stmt.addBatch();
+		}
+	}
+
+	/*
+	 * Picks distinct categories by starting at a random offset, so a project is
+	 * never linked to the same category twice.
+	 */
+	private void addLinks(PreparedStatement stmt, Project project, List<Integer> categoryIds, int count)
+			throws SQLException {
+		if (categoryIds.isEmpty()) {
+			return;
+		}
+
+		int offset = random.nextInt(categoryIds.size());
+
+		for (int pos = 0; pos < Math.min(count, categoryIds.size()); pos++) {
+			setParameter(stmt, 1, project.getProjectId(), Integer.class);
+			setParameter(stmt, 2, categoryIds.get((offset + pos) % categoryIds.size()), Integer.class);
+			stmt.addBatch();
+		}
+	}
+
+	private int between(int min, int max) {
+		return min + random.nextInt(max - min + 1);
+	}
+}
@@ -0,0 +1,97 @@
+package projects.loadtest;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.OptionalInt;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ *
+ * @author clayr
+ *
+ *         The IDs of the projects that exist, shared by the load test workers.
+ *         Reads and updates pick a random ID under a read lock; inserts add
+ *         and deletes take an ID under the write lock, so two workers never
+ *         delete the same project.
+ */
+class IdPool {
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private int[] ids = new int[1024];
+	private int size;
+
+	void addAll(Collection<Integer> projectIds) {
+		lock.writeLock().lock();
+
+		try {
+			projectIds.forEach(this::append);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	void add(int projectId) {
+		lock.writeLock().lock();
+
+		try {
+			append(projectId);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @return A random ID, which stays in the pool; empty if the pool is empty.
+	 */
+	OptionalInt pick() {
+		lock.readLock().lock();
+
+		try {
+			return size == 0 ? OptionalInt.empty() : OptionalInt.of(ids[ThreadLocalRandom.current().nextInt(size)]);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @return A random ID, removed from the pool; empty if the pool is empty.
+	 */
+	OptionalInt take() {
+		lock.writeLock().lock();
+
+		try {
+			if (size == 0) {
+				return OptionalInt.empty();
+			}
+
+			int index = ThreadLocalRandom.current().nextInt(size);
+			int projectId = ids[index];
+
+			ids[index] = ids[--size];
+			return OptionalInt.of(projectId);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	int size() {
+		lock.readLock().lock();
+
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void append(int projectId) {
+		if (size == ids.length) {
+			ids = Arrays.copyOf(ids, size * 2);
+		}
+
+		ids[size++] = projectId;
+	}
+}
@@ -0,0 +1,98 @@
+package projects.loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Fixed-size latency histogram in microseconds that many threads can
+ *         record into without locking. Values below 128 are counted exactly;
+ *         above that each power of two is split into 64 buckets, so a
+ *         percentile is never more than about 1.6% above the true value.
+ *         Percentiles are reported as the top of their bucket.
+ */
+class LatencyHistogram {
+	private static final int EXACT = 128;
+	private static final int SUB_BUCKETS = 64;
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int MAX_SHIFT = 40;
+
+	private final AtomicLongArray counts = new AtomicLongArray(EXACT + MAX_SHIFT * SUB_BUCKETS);
+	private final LongAdder total = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	void record(long micros) {
+		long value = Math.max(0, micros);
+
+		counts.incrementAndGet(indexOf(value));
+		total.increment();
+		sum.add(value);
+		max.accumulateAndGet(value, Math::max);
+	}
+
+	long getCount() {
+		return total.sum();
+	}
+
+	long getMax() {
+		return max.get();
+	}
+
+	double getMean() {
+		long count = total.sum();
+		return count == 0 ? 0 : (double) sum.sum() / count;
+	}
+
+	/**
+	 *
+	 * @param percentile
+	 * @return The latency in microseconds that the given percentage of the
+	 *         recorded values are at or below, such as 99.9.
+	 */
+	long getPercentile(double percentile) {
+		long count = total.sum();
+
+		if (count == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+		long seen = 0;
+
+		for (int index = 0; index < counts.length(); index++) {
+			seen += counts.get(index);
+
+			if (seen >= rank) {
+				return Math.min(highestValueIn(index), max.get());
+			}
+		}
+
+		return max.get();
+	}
+
+	private static int indexOf(long value) {
+		if (value < EXACT) {
+			return (int) value;
+		}
+
+		int shift = Math.min(63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS, MAX_SHIFT);
+		long mantissa = Math.min(value >> shift, 2 * SUB_BUCKETS - 1);
+
+		return EXACT + (shift - 1) * SUB_BUCKETS + (int) (mantissa - SUB_BUCKETS);
+	}
+
+	private static long highestValueIn(int index) {
+		if (index < EXACT) {
+			return index;
+		}
+
+		int shift = (index - EXACT) / SUB_BUCKETS + 1;
+		long mantissa = (index - EXACT) % SUB_BUCKETS + SUB_BUCKETS;
+
+		return ((mantissa + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,375 @@
+package projects.loadtest;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import projects.analytics.ProjectColumns;
+import projects.compression.TextCompression;
+import projects.dao.FetchPlan;
+import projects.entity.Project;
+import projects.exception.ServiceOverloadedException;
+import projects.json.JsonWriter;
+import projects.service.Bulkhead;
+import projects.service.ProjectService;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Drives ProjectService with a configurable mix of operations from many
+ *         threads and writes throughput and latency percentiles per operation
+ *         as JSON. See {@link LoadTestSettings} for the settings.
+ *
+ *         With a target rate, operations are scheduled at fixed intervals and
+ *         each one's latency is measured from when it was scheduled to start,
+ *         not from when a worker got to it. If the service falls behind, the
+ *         time operations spend waiting shows up in the percentiles instead of
+ *         being hidden by the workers slowing down.
+ *
+ *         Usage: LoadTest [report file], default loadtest-report.json.
+ */
+public class LoadTest {
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final LoadTestSettings settings;
+	private final ProjectService projectService = new ProjectService();
+	private final IdPool idPool = new IdPool();
+	private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+	private final Operation[] operations;
+	private final int[] cumulativeWeights;
+	private final AtomicLong nextTicket = new AtomicLong();
+	private final DatasetSeeder seeder;
+
+	private double seedSeconds;
+
+	LoadTest(LoadTestSettings settings) {
+		this.settings = settings;
+		this.seeder = new DatasetSeeder(projectService, settings.randomSeed);
+
+		List<Operation> weighted = new ArrayList<>();
+		List<Integer> cumulative = new ArrayList<>();
+		int total = 0;
+
+		for (Map.Entry<Operation, Integer> entry : settings.mix.entrySet()) {
+			if (entry.getValue() > 0) {
+				total += entry.getValue();
+				weighted.add(entry.getKey());
+				cumulative.add(total);
+			}
+		}
+
+		this.operations = weighted.toArray(new Operation[0]);
+		this.cumulativeWeights = cumulative.stream().mapToInt(Integer::intValue).toArray();
+
+		for (Operation operation : Operation.values()) {
+			stats.put(operation, new Stats());
+		}
+	}
+
+	/**
+	 *
+	 * @param args
+	 * @throws Exception Seeds, runs the load test and writes the report.
+	 */
+	public static void main(String[] args) throws Exception {
+		Path reportFile = Path.of(args.length > 0 ? args[0] : "loadtest-report.json");
+		LoadTest loadTest = new LoadTest(new LoadTestSettings());
+
+		loadTest.prepare();
+		loadTest.run();
+
+		try (Writer out = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+			loadTest.writeReport(out);
+		}
+
+		loadTest.printSummary();
+		System.err.println("Report written to " + reportFile);
+	}
+
+	/**
+	 * Generates the dataset, or collects the IDs of the existing projects if
+	 * seeding is turned off.
+	 */
+	public void prepare() {
+		long start = System.nanoTime();
+
+		if (settings.seed) {
+			idPool.addAll(seeder.seed(settings));
+		} else {
+			ProjectColumns columns = projectService.fetchProjectColumns();
+			List<Integer> projectIds = new ArrayList<>(columns.size());
+
+			for (int row = 0; row < columns.size(); row++) {
+				projectIds.add(columns.getProjectId(row));
+			}
+
+			idPool.addAll(projectIds);
+		}
+
+		seedSeconds = (double) (System.nanoTime() - start) / NANOS_PER_SECOND;
+	}
+
+	/**
+	 * Runs the workers for the warmup and measured periods and waits for them
+	 * to finish.
+	 *
+	 * @throws InterruptedException Thrown if the calling thread is interrupted
+	 *                              while waiting.
+	 */
+	public void run() throws InterruptedException {
+		projectService.startPurger();
+
+		long start = System.nanoTime();
+		long measureFrom = start + settings.warmupSeconds * NANOS_PER_SECOND;
+		long end = measureFrom + settings.durationSeconds * NANOS_PER_SECOND;
+		List<Thread> workers = new ArrayList<>();
+
+		for (int pos = 0; pos < settings.threads; pos++) {
+			Thread worker = new Thread(() -> work(start, measureFrom, end), "load-worker-" + pos);
+
+			workers.add(worker);
+			worker.start();
+		}
+
+		for (Thread worker : workers) {
+			worker.join();
+		}
+	}
+
+	private void work(long start, long measureFrom, long end) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		while (true) {
+			long scheduled;
+
+			if (settings.rate > 0) {
+				scheduled = start + nextTicket.getAndIncrement() * NANOS_PER_SECOND / settings.rate;
+
+				if (scheduled >= end) {
+					return;
+				}
+
+				long wait;
+
+				while ((wait = scheduled - System.nanoTime()) > 0) {
+					LockSupport.parkNanos(wait);
+				}
+			} else {
+				scheduled = System.nanoTime();
+
+				if (scheduled >= end) {
+					return;
+				}
+			}
+
+			Operation operation = chooseOperation(random);
+			Stats operationStats = stats.get(operation);
+			boolean measured = scheduled >= measureFrom;
+
+			try {
+				if (execute(operation, random)) {
+					if (measured) {
+						operationStats.latency.record((System.nanoTime() - scheduled) / 1000);
+					}
+				} else if (measured) {
+					operationStats.skipped.increment();
+				}
+			} catch (ServiceOverloadedException e) {
+				if (measured) {
+					operationStats.shed.increment();
+				}
+			} catch (RuntimeException e) {
+				if (measured) {
+					operationStats.errors.increment();
+				}
+			}
+		}
+	}
+
+	private Operation chooseOperation(Random random) {
+		int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+
+		for (int pos = 0; pos < cumulativeWeights.length; pos++) {
+			if (pick < cumulativeWeights[pos]) {
+				return operations[pos];
+			}
+		}
+
+		return operations[operations.length - 1];
+	}
+
+	/**
+	 *
+	 * @param operation
+	 * @param random
+	 * @return Runs one operation. Returns false if it could not run because
+	 *         there are no projects left to work on.
+	 */
+	private boolean execute(Operation operation, Random random) {
+		switch (operation) {
+		case SELECT: {
+			OptionalInt projectId = idPool.pick();
+
+			if (projectId.isEmpty()) {
+				return false;
+			}
+
+			projectService.fetchProjectById(projectId.getAsInt(), FetchPlan.EAGER);
+			return true;
+		}
+		case LIST:
+			projectService.fetchAllProjects();
+			return true;
+		case UPDATE: {
+			OptionalInt projectId = idPool.pick();
+
+			if (projectId.isEmpty()) {
+				return false;
+			}
+
+			Project patch = new Project();
+
+			patch.setProjectId(projectId.getAsInt());
+			patch.setActualHours(BigDecimal.valueOf(1 + random.nextInt(50)));
+			projectService.patchProjects(List.of(patch));
+			return true;
+		}
+		case DELETE: {
+			OptionalInt projectId = idPool.take();
+
+			if (projectId.isEmpty()) {
+				return false;
+			}
+
+			projectService.deleteProject(projectId.getAsInt());
+			return true;
+		}
+		case INSERT: {
+			Project project = projectService.addProject(seeder.newProject(random.nextInt(Integer.MAX_VALUE)));
+
+			idPool.add(project.getProjectId());
+			return true;
+		}
+		default:
+			throw new IllegalStateException("Unknown operation: " + operation);
+		}
+	}
+
+	/**
+	 *
+	 * @param out
+	 * @throws IOException Writes the settings and results as a JSON object.
+	 */
+	public void writeReport(Writer out) throws IOException {
+		JsonWriter json = new JsonWriter(out);
+		double seconds = settings.durationSeconds;
+		long totalCount = 0;
+		long totalErrors = 0;
+
+		json.beginObject();
+		json.name("settings").beginObject();
+		json.name("threads").value(settings.threads);
+		json.name("rate").value(settings.rate);
+		json.name("warmupSeconds").value(settings.warmupSeconds);
+		json.name("durationSeconds").value(settings.durationSeconds);
+		json.name("seeded").value(settings.seed);
+		json.name("projects").value(settings.projects);
+		json.name("mix").beginObject();
+
+		for (Map.Entry<Operation, Integer> entry : settings.mix.entrySet()) {
+			json.name(entry.getKey().key()).value(entry.getValue());
+		}
+
+		json.endObject();
+		json.endObject();
+		json.name("seedSeconds").value(seedSeconds);
+		json.name("operations").beginObject();
+
+		for (Operation operation : operations) {
+			Stats operationStats = stats.get(operation);
+			LatencyHistogram latency = operationStats.latency;
+
+			totalCount += latency.getCount();
+			totalErrors += operationStats.errors.sum();
+
+			json.name(operation.key()).beginObject();
+			json.name("count").value(latency.getCount());
+			json.name("errors").value(operationStats.errors.sum());
+			json.name("skipped").value(operationStats.skipped.sum());
+			json.name("shed").value(operationStats.shed.sum());
+			json.name("throughputPerSecond").value(latency.getCount() / seconds);
+			json.name("latencyMicros").beginObject();
+			json.name("mean").value(latency.getMean());
+			json.name("p50").value(latency.getPercentile(50));
+			json.name("p99").value(latency.getPercentile(99));
+			json.name("p999").value(latency.getPercentile(99.9));
+			json.name("max").value(latency.getMax());
+			json.endObject();
+			json.endObject();
+		}
+
+		json.endObject();
+		json.name("total").beginObject();
+		json.name("count").value(totalCount);
+		json.name("errors").value(totalErrors);
+		json.name("throughputPerSecond").value(totalCount / seconds);
+		json.endObject();
+		json.name("admission").beginObject();
+		writeBulkhead(json, projectService.getReadBulkhead());
+		writeBulkhead(json, projectService.getWriteBulkhead());
+		json.endObject();
+		json.name("compression").beginObject();
+		json.name("ratio").value(TextCompression.getRatio());
+		json.name("valuesWritten").value(TextCompression.getValuesWritten());
+		json.name("valuesCompressed").value(TextCompression.getValuesCompressed());
+		json.name("charsIn").value(TextCompression.getCharsIn());
+		json.name("charsOut").value(TextCompression.getCharsOut());
+		json.name("valuesInflated").value(TextCompression.getValuesInflated());
+		json.endObject();
+		json.endObject();
+		json.flush();
+	}
+
+	private void writeBulkhead(JsonWriter json, Bulkhead bulkhead) throws IOException {
+		json.name(bulkhead.getName()).beginObject();
+		json.name("limit").value(bulkhead.getLimit());
+		json.name("admitted").value(bulkhead.getAdmitted());
+		json.name("rejected").value(bulkhead.getRejected());
+		json.name("timedOut").value(bulkhead.getTimedOut());
+		json.endObject();
+	}
+
+	private void printSummary() {
+		for (Operation operation : operations) {
+			Stats operationStats = stats.get(operation);
+			LatencyHistogram latency = operationStats.latency;
+
+			System.err.printf("%-6s %8d ok %6d errors %6d shed  %9.1f/s  p50 %7.2f ms  p99 %7.2f ms  p999 %7.2f ms%n",
+					operation.key(), latency.getCount(), operationStats.errors.sum(), operationStats.shed.sum(),
+					latency.getCount() / (double) settings.durationSeconds, latency.getPercentile(50) / 1000.0,
+					latency.getPercentile(99) / 1000.0, latency.getPercentile(99.9) / 1000.0);
+		}
+	}
+
+	private static class Stats {
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder skipped = new LongAdder();
+		private final LongAdder shed = new LongAdder();
+	}
+}
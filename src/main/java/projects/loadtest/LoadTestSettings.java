@@ -0,0 +1,92 @@
+package projects.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Load test settings, read from system properties prefixed with
+ *         projects.loadtest. Defaults are in parentheses.
+ *
+ *         <pre>
+ *         seed                  true to generate a dataset first (true)
+ *         projects              projects to generate (1000)
+ *         minSteps, maxSteps    steps per project (3, 10)
+ *         minMaterials, maxMaterials  materials per project (2, 8)
+ *         categories            categories to generate (20)
+ *         categoriesPerProject  category links per project (2)
+ *         threads               concurrent workers (16)
+ *         rate                  target operations per second, 0 for as fast
+ *                               as the workers can go (0)
+ *         warmupSeconds         run time excluded from the report (5)
+ *         durationSeconds       measured run time (60)
+ *         mix                   operation weights
+ *                               (select=60,list=5,update=20,delete=5,insert=10)
+ *         randomSeed            seed for generated data (42)
+ *         </pre>
+ */
+class LoadTestSettings {
+	private static final String PREFIX = "projects.loadtest.";
+
+	final boolean seed = Boolean.parseBoolean(System.getProperty(PREFIX + "seed", "true"));
+	final int projects = Integer.getInteger(PREFIX + "projects", 1000);
+	final int minSteps = Integer.getInteger(PREFIX + "minSteps", 3);
+	final int maxSteps = Integer.getInteger(PREFIX + "maxSteps", 10);
+	final int minMaterials = Integer.getInteger(PREFIX + "minMaterials", 2);
+	final int maxMaterials = Integer.getInteger(PREFIX + "maxMaterials", 8);
+	final int categories = Integer.getInteger(PREFIX + "categories", 20);
+	final int categoriesPerProject = Integer.getInteger(PREFIX + "categoriesPerProject", 2);
+	final int threads = Integer.getInteger(PREFIX + "threads", 16);
+	final int rate = Integer.getInteger(PREFIX + "rate", 0);
+	final int warmupSeconds = Integer.getInteger(PREFIX + "warmupSeconds", 5);
+	final int durationSeconds = Integer.getInteger(PREFIX + "durationSeconds", 60);
+	final long randomSeed = Long.getLong(PREFIX + "randomSeed", 42);
+	final Map<Operation, Integer> mix = parseMix(
+			System.getProperty(PREFIX + "mix", "select=60,list=5,update=20,delete=5,insert=10"));
+
+	LoadTestSettings() {
+		if (minSteps > maxSteps || minMaterials > maxMaterials) {
+			throw new IllegalArgumentException("A minimum child count is larger than its maximum.");
+		}
+
+		if (threads < 1 || durationSeconds < 1 || rate < 0 || warmupSeconds < 0) {
+			throw new IllegalArgumentException(
+					"threads and durationSeconds must be positive; rate and warmupSeconds cannot be negative.");
+		}
+	}
+
+	/**
+	 *
+	 * @param text
+	 * @return The weight of each operation, from a list like select=60,list=5.
+	 *         Operations that are not listed are not run.
+	 */
+	static Map<Operation, Integer> parseMix(String text) {
+		Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+
+		for (String entry : text.split(",")) {
+			String[] parts = entry.split("=");
+
+			if (parts.length != 2) {
+				throw new IllegalArgumentException("Invalid mix entry: " + entry);
+			}
+
+			Operation operation = Operation.valueOf(parts[0].trim().toUpperCase());
+			int weight = Integer.parseInt(parts[1].trim());
+
+			if (weight < 0) {
+				throw new IllegalArgumentException("Invalid mix weight: " + entry);
+			}
+
+			mix.put(operation, weight);
+		}
+
+		if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+			throw new IllegalArgumentException("The mix has no operations.");
+		}
+
+		return mix;
+	}
+}
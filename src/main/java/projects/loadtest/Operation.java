@@ -0,0 +1,16 @@
+package projects.loadtest;
+
+/**
+ *
+ * @author clayr
+ *
+ *         The service calls a load test can issue. The names are the keys used
+ *         in the projects.loadtest.mix setting and in the report.
+ */
+public enum Operation {
+	SELECT, LIST, UPDATE, DELETE, INSERT;
+
+	public String key() {
+		return name().toLowerCase();
+	}
+}
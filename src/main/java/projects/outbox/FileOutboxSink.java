@@ -0,0 +1,65 @@
+package projects.outbox;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+
+import projects.entity.OutboxEvent;
+import projects.json.JsonWriter;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Appends change records to a file as JSON lines, one record per line.
+ *         Each batch is forced to disk before publish returns, so a record is
+ *         never pruned from the outbox before it is durable in the file.
+ */
+public class FileOutboxSink implements OutboxSink, AutoCloseable {
+	private final FileChannel channel;
+	private final BufferedWriter out;
+
+	/**
+	 *
+	 * @param file
+	 * @throws IOException Opens the file for appending, creating it if needed.
+	 */
+	public FileOutboxSink(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+		out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8),
+				1 << 16);
+	}
+
+	@Override
+	public synchronized void publish(List<OutboxEvent> events) throws IOException {
+		for (OutboxEvent event : events) {
+			JsonWriter json = new JsonWriter(out);
+
+			json.beginObject();
+			json.name("outboxId").value(event.getOutboxId());
+			json.name("aggregateType").value(event.getAggregateType());
+			json.name("aggregateId").value(event.getAggregateId());
+			json.name("eventType").value(event.getEventType());
+			json.name("createdAt").value(Objects.toString(event.getCreatedAt(), null));
+			json.name("payload").jsonValue(event.getPayload());
+			json.endObject();
+			out.newLine();
+		}
+
+		out.flush();
+		channel.force(false);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,30 @@
+package projects.outbox;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import projects.entity.OutboxEvent;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Sink for consumers in the same process. Published records are placed
+ *         on a queue that the consumer takes from.
+ */
+public class InMemoryOutboxSink implements OutboxSink {
+	private final BlockingQueue<OutboxEvent> queue = new LinkedBlockingQueue<>();
+
+	@Override
+	public void publish(List<OutboxEvent> events) {
+		queue.addAll(events);
+	}
+
+	/**
+	 * @return The queue of delivered records.
+	 */
+	public BlockingQueue<OutboxEvent> getQueue() {
+		return queue;
+	}
+}
@@ -0,0 +1,149 @@
+package projects.outbox;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import projects.dao.DbConnection;
+import projects.dao.OutboxDao;
+import projects.entity.OutboxEvent;
+import projects.exception.DbException;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Moves change records from the outbox table to a sink. Each pass reads
+ *         the oldest records in batches, publishes them, and deletes them once
+ *         the sink has accepted them. While there is a backlog batches are
+ *         sent back to back; when the outbox is empty the relay waits for the
+ *         poll interval before looking again.
+ *
+ *         Every shard has its own outbox, and each is drained in turn. Records
+ *         from one shard are delivered in the order they were written; there
+ *         is no order between shards.
+ *
+ *         Run a single relay per database; two relays would deliver the same
+ *         records twice.
+ *
+ *         Settings are system properties: projects.outbox.batchSize (500) and
+ *         projects.outbox.pollMillis (1000).
+ */
+public class OutboxRelay {
+	private static final int BATCH_SIZE = Integer.getInteger("projects.outbox.batchSize", 500);
+	private static final long POLL_MILLIS = Long.getLong("projects.outbox.pollMillis", 1000);
+
+	private OutboxDao outboxDao = new OutboxDao();
+	private OutboxSink sink;
+	private ScheduledExecutorService scheduler;
+
+	public OutboxRelay(OutboxSink sink) {
+		this.sink = sink;
+	}
+
+	/**
+	 *
+	 * @param args
+	 * @throws IOException Relays the outbox to the JSON lines file named by the
+	 *                     first argument until the process is stopped.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: OutboxRelay <output file>");
+			System.exit(1);
+		}
+
+		FileOutboxSink sink = new FileOutboxSink(Path.of(args[0]));
+		OutboxRelay relay = new OutboxRelay(sink);
+
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			relay.stop();
+
+			try {
+				sink.close();
+			} catch (IOException e) {
+				System.err.println("Unable to close " + args[0] + ": " + e.getMessage());
+			}
+		}));
+
+		relay.start();
+	}
+
+	/**
+	 * Starts relaying on a background thread.
+	 */
+	public synchronized void start() {
+		if (scheduler != null) {
+			return;
+		}
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "outbox-relay"));
+		scheduler.scheduleWithFixedDelay(this::relaySafely, 0, POLL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops relaying and waits for a batch in progress to finish.
+	 */
+	public synchronized void stop() {
+		if (scheduler == null) {
+			return;
+		}
+
+		scheduler.shutdown();
+
+		try {
+			scheduler.awaitTermination(30, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		scheduler = null;
+	}
+
+	/**
+	 *
+	 * @return Relays batches until every shard's outbox is empty and returns the
+	 *         number of records delivered.
+	 * @throws IOException Thrown if the sink rejects a batch. That batch stays in
+	 *                     the outbox.
+	 */
+	public int relay() throws IOException {
+		int delivered = 0;
+
+		for (int shard = 0; shard < DbConnection.getShardCount(); shard++) {
+			delivered += relay(shard);
+		}
+
+		return delivered;
+	}
+
+	private int relay(int shard) throws IOException {
+		int delivered = 0;
+		List<OutboxEvent> events;
+
+		do {
+			events = outboxDao.fetchOldestEvents(shard, BATCH_SIZE);
+
+			if (events.isEmpty()) {
+				break;
+			}
+
+			sink.publish(events);
+			outboxDao.prune(shard, events);
+			delivered += events.size();
+		} while (events.size() == BATCH_SIZE && !Thread.currentThread().isInterrupted());
+
+		return delivered;
+	}
+
+	private void relaySafely() {
+		try {
+			relay();
+		} catch (IOException | DbException e) {
+			System.err.println("Outbox relay failed: " + e.getMessage());
+		}
+	}
+}
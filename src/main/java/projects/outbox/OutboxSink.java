@@ -0,0 +1,25 @@
+package projects.outbox;
+
+import java.io.IOException;
+import java.util.List;
+
+import projects.entity.OutboxEvent;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Destination for change records read from the outbox. A batch is
+ *         pruned from the outbox only after publish returns normally, so a
+ *         sink that throws will see the same records again (at-least-once
+ *         delivery). Consumers should use the outbox ID to ignore duplicates.
+ */
+public interface OutboxSink {
+
+	/**
+	 *
+	 * @param events The change records, in outbox ID order.
+	 * @throws IOException Thrown if the records could not be delivered.
+	 */
+	void publish(List<OutboxEvent> events) throws IOException;
+}
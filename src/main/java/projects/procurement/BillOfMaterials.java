@@ -0,0 +1,99 @@
+package projects.procurement;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ *
+ * @author clayr
+ *
+ *         A consolidated shopping list for a group of projects, one line per
+ *         material in material name order. Deleted and unknown projects are
+ *         left out of the totals.
+ */
+public class BillOfMaterials {
+	private static final String CSV_HEADER = "material_name,num_required,cost,project_count";
+
+	private final List<BillOfMaterialsLine> lines;
+	private final int projectCount;
+
+	/**
+	 *
+	 * @param lines        The lines, in material name order.
+	 * @param projectCount The number of distinct project IDs asked for.
+	 */
+	public BillOfMaterials(List<BillOfMaterialsLine> lines, int projectCount) {
+		this.lines = List.copyOf(lines);
+		this.projectCount = projectCount;
+	}
+
+	public List<BillOfMaterialsLine> getLines() {
+		return lines;
+	}
+
+	public int getProjectCount() {
+		return projectCount;
+	}
+
+	/**
+	 *
+	 * @return The cost of every line added together.
+	 */
+	public BigDecimal getTotalCost() {
+		BigDecimal total = BigDecimal.ZERO;
+
+		for (BillOfMaterialsLine line : lines) {
+			total = total.add(line.getCost());
+		}
+
+		return total;
+	}
+
+	/**
+	 *
+	 * @param out Writes the bill as CSV with a header row, one line at a time.
+	 *            The writer is flushed but not closed.
+	 * @throws IOException Thrown if the writer fails.
+	 */
+	public void writeCsv(Writer out) throws IOException {
+		out.write(CSV_HEADER);
+		out.write("\r\n");
+
+		for (BillOfMaterialsLine line : lines) {
+			writeField(out, line.getMaterialName());
+			out.write(',');
+			out.write(Long.toString(line.getNumRequired()));
+			out.write(',');
+			out.write(line.getCost().toPlainString());
+			out.write(',');
+			out.write(Integer.toString(line.getProjectCount()));
+			out.write("\r\n");
+		}
+
+		out.flush();
+	}
+
+	/*
+	 * Quotes a field that holds a comma, quote or line break, doubling any
+	 * quotes, as RFC 4180 does.
+	 */
+	private static void writeField(Writer out, String value) throws IOException {
+		boolean quote = false;
+
+		for (int pos = 0; pos < value.length() && !quote; pos++) {
+			char c = value.charAt(pos);
+			quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+		}
+
+		if (!quote) {
+			out.write(value);
+			return;
+		}
+
+		out.write('"');
+		out.write(value.replace("\"", "\"\""));
+		out.write('"');
+	}
+}
@@ -0,0 +1,52 @@
+package projects.procurement;
+
+import java.math.BigDecimal;
+
+/**
+ *
+ * @author clayr
+ *
+ *         One material on a bill of materials: the quantity and cost summed
+ *         over every project in the bill that uses it.
+ */
+public class BillOfMaterialsLine {
+	private final String materialName;
+	private final long numRequired;
+	private final BigDecimal cost;
+	private final int projectCount;
+
+	/**
+	 *
+	 * @param materialName
+	 * @param numRequired  The sum of num_required.
+	 * @param cost         The sum of cost.
+	 * @param projectCount The number of projects that use the material.
+	 */
+	public BillOfMaterialsLine(String materialName, long numRequired, BigDecimal cost, int projectCount) {
+		this.materialName = materialName;
+		this.numRequired = numRequired;
+		this.cost = cost;
+		this.projectCount = projectCount;
+	}
+
+	public String getMaterialName() {
+		return materialName;
+	}
+
+	public long getNumRequired() {
+		return numRequired;
+	}
+
+	public BigDecimal getCost() {
+		return cost;
+	}
+
+	public int getProjectCount() {
+		return projectCount;
+	}
+
+	@Override
+	public String toString() {
+		return materialName + ": " + numRequired + " required, cost " + cost + ", in " + projectCount + " projects";
+	}
+}
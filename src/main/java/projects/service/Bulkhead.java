@@ -0,0 +1,296 @@
+package projects.service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import projects.exception.DbException;
+import projects.exception.ServiceOverloadedException;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Limits how many calls of one kind run against the database at once.
+ *         A call over the limit waits in a bounded first-come first-served
+ *         queue. When the queue is full, or the call has waited longer than the
+ *         queue deadline, it fails at once with
+ *         {@link ServiceOverloadedException} instead of adding to the load.
+ *
+ *         The limit adapts to the latency of finished calls. A call slower
+ *         than the target cuts the limit by the backoff factor, at most once
+ *         per target interval so that one slow burst counts once. A call
+ *         within the target raises the limit by about one per limit's worth of
+ *         calls, but only while the limit is in use. The limit stays between
+ *         the minimum and maximum.
+ *
+ *         Settings are system properties, where name is read or write:
+ *         projects.admission.{name}.initialLimit,
+ *         projects.admission.{name}.minLimit,
+ *         projects.admission.{name}.maxLimit,
+ *         projects.admission.{name}.queueSize,
+ *         projects.admission.{name}.queueMillis,
+ *         projects.admission.{name}.targetMillis and
+ *         projects.admission.backoff (0.9) for both.
+ */
+public class Bulkhead {
+	private static final double BACKOFF = Double
+			.parseDouble(System.getProperty("projects.admission.backoff", "0.9"));
+
+	private final String name;
+	private final int minLimit;
+	private final int maxLimit;
+	private final int queueSize;
+	private final long queueNanos;
+	private final long targetNanos;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Deque<Waiter> waiters = new ArrayDeque<>();
+	private final LongAdder admitted = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder timedOut = new LongAdder();
+	private double limit;
+	private int inFlight;
+	private long lastBackoff;
+
+	/**
+	 *
+	 * @param name
+	 * @param initialLimit
+	 * @param maxLimit
+	 * @param queueSize
+	 * @param queueMillis
+	 * @param targetMillis Creates a bulkhead whose settings default to the given
+	 *                     values and can be overridden by system properties.
+	 */
+	Bulkhead(String name, int initialLimit, int maxLimit, int queueSize, long queueMillis, long targetMillis) {
+		String prefix = "projects.admission." + name + ".";
+
+		this.name = name;
+		this.minLimit = Math.max(1, Integer.getInteger(prefix + "minLimit", 1));
+		this.maxLimit = Math.max(minLimit, Integer.getInteger(prefix + "maxLimit", maxLimit));
+		this.queueSize = Integer.getInteger(prefix + "queueSize", queueSize);
+		this.queueNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong(prefix + "queueMillis", queueMillis));
+		this.targetNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong(prefix + "targetMillis", targetMillis));
+		this.limit = Math.min(this.maxLimit,
+				Math.max(minLimit, Integer.getInteger(prefix + "initialLimit", initialLimit)));
+		this.lastBackoff = System.nanoTime() - targetNanos - 1;
+	}
+
+	/**
+	 *
+	 * @param <T>
+	 * @param work
+	 * @return Runs the work once it is admitted and returns its result. Throws
+	 *         ServiceOverloadedException without running it if it is shed.
+	 */
+	public <T> T call(Supplier<T> work) {
+		acquire();
+
+		long start = System.nanoTime();
+
+		try {
+			return work.get();
+		} finally {
+			release(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 *
+	 * @param work Runs the work once it is admitted. Throws
+	 *             ServiceOverloadedException without running it if it is shed.
+	 */
+	public void run(Runnable work) {
+		call(() -> {
+			work.run();
+			return null;
+		});
+	}
+
+	private void acquire() {
+		lock.lock();
+
+		try {
+			if (waiters.isEmpty() && inFlight < permits()) {
+				inFlight++;
+				admitted.increment();
+				return;
+			}
+
+			if (waiters.size() >= queueSize) {
+				rejected.increment();
+				throw new ServiceOverloadedException(
+						"Too many " + name + " requests are waiting. Try again later.");
+			}
+
+			Waiter waiter = new Waiter(lock.newCondition());
+			long remaining = queueNanos;
+
+			waiters.addLast(waiter);
+
+			try {
+				while (!waiter.admitted && remaining > 0) {
+					remaining = waiter.ready.awaitNanos(remaining);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+
+				/*
+				 * A permit handed over just before the interrupt is kept, so the
+				 * call runs and gives it back as usual.
+				 */
+				if (!waiter.admitted) {
+					waiters.remove(waiter);
+					throw new DbException("Interrupted while waiting to run a " + name + " request.", e);
+				}
+			}
+
+			if (!waiter.admitted) {
+				waiters.remove(waiter);
+				timedOut.increment();
+				throw new ServiceOverloadedException("A " + name + " request waited more than "
+						+ TimeUnit.NANOSECONDS.toMillis(queueNanos) + " ms. Try again later.");
+			}
+
+			admitted.increment();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void release(long elapsedNanos) {
+		lock.lock();
+
+		try {
+			inFlight--;
+			adapt(elapsedNanos);
+
+			/*
+			 * Permits are handed to waiters directly, oldest first, so a new
+			 * caller cannot take one ahead of them.
+			 */
+			while (!waiters.isEmpty() && inFlight < permits()) {
+				Waiter waiter = waiters.pollFirst();
+
+				waiter.admitted = true;
+				inFlight++;
+				waiter.ready.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void adapt(long elapsedNanos) {
+		long now = System.nanoTime();
+
+		if (elapsedNanos > targetNanos) {
+			if (now - lastBackoff > targetNanos) {
+				limit = Math.max(minLimit, limit * BACKOFF);
+				lastBackoff = now;
+			}
+		} else if (inFlight + 1 >= permits() || !waiters.isEmpty()) {
+			limit = Math.min(maxLimit, limit + 1 / limit);
+		}
+	}
+
+	private int permits() {
+		return Math.max(minLimit, (int) limit);
+	}
+
+	/**
+	 *
+	 * @return The bulkhead's name, read or write.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 *
+	 * @return The number of calls currently allowed to run at once.
+	 */
+	public int getLimit() {
+		lock.lock();
+
+		try {
+			return permits();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @return The number of calls running.
+	 */
+	public int getInFlight() {
+		lock.lock();
+
+		try {
+			return inFlight;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @return The number of calls waiting in the queue.
+	 */
+	public int getQueued() {
+		lock.lock();
+
+		try {
+			return waiters.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @return The number of calls admitted since startup.
+	 */
+	public long getAdmitted() {
+		return admitted.sum();
+	}
+
+	/**
+	 *
+	 * @return The number of calls turned away because the queue was full.
+	 */
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	/**
+	 *
+	 * @return The number of calls that left the queue at its deadline.
+	 */
+	public long getTimedOut() {
+		return timedOut.sum();
+	}
+
+	/**
+	 *
+	 * @return The number of calls shed for either reason.
+	 */
+	public long getShed() {
+		return rejected.sum() + timedOut.sum();
+	}
+
+	private static class Waiter {
+		private final Condition ready;
+		private boolean admitted;
+
+		Waiter(Condition ready) {
+			this.ready = ready;
+		}
+	}
+}
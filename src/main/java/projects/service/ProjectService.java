@@ -1,26 +1,108 @@
 package projects.service;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.NoSuchElementException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
+import projects.analytics.ProjectColumns;
+import projects.dao.BillOfMaterialsDao;
+import projects.dao.ChangeFeedDao;
+import projects.dao.Criterion;
+import projects.dao.FetchPlan;
 import projects.dao.ProjectDao;
+import projects.dao.ProjectPurger;
+import projects.dao.ProjectQuery;
+import projects.dao.WorkLogDao;
+import projects.entity.ColumnLimits;
+import projects.entity.JournalEntry;
 import projects.entity.Project;
+import projects.entity.WorkLogEntry;
 import projects.exception.DbException;
+import projects.exception.ProjectNotFoundException;
+import projects.journal.JournalReplayer;
+import projects.procurement.BillOfMaterials;
+import projects.similarity.SimilarProject;
+import projects.similarity.SimilarityIndex;
+import projects.sync.ChangeSet;
+import projects.sync.SyncCursor;
+import projects.typeahead.ProjectNameIndex;
+import projects.typeahead.ProjectSuggestion;
+import projects.worklog.WorkLogIngestor;
 
 /**
  * 
- * @author clayr Projects service layer
+ * @author clayr Projects service layer. Database reads and writes pass through
+ *         separate bulkheads that limit how many run at once and shed the rest
+ *         with ServiceOverloadedException when the database falls behind.
  */
 public class ProjectService {
+	/*
+	 * Shared by every ProjectService, since they all use the same database.
+	 */
+	private static final Bulkhead reads = new Bulkhead("read", 16, 64, 256, 1000, 50);
+	private static final Bulkhead writes = new Bulkhead("write", 8, 32, 128, 2000, 100);
+
+	private static final int MAX_CHANGES = Integer.getInteger("projects.sync.maxLimit", 1000);
+
 	private ProjectDao projectDao = new ProjectDao();
+	private WorkLogDao workLogDao = new WorkLogDao();
+	private BillOfMaterialsDao billOfMaterialsDao = new BillOfMaterialsDao();
+	private ChangeFeedDao changeFeedDao = new ChangeFeedDao();
+	private JournalReplayer journal = JournalReplayer.getInstance();
+	private SimilarityIndex similarity = SimilarityIndex.getInstance();
+	private ProjectNameIndex names = ProjectNameIndex.getInstance();
+
+	/**
+	 * 
+	 * @return True if single project writes are saved to the local journal and
+	 *         applied to the database later. Such writes cannot report a missing
+	 *         project, and are not visible to reads until they are applied.
+	 */
+	public boolean isJournaled() {
+		return journal.isEnabled();
+	}
 
 	/**
 	 * 
 	 * @param project
-	 * @return Calls insertProject method in Dao.
+	 * @return Calls insertProject method in Dao. If the local journal is
+	 *         enabled, the project is saved to the journal instead and returned
+	 *         without an ID; it gets one when the journal is replayed. A
+	 *         journaled project is checked against the column sizes first, since
+	 *         the write is acknowledged before the database sees it.
 	 */
 	public Project addProject(Project project) {
-		return projectDao.insertProject(project);
+		if (journal.isEnabled()) {
+			ColumnLimits.checkProject(project);
+			journal.record(JournalEntry.INSERT, project);
+			return project;
+		}
+
+		Project dbProject = writes.call(() -> projectDao.insertProject(project));
+
+		names.put(dbProject.getProjectId(), dbProject.getProjectName());
+		return dbProject;
+	}
+
+	/**
+	 * 
+	 * @param projects
+	 * @return Calls insertProjects method in Dao. All projects are inserted in
+	 *         one batch and returned with their new IDs.
+	 */
+	public List<Project> addProjects(List<Project> projects) {
+		List<Project> dbProjects = writes.call(() -> projectDao.insertProjects(projects));
+
+		dbProjects.forEach(project -> names.put(project.getProjectId(), project.getProjectName()));
+		return dbProjects;
 	}
 
 	/**
@@ -28,43 +110,387 @@ public class ProjectService {
 	 * @return Calls fetchAllProjects method in Dao.
 	 */
 	public List<Project> fetchAllProjects() {
-		return projectDao.fetchAllProjects();
+		return reads.call(projectDao::fetchAllProjects);
+	}
+
+	/**
+	 * 
+	 * @param query
+	 * @return Calls fetchProjects method in Dao. Returns the projects matching
+	 *         the query, with their child collections loaded lazily.
+	 */
+	public List<Project> fetchProjects(ProjectQuery query) {
+		return fetchProjects(query, FetchPlan.LAZY);
+	}
+
+	/**
+	 * 
+	 * @param query
+	 * @param plan
+	 * @return Calls fetchProjects method in Dao, loading the child collections
+	 *         named in the fetch plan up front.
+	 */
+	public List<Project> fetchProjects(ProjectQuery query, FetchPlan plan) {
+		return reads.call(() -> projectDao.fetchProjects(query, plan));
+	}
+
+	/**
+	 * 
+	 * @param materialName
+	 * @return The projects that use the named material, found through the
+	 *         material catalog's indexes rather than a scan of every material.
+	 */
+	public List<Project> fetchProjectsUsingMaterial(String materialName) {
+		return fetchProjects(ProjectQuery.where(Criterion.usesMaterial(materialName)));
+	}
+
+	/**
+	 * 
+	 * @param watermark The cursor returned by the previous call, or null for a
+	 *                  first sync.
+	 * @param limit
+	 * @return Up to limit projects added, changed or deleted after the
+	 *         watermark, in last modified order, each changed one with its
+	 *         materials, steps and categories. Call again with the returned
+	 *         cursor while more changes remain. Changes from the last few
+	 *         seconds are held back until they are certain to be in order.
+	 */
+	public ChangeSet fetchChangesSince(SyncCursor watermark, int limit) {
+		if (limit < 1 || limit > MAX_CHANGES) {
+			throw new IllegalArgumentException("The number of changes must be between 1 and " + MAX_CHANGES + ".");
+		}
+
+		SyncCursor cursor = Objects.requireNonNullElse(watermark, SyncCursor.START);
+
+		return reads.call(() -> changeFeedDao.fetchChangesSince(cursor, limit));
+	}
+
+	/**
+	 * 
+	 * @return Calls fetchProjectColumns method in Dao. The result is a read-only
+	 *         columnar copy of the project table; use the operators in ColumnScan
+	 *         to filter and aggregate it.
+	 */
+	public ProjectColumns fetchProjectColumns() {
+		return reads.call(projectDao::fetchProjectColumns);
 	}
 
 	/**
 	 * 
 	 * @param projectId
 	 * @return Calls fetchProjectById in Dao, if a projectId that doesn't exist is
-	 *         passed, throws exception with message.
+	 *         passed, throws exception with message. Materials, steps and
+	 *         categories are loaded lazily on first access.
 	 */
 	public Project fetchProjectById(Integer projectId) {
-		return projectDao.fetchProjectById(projectId).orElseThrow(
-				() -> new NoSuchElementException("Project with project ID=" + projectId + " does not exist."));
+		return fetchProjectById(projectId, FetchPlan.LAZY);
+	}
+
+	/**
+	 * 
+	 * @param projectId
+	 * @param plan
+	 * @return Calls fetchProjectById in Dao, loading the child collections named
+	 *         in the fetch plan up front. If a projectId that doesn't exist is
+	 *         passed, throws exception with message.
+	 */
+	public Project fetchProjectById(Integer projectId, FetchPlan plan) {
+		return reads.call(() -> projectDao.fetchProjectById(projectId, plan)).orElseThrow(
+				() -> new ProjectNotFoundException(projectId));
 	}
 
 	/**
 	 * 
 	 * @param project If an integer is passed in by the user that doesn't match a
 	 *                project ID, then throw a DbException with an error message.
-	 *                Otherwise, run the method in the Dao.
+	 *                Otherwise, run the method in the Dao. With the local journal
+	 *                enabled, the update is saved to the journal instead.
 	 */
 	public void modifyProjectDetails(Project project) {
-		if (!projectDao.modifyProjectDetails(project)) {
-			throw new DbException("Project with ID=" + project.getProjectId() + " does not exist.");
+		if (journal.isEnabled()) {
+			requireProjectId(project.getProjectId());
+			ColumnLimits.checkProject(project);
+			journal.record(JournalEntry.UPDATE, project);
+			return;
 		}
+
+		if (!writes.call(() -> projectDao.modifyProjectDetails(project))) {
+			throw new ProjectNotFoundException(project.getProjectId());
+		}
+
+		names.put(project.getProjectId(), project.getProjectName());
 	}
 
 	/**
 	 * 
 	 * @param projectId If an integer is passed in by the user that doesn't match a
 	 *                  project ID, then throw a DbException with an error message.
-	 *                  Otherwise, run the method in the Dao.
+	 *                  Otherwise, run the method in the Dao. With the local
+	 *                  journal enabled, the delete is saved to the journal
+	 *                  instead.
 	 */
 	public void deleteProject(Integer projectId) {
-		if (!projectDao.deleteProject(projectId)) {
-			throw new DbException("Project with ID=" + projectId + " does not exist.");
+		if (journal.isEnabled()) {
+			Project project = new Project();
+
+			project.setProjectId(requireProjectId(projectId));
+			journal.record(JournalEntry.DELETE, project);
+			return;
+		}
+
+		if (!writes.call(() -> projectDao.deleteProject(projectId))) {
+			throw new ProjectNotFoundException(projectId);
+		}
+
+		similarity.markChanged(List.of(projectId));
+		names.remove(List.of(projectId));
+
+		purgeDeleted();
+	}
+
+	/**
+	 * 
+	 * @param projectId
+	 * @param newName
+	 * @return Calls cloneProject method in Dao. The project and its steps,
+	 *         materials and category links are copied inside the database.
+	 *         Returns the new project ID. If a projectId that doesn't exist is
+	 *         passed, throws exception with message.
+	 */
+	public Integer cloneProject(Integer projectId, String newName) {
+		Integer cloneId = writes.call(() -> projectDao.cloneProject(projectId, newName))
+				.orElseThrow(() -> new ProjectNotFoundException(projectId));
+
+		similarity.markChanged(List.of(cloneId));
+		names.put(cloneId, newName);
+		return cloneId;
+	}
+
+	/**
+	 * 
+	 * @param projectId
+	 * @param categoryNames If the project doesn't exist, throws a DbException
+	 *                      with an error message. Otherwise, links the project
+	 *                      to exactly the named categories, creating any that
+	 *                      are new.
+	 */
+	public void setCategories(Integer projectId, Set<String> categoryNames) {
+		Map<Integer, Set<String>> categoriesByProject = new HashMap<>();
+
+		categoriesByProject.put(projectId, categoryNames);
+
+		if (Objects.isNull(projectId) || !setCategories(categoriesByProject).isEmpty()) {
+			throw new ProjectNotFoundException(projectId);
+		}
+	}
+
+	/**
+	 * 
+	 * @param categoriesByProject
+	 * @return Calls setCategories method in Dao. Each project is linked to
+	 *         exactly its named categories. Returns the IDs of projects that do
+	 *         not exist, which are left unchanged.
+	 */
+	public Set<Integer> setCategories(Map<Integer, Set<String>> categoriesByProject) {
+		Set<Integer> missing = writes.call(() -> projectDao.setCategories(categoriesByProject));
+
+		similarity.markChanged(categoriesByProject.keySet());
+		return missing;
+	}
+
+	/**
+	 * 
+	 * @param projectId
+	 * @param limit
+	 * @return Up to limit projects whose materials and categories most resemble
+	 *         the given project's, most similar first. The similarity index is
+	 *         built on the first call. Returns an empty list if the project does
+	 *         not exist or has no materials or categories.
+	 */
+	public List<SimilarProject> findSimilar(Integer projectId, int limit) {
+		return reads.call(() -> similarity.findSimilar(requireProjectId(projectId), limit));
+	}
+
+	/**
+	 * 
+	 * @param projectIds
+	 * @return One line per material used by the given projects, with the
+	 *         quantity and cost summed over all of them. The sums are computed
+	 *         by the database, so no project is loaded.
+	 */
+	public BillOfMaterials billOfMaterials(Collection<Integer> projectIds) {
+		return reads.call(() -> billOfMaterialsDao.fetchBillOfMaterials(projectIds));
+	}
+
+	/**
+	 * 
+	 * @param projectIds
+	 * @param out        Writes the bill of materials for the given projects to
+	 *                   out as CSV. The writer is flushed but not closed.
+	 * @throws IOException Thrown if the writer fails.
+	 */
+	public void writeBillOfMaterials(Collection<Integer> projectIds, Writer out) throws IOException {
+		billOfMaterials(projectIds).writeCsv(out);
+	}
+
+	/**
+	 * 
+	 * @param prefix
+	 * @param limit
+	 * @return Up to limit projects whose name starts with the prefix, ignoring
+	 *         case, followed by projects with a later word in their name that
+	 *         starts with it. Lookups are answered from an index in memory,
+	 *         which is built on the first call.
+	 */
+	public List<ProjectSuggestion> suggestProjects(String prefix, int limit) {
+		return names.suggest(prefix, limit);
+	}
+
+	/**
+	 * 
+	 * @param projects
+	 * @return Calls patchProjects method in Dao. Null fields on a project are
+	 *         left unchanged in the database. Returns the number of rows updated
+	 *         for each project.
+	 */
+	public int[] patchProjects(List<Project> projects) {
+		int[] counts = writes.call(() -> projectDao.patchProjects(projects));
+
+		for (int pos = 0; pos < projects.size(); pos++) {
+			if (counts[pos] > 0 && Objects.nonNull(projects.get(pos).getProjectName())) {
+				names.put(projects.get(pos).getProjectId(), projects.get(pos).getProjectName());
+			}
+		}
+
+		return counts;
+	}
+
+	/**
+	 * 
+	 * @param projectIds
+	 * @return Calls deleteProjects method in Dao. The projects are hidden at
+	 *         once and purged in the background. Returns the number of projects
+	 *         deleted for each project ID; zero means it did not exist.
+	 */
+	public int[] deleteProjects(Collection<Integer> projectIds) {
+		int[] counts = writes.call(() -> projectDao.deleteProjects(projectIds));
+
+		similarity.markChanged(projectIds);
+		names.remove(projectIds);
+
+		purgeDeleted();
+		return counts;
+	}
+
+	/**
+	 * 
+	 * @param entry Buffers the time entry for the background work log
+	 *              ingestor, which writes entries in batches and refreshes the
+	 *              project's actual hours from the rollups shortly after.
+	 */
+	public void logWork(WorkLogEntry entry) {
+		try {
+			WorkLogIngestor.getInstance().submit(entry);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DbException("Interrupted while logging work for project ID=" + entry.getProjectId(), e);
 		}
+	}
+
+	/**
+	 * 
+	 * @param entries Writes the time entries at once, with one multi-row insert
+	 *                per shard, and refreshes the actual hours of their
+	 *                projects before returning.
+	 */
+	public void logWork(List<WorkLogEntry> entries) {
+		List<Integer> projectIds = new ArrayList<>(entries.size());
+
+		entries.forEach(entry -> projectIds.add(entry.getProjectId()));
+		writes.run(() -> {
+			workLogDao.appendEntries(entries);
+			workLogDao.refreshActualHours(projectIds);
+		});
+	}
+
+	/**
+	 * 
+	 * @param projectId
+	 * @param period
+	 * @param from
+	 * @param to
+	 * @return Calls fetchRollup method in Dao. Returns the hours logged on the
+	 *         project per day or week, keyed by the first day of the period.
+	 */
+	public Map<LocalDate, BigDecimal> fetchWorkRollup(Integer projectId, WorkLogDao.Period period, LocalDate from,
+			LocalDate to) {
+		return reads.call(() -> workLogDao.fetchRollup(projectId, period, from, to));
+	}
+
+	/**
+	 * 
+	 * @return The bulkhead that admits reads, for its queue depth, limit and
+	 *         shed counts.
+	 */
+	public Bulkhead getReadBulkhead() {
+		return reads;
+	}
+
+	/**
+	 * 
+	 * @return The bulkhead that admits writes, for its queue depth, limit and
+	 *         shed counts.
+	 */
+	public Bulkhead getWriteBulkhead() {
+		return writes;
+	}
+
+	/**
+	 * Writes the time entries still buffered by the work log ingestor and stops
+	 * it. Front ends that log work call this on shutdown.
+	 */
+	public void stopWorkLog() {
+		WorkLogIngestor.getInstance().stop();
+	}
+
+	/**
+	 * Starts the background purger that removes soft-deleted projects. Long
+	 * running front ends call this once at startup. Short-lived ones can leave
+	 * it out; the purger is started on the first delete.
+	 */
+	public void startPurger() {
+		ProjectPurger.getInstance().start();
+	}
+
+	/**
+	 * Makes a last attempt to apply the local journal and closes it. Writes
+	 * that could not be applied are kept for the next run.
+	 */
+	public void stopJournal() {
+		journal.stop();
+	}
+
+	/*
+	 * Journaled writes and similarity queries do not ask the database whether
+	 * the project exists, but without a project ID it never can.
+	 */
+	private Integer requireProjectId(Integer projectId) {
+		if (Objects.isNull(projectId)) {
+			throw new ProjectNotFoundException(null);
+		}
+
+		return projectId;
+	}
+
+	/*
+	 * Starting the purger queues a purge, and a request made while one is queued
+	 * is merged into it.
+	 */
+	private void purgeDeleted() {
+		ProjectPurger purger = ProjectPurger.getInstance();
 
+		purger.start();
+		purger.requestPurge();
 	}
 
 }
@@ -0,0 +1,396 @@
+package projects.similarity;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ *
+ * @author clayr
+ *
+ *         MinHash signatures of projects' feature sets, bucketed for
+ *         locality-sensitive hashing. A signature holds, for each of a fixed
+ *         number of hash functions, the smallest hash of any feature in the
+ *         set. The fraction of positions where two signatures agree estimates
+ *         the Jaccard similarity of the two sets.
+ *
+ *         Signatures are cut into bands of equal rows. Two projects land in the
+ *         same bucket of a band when their signatures agree on every row of
+ *         it, so a query only scores the projects that share at least one
+ *         bucket with it instead of every project.
+ *
+ *         Signatures live in one flat array indexed by slot, and each band's
+ *         buckets are doubly linked lists of slots threaded through arrays, so
+ *         a million projects take no more than a few hundred megabytes and no
+ *         objects per project beyond the ID map entry.
+ *
+ *         An index is filled with {@link #addFeature(int, String)} and made
+ *         searchable with {@link #link()} by a single thread before it is
+ *         shared. After that, {@link #put(int, int[])}, {@link #remove(int)}
+ *         and {@link #query(int, int, int)} may be called from any thread.
+ */
+class MinHashIndex {
+	private static final int NONE = -1;
+	private static final long SEED = 0x5eed_0f_4a11L;
+	private static final Comparator<SimilarProject> WORST_FIRST = Comparator
+			.comparingDouble(SimilarProject::getSimilarity)
+			.thenComparing(Comparator.comparingInt(SimilarProject::getProjectId).reversed());
+
+	private final int hashes;
+	private final int bands;
+	private final int rows;
+	private final long[] seeds;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<Integer, Integer> slots = new HashMap<>();
+	private final Deque<Integer> freeSlots = new ArrayDeque<>();
+	private int[] projectIds = new int[0];
+	private int[] signatures = new int[0];
+	private int[][] heads;
+	private int[][] next;
+	private int[][] prev;
+	private boolean linked;
+
+	/**
+	 *
+	 * @param hashes
+	 * @param bands  Creates an empty index with the given signature length,
+	 *               which must be a multiple of the number of bands.
+	 */
+	MinHashIndex(int hashes, int bands) {
+		if (hashes <= 0 || bands <= 0 || hashes % bands != 0) {
+			throw new IllegalArgumentException(
+					"The number of hashes (" + hashes + ") must be a multiple of the number of bands (" + bands + ").");
+		}
+
+		this.hashes = hashes;
+		this.bands = bands;
+		this.rows = hashes / bands;
+		this.seeds = new SplittableRandom(SEED).longs(hashes).toArray();
+		this.heads = new int[bands][0];
+		this.next = new int[bands][0];
+		this.prev = new int[bands][0];
+	}
+
+	/**
+	 *
+	 * @return A signature for the empty set, ready for
+	 *         {@link #addToSignature(int[], String)}.
+	 */
+	int[] newSignature() {
+		int[] signature = new int[hashes];
+
+		Arrays.fill(signature, Integer.MAX_VALUE);
+		return signature;
+	}
+
+	/**
+	 *
+	 * @param signature
+	 * @param feature   Adds the feature to the signature. Features are
+	 *                  compared without regard to case or surrounding spaces.
+	 */
+	void addToSignature(int[] signature, String feature) {
+		addToSignature(signature, 0, featureHash(feature));
+	}
+
+	/**
+	 *
+	 * @param projectId
+	 * @param feature   Adds a feature to a project's signature while the index
+	 *                  is being filled, before {@link #link()}.
+	 */
+	void addFeature(int projectId, String feature) {
+		Integer slot = slots.get(projectId);
+
+		if (slot == null) {
+			slot = allocate(projectId);
+		}
+
+		addToSignature(signatures, slot * hashes, featureHash(feature));
+	}
+
+	/**
+	 * Puts every project added so far into its buckets. Called once, after the
+	 * index has been filled.
+	 */
+	void link() {
+		linked = true;
+		relink();
+	}
+
+	/**
+	 *
+	 * @param projectId
+	 * @param signature Replaces the project's signature, adding the project if
+	 *                  it is not in the index.
+	 */
+	void put(int projectId, int[] signature) {
+		lock.writeLock().lock();
+
+		try {
+			Integer slot = slots.get(projectId);
+
+			if (slot == null) {
+				slot = allocate(projectId);
+			} else {
+				unlink(slot);
+			}
+
+			System.arraycopy(signature, 0, signatures, slot * hashes, hashes);
+			link(slot);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @param projectId Removes the project from the index, if it is there.
+	 */
+	void remove(int projectId) {
+		lock.writeLock().lock();
+
+		try {
+			Integer slot = slots.remove(projectId);
+
+			if (slot == null) {
+				return;
+			}
+
+			unlink(slot);
+			projectIds[slot] = 0;
+			freeSlots.push(slot);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @param projectId
+	 * @param limit
+	 * @param maxCandidates
+	 * @return Up to limit projects sharing a bucket with the given project,
+	 *         most similar first. At most maxCandidates are scored, which bounds
+	 *         the work when very many projects have the same features. Empty if
+	 *         the project is not in the index.
+	 */
+	List<SimilarProject> query(int projectId, int limit, int maxCandidates) {
+		lock.readLock().lock();
+
+		try {
+			Integer slot = slots.get(projectId);
+
+			if (slot == null) {
+				return List.of();
+			}
+
+			Set<Integer> candidates = new HashSet<>();
+
+			for (int band = 0; band < bands && candidates.size() < maxCandidates; band++) {
+				for (int other = heads[band][bucket(slot, band)]; other != NONE
+						&& candidates.size() < maxCandidates; other = next[band][other]) {
+					/*
+					 * Different bands can share a bucket by hash collision, so the
+					 * rows are compared before the project counts as a candidate.
+					 */
+					if (other != slot && bandEquals(slot, other, band)) {
+						candidates.add(other);
+					}
+				}
+			}
+
+			PriorityQueue<SimilarProject> best = new PriorityQueue<>(limit + 1, WORST_FIRST);
+
+			for (int other : candidates) {
+				best.add(new SimilarProject(projectIds[other], similarity(slot, other)));
+
+				if (best.size() > limit) {
+					best.poll();
+				}
+			}
+
+			List<SimilarProject> result = new ArrayList<>(best);
+
+			result.sort(WORST_FIRST.reversed());
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @return The number of projects in the index.
+	 */
+	int size() {
+		lock.readLock().lock();
+
+		try {
+			return slots.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void addToSignature(int[] signature, int offset, long featureHash) {
+		for (int pos = 0; pos < hashes; pos++) {
+			int value = (int) (mix(featureHash ^ seeds[pos]) >>> 32);
+
+			if (value < signature[offset + pos]) {
+				signature[offset + pos] = value;
+			}
+		}
+	}
+
+	private int allocate(int projectId) {
+		if (freeSlots.isEmpty()) {
+			grow();
+		}
+
+		int slot = freeSlots.pop();
+
+		projectIds[slot] = projectId;
+		Arrays.fill(signatures, slot * hashes, (slot + 1) * hashes, Integer.MAX_VALUE);
+		slots.put(projectId, slot);
+		return slot;
+	}
+
+	/*
+	 * Doubles the capacity. The bucket tables are sized to the capacity, so
+	 * every project is linked again.
+	 */
+	private void grow() {
+		int capacity = projectIds.length;
+		int newCapacity = Math.max(1024, capacity * 2);
+
+		projectIds = Arrays.copyOf(projectIds, newCapacity);
+		signatures = Arrays.copyOf(signatures, newCapacity * hashes);
+
+		for (int slot = newCapacity - 1; slot >= capacity; slot--) {
+			freeSlots.push(slot);
+		}
+
+		if (linked) {
+			relink();
+		}
+	}
+
+	private void relink() {
+		int capacity = projectIds.length;
+
+		for (int band = 0; band < bands; band++) {
+			heads[band] = new int[capacity];
+			next[band] = new int[capacity];
+			prev[band] = new int[capacity];
+			Arrays.fill(heads[band], NONE);
+		}
+
+		for (int slot : slots.values()) {
+			link(slot);
+		}
+	}
+
+	private void link(int slot) {
+		for (int band = 0; band < bands; band++) {
+			int bucket = bucket(slot, band);
+			int first = heads[band][bucket];
+
+			next[band][slot] = first;
+			prev[band][slot] = NONE;
+
+			if (first != NONE) {
+				prev[band][first] = slot;
+			}
+
+			heads[band][bucket] = slot;
+		}
+	}
+
+	private void unlink(int slot) {
+		for (int band = 0; band < bands; band++) {
+			int before = prev[band][slot];
+			int after = next[band][slot];
+
+			if (before == NONE) {
+				heads[band][bucket(slot, band)] = after;
+			} else {
+				next[band][before] = after;
+			}
+
+			if (after != NONE) {
+				prev[band][after] = before;
+			}
+		}
+	}
+
+	/*
+	 * The capacity is a power of two, so the mask picks a bucket.
+	 */
+	private int bucket(int slot, int band) {
+		long hash = band;
+		int offset = slot * hashes + band * rows;
+
+		for (int row = 0; row < rows; row++) {
+			hash = mix(hash * 31 + signatures[offset + row]);
+		}
+
+		return (int) hash & (projectIds.length - 1);
+	}
+
+	private boolean bandEquals(int slot, int other, int band) {
+		int offset = band * rows;
+
+		return Arrays.equals(signatures, slot * hashes + offset, slot * hashes + offset + rows, signatures,
+				other * hashes + offset, other * hashes + offset + rows);
+	}
+
+	private double similarity(int slot, int other) {
+		int same = 0;
+
+		for (int pos = 0; pos < hashes; pos++) {
+			if (signatures[slot * hashes + pos] == signatures[other * hashes + pos]) {
+				same++;
+			}
+		}
+
+		return (double) same / hashes;
+	}
+
+	/*
+	 * FNV-1a over the normalized feature, finished with mix so that similar
+	 * strings spread over the whole range.
+	 */
+	private static long featureHash(String feature) {
+		String normalized = feature.trim().toLowerCase(Locale.ROOT);
+		long hash = 0xcbf29ce484222325L;
+
+		for (int pos = 0; pos < normalized.length(); pos++) {
+			hash ^= normalized.charAt(pos);
+			hash *= 0x100000001b3L;
+		}
+
+		return mix(hash);
+	}
+
+	/*
+	 * The SplitMix64 finalizer.
+	 */
+	private static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+		value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+		return value ^ (value >>> 31);
+	}
+}
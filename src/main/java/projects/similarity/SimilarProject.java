@@ -0,0 +1,32 @@
+package projects.similarity;
+
+/**
+ *
+ * @author clayr
+ *
+ *         A project found by {@link SimilarityIndex#findSimilar(int, int)} and
+ *         the estimated Jaccard similarity of its materials and categories to
+ *         the query project's, from 0 (nothing shared) to 1 (the same sets).
+ */
+public class SimilarProject {
+	private final int projectId;
+	private final double similarity;
+
+	SimilarProject(int projectId, double similarity) {
+		this.projectId = projectId;
+		this.similarity = similarity;
+	}
+
+	public int getProjectId() {
+		return projectId;
+	}
+
+	public double getSimilarity() {
+		return similarity;
+	}
+
+	@Override
+	public String toString() {
+		return "SimilarProject [projectId=" + projectId + ", similarity=" + similarity + "]";
+	}
+}
@@ -0,0 +1,244 @@
+package projects.similarity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import projects.dao.SimilarityDao;
+import projects.exception.DbException;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Finds projects that resemble a given one by the materials and
+ *         categories they share, using a {@link MinHashIndex} held in memory.
+ *
+ *         The index is built from the database on first use, which reads every
+ *         material and category link once. After that ProjectService reports
+ *         the projects it changes, and a background thread reads their
+ *         features again and updates their signatures, so the index follows
+ *         this process's writes within the refresh interval. A project that is
+ *         queried while its change is still waiting is refreshed first. Changes
+ *         made by other processes are picked up by a full rebuild on a slower
+ *         schedule.
+ *
+ *         Settings are system properties: projects.similarity.hashes (32),
+ *         projects.similarity.bands (8), projects.similarity.maxCandidates
+ *         (10000), projects.similarity.refreshMillis (1000) and
+ *         projects.similarity.rebuildMinutes (60).
+ */
+public class SimilarityIndex {
+	private static final int HASHES = Integer.getInteger("projects.similarity.hashes", 32);
+	private static final int BANDS = Integer.getInteger("projects.similarity.bands", 8);
+	private static final int MAX_CANDIDATES = Integer.getInteger("projects.similarity.maxCandidates", 10_000);
+	private static final long REFRESH_MILLIS = Long.getLong("projects.similarity.refreshMillis", 1000);
+	private static final long REBUILD_MINUTES = Long.getLong("projects.similarity.rebuildMinutes", 60);
+
+	private static final SimilarityIndex instance = new SimilarityIndex();
+
+	private final Set<Integer> changedProjectIds = ConcurrentHashMap.newKeySet();
+	private SimilarityDao similarityDao = new SimilarityDao();
+	private volatile MinHashIndex index;
+	private volatile boolean active;
+	private ScheduledExecutorService scheduler;
+
+	private SimilarityIndex() {
+	}
+
+	public static SimilarityIndex getInstance() {
+		return instance;
+	}
+
+	/**
+	 *
+	 * @param projectId
+	 * @param limit
+	 * @return Up to limit projects most similar to the given one, most similar
+	 *         first, building the index if this is the first query. Empty if
+	 *         the project does not exist or has no materials or categories.
+	 */
+	public List<SimilarProject> findSimilar(int projectId, int limit) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("The number of similar projects must be at least 1.");
+		}
+
+		MinHashIndex current = current();
+
+		/*
+		 * The change is left for the background refresh as well, in case a
+		 * rebuild that read the old rows is about to replace this index.
+		 */
+		if (changedProjectIds.contains(projectId)) {
+			refresh(current, List.of(projectId));
+		}
+
+		return current.query(projectId, limit, MAX_CANDIDATES);
+	}
+
+	/**
+	 *
+	 * @param projectIds Notes projects whose materials or categories changed, or
+	 *                   that were added or deleted, for the next refresh. Does
+	 *                   nothing until the index is in use.
+	 */
+	public void markChanged(Collection<Integer> projectIds) {
+		if (active) {
+			projectIds.forEach(projectId -> {
+				if (projectId != null) {
+					changedProjectIds.add(projectId);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Builds the index and starts the background thread, so that the first
+	 * query does not wait for the build. Calling this more than once has no
+	 * effect.
+	 */
+	public void start() {
+		current();
+	}
+
+	private synchronized MinHashIndex current() {
+		if (index != null) {
+			return index;
+		}
+
+		/*
+		 * Changes are collected from the moment the build starts, so one that
+		 * commits after its rows were read is applied by the first refresh.
+		 */
+		active = true;
+
+		try {
+			index = build();
+		} catch (RuntimeException e) {
+			active = false;
+			changedProjectIds.clear();
+			throw e;
+		}
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "similarity-index");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		scheduler.scheduleWithFixedDelay(this::refreshSafely, REFRESH_MILLIS, REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+		scheduler.scheduleWithFixedDelay(this::rebuildSafely, REBUILD_MINUTES, REBUILD_MINUTES, TimeUnit.MINUTES);
+		return index;
+	}
+
+	/**
+	 * Stops the background thread and drops the index. The next query builds
+	 * it again.
+	 */
+	public void stop() {
+		ScheduledExecutorService stopping;
+
+		synchronized (this) {
+			stopping = scheduler;
+			scheduler = null;
+			index = null;
+			active = false;
+			changedProjectIds.clear();
+		}
+
+		if (stopping != null) {
+			stopping.shutdownNow();
+		}
+	}
+
+	/**
+	 *
+	 * @return Applies the waiting changes to the index and returns the number
+	 *         of projects refreshed.
+	 */
+	public int refresh() {
+		MinHashIndex current = index;
+		List<Integer> projectIds = new ArrayList<>(changedProjectIds);
+
+		if (current == null || projectIds.isEmpty()) {
+			return 0;
+		}
+
+		changedProjectIds.removeAll(projectIds);
+
+		try {
+			refresh(current, projectIds);
+		} catch (DbException e) {
+			changedProjectIds.addAll(projectIds);
+			throw e;
+		}
+
+		return projectIds.size();
+	}
+
+	/*
+	 * Projects with no features left are deleted or have nothing to compare,
+	 * so they are removed.
+	 */
+	private void refresh(MinHashIndex current, List<Integer> projectIds) {
+		Map<Integer, int[]> signatures = new HashMap<>();
+
+		similarityDao.fetchFeatures(projectIds, (projectId, feature) -> current
+				.addToSignature(signatures.computeIfAbsent(projectId, id -> current.newSignature()), feature));
+
+		for (Integer projectId : projectIds) {
+			int[] signature = signatures.get(projectId);
+
+			if (signature == null) {
+				current.remove(projectId);
+			} else {
+				current.put(projectId, signature);
+			}
+		}
+	}
+
+	/*
+	 * Runs on the background thread, which also runs refresh, so changes noted
+	 * during the build wait for the first refresh of the new index.
+	 */
+	private void rebuild() {
+		MinHashIndex rebuilt = build();
+
+		synchronized (this) {
+			if (index != null) {
+				index = rebuilt;
+			}
+		}
+	}
+
+	private MinHashIndex build() {
+		MinHashIndex built = new MinHashIndex(HASHES, BANDS);
+
+		similarityDao.streamFeatures(built::addFeature);
+		built.link();
+		return built;
+	}
+
+	private void refreshSafely() {
+		try {
+			refresh();
+		} catch (DbException e) {
+			System.err.println("Similarity index refresh failed: " + e.getMessage());
+		}
+	}
+
+	private void rebuildSafely() {
+		try {
+			rebuild();
+		} catch (DbException e) {
+			System.err.println("Similarity index rebuild failed: " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package projects.sync;
+
+import java.util.List;
+
+/**
+ *
+ * @author clayr
+ *
+ *         One page of the change feed. A client applies the changes in order,
+ *         keeps {@link #getNextCursor()}, and asks again from it while
+ *         {@link #hasMore()} is true.
+ */
+public class ChangeSet {
+	private final List<ProjectChange> changes;
+	private final SyncCursor nextCursor;
+	private final boolean more;
+	private final boolean resyncRequired;
+
+	/**
+	 *
+	 * @param changes        The changes after the cursor, in feed order.
+	 * @param nextCursor     The position of the last change, or the cursor
+	 *                       asked for if there were none.
+	 * @param more           True if there are changes after this page.
+	 * @param resyncRequired True if the cursor is older than the oldest
+	 *                       tombstone kept, so deletes may be missing.
+	 */
+	public ChangeSet(List<ProjectChange> changes, SyncCursor nextCursor, boolean more, boolean resyncRequired) {
+		this.changes = List.copyOf(changes);
+		this.nextCursor = nextCursor;
+		this.more = more;
+		this.resyncRequired = resyncRequired;
+	}
+
+	public List<ProjectChange> getChanges() {
+		return changes;
+	}
+
+	public SyncCursor getNextCursor() {
+		return nextCursor;
+	}
+
+	public boolean hasMore() {
+		return more;
+	}
+
+	/**
+	 *
+	 * @return True if the client must discard its copy and sync again from
+	 *         {@link SyncCursor#START}, because deletes older than the tombstone
+	 *         retention period are no longer recorded.
+	 */
+	public boolean isResyncRequired() {
+		return resyncRequired;
+	}
+}
@@ -0,0 +1,53 @@
+package projects.sync;
+
+import java.util.Objects;
+
+import projects.entity.Project;
+
+/**
+ *
+ * @author clayr
+ *
+ *         One entry in the change feed: a project that was added or changed,
+ *         with its materials, steps and categories, or one that was deleted.
+ */
+public class ProjectChange {
+	private final SyncCursor position;
+	private final Project project;
+
+	/**
+	 *
+	 * @param position The project's last_modified timestamp and ID.
+	 * @param project  The project as it is now, or null if it was deleted.
+	 */
+	public ProjectChange(SyncCursor position, Project project) {
+		this.position = position;
+		this.project = project;
+	}
+
+	public SyncCursor getPosition() {
+		return position;
+	}
+
+	public int getProjectId() {
+		return position.getProjectId();
+	}
+
+	/**
+	 *
+	 * @return The project with its child collections loaded, or null if it was
+	 *         deleted.
+	 */
+	public Project getProject() {
+		return project;
+	}
+
+	public boolean isDeleted() {
+		return Objects.isNull(project);
+	}
+
+	@Override
+	public String toString() {
+		return position + (isDeleted() ? " deleted" : " changed");
+	}
+}
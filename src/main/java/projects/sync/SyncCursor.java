@@ -0,0 +1,95 @@
+package projects.sync;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ *
+ * @author clayr
+ *
+ *         A position in the change feed: the last_modified timestamp and project
+ *         ID of the last change a client has seen. Changes are ordered by
+ *         timestamp and then project ID, so a cursor resumes exactly after the
+ *         last change returned even when several share a timestamp.
+ *
+ *         A cursor is written as text, such as
+ *         "2026-10-18T09:30:00.123456/42", for clients to keep between syncs.
+ */
+public class SyncCursor implements Comparable<SyncCursor> {
+	/**
+	 * Before every change. A client with no cursor starts here.
+	 */
+	public static final SyncCursor START = new SyncCursor(LocalDateTime.of(1970, 1, 1, 0, 0, 1), 0);
+
+	private static final Comparator<SyncCursor> ORDER = Comparator.comparing(SyncCursor::getLastModified)
+			.thenComparingInt(SyncCursor::getProjectId);
+
+	private final LocalDateTime lastModified;
+	private final int projectId;
+
+	/**
+	 *
+	 * @param lastModified
+	 * @param projectId
+	 */
+	public SyncCursor(LocalDateTime lastModified, int projectId) {
+		this.lastModified = Objects.requireNonNull(lastModified);
+		this.projectId = projectId;
+	}
+
+	/**
+	 *
+	 * @param text
+	 * @return The cursor written by {@link #toString()}.
+	 */
+	public static SyncCursor parse(String text) {
+		int slash = text.lastIndexOf('/');
+
+		if (slash < 0) {
+			throw new IllegalArgumentException(text + " is not a valid sync cursor.");
+		}
+
+		try {
+			return new SyncCursor(LocalDateTime.parse(text.substring(0, slash)),
+					Integer.parseInt(text.substring(slash + 1)));
+		} catch (DateTimeParseException | NumberFormatException e) {
+			throw new IllegalArgumentException(text + " is not a valid sync cursor.");
+		}
+	}
+
+	public LocalDateTime getLastModified() {
+		return lastModified;
+	}
+
+	public int getProjectId() {
+		return projectId;
+	}
+
+	@Override
+	public int compareTo(SyncCursor other) {
+		return ORDER.compare(this, other);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof SyncCursor)) {
+			return false;
+		}
+
+		SyncCursor other = (SyncCursor) obj;
+
+		return lastModified.equals(other.lastModified) && projectId == other.projectId;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(lastModified, projectId);
+	}
+
+	@Override
+	public String toString() {
+		return lastModified + "/" + projectId;
+	}
+}
@@ -0,0 +1,349 @@
+package projects.typeahead;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Project names in sorted arrays for case-insensitive prefix matching.
+ *         Every name is kept once; the arrays hold references to it with the
+ *         offset the key starts at, so there are no lower-cased or substring
+ *         copies. Names are compared char by char after folding case the way
+ *         {@link String#CASE_INSENSITIVE_ORDER} does, which keeps every name
+ *         that starts with a prefix in one contiguous run.
+ *
+ *         There are two arrays. One is keyed by whole names. The other is keyed
+ *         from the start of every later word in a name, so "shelf" also finds
+ *         "Hang a shelf". A lookup is a binary search in each array followed by
+ *         a walk of at most the requested number of entries: matches at the
+ *         start of a name rank first, then matches at a later word, each in
+ *         name order.
+ *
+ *         Changes insert into and remove from the arrays in place. Lookups take
+ *         the read lock and changes the write lock.
+ */
+class PrefixIndex {
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<Integer, String> namesById = new HashMap<>();
+	private final SortedKeys starts = new SortedKeys();
+	private final SortedKeys words = new SortedKeys();
+
+	/**
+	 *
+	 * @param projectId
+	 * @param projectName Adds a project while the index is being filled, before
+	 *                    {@link #sort()}. Not thread safe.
+	 */
+	void add(int projectId, String projectName) {
+		namesById.put(projectId, projectName);
+		addKeys(projectId, projectName, false);
+	}
+
+	/**
+	 * Sorts the keys added with {@link #add(int, String)}. Called once, after
+	 * the index has been filled.
+	 */
+	void sort() {
+		starts.sort();
+		words.sort();
+	}
+
+	/**
+	 *
+	 * @param projectId
+	 * @param projectName Adds the project, or renames it if it is in the index.
+	 */
+	void put(int projectId, String projectName) {
+		lock.writeLock().lock();
+
+		try {
+			String old = namesById.put(projectId, projectName);
+
+			if (old != null) {
+				removeKeys(projectId, old);
+			}
+
+			addKeys(projectId, projectName, true);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @param projectId Removes the project, if it is in the index.
+	 */
+	void remove(int projectId) {
+		lock.writeLock().lock();
+
+		try {
+			String old = namesById.remove(projectId);
+
+			if (old != null) {
+				removeKeys(projectId, old);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @param prefix
+	 * @param limit
+	 * @param out    Adds up to limit projects whose name, or a word in it,
+	 *               starts with the prefix to out, best first.
+	 */
+	void suggest(String prefix, int limit, List<ProjectSuggestion> out) {
+		lock.readLock().lock();
+
+		try {
+			starts.collect(prefix, limit, out);
+			words.collect(prefix, limit, out);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @return The number of projects in the index.
+	 */
+	int size() {
+		lock.readLock().lock();
+
+		try {
+			return namesById.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void addKeys(int projectId, String projectName, boolean sorted) {
+		starts.add(projectName, 0, projectId, sorted);
+
+		for (int offset = 1; offset < projectName.length(); offset++) {
+			if (isWordStart(projectName, offset)) {
+				words.add(projectName, offset, projectId, sorted);
+			}
+		}
+	}
+
+	private void removeKeys(int projectId, String projectName) {
+		starts.remove(projectName, 0, projectId);
+
+		for (int offset = 1; offset < projectName.length(); offset++) {
+			if (isWordStart(projectName, offset)) {
+				words.remove(projectName, offset, projectId);
+			}
+		}
+	}
+
+	private static boolean isWordStart(String name, int offset) {
+		return Character.isLetterOrDigit(name.charAt(offset)) && !Character.isLetterOrDigit(name.charAt(offset - 1));
+	}
+
+	/*
+	 * Folds case as String.CASE_INSENSITIVE_ORDER does.
+	 */
+	private static char fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	/*
+	 * Orders the key starting at offset in name against the one starting at
+	 * otherOffset in other; a key that is a prefix of the other comes first.
+	 */
+	private static int compareKeys(String name, int offset, String other, int otherOffset) {
+		int length = name.length() - offset;
+		int otherLength = other.length() - otherOffset;
+
+		for (int pos = 0; pos < Math.min(length, otherLength); pos++) {
+			char c = fold(name.charAt(offset + pos));
+			char d = fold(other.charAt(otherOffset + pos));
+
+			if (c != d) {
+				return c - d;
+			}
+		}
+
+		return length - otherLength;
+	}
+
+	/*
+	 * Zero if the key starts with the prefix; otherwise the key's order
+	 * against every key that does.
+	 */
+	private static int comparePrefix(String name, int offset, String prefix) {
+		int length = name.length() - offset;
+
+		for (int pos = 0; pos < prefix.length(); pos++) {
+			if (pos == length) {
+				return -1;
+			}
+
+			char c = fold(name.charAt(offset + pos));
+			char d = fold(prefix.charAt(pos));
+
+			if (c != d) {
+				return c - d;
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Keys in sorted order, as parallel arrays of the name, the key's offset in
+	 * it and the project ID. Keys that are equal are ordered by project ID.
+	 */
+	private static class SortedKeys {
+		private String[] names = new String[16];
+		private int[] offsets = new int[16];
+		private int[] projectIds = new int[16];
+		private int size;
+
+		void add(String name, int offset, int projectId, boolean sorted) {
+			int pos = size;
+
+			if (sorted) {
+				int found = search(name, offset, projectId);
+
+				if (found >= 0) {
+					return;
+				}
+
+				pos = -found - 1;
+			}
+
+			if (size == names.length) {
+				names = Arrays.copyOf(names, size * 2);
+				offsets = Arrays.copyOf(offsets, size * 2);
+				projectIds = Arrays.copyOf(projectIds, size * 2);
+			}
+
+			System.arraycopy(names, pos, names, pos + 1, size - pos);
+			System.arraycopy(offsets, pos, offsets, pos + 1, size - pos);
+			System.arraycopy(projectIds, pos, projectIds, pos + 1, size - pos);
+			names[pos] = name;
+			offsets[pos] = offset;
+			projectIds[pos] = projectId;
+			size++;
+		}
+
+		void remove(String name, int offset, int projectId) {
+			int pos = search(name, offset, projectId);
+
+			if (pos < 0) {
+				return;
+			}
+
+			System.arraycopy(names, pos + 1, names, pos, size - pos - 1);
+			System.arraycopy(offsets, pos + 1, offsets, pos, size - pos - 1);
+			System.arraycopy(projectIds, pos + 1, projectIds, pos, size - pos - 1);
+			names[--size] = null;
+		}
+
+		/*
+		 * Sorts keys appended while filling, through a permutation of their
+		 * positions.
+		 */
+		void sort() {
+			Integer[] order = new Integer[size];
+
+			for (int pos = 0; pos < size; pos++) {
+				order[pos] = pos;
+			}
+
+			Arrays.sort(order, (left, right) -> {
+				int result = compareKeys(names[left], offsets[left], names[right], offsets[right]);
+
+				return result != 0 ? result : Integer.compare(projectIds[left], projectIds[right]);
+			});
+
+			String[] sortedNames = new String[Math.max(16, size)];
+			int[] sortedOffsets = new int[sortedNames.length];
+			int[] sortedIds = new int[sortedNames.length];
+
+			for (int pos = 0; pos < size; pos++) {
+				sortedNames[pos] = names[order[pos]];
+				sortedOffsets[pos] = offsets[order[pos]];
+				sortedIds[pos] = projectIds[order[pos]];
+			}
+
+			names = sortedNames;
+			offsets = sortedOffsets;
+			projectIds = sortedIds;
+		}
+
+		/*
+		 * Adds the projects whose keys start with the prefix, in key order,
+		 * until out holds limit projects. A project already in out is skipped,
+		 * which happens when a name and one of its words both match.
+		 */
+		void collect(String prefix, int limit, List<ProjectSuggestion> out) {
+			int low = 0;
+			int high = size;
+
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+
+				if (comparePrefix(names[mid], offsets[mid], prefix) < 0) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+
+			for (int pos = low; pos < size && out.size() < limit
+					&& comparePrefix(names[pos], offsets[pos], prefix) == 0; pos++) {
+				if (!contains(out, projectIds[pos])) {
+					out.add(new ProjectSuggestion(projectIds[pos], names[pos]));
+				}
+			}
+		}
+
+		/*
+		 * The position of the key if it is present, otherwise -(insertion
+		 * point) - 1, as Arrays.binarySearch returns.
+		 */
+		private int search(String name, int offset, int projectId) {
+			int low = 0;
+			int high = size - 1;
+
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int result = compareKeys(names[mid], offsets[mid], name, offset);
+
+				if (result == 0) {
+					result = Integer.compare(projectIds[mid], projectId);
+				}
+
+				if (result < 0) {
+					low = mid + 1;
+				} else if (result > 0) {
+					high = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+
+			return -(low + 1);
+		}
+
+		private static boolean contains(List<ProjectSuggestion> out, int projectId) {
+			for (int pos = 0; pos < out.size(); pos++) {
+				if (out.get(pos).getProjectId() == projectId) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+}
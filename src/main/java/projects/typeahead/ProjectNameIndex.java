@@ -0,0 +1,254 @@
+package projects.typeahead;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import projects.dao.ProjectNameDao;
+import projects.exception.DbException;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Suggests projects by the start of their name, or of a word in it, from
+ *         a {@link PrefixIndex} held in memory. A lookup is two binary searches
+ *         and allocates only the suggestions it returns.
+ *
+ *         The index is built by streaming every live project's name from the
+ *         database on first use. ProjectService updates it as it inserts,
+ *         renames and deletes projects, so this process's changes show at
+ *         once. Changes made by other processes are picked up by a rebuild on
+ *         a slower schedule; changes made here while a rebuild runs are read
+ *         again once it finishes.
+ *
+ *         Settings are system properties: projects.typeahead.maxLimit (50) and
+ *         projects.typeahead.rebuildMinutes (10).
+ */
+public class ProjectNameIndex {
+	private static final int MAX_LIMIT = Integer.getInteger("projects.typeahead.maxLimit", 50);
+	private static final long REBUILD_MINUTES = Long.getLong("projects.typeahead.rebuildMinutes", 10);
+
+	private static final ProjectNameIndex instance = new ProjectNameIndex();
+
+	private final Set<Integer> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+	private ProjectNameDao projectNameDao = new ProjectNameDao();
+	private volatile PrefixIndex index;
+	private volatile boolean rebuilding;
+	private ScheduledExecutorService scheduler;
+
+	private ProjectNameIndex() {
+	}
+
+	public static ProjectNameIndex getInstance() {
+		return instance;
+	}
+
+	/**
+	 *
+	 * @param prefix
+	 * @param limit
+	 * @return Up to limit projects whose name starts with the prefix, in name
+	 *         order, followed by projects with a later word that starts with it.
+	 *         Case is ignored. Builds the index if this is the first lookup.
+	 */
+	public List<ProjectSuggestion> suggest(String prefix, int limit) {
+		if (limit < 1 || limit > MAX_LIMIT) {
+			throw new IllegalArgumentException("The number of suggestions must be between 1 and " + MAX_LIMIT + ".");
+		}
+
+		String trimmed = prefix == null ? "" : prefix.strip();
+
+		if (trimmed.isEmpty()) {
+			return List.of();
+		}
+
+		List<ProjectSuggestion> suggestions = new ArrayList<>(limit);
+
+		current().suggest(trimmed, limit, suggestions);
+		return suggestions;
+	}
+
+	/**
+	 *
+	 * @param projectId
+	 * @param projectName Adds or renames a project. Does nothing until the index
+	 *                    is in use.
+	 */
+	public void put(Integer projectId, String projectName) {
+		PrefixIndex current = index;
+
+		if (current == null || projectId == null) {
+			return;
+		}
+
+		if (projectName == null) {
+			refresh(List.of(projectId));
+			return;
+		}
+
+		current.put(projectId, projectName);
+		noteDuringRebuild(current, List.of(projectId));
+	}
+
+	/**
+	 *
+	 * @param projectIds Removes deleted projects. Does nothing until the index
+	 *                   is in use.
+	 */
+	public void remove(Collection<Integer> projectIds) {
+		PrefixIndex current = index;
+
+		if (current == null) {
+			return;
+		}
+
+		projectIds.forEach(projectId -> {
+			if (projectId != null) {
+				current.remove(projectId);
+			}
+		});
+
+		noteDuringRebuild(current, projectIds);
+	}
+
+	/**
+	 *
+	 * @param projectIds Reads the names of the given projects again, for changes
+	 *                   whose result is not known here, such as journaled writes
+	 *                   once they are applied. Projects that are no longer live
+	 *                   are removed. Does nothing until the index is in use.
+	 */
+	public void refresh(Collection<Integer> projectIds) {
+		PrefixIndex current = index;
+
+		if (current == null || projectIds.isEmpty()) {
+			return;
+		}
+
+		Set<Integer> missing = new HashSet<>(projectIds);
+
+		missing.remove(null);
+		projectNameDao.fetchProjectNames(missing, (projectId, projectName) -> {
+			current.put(projectId, projectName);
+			missing.remove(projectId);
+		});
+
+		missing.forEach(current::remove);
+		noteDuringRebuild(current, projectIds);
+	}
+
+	/**
+	 * Builds the index and schedules the rebuild, so that the first lookup does
+	 * not wait for the build. Calling this more than once has no effect.
+	 */
+	public void start() {
+		current();
+	}
+
+	/**
+	 * Stops the rebuild thread and drops the index. The next lookup builds it
+	 * again.
+	 */
+	public void stop() {
+		ScheduledExecutorService stopping;
+
+		synchronized (this) {
+			stopping = scheduler;
+			scheduler = null;
+			index = null;
+		}
+
+		if (stopping != null) {
+			stopping.shutdownNow();
+		}
+	}
+
+	private synchronized PrefixIndex current() {
+		if (index != null) {
+			return index;
+		}
+
+		index = build();
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "typeahead-rebuild");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		scheduler.scheduleWithFixedDelay(this::rebuildSafely, REBUILD_MINUTES, REBUILD_MINUTES, TimeUnit.MINUTES);
+		return index;
+	}
+
+	/*
+	 * A change made while the new index is being read may be missing from it,
+	 * so those projects are read again after the swap. The flag is cleared
+	 * only once the new index is in place, so no change can fall between the
+	 * two.
+	 */
+	private void rebuild() {
+		changedDuringRebuild.clear();
+		rebuilding = true;
+
+		PrefixIndex rebuilt;
+
+		try {
+			rebuilt = build();
+		} catch (RuntimeException e) {
+			rebuilding = false;
+			throw e;
+		}
+
+		synchronized (this) {
+			if (index != null) {
+				index = rebuilt;
+			}
+
+			rebuilding = false;
+		}
+
+		List<Integer> projectIds = new ArrayList<>(changedDuringRebuild);
+
+		changedDuringRebuild.removeAll(projectIds);
+		refresh(projectIds);
+	}
+
+	private PrefixIndex build() {
+		PrefixIndex built = new PrefixIndex();
+
+		projectNameDao.streamProjectNames(built::add);
+		built.sort();
+		return built;
+	}
+
+	/*
+	 * A change applied to an index that a rebuild has since replaced is
+	 * applied again to the new one.
+	 */
+	private void noteDuringRebuild(PrefixIndex current, Collection<Integer> projectIds) {
+		if (rebuilding) {
+			projectIds.forEach(projectId -> {
+				if (projectId != null) {
+					changedDuringRebuild.add(projectId);
+				}
+			});
+		} else if (index != null && index != current) {
+			refresh(projectIds);
+		}
+	}
+
+	private void rebuildSafely() {
+		try {
+			rebuild();
+		} catch (DbException e) {
+			System.err.println("Typeahead index rebuild failed: " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package projects.typeahead;
+
+/**
+ *
+ * @author clayr
+ *
+ *         A project whose name matches a typeahead prefix.
+ */
+public class ProjectSuggestion {
+	private final int projectId;
+	private final String projectName;
+
+	ProjectSuggestion(int projectId, String projectName) {
+		this.projectId = projectId;
+		this.projectName = projectName;
+	}
+
+	public int getProjectId() {
+		return projectId;
+	}
+
+	public String getProjectName() {
+		return projectName;
+	}
+
+	@Override
+	public String toString() {
+		return projectId + ": " + projectName;
+	}
+}
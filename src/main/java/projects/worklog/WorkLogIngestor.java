@@ -0,0 +1,296 @@
+package projects.worklog;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import projects.dao.ShardRouter;
+import projects.dao.WorkLogDao;
+import projects.entity.ColumnLimits;
+import projects.entity.WorkLogEntry;
+import projects.exception.DbException;
+
+/**
+ *
+ * @author clayr
+ *
+ *         Collects time entries from any number of threads and writes them to
+ *         the work log in batches on one background thread. Callers only put
+ *         an entry in a bounded buffer, so logging time never waits on the
+ *         database unless the buffer is full. Each flush writes the entries
+ *         buffered when it began, a batch at a time, with one multi-row insert
+ *         per shard for each batch.
+ *
+ *         The actual_hours of projects with new entries are refreshed from the
+ *         rollups on a slower schedule, so a busy project's row is updated
+ *         once per refresh instead of once per entry. The work_log partitions
+ *         are maintained when the ingestor starts and once a day after that.
+ *
+ *         Entries are checked against the work_log columns when they are
+ *         submitted. A shard's part of a batch that fails is kept and retried
+ *         on the next flush, unless the database refused its data: then its
+ *         entries are written one at a time and any entry the database still
+ *         refuses is set aside in {@link #getRejected()} instead of being
+ *         retried forever. Entries still in the buffer when the process is killed are
+ *         lost; call {@link #stop()} on shutdown to write them.
+ *
+ *         Settings are system properties: projects.worklog.batchSize (1000
+ *         entries), projects.worklog.bufferSize (100000 entries),
+ *         projects.worklog.flushMillis (200), projects.worklog.refreshMillis
+ *         (10000), projects.worklog.monthsAhead (3) and
+ *         projects.worklog.retentionMonths (24).
+ */
+public class WorkLogIngestor {
+	private static final int BATCH_SIZE = Integer.getInteger("projects.worklog.batchSize", 1000);
+	private static final int BUFFER_SIZE = Integer.getInteger("projects.worklog.bufferSize", 100_000);
+	private static final long FLUSH_MILLIS = Long.getLong("projects.worklog.flushMillis", 200);
+	private static final long REFRESH_MILLIS = Long.getLong("projects.worklog.refreshMillis", 10_000);
+	private static final int MONTHS_AHEAD = Integer.getInteger("projects.worklog.monthsAhead", 3);
+	private static final int RETENTION_MONTHS = Integer.getInteger("projects.worklog.retentionMonths", 24);
+
+	private static final WorkLogIngestor instance = new WorkLogIngestor();
+
+	private final BlockingQueue<WorkLogEntry> buffer = new LinkedBlockingQueue<>(BUFFER_SIZE);
+	private final Set<Integer> dirtyProjectIds = ConcurrentHashMap.newKeySet();
+	private final Map<Integer, List<WorkLogEntry>> pending = new TreeMap<>();
+	private final List<WorkLogEntry> rejected = new ArrayList<>();
+	private WorkLogDao workLogDao = new WorkLogDao();
+	private ScheduledExecutorService scheduler;
+
+	private WorkLogIngestor() {
+	}
+
+	public static WorkLogIngestor getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Starts the background thread. Calling this more than once has no effect.
+	 */
+	public synchronized void start() {
+		if (scheduler != null) {
+			return;
+		}
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "work-log-ingestor");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		scheduler.scheduleWithFixedDelay(this::maintainSafely, 0, 1, TimeUnit.DAYS);
+		scheduler.scheduleWithFixedDelay(this::flushSafely, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+		scheduler.scheduleWithFixedDelay(this::refreshSafely, REFRESH_MILLIS, REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops the background thread, then writes the entries still buffered and
+	 * refreshes the hours of their projects on the calling thread.
+	 */
+	public void stop() {
+		ScheduledExecutorService stopping;
+
+		/*
+		 * The wait is outside the lock, since a running flush holds it.
+		 */
+		synchronized (this) {
+			stopping = scheduler;
+			scheduler = null;
+		}
+
+		if (stopping == null) {
+			return;
+		}
+
+		stopping.shutdown();
+
+		try {
+			stopping.awaitTermination(30, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		flush();
+		refresh();
+	}
+
+	/**
+	 *
+	 * @param entry
+	 * @throws InterruptedException Buffers the entry for the next flush,
+	 *                              starting the ingestor if needed. Waits if
+	 *                              the buffer is full, which only happens when
+	 *                              entries arrive faster than the database takes
+	 *                              them. Throws IllegalArgumentException if
+	 *                              the hours or note do not fit the work_log
+	 *                              columns.
+	 */
+	public void submit(WorkLogEntry entry) throws InterruptedException {
+		if (Objects.isNull(entry.getProjectId()) || Objects.isNull(entry.getLoggedAt())
+				|| Objects.isNull(entry.getHours())) {
+			throw new DbException("A work log entry needs a project ID, a time and hours: " + entry);
+		}
+
+		ColumnLimits.checkWorkLogEntry(entry);
+		start();
+		buffer.put(entry);
+	}
+
+	/**
+	 *
+	 * @return Writes buffered entries in batches until the buffer is empty and
+	 *         returns the number written.
+	 */
+	public int flush() {
+		return flush(Integer.MAX_VALUE);
+	}
+
+	/*
+	 * Writes at most maxBatches batches. A scheduled flush writes only the
+	 * entries buffered when it began, so under sustained load it still returns
+	 * and the refresh and partition tasks sharing its thread get to run.
+	 */
+	private synchronized int flush(int maxBatches) {
+		int written = 0;
+		int batches = 0;
+
+		do {
+			if (pending.isEmpty()) {
+				List<WorkLogEntry> batch = new ArrayList<>();
+
+				buffer.drainTo(batch, BATCH_SIZE);
+				batch.forEach(entry -> pending
+						.computeIfAbsent(ShardRouter.shardFor(entry.getProjectId()), shard -> new ArrayList<>())
+						.add(entry));
+			}
+
+			if (pending.isEmpty()) {
+				break;
+			}
+
+			/*
+			 * Shards are written one at a time and removed from pending once
+			 * committed, so a retry after a failure never writes an entry twice.
+			 */
+			Iterator<List<WorkLogEntry>> shards = pending.values().iterator();
+
+			while (shards.hasNext()) {
+				List<WorkLogEntry> entries = shards.next();
+
+				try {
+					workLogDao.appendEntries(entries);
+					entries.forEach(entry -> dirtyProjectIds.add(entry.getProjectId()));
+					written += entries.size();
+				} catch (DbException e) {
+					if (!DbException.isDataError(e)) {
+						throw e;
+					}
+
+					written += appendOneByOne(entries);
+				}
+
+				shards.remove();
+			}
+		} while (++batches < maxBatches && !Thread.currentThread().isInterrupted());
+
+		return written;
+	}
+
+	/*
+	 * Writes the entries of a batch the database refused one at a time, so the
+	 * entries it accepts are kept and only the ones it refuses are set aside.
+	 * Each is removed from the list once written or set aside, so a retry after
+	 * any other failure picks up where this one stopped.
+	 */
+	private int appendOneByOne(List<WorkLogEntry> entries) {
+		int written = 0;
+		Iterator<WorkLogEntry> it = entries.iterator();
+
+		while (it.hasNext()) {
+			WorkLogEntry entry = it.next();
+
+			try {
+				workLogDao.appendEntries(List.of(entry));
+				dirtyProjectIds.add(entry.getProjectId());
+				written++;
+			} catch (DbException e) {
+				if (!DbException.isDataError(e)) {
+					throw e;
+				}
+
+				rejected.add(entry);
+				System.err.println("Work log entry rejected: " + entry + ": " + e.getMessage());
+			}
+
+			it.remove();
+		}
+
+		return written;
+	}
+
+	/**
+	 *
+	 * @return The entries the database refused, in the order they were set
+	 *         aside.
+	 */
+	public synchronized List<WorkLogEntry> getRejected() {
+		return new ArrayList<>(rejected);
+	}
+
+	/**
+	 *
+	 * @return Refreshes actual_hours for the projects that have had entries
+	 *         written since the last refresh, and returns the number of projects
+	 *         whose hours changed.
+	 */
+	public int refresh() {
+		List<Integer> projectIds = new ArrayList<>(dirtyProjectIds);
+
+		if (projectIds.isEmpty()) {
+			return 0;
+		}
+
+		dirtyProjectIds.removeAll(projectIds);
+
+		try {
+			return workLogDao.refreshActualHours(projectIds);
+		} catch (DbException e) {
+			dirtyProjectIds.addAll(projectIds);
+			throw e;
+		}
+	}
+
+	private void flushSafely() {
+		try {
+			flush(Math.max(1, (buffer.size() + BATCH_SIZE - 1) / BATCH_SIZE));
+		} catch (DbException e) {
+			System.err.println("Work log flush failed: " + e.getMessage());
+		}
+	}
+
+	private void refreshSafely() {
+		try {
+			refresh();
+		} catch (DbException e) {
+			System.err.println("Work log refresh failed: " + e.getMessage());
+		}
+	}
+
+	private void maintainSafely() {
+		try {
+			workLogDao.maintainPartitions(MONTHS_AHEAD, RETENTION_MONTHS);
+		} catch (DbException e) {
+			System.err.println("Work log partition maintenance failed: " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,12 @@
+-- Keys of local journal entries that have been applied, written in the same
+-- transaction as the change so that JournalReplayer never applies an entry
+-- twice. The outcome is APPLIED, or NOT_FOUND for an update or delete of a
+-- project that no longer exists.
+
+CREATE TABLE IF NOT EXISTS applied_journal(
+	journal_key CHAR(36) NOT NULL,
+	project_id INT,
+	outcome VARCHAR(16) NOT NULL,
+	applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+	PRIMARY KEY (journal_key)
+);
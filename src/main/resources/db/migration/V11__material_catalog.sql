@@ -0,0 +1,45 @@
+-- Material names move to a shared catalog that material rows reference by
+-- ID. Names that differ only in case or accents become one catalog item,
+-- as category names do. The (catalog_id, project_id) key answers "which
+-- projects use this material" without reading the material table.
+--
+-- A database created from projects-schema.sql already has the catalog and
+-- no material.material_name, so the statements that copy names are only
+-- run when that column is still there.
+
+CREATE TABLE IF NOT EXISTS material_catalog(
+	catalog_id INT AUTO_INCREMENT NOT NULL,
+	material_name VARCHAR(128) NOT NULL,
+	PRIMARY KEY (catalog_id),
+	UNIQUE KEY uq_material_catalog_name (material_name)
+);
+
+SET @has_material_name = (SELECT COUNT(*) FROM information_schema.columns
+	WHERE table_schema = DATABASE() AND table_name = 'material' AND column_name = 'material_name');
+
+SET @copy_names = IF(@has_material_name > 0,
+	'INSERT IGNORE INTO material_catalog (material_name)
+		SELECT material_name FROM material GROUP BY material_name ORDER BY MIN(material_id)',
+	'DO 0');
+
+PREPARE copy_names FROM @copy_names;
+EXECUTE copy_names;
+DEALLOCATE PREPARE copy_names;
+
+ALTER TABLE material ADD COLUMN catalog_id INT NULL AFTER project_id;
+
+SET @link_names = IF(@has_material_name > 0,
+	'UPDATE material m
+		JOIN material_catalog mc ON mc.material_name = m.material_name
+		SET m.catalog_id = mc.catalog_id',
+	'DO 0');
+
+PREPARE link_names FROM @link_names;
+EXECUTE link_names;
+DEALLOCATE PREPARE link_names;
+
+ALTER TABLE material
+	MODIFY catalog_id INT NOT NULL,
+	ADD KEY idx_material_catalog_project (catalog_id, project_id),
+	ADD CONSTRAINT fk_material_catalog FOREIGN KEY (catalog_id) REFERENCES material_catalog (catalog_id),
+	DROP COLUMN material_name;
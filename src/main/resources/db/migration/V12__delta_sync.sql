@@ -0,0 +1,23 @@
+-- Change tracking for delta sync. last_modified is set by MySQL on every
+-- insert and update; ProjectDao also sets a project's when its category
+-- links change, so one index range finds every changed project graph.
+-- Rows that exist when this runs are stamped with the migration time, so
+-- the first sync after it is a full one. A purged project leaves a
+-- tombstone with the timestamp of its delete.
+
+ALTER TABLE project
+	ADD COLUMN last_modified TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6),
+	ADD KEY idx_project_last_modified (last_modified, project_id);
+
+ALTER TABLE step
+	ADD COLUMN last_modified TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6);
+
+ALTER TABLE material
+	ADD COLUMN last_modified TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6);
+
+CREATE TABLE project_tombstone(
+	project_id INT NOT NULL,
+	last_modified TIMESTAMP(6) NOT NULL,
+	PRIMARY KEY (project_id),
+	KEY idx_project_tombstone_modified (last_modified, project_id)
+);
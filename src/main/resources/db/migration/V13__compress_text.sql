@@ -0,0 +1,19 @@
+-- Compresses the long notes and step text already stored, in the format
+-- TextCompression writes: a NUL character followed by the Base64 form of
+-- COMPRESS(). The columns stay TEXT. Values under 256 characters, values
+-- that would not get shorter and values already compressed are left as
+-- they are. last_modified is kept, since the text itself does not change.
+
+UPDATE project
+	SET notes = CONCAT(CHAR(0 USING utf8mb4), TO_BASE64(COMPRESS(notes))),
+		last_modified = last_modified
+	WHERE CHAR_LENGTH(notes) >= 256
+		AND LEFT(notes, 1) <> CHAR(0 USING utf8mb4)
+		AND LENGTH(TO_BASE64(COMPRESS(notes))) + 1 < CHAR_LENGTH(notes);
+
+UPDATE step
+	SET step_text = CONCAT(CHAR(0 USING utf8mb4), TO_BASE64(COMPRESS(step_text))),
+		last_modified = last_modified
+	WHERE CHAR_LENGTH(step_text) >= 256
+		AND LEFT(step_text, 1) <> CHAR(0 USING utf8mb4)
+		AND LENGTH(TO_BASE64(COMPRESS(step_text))) + 1 < CHAR_LENGTH(step_text);
@@ -0,0 +1,5 @@
+-- Soft-delete marker read by ProjectDao and ProjectPurger.
+
+ALTER TABLE project ADD COLUMN deleted_at TIMESTAMP NULL;
+
+CREATE INDEX idx_project_deleted_at ON project (deleted_at);
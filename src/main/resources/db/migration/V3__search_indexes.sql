@@ -0,0 +1,11 @@
+-- Columns and indexes for the ProjectQuery criteria.
+
+ALTER TABLE project ADD COLUMN overrun_hours DECIMAL(8,2) GENERATED ALWAYS AS (actual_hours - estimated_hours) STORED;
+
+CREATE INDEX idx_project_name ON project (project_name);
+CREATE INDEX idx_project_difficulty ON project (difficulty);
+CREATE INDEX idx_project_estimated_hours ON project (estimated_hours);
+CREATE INDEX idx_project_actual_hours ON project (actual_hours);
+CREATE INDEX idx_project_overrun_hours ON project (overrun_hours);
+CREATE INDEX idx_category_name ON category (category_name);
+CREATE INDEX idx_project_category_category ON project_category (category_id, project_id);
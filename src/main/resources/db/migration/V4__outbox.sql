@@ -0,0 +1,11 @@
+-- Change records written by ProjectDao and drained by OutboxRelay.
+
+CREATE TABLE IF NOT EXISTS outbox(
+	outbox_id BIGINT AUTO_INCREMENT NOT NULL,
+	aggregate_type VARCHAR(32) NOT NULL,
+	aggregate_id INT NOT NULL,
+	event_type VARCHAR(32) NOT NULL,
+	payload TEXT,
+	created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+	PRIMARY KEY (outbox_id)
+);
@@ -0,0 +1,6 @@
+-- fetchAllProjects reads live projects in name order; with deleted_at first
+-- the rows come out of the index already sorted, so there is no filesort.
+CREATE INDEX idx_project_live_name ON project (deleted_at, project_name);
+
+-- Steps are read per project in step order.
+CREATE INDEX idx_step_project_order ON step (project_id, step_order);
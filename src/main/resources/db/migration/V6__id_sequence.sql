@@ -0,0 +1,12 @@
+-- Global project ID sequence, used on shard 0 by ProjectIdAllocator. It
+-- starts after the highest existing project ID so that IDs already handed
+-- out by AUTO_INCREMENT are never reused.
+
+CREATE TABLE IF NOT EXISTS id_sequence(
+	sequence_name VARCHAR(32) NOT NULL,
+	next_value INT NOT NULL,
+	PRIMARY KEY (sequence_name)
+);
+
+INSERT IGNORE INTO id_sequence (sequence_name, next_value)
+	SELECT 'project', COALESCE(MAX(project_id), 0) + 1 FROM project;
@@ -0,0 +1,21 @@
+-- Category names become unique so that names can be resolved to IDs and
+-- missing categories created with INSERT IGNORE. Links to duplicate
+-- categories are moved to the lowest category ID with that name; links
+-- that would then be duplicates are left behind and removed by the cascade
+-- when the duplicate categories are deleted.
+
+UPDATE IGNORE project_category pc
+	JOIN category c ON c.category_id = pc.category_id
+	JOIN (SELECT category_name, MIN(category_id) AS keep_id FROM category GROUP BY category_name) k
+		ON k.category_name = c.category_name
+	SET pc.category_id = k.keep_id
+	WHERE pc.category_id <> k.keep_id;
+
+DELETE c FROM category c
+	JOIN (SELECT category_name, MIN(category_id) AS keep_id FROM category GROUP BY category_name) k
+		ON k.category_name = c.category_name
+	WHERE c.category_id <> k.keep_id;
+
+CREATE UNIQUE INDEX uq_category_name ON category (category_name);
+
+DROP INDEX idx_category_name ON category;
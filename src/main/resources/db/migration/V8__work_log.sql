@@ -0,0 +1,31 @@
+-- Append-only time entries, partitioned by month so that old entries are
+-- removed by dropping a partition. WorkLogDao adds the monthly partitions
+-- ahead of time by splitting p_future. InnoDB does not allow foreign keys
+-- on partitioned tables, so entries of purged projects are removed by
+-- ProjectPurger instead of a cascade.
+
+CREATE TABLE IF NOT EXISTS work_log(
+	work_log_id BIGINT AUTO_INCREMENT NOT NULL,
+	project_id INT NOT NULL,
+	logged_at DATETIME NOT NULL,
+	hours DECIMAL(7,2) NOT NULL,
+	note VARCHAR(256),
+	PRIMARY KEY (work_log_id, logged_at),
+	KEY idx_work_log_project_time (project_id, logged_at)
+)
+PARTITION BY RANGE COLUMNS (logged_at) (
+	PARTITION p_start VALUES LESS THAN ('2000-01-01'),
+	PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
+
+-- Hours per project per day and per week, kept up to date as entries are
+-- appended. Rollups are kept when old work_log partitions are dropped.
+
+CREATE TABLE IF NOT EXISTS work_log_rollup(
+	project_id INT NOT NULL,
+	period VARCHAR(8) NOT NULL,
+	period_start DATE NOT NULL,
+	hours DECIMAL(11,2) NOT NULL,
+	entries INT NOT NULL,
+	PRIMARY KEY (project_id, period, period_start)
+);
@@ -0,0 +1,13 @@
+-- Audit trail of project changes, written in batches by AuditTrail. The
+-- before and after values are JSON documents of the project columns.
+
+CREATE TABLE IF NOT EXISTS audit_log(
+	audit_id BIGINT AUTO_INCREMENT NOT NULL,
+	project_id INT NOT NULL,
+	action VARCHAR(16) NOT NULL,
+	before_value TEXT,
+	after_value TEXT,
+	occurred_at DATETIME(6) NOT NULL,
+	PRIMARY KEY (audit_id),
+	KEY idx_audit_log_project_time (project_id, occurred_at)
+);
@@ -1,4 +1,13 @@
+DROP TABLE IF EXISTS schema_version;
+DROP TABLE IF EXISTS id_sequence;
+DROP TABLE IF EXISTS applied_journal;
+DROP TABLE IF EXISTS project_tombstone;
+DROP TABLE IF EXISTS audit_log;
+DROP TABLE IF EXISTS work_log_rollup;
+DROP TABLE IF EXISTS work_log;
+DROP TABLE IF EXISTS outbox;
 DROP TABLE IF EXISTS material;
+DROP TABLE IF EXISTS material_catalog;
 DROP TABLE IF EXISTS step;
 DROP TABLE IF EXISTS project_category;
 DROP TABLE IF EXISTS category;
@@ -11,13 +20,25 @@ CREATE TABLE project(
 	actual_hours DECIMAL(7,2),
 	difficulty INT,
 	notes TEXT,
-	PRIMARY KEY (project_id)
+	deleted_at TIMESTAMP NULL,
+	overrun_hours DECIMAL(8,2) GENERATED ALWAYS AS (actual_hours - estimated_hours) STORED,
+	last_modified TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6),
+	PRIMARY KEY (project_id),
+	KEY idx_project_name (project_name),
+	KEY idx_project_deleted_at (deleted_at),
+	KEY idx_project_live_name (deleted_at, project_name),
+	KEY idx_project_difficulty (difficulty),
+	KEY idx_project_estimated_hours (estimated_hours),
+	KEY idx_project_actual_hours (actual_hours),
+	KEY idx_project_overrun_hours (overrun_hours),
+	KEY idx_project_last_modified (last_modified, project_id)
 );
 
 CREATE TABLE category(
 	category_id INT AUTO_INCREMENT NOT NULL,
 	category_name VARCHAR(128) NOT NULL,
-	PRIMARY KEY (category_id)
+	PRIMARY KEY (category_id),
+	UNIQUE KEY uq_category_name (category_name)
 );
 
 CREATE TABLE project_category(
@@ -25,7 +46,8 @@ CREATE TABLE project_category(
 	category_id INT NOT NULL,
 	FOREIGN KEY (project_id) REFERENCES project (project_id) ON DELETE CASCADE,
 	FOREIGN KEY (category_id) REFERENCES category (category_id) ON DELETE CASCADE,
-	UNIQUE KEY (project_id, category_id)
+	UNIQUE KEY (project_id, category_id),
+	KEY idx_project_category_category (category_id, project_id)
 );
 
 CREATE TABLE step(
@@ -33,16 +55,95 @@ CREATE TABLE step(
 	project_id INT NOT NULL,
 	step_text TEXT NOT NULL,
 	step_order INT NOT NULL,
+	last_modified TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6),
 	PRIMARY KEY (step_id),
+	KEY idx_step_project_order (project_id, step_order),
 	FOREIGN KEY (project_id) REFERENCES project (project_id) ON DELETE CASCADE
 );
 
+CREATE TABLE material_catalog(
+	catalog_id INT AUTO_INCREMENT NOT NULL,
+	material_name VARCHAR(128) NOT NULL,
+	PRIMARY KEY (catalog_id),
+	UNIQUE KEY uq_material_catalog_name (material_name)
+);
+
 CREATE TABLE material(
 	material_id INT AUTO_INCREMENT NOT NULL,
 	project_id INT NOT NULL,
-	material_name VARCHAR(128) NOT NULL,
+	catalog_id INT NOT NULL,
 	num_required INT,
 	cost DECIMAL(7,2),
+	last_modified TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6),
 	PRIMARY KEY (material_id),
-	FOREIGN KEY (project_id) REFERENCES project (project_id) ON DELETE CASCADE
-);
\ No newline at end of file
+	KEY idx_material_catalog_project (catalog_id, project_id),
+	FOREIGN KEY (project_id) REFERENCES project (project_id) ON DELETE CASCADE,
+	CONSTRAINT fk_material_catalog FOREIGN KEY (catalog_id) REFERENCES material_catalog (catalog_id)
+);
+
+CREATE TABLE outbox(
+	outbox_id BIGINT AUTO_INCREMENT NOT NULL,
+	aggregate_type VARCHAR(32) NOT NULL,
+	aggregate_id INT NOT NULL,
+	event_type VARCHAR(32) NOT NULL,
+	payload TEXT,
+	created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+	PRIMARY KEY (outbox_id)
+);
+
+CREATE TABLE id_sequence(
+	sequence_name VARCHAR(32) NOT NULL,
+	next_value INT NOT NULL,
+	PRIMARY KEY (sequence_name)
+);
+
+INSERT INTO id_sequence (sequence_name, next_value) VALUES ('project', 1);
+
+CREATE TABLE work_log(
+	work_log_id BIGINT AUTO_INCREMENT NOT NULL,
+	project_id INT NOT NULL,
+	logged_at DATETIME NOT NULL,
+	hours DECIMAL(7,2) NOT NULL,
+	note VARCHAR(256),
+	PRIMARY KEY (work_log_id, logged_at),
+	KEY idx_work_log_project_time (project_id, logged_at)
+)
+PARTITION BY RANGE COLUMNS (logged_at) (
+	PARTITION p_start VALUES LESS THAN ('2000-01-01'),
+	PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
+
+CREATE TABLE work_log_rollup(
+	project_id INT NOT NULL,
+	period VARCHAR(8) NOT NULL,
+	period_start DATE NOT NULL,
+	hours DECIMAL(11,2) NOT NULL,
+	entries INT NOT NULL,
+	PRIMARY KEY (project_id, period, period_start)
+);
+
+CREATE TABLE audit_log(
+	audit_id BIGINT AUTO_INCREMENT NOT NULL,
+	project_id INT NOT NULL,
+	action VARCHAR(16) NOT NULL,
+	before_value TEXT,
+	after_value TEXT,
+	occurred_at DATETIME(6) NOT NULL,
+	PRIMARY KEY (audit_id),
+	KEY idx_audit_log_project_time (project_id, occurred_at)
+);
+
+CREATE TABLE applied_journal(
+	journal_key CHAR(36) NOT NULL,
+	project_id INT,
+	outcome VARCHAR(16) NOT NULL,
+	applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+	PRIMARY KEY (journal_key)
+);
+
+CREATE TABLE project_tombstone(
+	project_id INT NOT NULL,
+	last_modified TIMESTAMP(6) NOT NULL,
+	PRIMARY KEY (project_id),
+	KEY idx_project_tombstone_modified (last_modified, project_id)
+);